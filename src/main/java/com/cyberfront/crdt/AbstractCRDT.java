@@ -36,7 +36,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY)
 @JsonSubTypes({
     @Type(value = OperationTwoSet.class, name = "OperationTwoSet"),
-    @Type(value = LastWriteWins.class, name = "LastWriteWins") })
+    @Type(value = LastWriteWins.class, name = "LastWriteWins"),
+    @Type(value = ConcurrentLastWriteWins.class, name = "ConcurrentLastWriteWins"),
+    @Type(value = LockFreeLastWriteWins.class, name = "LockFreeLastWriteWins") })
 public abstract class AbstractCRDT {
 	
 	/**
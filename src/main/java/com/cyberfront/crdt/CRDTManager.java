@@ -22,12 +22,29 @@
  */
 package com.cyberfront.crdt;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.clock.HybridLogicalClock;
+import com.cyberfront.crdt.clock.TimestampSource;
 import com.cyberfront.crdt.operation.Operation.OperationType;
 import com.cyberfront.crdt.operation.Operation;
 import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.operation.OperationSketch;
+import com.cyberfront.crdt.operation.SequentialIdGenerator;
+import com.cyberfront.crdt.operation.StabilityTracker;
+import com.cyberfront.crdt.operation.VersionVector;
 import com.cyberfront.crdt.sample.manager.GenericManager;
 import com.cyberfront.crdt.sample.manager.JsonManager;
 import com.cyberfront.crdt.sample.simulation.SimCRDTManager;
@@ -63,10 +80,25 @@ public class CRDTManager {
 
 	/** The Constant mapper */
 	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/** Source of the timestamps of operations generated without an explicit timestamp */
+	private static volatile TimestampSource clock = new HybridLogicalClock();
 	
 	/** The CRDT containing the updates for the JSON object being managed. */
 	@JsonProperty(CRDT)
 	private LastWriteWins crdt;
+
+	/** Journal recording each operation pushed, or null when operations are not recorded */
+	@JsonIgnore
+	private volatile OperationJournal journal = null;
+
+	/** Supplier of the identifiers of the operations this manager generates, whose node identifier names this replica as their origin */
+	@JsonIgnore
+	private volatile Supplier<UUID> idGenerator = new SequentialIdGenerator();
+
+	/** Operations pushed PENDING whose approval or rejection has not yet arrived, in operation order */
+	@JsonIgnore
+	private final NavigableSet<Operation> unsettled = new ConcurrentSkipListSet<>();
 	
 	/**
 	 * Default constructor; performs no initialization of components
@@ -88,11 +120,89 @@ public class CRDTManager {
 	@JsonProperty(CRDT)
 	public LastWriteWins getCrdt() {
 		if (null == this.crdt) {
-			this.crdt = new LastWriteWins();
+			this.crdt = this.createCrdt();
 		}
 		return crdt;
 	}
 
+	/**
+	 * Create the CRDT this manager manages when none has been provided.  Managers shared among threads override this to manage a
+	 * ConcurrentLastWriteWins instead.
+	 * @return A new, empty CRDT to manage
+	 */
+	protected LastWriteWins createCrdt() {
+		return new LastWriteWins();
+	}
+
+	/**
+	 * Retrieve the supplier of the identifiers of the operations this manager generates
+	 *
+	 * @return The supplier of the identifiers of the operations this manager generates
+	 */
+	@JsonIgnore
+	public Supplier<UUID> getIdGenerator() {
+		return this.idGenerator;
+	}
+
+	/**
+	 * Set the supplier of the identifiers of the operations this manager generates.  Each manager begins with a SequentialIdGenerator
+	 * of its own, with a randomly chosen node identifier; a node managing several CRDTs should install a single SequentialIdGenerator
+	 * for its own node identifier in each of them, so that VersionVector and StabilityTracker see the node as a single origin.
+	 *
+	 * @param generator The supplier of the identifiers of the operations this manager generates
+	 */
+	@JsonIgnore
+	public void setIdGenerator(Supplier<UUID> generator) {
+		if (null == generator) {
+			throw new IllegalArgumentException("Operation identifier generator must not be null");
+		}
+
+		this.idGenerator = generator;
+	}
+
+	/**
+	 * Retrieve the journal recording each operation pushed or merged into this manager
+	 *
+	 * @return The journal recording each operation pushed or merged, or null when operations are not recorded
+	 */
+	@JsonIgnore
+	public OperationJournal getJournal() {
+		return this.journal;
+	}
+
+	/**
+	 * Set the journal to record each operation pushed or merged into this manager before it is applied, as when persisting the
+	 * operations so the CRDT can be rebuilt after a restart
+	 *
+	 * @param journal The journal to record each operation pushed or merged, or null to stop recording operations
+	 */
+	@JsonIgnore
+	public void setJournal(OperationJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Retrieve the source of the timestamps of operations generated without an explicit timestamp
+	 * @return The source of timestamps for generated operations
+	 */
+	public static TimestampSource getClock() {
+		return clock;
+	}
+
+	/**
+	 * Set the source of the timestamps of operations generated without an explicit timestamp.  A HybridLogicalClock following the
+	 * system time is used by default.  The source observes the timestamp of every operation pushed to any manager, so operations
+	 * generated afterward follow those received.
+	 * @param source The source of timestamps for generated operations
+	 */
+	public static void setClock(TimestampSource source) {
+		if (null == source) {
+			throw new IllegalArgumentException("Timestamp source must not be null");
+		}
+
+		clock = source;
+	}
+
 	/**
 	 * Get the static class ObjectMapper for performing JSON conversions
 	 * @return The static ObjectMapper instance for performing JSON conversions
@@ -146,6 +256,7 @@ public class CRDTManager {
 	 */
 	public void clear() {
 		this.getCrdt().clear();
+		this.unsettled.clear();
 	}
 
 	/**
@@ -169,12 +280,29 @@ public class CRDTManager {
 	 * @param op OperationsManager instance wrapping the operation to persist in this CRDT
 	 */
 	protected void push(OperationManager op) {
+		OperationJournal current = this.journal;
+
+		if (null != current) {
+			current.record(op);
+		}
+
+		if (null != op.getOperation()) {
+			getClock().observe(op.getOperation().getTimestamp());
+		}
+
 		switch(op.getStatus()) {
 		case APPROVED:
+			this.unsettled.remove(op.getOperation());
+			this.pushAdd(op.getOperation());
+			break;
 		case PENDING:
+			if (this.isUnseen(op.getOperation())) {
+				this.unsettled.add(op.getOperation());
+			}
 			this.pushAdd(op.getOperation());
 			break;
 		case REJECTED:
+			this.unsettled.remove(op.getOperation());
 			this.pushRemove(op.getOperation());
 			break;
 		default:
@@ -183,23 +311,240 @@ public class CRDTManager {
 	}
 	
 	/**
-	 * Generate a CreateOperation given a JsonNode and timestamp
+	 * Determine whether an operation pushed PENDING is the first delivery of it, so that it awaits approval or rejection.  An
+	 * operation already held, as when its approval overtook it, or already folded into the base, is not.
+	 * @param op The operation pushed
+	 * @return True exactly when the CRDT this manager manages has not yet seen the operation
+	 */
+	private boolean isUnseen(Operation op) {
+		LastWriteWins current = this.getCrdt();
+		return null != op && op.getTimestamp() > current.getBase().getHorizon() && !current.isAdded(op) && !current.isRemoved(op);
+	}
+
+	/**
+	 * Retrieve the latest timestamp through which every operation pushed to this manager has arrived with its final status.  An
+	 * operation pushed PENDING may yet be rejected, so neither it nor any operation after it is settled until its approval or
+	 * rejection arrives.
+	 * @return The timestamp just before the earliest operation still PENDING, or Long.MAX_VALUE when none is
+	 */
+	@JsonIgnore
+	public long getSettledHorizon() {
+		for (Operation op : this.unsettled) {
+			return op.getTimestamp() - 1;
+		}
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Acknowledge to a tracker that the given replica has received every operation through the given timestamp, limited to the
+	 * settled horizon of this manager, so that no operation which may still be rejected is taken as stable
+	 * @param tracker The tracker of the timestamps acknowledged by each replica
+	 * @param node The node identifier of the replica this manager belongs to
+	 * @param timestamp The latest timestamp through which the replica has received every operation
+	 */
+	public void acknowledge(StabilityTracker tracker, long node, long timestamp) {
+		tracker.acknowledge(node, Math.min(timestamp, this.getSettledHorizon()));
+	}
+
+	/**
+	 * Merge the operations of the CRDT another manager manages into the one this manager manages, as when a replica rejoins after
+	 * being out of contact.  The operations are combined in bulk rather than pushed one at a time, and the timestamp source observes
+	 * the latest of them.
+	 * @param other The manager whose operations to merge
+	 * @return The number of operations which were new to the CRDT this manager manages
+	 */
+	public long merge(CRDTManager other) {
+		return this == other ? 0 : this.merge(other.getCrdt());
+	}
+
+	/**
+	 * Merge the operations of a CRDT, such as the delta another replica retrieved for this one, into the one this manager manages.
+	 * The journal, if any, records the members of the ADD set as approved and those of the REMOVE set as rejected before they are
+	 * merged, as push does for a single operation, so replaying it reproduces their membership.  Only memberships the CRDT does not
+	 * already hold are recorded, so repeated merges with the same peer do not grow the journal.  The timestamp source observes the
+	 * latest of the operations.
+	 * @param crdt The CRDT whose operations to merge
+	 * @return The number of operations which were new to the CRDT this manager manages
+	 */
+	public long merge(LastWriteWins crdt) {
+		if (this.getCrdt() == crdt) {
+			return 0;
+		}
+
+		Collection<Operation> addset = crdt.getAddView();
+		Collection<Operation> remset = crdt.getRemView();
+		OperationJournal current = this.journal;
+		long latest = -1;
+
+		for (Operation op : addset) {
+			latest = Math.max(latest, op.getTimestamp());
+		}
+
+		if (null != current) {
+			for (Operation op : addset) {
+				if (!this.getCrdt().isAdded(op)) {
+					current.record(new OperationManager(StatusType.APPROVED, op));
+				}
+			}
+
+			for (Operation op : remset) {
+				if (!this.getCrdt().isRemoved(op)) {
+					current.record(new OperationManager(StatusType.REJECTED, op));
+				}
+			}
+		}
+
+		if (0 <= latest) {
+			getClock().observe(latest);
+		}
+
+		this.unsettled.removeAll(remset);
+
+		return this.getCrdt().merge(addset, remset);
+	}
+
+	/**
+	 * Summarize the operations of the CRDT this manager manages, for another replica to retrieve the delta of operations this one
+	 * lacks
+	 * @return The version vector summarizing the operations of the managed CRDT
+	 */
+	@JsonIgnore
+	public VersionVector getVersionVector() {
+		return this.getCrdt().getVersionVector();
+	}
+
+	/**
+	 * Retrieve the operations of the CRDT this manager manages which the replica summarized by the given version vector lacks.  Only
+	 * this delta need be sent to the other replica, which merges it, in place of every operation.
+	 * @param summary The version vector summarizing the operations of the other replica
+	 * @return A CRDT holding the operations the other replica lacks
+	 */
+	public LastWriteWins getDelta(VersionVector summary) {
+		return this.getCrdt().getDelta(summary);
+	}
+
+	/**
+	 * Fold the operations of the CRDT this manager manages which the given tracker finds causally stable into its base document,
+	 * discarding them along with their tombstones in the REMOVE set.  The fold stops short of the settled horizon of this manager,
+	 * so an operation still PENDING here, whose rejection would otherwise arrive after it was folded, remains in the ADD set.
+	 * @param tracker The tracker of the timestamps acknowledged by each replica
+	 * @return The number of operations discarded
+	 */
+	public long fold(StabilityTracker tracker) {
+		return this.getCrdt().fold(Math.min(tracker.getHorizon(), this.getSettledHorizon()));
+	}
+
+	/**
+	 * Build a sketch of the operations of the CRDT this manager manages, to send to another replica which reconciles it with its own.
+	 * The size of the sketch is fixed by the number of cells, however many operations the CRDT holds.
+	 * @param cells Number of cells in the sketch, which must be the same on both replicas
+	 * @return The sketch of the operations of the managed CRDT
+	 */
+	public OperationSketch getSketch(int cells) {
+		return this.getCrdt().getSketch(cells);
+	}
+
+	/**
+	 * Reconcile the sketch of another replica with the operations of the CRDT this manager manages.  The keys of the difference held
+	 * locally identify the operations to send to the other replica, retrieved with getOperations, and those held remotely identify
+	 * the operations to request from it.
+	 * @param remote The sketch received from the other replica
+	 * @return The keys by which the replicas differ, or null when they differ by too many to recover from sketches of this size
+	 */
+	public OperationSketch.Difference reconcile(OperationSketch remote) {
+		return this.getSketch(remote.getCellCount()).subtract(remote).decode();
+	}
+
+	/**
+	 * Retrieve the operations of the CRDT this manager manages identified by the given keys, wrapped for delivery to another replica.
+	 * Members of the ADD set are approved and members of the REMOVE set rejected, so that pushing them reproduces their membership.
+	 * @param keys The keys of the operations to retrieve
+	 * @return The operations found, wrapped in operation managers
+	 */
+	public List<OperationManager> getOperations(Collection<OperationSketch.Key> keys) {
+		Set<OperationSketch.Key> wanted = new HashSet<>(keys);
+		List<OperationManager> rv = new ArrayList<>();
+
+		for (Operation op : this.getCrdt().getAddView()) {
+			if (wanted.contains(new OperationSketch.Key(op, false))) {
+				rv.add(new OperationManager(StatusType.APPROVED, op));
+			}
+		}
+
+		for (Operation op : this.getCrdt().getRemView()) {
+			if (wanted.contains(new OperationSketch.Key(op, true))) {
+				rv.add(new OperationManager(StatusType.REJECTED, op));
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Push each of the operations recovered by reconciling with another replica
+	 * @param operations The operations to push, as retrieved from the other replica with getOperations
+	 */
+	public void apply(Collection<OperationManager> operations) {
+		for (OperationManager op : operations) {
+			this.push(op);
+		}
+	}
+
+	/**
+	 * Generate a CreateOperation with the given timestamp and an identifier from the given supplier
+	 * @param ids Supplier of the identifier, such as the generator of the manager generating the operation
+	 * @param timestamp Effective timestamp for the create operation
+	 * @return The new CreateOperation
+	 */
+	public static Operation generateCreate(Supplier<UUID> ids, long timestamp) {
+		return new Operation(ids.get(), OperationType.CREATE, null, timestamp);
+	}
+
+	/**
+	 * Generate a CreateOperation given a JsonNode and timestamp, with an identifier from the default generator of Operation
 	 * @param timestamp Effective timestamp for the create operation
 	 * @return The new CreateOperation
 	 */
 	public static Operation generateCreate(long timestamp) {
-		return new Operation(OperationType.CREATE, timestamp);
+		return generateCreate(Operation.getIdGenerator(), timestamp);
 	}
 	
 	/**
-	 * Generate a ReadOperation with the given time stamp value
+	 * Generate a CreateOperation stamped by the timestamp source
+	 * @return The new CreateOperation
+	 */
+	public static Operation generateCreate() {
+		return generateCreate(getClock().next());
+	}
+
+	/**
+	 * Generate a ReadOperation with the given time stamp value and an identifier from the given supplier
+	 * @param ids Supplier of the identifier, such as the generator of the manager generating the operation
+	 * @param timestamp Effective timestamp for the read operation
+	 * @return The read operation with the given timestamp
+	 */
+	public static Operation generateRead(Supplier<UUID> ids, long timestamp) {
+		return new Operation(ids.get(), OperationType.READ, null, timestamp);
+	}
+
+	/**
+	 * Generate a ReadOperation with the given time stamp value, with an identifier from the default generator of Operation
 	 * @param timestamp Effective timestamp for the read operation
 	 * @return The read operation with the given timestamp
 	 */
 	public static Operation generateRead(long timestamp) {
-		return new Operation(OperationType.READ, timestamp);
+		return generateRead(Operation.getIdGenerator(), timestamp);
 	}
 	
+	/**
+	 * Generate a ReadOperation stamped by the timestamp source
+	 * @return The read operation
+	 */
+	public static Operation generateRead() {
+		return generateRead(getClock().next());
+	}
+
 	/**
 	 * Generate an UpdateOperation given an original and update value and a timestamp value.
 	 * @param source The original JsonNode to update with a new value
@@ -208,16 +553,56 @@ public class CRDTManager {
 	 * @return The update operation resulting from transforming from the source to target JsonNode values
 	 */
 	public static Operation generateUpdate(JsonNode source, JsonNode target, long timestamp) {
-		return new Operation(JsonDiff.asJson(source, target), timestamp);
+		return generateUpdate(Operation.getIdGenerator(), source, target, timestamp);
+	}
+
+	/**
+	 * Generate an UpdateOperation given an original and update value, a timestamp value and a supplier of its identifier.
+	 * @param ids Supplier of the identifier, such as the generator of the manager generating the operation
+	 * @param source The original JsonNode to update with a new value
+	 * @param target The new JsonNode which the update will produce given the original state 
+	 * @param timestamp Effective time stamp for the update operations
+	 * @return The update operation resulting from transforming from the source to target JsonNode values
+	 */
+	public static Operation generateUpdate(Supplier<UUID> ids, JsonNode source, JsonNode target, long timestamp) {
+		return new Operation(ids.get(), OperationType.UPDATE, JsonDiff.asJson(source, target), timestamp);
+	}
+
+	/**
+	 * Generate an UpdateOperation given an original and update value, stamped by the timestamp source
+	 * @param source The original JsonNode to update with a new value
+	 * @param target The new JsonNode which the update will produce given the original state 
+	 * @return The update operation resulting from transforming from the source to target JsonNode values
+	 */
+	public static Operation generateUpdate(JsonNode source, JsonNode target) {
+		return generateUpdate(source, target, getClock().next());
 	}
 
 	/**
-	 * Generate a DeleteOperation with the given timestamp
+	 * Generate a DeleteOperation with the given timestamp and an identifier from the given supplier
+	 * @param ids Supplier of the identifier, such as the generator of the manager generating the operation
+	 * @param timestamp Effective timestamp for the delete operations
+	 * @return A DeleteOperation with the given timestamp 
+	 */
+	public static Operation generateDelete(Supplier<UUID> ids, long timestamp) {
+		return new Operation(ids.get(), OperationType.DELETE, null, timestamp);
+	}
+
+	/**
+	 * Generate a DeleteOperation with the given timestamp, with an identifier from the default generator of Operation
 	 * @param timestamp Effective timestamp for the delete operations
 	 * @return A DeleteOperation with the given timestamp 
 	 */
 	public static Operation generateDelete(long timestamp) {
-		return new Operation(OperationType.DELETE, timestamp);
+		return generateDelete(Operation.getIdGenerator(), timestamp);
+	}
+
+	/**
+	 * Generate a DeleteOperation stamped by the timestamp source
+	 * @return A DeleteOperation
+	 */
+	public static Operation generateDelete() {
+		return generateDelete(getClock().next());
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,784 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.cyberfront.crdt.operation.MerkleTree;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * The ConcurrentLastWriteWins class is a LastWriteWins CRDT which may be shared among threads without external locking.  Delivering
+ * or removing an operation holds a write lock only for as long as it takes to insert the operation and apply it to the current
+ * trial.  The latest materialization is published as an immutable snapshot tagged with the version of the operations it reflects,
+ * which readers validate with an optimistic read rather than acquiring a lock.  When the snapshot is out of date and the trial is
+ * current, a reader publishes a new snapshot from the trial, which takes the write lock only briefly.  When the trial must instead
+ * be rebuilt, one reader copies the operations holding the read lock, replays the copy holding no lock at all, and takes the write
+ * lock only to publish the result, so writers proceed throughout the replay.  Any other reader arriving during that replay is
+ * served the previous snapshot instead of waiting for it, provided the snapshot reflects every change that reader has made
+ * itself, and otherwise materializes a snapshot of its own.  Historical reads and the invalid and effective operations are read from
+ * the trial holding the write lock only briefly when it is current, and are otherwise read from such a replay.  A fold has the
+ * trial rebuilt in the same way before taking the write lock.
+ *
+ * Documents returned by this class are shared among readers and must not be modified.
+ */
+public class ConcurrentLastWriteWins extends LastWriteWins {
+	/**
+	 * A Snapshot is an immutable materialization of the CRDT as of a given version of its operations
+	 */
+	private static class Snapshot {
+		/** The version of the operations the snapshot reflects */
+		private final long version;
+
+		/** The document materialized from the operations */
+		private final JsonNode document;
+
+		/** Flags indicating, for each OperationType, whether an effective operation of that type was processed */
+		private final boolean[] effective = new boolean[OperationType.values().length];
+
+		/**
+		 * Constructor which records a materialization of the operations
+		 *
+		 * @param version The version of the operations materialized
+		 * @param document The document materialized from the operations
+		 * @param effective Predicate determining whether an effective operation of a given type was processed in materializing them
+		 */
+		private Snapshot(long version, JsonNode document, Predicate<OperationType> effective) {
+			this.version = version;
+			this.document = document;
+
+			for (OperationType type : OperationType.values()) {
+				this.effective[type.ordinal()] = effective.test(type);
+			}
+		}
+
+		/**
+		 * Retrieve the version of the operations the snapshot reflects
+		 *
+		 * @return The version of the operations the snapshot reflects
+		 */
+		private long getVersion() {
+			return this.version;
+		}
+
+		/**
+		 * Retrieve the document materialized from the operations
+		 *
+		 * @return The document materialized from the operations
+		 */
+		private JsonNode getDocument() {
+			return this.document;
+		}
+
+		/**
+		 * Determine whether an effective operation of the given type was processed in materializing the document
+		 *
+		 * @param type The OperationType to check
+		 * @return True exactly when an effective operation of the given type was processed
+		 */
+		private boolean isEffective(OperationType type) {
+			return this.effective[type.ordinal()];
+		}
+	}
+
+	/**
+	 * A Result holds the value of a reader evaluated on the trial, so that a null value is distinguished from the trial not being
+	 * current
+	 */
+	private static class Result<T> {
+		/** The value of the reader */
+		private final T value;
+
+		/**
+		 * Constructor which records the value of a reader
+		 *
+		 * @param value The value of the reader
+		 */
+		private Result(T value) {
+			this.value = value;
+		}
+
+		/**
+		 * Retrieve the value of the reader
+		 *
+		 * @return The value of the reader
+		 */
+		private T getValue() {
+			return this.value;
+		}
+	}
+
+	/** Lock guarding the operations and the trial used to materialize them */
+	private final StampedLock lock = new StampedLock();
+
+	/** The thread currently holding the write lock, so that nested calls from that thread do not attempt to lock again */
+	private volatile Thread owner = null;
+
+	/** Flag indicating a reader is replaying the operations to publish a new snapshot */
+	private final AtomicBoolean materializing = new AtomicBoolean(false);
+
+	/** Version of the operations, incremented under the write lock on each change */
+	private long version = 0;
+
+	/** Version of the operations following the latest change made by each thread, which snapshots served to it must reflect */
+	private final ThreadLocal<Long> written = ThreadLocal.withInitial(() -> 0L);
+
+	/** The most recently published materialization */
+	private volatile Snapshot snapshot = null;
+
+	/**
+	 * Default constructor
+	 */
+	public ConcurrentLastWriteWins() { }
+
+	/**
+	 * Copy constructor to extract the contents of the given CRDT to populate this one
+	 * @param crdt Source CRDT to copy
+	 */
+	public ConcurrentLastWriteWins(LastWriteWins crdt) { super(crdt); }
+
+	/**
+	 * Constructor specifying the add and remove sets comprising a CRDT
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 */
+	public ConcurrentLastWriteWins(Collection<Operation> addset, Collection<Operation> remset) {
+		super(addset, remset);
+	}
+
+	/**
+	 * Constructor specifying the base and the add and remove sets comprising a CRDT, as read from its JSON form
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 * @param base The base into which the operations preceding those of the given sets were folded, or null when none were
+	 */
+	@JsonCreator
+	public ConcurrentLastWriteWins(@JsonProperty(ADDSET) Collection<Operation> addset,
+								   @JsonProperty(REMSET) Collection<Operation> remset,
+								   @JsonProperty(BASE) Base base) {
+		super(addset, remset, base);
+	}
+
+	/**
+	 * Determine whether the calling thread holds the write lock
+	 *
+	 * @return True exactly when the calling thread holds the write lock
+	 */
+	private boolean isOwner() {
+		return Thread.currentThread() == this.owner;
+	}
+
+	/**
+	 * Evaluate a reader which only examines fixed size state, such as the operation counts, using an optimistic read.  Should a
+	 * writer intervene, the reader is evaluated again holding the read lock.
+	 *
+	 * @param reader The reader to evaluate
+	 * @return The value of the reader
+	 */
+	private long optimistic(LongSupplier reader) {
+		if (this.isOwner()) {
+			return reader.getAsLong();
+		}
+
+		long stamp = this.lock.tryOptimisticRead();
+		long rv = reader.getAsLong();
+
+		if (0 == stamp || !this.lock.validate(stamp)) {
+			stamp = this.lock.readLock();
+			try {
+				rv = reader.getAsLong();
+			} finally {
+				this.lock.unlockRead(stamp);
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Evaluate a reader which traverses the operations holding the read lock
+	 *
+	 * @param reader The reader to evaluate
+	 * @return The value of the reader
+	 */
+	private <T> T shared(Supplier<T> reader) {
+		if (this.isOwner()) {
+			return reader.get();
+		}
+
+		long stamp = this.lock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Evaluate an accessor which modifies the operations or the trial holding the write lock
+	 *
+	 * @param accessor The accessor to evaluate
+	 * @return The value of the accessor
+	 */
+	private <T> T exclusive(Supplier<T> accessor) {
+		if (this.isOwner()) {
+			return accessor.get();
+		}
+
+		long stamp = this.lock.writeLock();
+		try {
+			this.owner = Thread.currentThread();
+			return accessor.get();
+		} finally {
+			this.owner = null;
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Perform a change to the operations holding the write lock, advancing their version
+	 *
+	 * @param writer The change to perform
+	 */
+	private void write(Runnable writer) {
+		this.exclusive(() -> {
+			writer.run();
+			this.advance();
+			return null;
+		});
+	}
+
+	/**
+	 * Advance the version of the operations following a change by the calling thread, which must hold the write lock
+	 */
+	private void advance() {
+		this.written.set(++this.version);
+	}
+
+	/**
+	 * Retrieve a snapshot reflecting the current version of the operations.  A published snapshot which is current is validated
+	 * with an optimistic read.  Otherwise a snapshot is published from the trial when it is current, or from a replay of the
+	 * operations apart from the lock when it is not, unless another reader is already doing either, in which case the previously
+	 * published snapshot is returned rather than waiting on it.  The previous snapshot is returned only when it reflects the latest
+	 * change made by the calling thread, so a thread always reads its own writes.
+	 *
+	 * @return A snapshot of the materialized CRDT
+	 */
+	private Snapshot getSnapshot() {
+		if (this.isOwner()) {
+			return this.publish();
+		}
+
+		long stamp = this.lock.tryOptimisticRead();
+		Snapshot current = this.snapshot;
+		long version = this.version;
+
+		if (0 != stamp && null != current && current.getVersion() == version && this.lock.validate(stamp)) {
+			return current;
+		}
+
+		boolean claimed = this.materializing.compareAndSet(false, true);
+
+		if (!claimed && null != current && current.getVersion() >= this.written.get()) {
+			return current;
+		}
+
+		try {
+			Snapshot rv = this.exclusive(() -> this.isMaterialized() ? this.publish() : null);
+			return null != rv ? rv : this.replay((replica, snapshot) -> snapshot);
+		} finally {
+			if (claimed) {
+				this.materializing.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Publish a snapshot reflecting the current version of the operations, unless one already has been.  The calling thread
+	 * must hold the write lock.
+	 *
+	 * @return The snapshot reflecting the current version of the operations
+	 */
+	private Snapshot publish() {
+		if (null == this.snapshot || this.snapshot.getVersion() != this.version) {
+			this.snapshot = new Snapshot(this.version, this.materialize(), this::isEffective);
+		}
+
+		return this.snapshot;
+	}
+
+	/**
+	 * Evaluate a reader of the trial without replaying the operations holding the write lock.  When the trial is current, the
+	 * reader is evaluated on it holding the write lock only briefly.  Otherwise the operations are replayed apart from the lock, as
+	 * they are to publish a snapshot, and the reader is evaluated on the replica before the trial adopts it.
+	 *
+	 * @param reader The reader to evaluate on the trial
+	 * @param replayed The reader to evaluate on a replica in which the operations were replayed
+	 * @return The value of the reader
+	 */
+	private <T> T materialized(Supplier<T> reader, Function<LastWriteWins, T> replayed) {
+		if (this.isOwner()) {
+			return reader.get();
+		}
+
+		Result<T> rv = this.exclusive(() -> this.isMaterialized() ? new Result<>(reader.get()) : null);
+		return null != rv ? rv.getValue() : this.replay((replica, snapshot) -> replayed.apply(replica));
+	}
+
+	/**
+	 * Replay a copy of the operations holding no lock, evaluate the given reader on the result, and publish it.  The operations
+	 * and the base are copied holding the read lock, so writers wait only for the copy, and the write lock is held only to publish
+	 * the snapshot and have the trial adopt the replay, provided no writer changed the operations in the meantime.  The reader is
+	 * given the snapshot even when one did, as it reflects the operations as of the time it was requested, and is evaluated
+	 * before the trial adopts the replay, so it need not copy the replica.
+	 *
+	 * @param reader The reader to evaluate on the replica and the snapshot reflecting the version of the operations copied
+	 * @return The value of the reader
+	 */
+	private <T> T replay(BiFunction<LastWriteWins, Snapshot, T> reader) {
+		long version;
+		Collection<Operation> addset;
+		Collection<Operation> remset;
+		Base base;
+		int checkpointOperations;
+		long checkpointInterval;
+		int undoDepth;
+
+		long stamp = this.lock.readLock();
+		try {
+			version = this.version;
+			addset = new ArrayList<>(super.getAddView());
+			remset = new ArrayList<>(super.getRemView());
+			base = this.getBase();
+			checkpointOperations = this.getCheckpointOperations();
+			checkpointInterval = this.getCheckpointInterval();
+			undoDepth = this.getUndoDepth();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+
+		LastWriteWins replica = this.createReplica(addset, remset, base);
+
+		replica.setCheckpointSpacing(checkpointOperations, checkpointInterval);
+		replica.setUndoDepth(undoDepth);
+
+		Snapshot snapshot = new Snapshot(version, replica.getDocument(), type -> isEffective(replica, type));
+		T rv = reader.apply(replica, snapshot);
+
+		return this.exclusive(() -> {
+			if (version == this.version && !this.isMaterialized()) {
+				this.adopt(replica);
+			}
+
+			if (null == this.snapshot || this.snapshot.getVersion() < version) {
+				this.snapshot = snapshot;
+			}
+
+			return rv;
+		});
+	}
+
+	/**
+	 * Copy the given operations to a read only list
+	 *
+	 * @param operations The operations to copy
+	 * @return A read only copy of the operations
+	 */
+	private static Collection<Operation> copy(Collection<Operation> operations) {
+		return Collections.unmodifiableList(new ArrayList<>(operations));
+	}
+
+	/**
+	 * Create the CRDT holding a copy of the operations in which they are replayed apart from this one
+	 *
+	 * @param addset Copy of the ADD set
+	 * @param remset Copy of the REMOVE set
+	 * @param base The base into which earlier operations were folded
+	 * @return The CRDT in which to replay the operations
+	 */
+	protected LastWriteWins createReplica(Collection<Operation> addset, Collection<Operation> remset, Base base) {
+		return new LastWriteWins(addset, remset, base);
+	}
+
+	/**
+	 * Materialize the current document using the underlying LastWriteWins trial.  The calling thread must hold the write lock.
+	 *
+	 * @return The current document
+	 */
+	private JsonNode materialize() {
+		return super.getDocument(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Determine whether an effective operation of the given type is processed by the underlying LastWriteWins trial.  The calling
+	 * thread must hold the write lock.
+	 *
+	 * @param type The OperationType to check
+	 * @return True exactly when an effective operation of the given type is processed
+	 */
+	private boolean isEffective(OperationType type) {
+		switch (type) {
+		case CREATE:
+			return super.isCreated();
+		case READ:
+			return super.isRead();
+		case UPDATE:
+			return super.isUpdated();
+		case DELETE:
+			return super.isDeleted();
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Determine whether an effective operation of the given type is processed in materializing a replica of the operations
+	 *
+	 * @param replica The replica materialized
+	 * @param type The OperationType to check
+	 * @return True exactly when an effective operation of the given type is processed
+	 */
+	private static boolean isEffective(LastWriteWins replica, OperationType type) {
+		switch (type) {
+		case CREATE:
+			return replica.isCreated();
+		case READ:
+			return replica.isRead();
+		case UPDATE:
+			return replica.isUpdated();
+		case DELETE:
+			return replica.isDeleted();
+		default:
+			return false;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getDocument()
+	 */
+	@Override
+	@JsonIgnore
+	public JsonNode getDocument() {
+		return this.getSnapshot().getDocument();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getDocument(long)
+	 */
+	@Override
+	@JsonIgnore
+	public JsonNode getDocument(long timestamp) {
+		return Long.MAX_VALUE == timestamp ? this.getDocument()
+				: this.materialized(() -> super.getDocument(timestamp), replica -> replica.getDocument(timestamp));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isCreated()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isCreated() {
+		return this.getSnapshot().isEffective(OperationType.CREATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isRead()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isRead() {
+		return this.getSnapshot().isEffective(OperationType.READ);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isUpdated()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isUpdated() {
+		return this.getSnapshot().isEffective(OperationType.UPDATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isDeleted()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isDeleted() {
+		return this.getSnapshot().isEffective(OperationType.DELETE);
+	}
+
+	/**
+	 * Get a copy of the list of invalid operations for the current configuration
+	 * @return List of invalid operations
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getInvalidOperations() {
+		return this.materialized(() -> copy(super.getInvalidOperations()), replica -> copy(replica.getInvalidOperations()));
+	}
+
+	/**
+	 * Get a copy of the list of effective operations for the current configuration
+	 * @return List of effective operations
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getEffectiveOperations() {
+		return this.materialized(() -> copy(super.getEffectiveOperations()), replica -> copy(replica.getEffectiveOperations()));
+	}
+
+	/**
+	 * Retrieve a read only copy of the add set.  Unlike the view provided by OperationTwoSet, the copy is unaffected by
+	 * operations delivered while it is traversed.
+	 * @return A read only copy of the add set
+	 */
+	@Override
+	@JsonProperty(ADDSET)
+	public Collection<Operation> getAddView() {
+		return this.shared(() -> Collections.unmodifiableList(new ArrayList<>(super.getAddView())));
+	}
+
+	/**
+	 * Retrieve a read only copy of the remove set.  Unlike the view provided by OperationTwoSet, the copy is unaffected by
+	 * operations removed while it is traversed.
+	 * @return A read only copy of the remove set
+	 */
+	@Override
+	@JsonProperty(REMSET)
+	public Collection<Operation> getRemView() {
+		return this.shared(() -> Collections.unmodifiableList(new ArrayList<>(super.getRemView())));
+	}
+
+	/**
+	 * Write the ADD and REMOVE sets while holding the read lock, so the serialized form reflects a single consistent state of both
+	 * sets without copying either of them.  Writers wait for the serialization to finish.
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#writeSets(com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider)
+	 */
+	@Override
+	protected void writeSets(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		if (this.isOwner()) {
+			super.writeSets(gen, provider);
+			return;
+		}
+
+		long stamp = this.lock.readLock();
+		try {
+			super.writeSets(gen, provider);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Retrieve a read only copy of the active operations
+	 * @return A read only copy of the active operations
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getOpsSet() {
+		return this.shared(() -> Collections.unmodifiableList(new ArrayList<>(super.getOpsSet())));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getOpsAfter(long)
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		return this.shared(() -> Collections.unmodifiableList(new ArrayList<>(super.getOpsAfter(timestamp))));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getAddCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getAddCount() {
+		return this.optimistic(() -> super.getAddCount());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getAddCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getAddCount(OperationType type) {
+		return this.optimistic(() -> super.getAddCount(type));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getRemCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getRemCount() {
+		return this.optimistic(() -> super.getRemCount());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getRemCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getRemCount(OperationType type) {
+		return this.optimistic(() -> super.getRemCount(type));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getOperationCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getOperationCount() {
+		return this.optimistic(() -> super.getOperationCount());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#getOperationCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getOperationCount(OperationType type) {
+		return this.optimistic(() -> super.getOperationCount(type));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#setCheckpointSpacing(int, long)
+	 */
+	@Override
+	public void setCheckpointSpacing(int operations, long interval) {
+		this.exclusive(() -> {
+			super.setCheckpointSpacing(operations, interval);
+			return null;
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#setUndoDepth(int)
+	 */
+	@Override
+	public void setUndoDepth(int depth) {
+		this.exclusive(() -> {
+			super.setUndoDepth(depth);
+			return null;
+		});
+	}
+
+	/**
+	 * Insert an operation to the ADD set holding the write lock
+	 *
+	 * @param op The operation to add to the ADD set
+	 */
+	@Override
+	protected void addOperation(Operation op) {
+		this.write(() -> super.addOperation(op));
+	}
+
+	/**
+	 * Insert an operation to the REMOVE set holding the write lock
+	 *
+	 * @param op The operation to add to the REMOVE set
+	 */
+	@Override
+	protected void remOperation(Operation op) {
+		this.write(() -> super.remOperation(op));
+	}
+
+	/**
+	 * Retrieve a copy of the Merkle tree summarizing the ADD and REMOVE sets, holding the read lock.  Unlike the tree maintained by
+	 * OperationTwoSet, the copy is unaffected by operations delivered while it is compared.
+	 * @return A copy of the Merkle tree summarizing the ADD and REMOVE sets
+	 */
+	@Override
+	@JsonIgnore
+	public MerkleTree getMerkleTree() {
+		return this.shared(() -> new MerkleTree(super.getMerkleTree()));
+	}
+
+	/**
+	 * Fold the causally stable operations into the base document holding the write lock.  Should the trial need rebuilding, the
+	 * operations are first replayed apart from the lock, as they are to publish a snapshot, so that the fold holds the write lock
+	 * only to fold the trial.  The trial is rebuilt holding the lock only if a writer changes the operations during that replay.
+	 *
+	 * @see com.cyberfront.crdt.LastWriteWins#fold(long)
+	 */
+	@Override
+	public long fold(long horizon) {
+		if (!this.isOwner() && !this.shared(this::isMaterialized)) {
+			this.replay((replica, snapshot) -> snapshot);
+		}
+
+		return this.exclusive(() -> {
+			long rv = super.fold(horizon);
+			this.advance();
+			return rv;
+		});
+	}
+
+	/**
+	 * Merge the given ADD and REMOVE sets holding the write lock.  The sets of the source CRDT are copied before the lock is taken,
+	 * so two instances merging into each other do not deadlock.
+	 *
+	 * @see com.cyberfront.crdt.LastWriteWins#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	protected long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		return this.exclusive(() -> {
+			long rv = super.merge(addset, remset);
+			this.advance();
+			return rv;
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#clear()
+	 */
+	@Override
+	public void clear() {
+		this.write(() -> super.clear());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getSegment()
+	 */
+	@Override
+	protected String getSegment() {
+		return this.materialized(() -> super.getSegment(), LastWriteWins::getSegment);
+	}
+}
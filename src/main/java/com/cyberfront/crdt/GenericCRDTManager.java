@@ -117,7 +117,7 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	 * @return The resulting UpdateOperation
 	 */
 	public Operation generateUpdate(long timestamp, T object) {
-		return super.generateUpdate(this.getCrdt().getDocument(), getMapper().valueToTree(object), timestamp);
+		return generateUpdate(this.getIdGenerator(), this.getCrdt().getDocument(), getMapper().valueToTree(object), timestamp);
 	}
 
 	
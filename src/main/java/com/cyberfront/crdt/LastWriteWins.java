@@ -22,22 +22,47 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;										// Use this with jsonpatch
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.operation.MerkleTree;
 import com.cyberfront.crdt.operation.Operation;
 import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationCodec;
+import com.cyberfront.crdt.operation.OperationLog;
+import com.cyberfront.crdt.operation.UndoRecord;
+import com.cyberfront.crdt.operation.VersionVector;
 import com.cyberfront.crdt.support.Support;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.github.fge.jackson.JacksonUtils;
 import com.github.fge.jsonpatch.JsonPatchException;				// Use this with jsonpatch
 //import com.flipkart.zjsonpatch.JsonPatchApplicationException;		// Use this with zjsonpatch
 
@@ -47,6 +72,461 @@ import com.github.fge.jsonpatch.JsonPatchException;				// Use this with jsonpatc
  * a list of invalid operations which is used to hold operations which fail during reconstitution of the underlying data element
  */
 public class LastWriteWins extends OperationTwoSet {
+	/**
+	 * A Checkpoint records the document produced by a TrialResult immediately after processing a given operation.  Historical reads
+	 * begin from the latest checkpoint at or before the requested timestamp and only replay the operations which follow it.
+	 */
+	private static class Checkpoint {
+		/** The last operation processed in producing the checkpoint document */
+		private final Operation operation;
+
+		/** The document resulting from processing all operations up to and including the checkpoint operation */
+		private final JsonNode document;
+
+		/**
+		 * Instantiates a new checkpoint
+		 *
+		 * @param operation The last operation processed in producing the document
+		 * @param document The document resulting from processing the operations up to and including the given operation
+		 */
+		private Checkpoint(Operation operation, JsonNode document) {
+			this.operation = operation;
+			this.document = document;
+		}
+
+		/**
+		 * Retrieve the last operation processed in producing the checkpoint document
+		 *
+		 * @return The last operation processed in producing the checkpoint document
+		 */
+		private Operation getOperation() {
+			return this.operation;
+		}
+
+		/**
+		 * Retrieve the document recorded by the checkpoint
+		 *
+		 * @return The document recorded by the checkpoint
+		 */
+		private JsonNode getDocument() {
+			return this.document;
+		}
+	}
+
+	/**
+	 * An Applied entry pairs an operation recently processed by a TrialResult with the record of the changes it made to the
+	 * document, so that the operation can be reversed when another must be inserted before it.
+	 */
+	private static class Applied {
+		/** The operation processed */
+		private final Operation operation;
+
+		/** The record of the changes the operation made to the document; empty when the operation was found invalid */
+		private final UndoRecord undo;
+
+		/**
+		 * Instantiates a new applied entry
+		 *
+		 * @param operation The operation processed
+		 * @param undo The record of the changes the operation made to the document
+		 */
+		private Applied(Operation operation, UndoRecord undo) {
+			this.operation = operation;
+			this.undo = undo;
+		}
+
+		/**
+		 * Retrieve the operation processed
+		 *
+		 * @return The operation processed
+		 */
+		private Operation getOperation() {
+			return this.operation;
+		}
+
+		/**
+		 * Retrieve the record of the changes the operation made to the document
+		 *
+		 * @return The record of the changes the operation made to the document
+		 */
+		private UndoRecord getUndo() {
+			return this.undo;
+		}
+	}
+
+	/**
+	 * A Base holds the document materialized from the operations folded out of a CRDT once every replica was known to have received
+	 * them, along with the stability horizon through which they were folded and the number of operations of each type discarded
+	 * from each set.  Materialization begins from the base document rather than from no document at all, and the counts of the CRDT
+	 * include those of its base, so folding changes neither.  The base also keeps the version vector and the Merkle tree bucket
+	 * digests of the operations folded, so the summaries of the CRDT still cover them and agree with those of a replica which has not
+	 * folded them.  The JSON and binary forms of a folded CRDT carry its base along with its operations.
+	 */
+	public static class Base {
+		/** Property label for the horizon */
+		private static final String HORIZON = "horizon";
+
+		/** Property label for the base document */
+		private static final String DOCUMENT = "document";
+
+		/** Property label for the counts of the operations folded out of the ADD set */
+		private static final String ADDED = "added";
+
+		/** Property label for the counts of the operations folded out of the REMOVE set */
+		private static final String REMOVED = "removed";
+
+		/** Property label for the counts of the active operations folded into the base */
+		private static final String ACTIVE = "active";
+
+		/** Property label for the counts of the invalid operations folded into the base */
+		private static final String INVALID = "invalid";
+
+		/** Property label for the version vector of the operations folded */
+		private static final String SUMMARY = "summary";
+
+		/** Property label for the Merkle tree bucket digests of the operations folded */
+		private static final String DIGESTS = "digests";
+
+		/** The base of a CRDT from which no operations have been folded */
+		public static final Base EMPTY = new Base(Long.MIN_VALUE, null, new long[OperationType.values().length],
+				new long[OperationType.values().length], new long[OperationType.values().length], new long[OperationType.values().length]);
+
+		/** The latest timestamp of the operations folded into the base */
+		private final long horizon;
+
+		/** The document resulting from processing the operations folded into the base */
+		private final JsonNode document;
+
+		/** Number of operations of each type folded out of the ADD set, indexed by the ordinal of the OperationType */
+		@JsonProperty(ADDED)
+		private final long[] added;
+
+		/** Number of operations of each type folded out of the REMOVE set, indexed by the ordinal of the OperationType */
+		@JsonProperty(REMOVED)
+		private final long[] removed;
+
+		/** Number of active operations of each type folded into the base, indexed by the ordinal of the OperationType */
+		@JsonProperty(ACTIVE)
+		private final long[] active;
+
+		/** Number of active operations of each type folded into the base which were invalid, indexed by the ordinal of the OperationType */
+		@JsonProperty(INVALID)
+		private final long[] invalid;
+
+		/** Version vector of the operations folded out of each set */
+		private final VersionVector summary;
+
+		/** Digests of the buckets of a MerkleTree with the default bucket width holding the operations folded, keyed by bucket */
+		private final Map<Long, Long> digests;
+
+		/**
+		 * Instantiates a new base whose operations are not summarized
+		 *
+		 * @param horizon The latest timestamp of the operations folded into the base
+		 * @param document The document resulting from processing the operations folded into the base
+		 * @param added Number of operations of each type folded out of the ADD set, indexed by the ordinal of the OperationType
+		 * @param removed Number of operations of each type folded out of the REMOVE set, indexed by the ordinal of the OperationType
+		 * @param active Number of active operations of each type folded into the base, indexed by the ordinal of the OperationType
+		 * @param invalid Number of those active operations which were invalid, indexed by the ordinal of the OperationType
+		 */
+		public Base(long horizon, JsonNode document, long[] added, long[] removed, long[] active, long[] invalid) {
+			this(horizon, document, added, removed, active, invalid, new VersionVector(), Collections.emptyMap());
+		}
+
+		/**
+		 * Instantiates a new base
+		 *
+		 * @param horizon The latest timestamp of the operations folded into the base
+		 * @param document The document resulting from processing the operations folded into the base
+		 * @param added Number of operations of each type folded out of the ADD set, indexed by the ordinal of the OperationType
+		 * @param removed Number of operations of each type folded out of the REMOVE set, indexed by the ordinal of the OperationType
+		 * @param active Number of active operations of each type folded into the base, indexed by the ordinal of the OperationType
+		 * @param invalid Number of those active operations which were invalid, indexed by the ordinal of the OperationType
+		 * @param summary Version vector of the operations folded out of each set
+		 * @param digests Digests of the buckets of a MerkleTree with the default bucket width holding the operations folded
+		 */
+		public Base(long horizon, JsonNode document, long[] added, long[] removed, long[] active, long[] invalid, VersionVector summary, Map<Long, Long> digests) {
+			this.horizon = horizon;
+			this.document = document;
+			this.added = added.clone();
+			this.removed = removed.clone();
+			this.active = active.clone();
+			this.invalid = invalid.clone();
+			this.summary = new VersionVector(summary);
+			this.digests = Collections.unmodifiableMap(new HashMap<>(digests));
+		}
+
+		/**
+		 * Restore a base from its JSON form.  The document is read as the patches of operations are, with decimal rather than binary
+		 * floating point numbers, so it is equal to the document materialized before the base was written.
+		 *
+		 * @param horizon The latest timestamp of the operations folded into the base
+		 * @param document The document resulting from processing the operations folded into the base
+		 * @param added Number of operations of each type folded out of the ADD set, indexed by the ordinal of the OperationType
+		 * @param removed Number of operations of each type folded out of the REMOVE set, indexed by the ordinal of the OperationType
+		 * @param active Number of active operations of each type folded into the base, indexed by the ordinal of the OperationType
+		 * @param invalid Number of those active operations which were invalid, indexed by the ordinal of the OperationType
+		 * @param summary Version vector of the operations folded out of each set, which may be null when none were
+		 * @param digests Digests of the buckets holding the operations folded, which may be null when none were
+		 * @return The base restored
+		 * @throws IOException when the document can not be read or the counts do not hold one for each OperationType
+		 */
+		@JsonCreator
+		private static Base restore(@JsonProperty(HORIZON) long horizon,
+									@JsonProperty(DOCUMENT) JsonNode document,
+									@JsonProperty(ADDED) long[] added,
+									@JsonProperty(REMOVED) long[] removed,
+									@JsonProperty(ACTIVE) long[] active,
+									@JsonProperty(INVALID) long[] invalid,
+									@JsonProperty(SUMMARY) VersionVector summary,
+									@JsonProperty(DIGESTS) Map<Long, Long> digests) throws IOException {
+			JsonNode restored = null == document || document.isNull() ? null : JacksonUtils.getReader().forType(JsonNode.class).readValue(document);
+
+			return new Base(horizon, restored, checkCounts(added), checkCounts(removed), checkCounts(active), checkCounts(invalid),
+					null == summary ? new VersionVector() : summary, null == digests ? Collections.emptyMap() : digests);
+		}
+
+		/**
+		 * Read a base written by write, its horizon followed by its counts, its summaries and its document
+		 *
+		 * @param in The source from which to read the horizon and the digests
+		 * @param decoder The decoder from which to read the counts, the version vector and the document, reading from the same source
+		 * @return The base read
+		 * @throws IOException when the source can not be read or does not hold a base
+		 */
+		public static Base read(DataInput in, OperationCodec.Decoder decoder) throws IOException {
+			long horizon = in.readLong();
+			long[] added = readCounts(decoder);
+			long[] removed = readCounts(decoder);
+			long[] active = readCounts(decoder);
+			long[] invalid = readCounts(decoder);
+			VersionVector summary = decoder.readVersionVector();
+			Map<Long, Long> digests = new HashMap<>();
+
+			for (int count = in.readInt(); count > 0; --count) {
+				long bucket = in.readLong();
+				digests.put(bucket, in.readLong());
+			}
+
+			return new Base(horizon, decoder.readDocument(), added, removed, active, invalid, summary, digests);
+		}
+
+		/**
+		 * Read the counts of each OperationType
+		 *
+		 * @param decoder The decoder from which to read the counts
+		 * @return The counts read, indexed by the ordinal of the OperationType
+		 * @throws IOException when the source can not be read or does not hold a count for each OperationType
+		 */
+		private static long[] readCounts(OperationCodec.Decoder decoder) throws IOException {
+			return checkCounts(decoder.readCounts());
+		}
+
+		/**
+		 * Ensure counts read hold one for each OperationType
+		 *
+		 * @param counts The counts read, indexed by the ordinal of the OperationType
+		 * @return The counts read
+		 * @throws IOException when the counts are missing or do not hold one for each OperationType
+		 */
+		private static long[] checkCounts(long[] counts) throws IOException {
+			if (null == counts || OperationType.values().length != counts.length) {
+				throw new IOException("Base counts " + (null == counts ? 0 : counts.length) + " types rather than " + OperationType.values().length);
+			}
+
+			return counts;
+		}
+
+		/**
+		 * Write the base, its horizon followed by its counts, its summaries and its document
+		 *
+		 * @param out The destination to which to write the horizon and the digests
+		 * @param encoder The encoder to which to write the counts, the version vector and the document, writing to the same destination
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(DataOutput out, OperationCodec.Encoder encoder) throws IOException {
+			out.writeLong(this.horizon);
+			encoder.write(this.added);
+			encoder.write(this.removed);
+			encoder.write(this.active);
+			encoder.write(this.invalid);
+			encoder.write(this.summary);
+			out.writeInt(this.digests.size());
+
+			for (Map.Entry<Long, Long> entry : this.digests.entrySet()) {
+				out.writeLong(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+
+			encoder.writeDocument(this.document);
+		}
+
+		/**
+		 * Retrieve the latest timestamp of the operations folded into the base
+		 *
+		 * @return The latest timestamp of the operations folded into the base, or Long.MIN_VALUE when none have been
+		 */
+		@JsonProperty(HORIZON)
+		public long getHorizon() {
+			return this.horizon;
+		}
+
+		/**
+		 * Retrieve the document resulting from processing the operations folded into the base, which must not be modified
+		 *
+		 * @return The base document
+		 */
+		@JsonProperty(DOCUMENT)
+		public JsonNode getDocument() {
+			return this.document;
+		}
+
+		/**
+		 * Retrieve the version vector of the operations folded out of each set
+		 *
+		 * @return A copy of the version vector of the operations folded
+		 */
+		@JsonProperty(SUMMARY)
+		public VersionVector getSummary() {
+			return new VersionVector(this.summary);
+		}
+
+		/**
+		 * Retrieve the digests of the buckets of a MerkleTree with the default bucket width holding the operations folded
+		 *
+		 * @return A read only map of the digest of each bucket holding operations folded, keyed by bucket
+		 */
+		@JsonProperty(DIGESTS)
+		public Map<Long, Long> getDigests() {
+			return this.digests;
+		}
+
+		/**
+		 * Retrieve the number of operations of the given type folded out of the ADD set
+		 *
+		 * @param type The OperationType of the operations to count
+		 * @return The number of operations of the given type folded out of the ADD set
+		 */
+		public long getAddCount(OperationType type) {
+			return this.added[type.ordinal()];
+		}
+
+		/**
+		 * Retrieve the number of operations of the given type folded out of the REMOVE set
+		 *
+		 * @param type The OperationType of the operations to count
+		 * @return The number of operations of the given type folded out of the REMOVE set
+		 */
+		public long getRemCount(OperationType type) {
+			return this.removed[type.ordinal()];
+		}
+
+		/**
+		 * Retrieve the number of active operations of the given type folded into the base, those of the ADD set not in the REMOVE set
+		 *
+		 * @param type The OperationType of the operations to count
+		 * @return The number of active operations of the given type folded into the base
+		 */
+		public long getOperationCount(OperationType type) {
+			return this.active[type.ordinal()];
+		}
+
+		/**
+		 * Retrieve the number of active operations of the given type folded into the base which were invalid when processed
+		 *
+		 * @param type The OperationType of the operations to count
+		 * @return The number of invalid operations of the given type folded into the base
+		 */
+		public long getInvalidCount(OperationType type) {
+			return this.invalid[type.ordinal()];
+		}
+
+		/**
+		 * Retrieve the total of the counts of every OperationType
+		 *
+		 * @param counts The counts indexed by the ordinal of the OperationType
+		 * @return The total of the counts
+		 */
+		private static long total(long[] counts) {
+			long rv = 0;
+
+			for (long count : counts) {
+				rv += count;
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Retrieve the number of operations folded out of the ADD set
+		 *
+		 * @return The number of operations folded out of the ADD set
+		 */
+		@JsonIgnore
+		public long getAddCount() {
+			return total(this.added);
+		}
+
+		/**
+		 * Retrieve the number of operations folded out of the REMOVE set
+		 *
+		 * @return The number of operations folded out of the REMOVE set
+		 */
+		@JsonIgnore
+		public long getRemCount() {
+			return total(this.removed);
+		}
+
+		/**
+		 * Retrieve the number of active operations folded into the base
+		 *
+		 * @return The number of active operations folded into the base
+		 */
+		@JsonIgnore
+		public long getOperationCount() {
+			return total(this.active);
+		}
+	}
+
+	/**
+	 * The History class retains the materializations of the document as of recently read earlier timestamps.  It is bounded, and
+	 * evicts the least recently read materialization to make room for another.
+	 */
+	private static class History extends LinkedHashMap<Long, TrialResult> {
+		/** Serialization version identifier */
+		private static final long serialVersionUID = 1L;
+
+		/** Maximum number of materializations retained */
+		private final int capacity;
+
+		/**
+		 * Instantiates a new, empty, history
+		 *
+		 * @param capacity Maximum number of materializations retained
+		 */
+		private History(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, TrialResult> eldest) {
+			return this.size() > this.capacity;
+		}
+
+		/**
+		 * Discard the materializations which an operation with the given timestamp would change
+		 *
+		 * @param timestamp Timestamp of an operation added or removed
+		 */
+		private void invalidate(long timestamp) {
+			this.keySet().removeIf(key -> key >= timestamp);
+		}
+	}
+
 	/**
 	 * The Class TrialResult is used to process a collection of operations provided to it.  It is intended to augment the LastWriteWins class
 	 * by providing an auxiliary location for storing a single set of operations and to manage access to the resulting JsonNode when the
@@ -64,16 +544,46 @@ public class LastWriteWins extends OperationTwoSet {
 		private static final boolean LOG_JSON_PROCESSING_EXCEPTIONS = false;
 		
 		/** The set of operations to process; they are processed in timestamp order */
-		private final Set<Operation> operations;
+		private final NavigableSet<Operation> operations;
 		
 		/** The set of invalid operations detected.  Ideally this is empty, but there are reasons why it may not be empty. */
-		private final Collection<Operation> invalidOperations;
+		private final NavigableSet<Operation> invalidOperations;
+
+		/** Number of invalid operations of each type, indexed by the ordinal of the OperationType */
+		private final long[] invalidCounts = new long[OperationType.values().length];
 
 		/** Latest operation timestamp to include among the applicable operations */
 		private final long timestamp;
 
 		/** JsonNode document containing the result of executing the sequence of operations */
-		private final JsonNode document;
+		private JsonNode document;
+
+		/** The base document from which processing the operations begins */
+		private final JsonNode base;
+
+		/** Flag indicating the document is referenced outside this TrialResult, so must be copied before it is next modified in place */
+		private boolean shared;
+
+		/** Scratch record of the changes made while applying an operation in place */
+		private final UndoRecord undo;
+
+		/** The most recently processed operations along with the records needed to reverse them, oldest first */
+		private final Deque<Applied> applied;
+
+		/** Maximum number of processed operations to retain in the applied log */
+		private final int undoDepth;
+
+		/** The checkpoint ladder, indexed by the timestamp of the last operation processed for each checkpoint */
+		private final NavigableMap<Long, Checkpoint> checkpoints;
+
+		/** Maximum number of operations to process between consecutive checkpoints */
+		private final int checkpointOperations;
+
+		/** Maximum span of operation time to process between consecutive checkpoints */
+		private final long checkpointInterval;
+
+		/** Number of operations processed since the last checkpoint was recorded */
+		private int uncheckpointed;
 		
 		/**
 		 * Instantiates a new trial result given a CRDT to process; the operations list is copied from
@@ -98,67 +608,385 @@ public class LastWriteWins extends OperationTwoSet {
 			this.operations.addAll(
 					crdt.getOpsSet().
 					stream().
-					filter(op -> (OperationType.READ != op.getType())).
-					filter(op -> (op.getTimestamp() <= this.timestamp)).
+					filter(this::isApplicable).
 					collect(Collectors.toList()));
 			
-			JsonNode doc = null;
+			this.base = crdt.base.getDocument();
+			this.document = this.base;
+			this.shared = true;
+			this.undo = new UndoRecord();
+			this.applied = new ArrayDeque<>();
+			this.undoDepth = crdt.getUndoDepth();
 			this.invalidOperations = new TreeSet<>();
+			this.checkpoints = new TreeMap<>();
+			this.checkpointOperations = crdt.getCheckpointOperations();
+			this.checkpointInterval = crdt.getCheckpointInterval();
+			this.uncheckpointed = 0;
 			
 			for (Operation op : this.operations) {
-				try {
-					doc = op.processOperation(doc);
-				} catch (JsonPatchException | IOException e) {
-					if (LOG_JSON_PROCESSING_EXCEPTIONS) {
-						logger.error(e);
-						logger.error(" op: " + op.toString());
-						logger.error("doc: " + document);
-						for (StackTraceElement el : e.getStackTrace()) {
-							logger.error(el);
-						}
+				this.apply(op);
+				this.checkpoint(op);
+			}
+		}
+
+		/**
+		 * Instantiates a new trial result given a CRDT and the document and invalid operations previously found by processing all of
+		 * its operations, as recorded in a snapshot, so the operations are not replayed.  The applied log begins empty, so an
+		 * operation arriving out of order later causes the trial to be rebuilt.
+		 *
+		 * @param crdt The CRDT whose operations produced the document
+		 * @param document The document resulting from processing all of the operations of the CRDT
+		 * @param invalid The operations of the CRDT found invalid when they were processed
+		 */
+		protected TrialResult(LastWriteWins crdt, JsonNode document, Collection<Operation> invalid) {
+			this.timestamp = Long.MAX_VALUE;
+			this.operations = new TreeSet<>();
+			this.operations.addAll(
+					crdt.getOpsSet().
+					stream().
+					filter(this::isApplicable).
+					collect(Collectors.toList()));
+
+			this.invalidOperations = new TreeSet<>();
+			for (Operation op : invalid) {
+				if (this.operations.contains(op) && this.invalidOperations.add(op)) {
+					++this.invalidCounts[op.getType().ordinal()];
+				}
+			}
+
+			this.base = crdt.base.getDocument();
+			this.document = document;
+			this.shared = true;
+			this.undo = new UndoRecord();
+			this.applied = new ArrayDeque<>();
+			this.undoDepth = crdt.getUndoDepth();
+			this.checkpoints = new TreeMap<>();
+			this.checkpointOperations = crdt.getCheckpointOperations();
+			this.checkpointInterval = crdt.getCheckpointInterval();
+			this.uncheckpointed = 0;
+		}
+
+		/**
+		 * Instantiates a new trial result for an earlier timestamp than that of the given source.  Processing begins from the latest
+		 * checkpoint in the source at or before the given timestamp, so only the operations following that checkpoint are replayed.
+		 *
+		 * @param source The TrialResult whose operations and checkpoints are used to produce this TrialResult
+		 * @param timestamp Latest timestamp to process operations
+		 */
+		protected TrialResult(TrialResult source, long timestamp) {
+			Map.Entry<Long, Checkpoint> entry = source.checkpoints.floorEntry(timestamp);
+			Checkpoint start = null == entry ? null : entry.getValue();
+
+			this.timestamp = timestamp;
+			this.operations = new TreeSet<>(headSet(source.operations, timestamp));
+			this.invalidOperations = null == start
+					? new TreeSet<>()
+					: new TreeSet<>(source.invalidOperations.headSet(start.getOperation(), true));
+			for (Operation op : this.invalidOperations) {
+				++this.invalidCounts[op.getType().ordinal()];
+			}
+			this.base = source.base;
+			this.document = null == start ? this.base : start.getDocument();
+			this.shared = true;
+			this.undo = new UndoRecord();
+			this.applied = new ArrayDeque<>();
+			this.undoDepth = 0;
+			this.checkpoints = new TreeMap<>();
+			this.checkpointOperations = source.checkpointOperations;
+			this.checkpointInterval = source.checkpointInterval;
+			this.uncheckpointed = 0;
+
+			for (Operation op : null == start ? this.operations : this.operations.tailSet(start.getOperation(), false)) {
+				this.apply(op);
+			}
+		}
+
+		/**
+		 * Retrieve the subset of the given operations with timestamp values no later than the timestamp given
+		 *
+		 * @param operations The operations from which to extract the subset
+		 * @param timestamp The latest timestamp of operations to include in the subset
+		 * @return The subset of operations with timestamps no later than the given timestamp
+		 */
+		private static NavigableSet<Operation> headSet(NavigableSet<Operation> operations, long timestamp) {
+			if (0 > timestamp) {
+				return new TreeSet<>();
+			} else if (Long.MAX_VALUE == timestamp) {
+				return operations;
+			}
+
+			return operations.headSet(new Operation(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), OperationType.CREATE, null, timestamp + 1), false);
+		}
+
+		/**
+		 * Record a checkpoint for the operation just processed if the number of operations or the span of operation time processed
+		 * since the last checkpoint warrants it.  The checkpoint refers to the current document, which is marked shared so that it
+		 * is copied before the next operation modifies it.
+		 *
+		 * @param op The operation most recently processed
+		 */
+		private void checkpoint(Operation op) {
+			long previous = this.checkpoints.isEmpty() ? this.operations.first().getTimestamp() : this.checkpoints.lastKey();
+
+			++this.uncheckpointed;
+
+			if (this.uncheckpointed >= this.checkpointOperations || op.getTimestamp() - previous >= this.checkpointInterval) {
+				this.checkpoints.put(op.getTimestamp(), new Checkpoint(op, this.document));
+				this.shared = true;
+				this.uncheckpointed = 0;
+			}
+		}
+
+		/**
+		 * Apply a single operation to the current document in place.  The document is copied first only when it is shared with a
+		 * checkpoint or a caller, and only by an UPDATE, since other operations replace the document rather than modify it.  If the
+		 * operation cannot be processed, its partial changes are rolled back, leaving the document unchanged, and the operation is
+		 * recorded as invalid.  The operation and the record of its changes are retained in the applied log, which is trimmed to
+		 * the undo depth.
+		 *
+		 * @param op The operation to apply to the current document
+		 */
+		private void apply(Operation op) {
+			UndoRecord record = 0 < this.undoDepth ? new UndoRecord() : this.undo;
+
+			if (this.shared && null != this.document && OperationType.UPDATE == op.getType()) {
+				this.document = this.document.deepCopy();
+				this.shared = false;
+			}
+
+			try {
+				JsonNode result = op.processOperation(this.document, record);
+				this.shared &= result == this.document;
+				this.document = result;
+			} catch (JsonPatchException | IOException e) {
+				if (LOG_JSON_PROCESSING_EXCEPTIONS) {
+					logger.error(e);
+					logger.error(" op: " + op.toString());
+					logger.error("doc: " + this.document);
+					for (StackTraceElement el : e.getStackTrace()) {
+						logger.error(el);
 					}
-					this.invalidOperations.add(op);
 				}
+				if (this.invalidOperations.add(op)) {
+					++this.invalidCounts[op.getType().ordinal()];
+				}
+			} finally {
+				this.undo.clear();
 			}
-			
-			this.document = doc;
+
+			if (0 < this.undoDepth) {
+				this.applied.addLast(new Applied(op, record));
+				if (this.applied.size() > this.undoDepth) {
+					this.applied.removeFirst();
+				}
+			}
+		}
+
+		/**
+		 * Determine whether the applied log reaches back far enough to reverse every processed operation ordered after the given
+		 * one, or at or after it when inclusive
+		 *
+		 * @param op The operation marking the point to which the document would be rolled back
+		 * @param inclusive Flag indicating whether the given operation itself would be reversed
+		 * @return True exactly when every processed operation to be reversed is in the applied log
+		 */
+		private boolean canRollback(Operation op, boolean inclusive) {
+			if (this.applied.size() == this.operations.size()) {
+				return true;
+			} else if (this.applied.isEmpty()) {
+				return false;
+			}
+
+			int cmp = this.applied.getFirst().getOperation().compareTo(op);
+			return cmp < 0 || (0 == cmp && inclusive);
 		}
 
 		/**
-		 * Retrieve the document resulting from running the operations in this TrialResult.
+		 * Reverse the processed operations ordered after the given operation, or at or after it when inclusive, restoring the
+		 * document to its state before they were applied.  The reversed operations lose any invalid status and any checkpoints
+		 * they produced, since both are recomputed when they are reapplied.  The caller must first ensure the applied log covers
+		 * the operations to reverse.
+		 *
+		 * @param op The operation marking the point to which the document is rolled back
+		 * @param inclusive Flag indicating whether the given operation itself is to be reversed
+		 * @return The reversed operations, excluding the given operation, in the order they were originally processed
+		 */
+		private List<Operation> rollback(Operation op, boolean inclusive) {
+			List<Operation> rv = new ArrayList<>();
+
+			while (!this.applied.isEmpty()) {
+				Applied last = this.applied.getLast();
+				int cmp = last.getOperation().compareTo(op);
+
+				if (cmp < 0 || (0 == cmp && !inclusive)) {
+					break;
+				}
+
+				if (this.shared && null != this.document && !last.getUndo().isEmpty()) {
+					this.document = this.document.deepCopy();
+					this.shared = false;
+				}
+
+				// Reverting a CREATE or DELETE restores an earlier document, which may be shared with a checkpoint or a caller
+				JsonNode result = last.getUndo().revert(this.document);
+				this.shared |= result != this.document;
+				this.document = result;
+
+				if (this.invalidOperations.remove(last.getOperation())) {
+					--this.invalidCounts[last.getOperation().getType().ordinal()];
+				}
+				this.applied.removeLast();
+				if (0 != cmp) {
+					rv.add(0, last.getOperation());
+				}
+			}
+
+			this.checkpoints.tailMap(op.getTimestamp(), true).values().removeIf(cp -> cp.getOperation().compareTo(op) >= 0);
+
+			// Checkpoints may have been dropped along with the reversed operations, so this only approximates the spacing
+			this.uncheckpointed = Math.max(0, this.uncheckpointed - rv.size());
+
+			return rv;
+		}
+
+		/**
+		 * Reapply operations previously reversed by a rollback
+		 *
+		 * @param suffix The operations to reapply, in the order they are to be processed
+		 */
+		private void reapply(List<Operation> suffix) {
+			for (Operation op : suffix) {
+				this.apply(op);
+				this.checkpoint(op);
+			}
+		}
+
+		/**
+		 * Determine whether the given operation belongs among the operations this TrialResult processes.  READ operations and
+		 * those later than the timestamp of this TrialResult have no bearing on the resulting document.
+		 *
+		 * @param op The operation to evaluate
+		 * @return True exactly when the operation contributes to the document of this TrialResult
+		 */
+		private boolean isApplicable(Operation op) {
+			return OperationType.READ != op.getType() && op.getTimestamp() <= this.timestamp;
+		}
+
+		/**
+		 * Incorporate an operation newly added to the CRDT without replaying those already processed.  This succeeds when the
+		 * operation has no bearing on the document, or when it is ordered after every operation processed so far, in which case
+		 * it is applied directly to the current document.  An operation arriving out of order is inserted by rolling back the
+		 * operations ordered after it, applying it, and reapplying those rolled back, provided the applied log reaches back far
+		 * enough.
+		 *
+		 * @param op The operation added to the CRDT
+		 * @return True exactly when this TrialResult remains consistent with the CRDT after the operation is added; false when
+		 * the operation arrived too far out of order and the TrialResult must be rebuilt
+		 */
+		protected boolean append(Operation op) {
+			if (!this.isApplicable(op) || this.operations.contains(op)) {
+				return true;
+			} else if (this.operations.isEmpty() || op.compareTo(this.operations.last()) > 0) {
+				this.operations.add(op);
+				this.apply(op);
+				this.checkpoint(op);
+				return true;
+			} else if (!this.canRollback(op, false)) {
+				return false;
+			}
+
+			List<Operation> suffix = this.rollback(op, false);
+
+			this.operations.add(op);
+			this.apply(op);
+			this.checkpoint(op);
+			this.reapply(suffix);
+
+			return true;
+		}
+
+		/**
+		 * Withdraw an operation newly removed from the CRDT without replaying those already processed.  This succeeds when the
+		 * operation was never processed, or when the applied log reaches back far enough to roll back the operation and those
+		 * ordered after it, in which case the latter are then reapplied without it.
+		 *
+		 * @param op The operation removed from the CRDT
+		 * @return True exactly when this TrialResult remains consistent with the CRDT after the operation is removed; false when
+		 * the TrialResult must be rebuilt
+		 */
+		protected boolean retract(Operation op) {
+			if (!this.operations.contains(op)) {
+				return true;
+			} else if (!this.canRollback(op, true)) {
+				return false;
+			}
+
+			List<Operation> suffix = this.rollback(op, true);
+
+			this.operations.remove(op);
+			this.reapply(suffix);
+
+			return true;
+		}
+
+		/**
+		 * Determine whether every operation processed by this TrialResult has a timestamp no later than the one given, in which case
+		 * the document of this TrialResult is also the document as of that timestamp.
+		 *
+		 * @param timestamp The timestamp to compare with those of the operations processed
+		 * @return True exactly when no processed operation is later than the given timestamp
+		 */
+		protected boolean isCurrent(long timestamp) {
+			return this.operations.isEmpty() || this.operations.last().getTimestamp() <= timestamp;
+		}
+
+		/**
+		 * Retrieve the document resulting from running the operations in this TrialResult.  The document is marked shared, so
+		 * operations appended later are applied to a copy of it and the document returned is never modified.
 		 *
 		 * @return The document resulting from running the operations in this TrialResult
 		 */
 		public JsonNode getDocument() {
+			this.shared = true;
 			return this.document;
 		}
 
 		/**
-		 * Retrieve the set of operations in this TrialResult.  
+		 * Retrieve a read only view of the set of operations in this TrialResult.  
 		 *
-		 * @return A the set of operations in this TrialResult
+		 * @return A read only view of the set of operations in this TrialResult
 		 */
 		public Collection<Operation> getOperations() {
-			return Operation.copy(this.operations);
+			return Collections.unmodifiableNavigableSet(this.operations);
 		}
 		
 		/**
-		 * Gets the invalid.
+		 * Retrieve a read only view of the set of invalid operations in this TrialResult.
 		 *
-		 * @return the invalid
+		 * @return A read only view of the set of invalid operations
 		 */
 		public Collection<Operation> getInvalidOperations() {
-			return Operation.copy(this.invalidOperations);
+			return Collections.unmodifiableNavigableSet(this.invalidOperations);
 		}
 		
+		/**
+		 * Retrieve the number of invalid operations of the given type
+		 *
+		 * @param type The OperationType of the invalid operations to count
+		 * @return The number of invalid operations of the given type
+		 */
+		public long getInvalidCount(OperationType type) {
+			return this.invalidCounts[type.ordinal()];
+		}
+
 		/**
 		 * Retrieves the collection of effective operations, those which can actually be processed
 		 * @return The collection of operations which can be processed
 		 */
 		public Collection<Operation> getEffectiveOperations() {
-			Collection<Operation> ops = this.getOperations();
-			ops.removeAll(this.invalidOperations);
-			return ops;
+			NavigableSet<Operation> rv = new TreeSet<>(this.operations);
+			rv.removeAll(this.invalidOperations);
+			return Collections.unmodifiableNavigableSet(rv);
 		}
 
 		/**
@@ -199,30 +1027,133 @@ public class LastWriteWins extends OperationTwoSet {
 	/** Logger for writing data to the log. */
 //	@SuppressWarnings("unused")
 	private static final Logger logger = LogManager.getLogger(LastWriteWins.class);
+
+	/** Property label for the base property */
+	protected static final String BASE = "base";
 	
-	/** Trial contains the state of the object being managed at a particular point in time. */ 
+	/** Default maximum number of operations processed between consecutive checkpoints */
+	private static final int CHECKPOINT_OPERATIONS = 128;
+
+	/** Default maximum span of operation time processed between consecutive checkpoints */
+	private static final long CHECKPOINT_INTERVAL = Long.MAX_VALUE;
+
+	/** Default maximum number of recently processed operations which can be rolled back to insert or remove an operation */
+	private static final int UNDO_DEPTH = 256;
+
+	/** Default maximum number of materializations as of earlier timestamps retained */
+	private static final int HISTORY_CAPACITY = 8;
+
+	/** Trial contains the state of the object being managed including all of its operations. */ 
 	private TrialResult trial = null;
 
+	/** Materializations of the document as of recently read earlier timestamps */
+	private final History history = new History(HISTORY_CAPACITY);
+
+	/** Maximum number of operations processed between consecutive checkpoints */
+	private volatile int checkpointOperations = CHECKPOINT_OPERATIONS;
+
+	/** Maximum span of operation time processed between consecutive checkpoints */
+	private volatile long checkpointInterval = CHECKPOINT_INTERVAL;
+
+	/** Maximum number of recently processed operations which can be rolled back to insert or remove an operation */
+	private volatile int undoDepth = UNDO_DEPTH;
+
+	/** The document and counts of the operations folded out of this CRDT once they became causally stable, which is immutable */
+	private volatile Base base = Base.EMPTY;
+
+	/**
+	 * Default constructor
+	 */
+	public LastWriteWins() { }
+	
+	/**
+	 * Copy constructor to extract the contents of the given CRDT to populate this one 
+	 * @param crdt Source CRDT to copy
+	 */
+	public LastWriteWins(LastWriteWins crdt) {
+		super(crdt);
+		this.base = crdt.getBase();
+	}
+
+	/**
+	 * Constructor for an empty CRDT storing its operations in the given log rather than one from the log factory
+	 * @param log The operation log to hold the ADD and REMOVE sets
+	 */
+	protected LastWriteWins(OperationLog log) { super(log); }
+	
+	/**
+	 * Constructor specifying the add and remove sets comprising a CRDT 
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 */
+	public LastWriteWins(Collection<Operation> addset, Collection<Operation> remset) {
+		super(addset, remset);
+	}
+
+	/**
+	 * Constructor specifying the base and the add and remove sets comprising a CRDT, as read from its JSON or binary form.  Operations
+	 * at or before the horizon of the base were folded into it, so any among the given sets are ignored.
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 * @param base The base into which the operations preceding those of the given sets were folded, or null when none were
+	 */
+	@JsonCreator
+	public LastWriteWins(@JsonProperty(ADDSET) Collection<Operation> addset,
+						 @JsonProperty(REMSET) Collection<Operation> remset,
+						 @JsonProperty(BASE) Base base) {
+		super(unfolded(base, addset), unfolded(base, remset));
+		this.base = null == base ? Base.EMPTY : base;
+	}
+
 	/**
-	 * Default constructor
+	 * Constructor specifying the base and the add and remove sets comprising a CRDT along with the document and invalid operations
+	 * found by processing them, as recorded in a snapshot.  The document is taken as the current materialization rather than
+	 * replaying the operations, so operations later than those given are applied directly to it.
+	 * @param base The base into which the operations preceding those of the given sets were folded
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 * @param document The document resulting from processing the operations of the given sets over the base document
+	 * @param invalid The operations found invalid when they were processed
 	 */
-	public LastWriteWins() { }
-	
+	public LastWriteWins(Base base, Collection<Operation> addset, Collection<Operation> remset, JsonNode document, Collection<Operation> invalid) {
+		super(addset, remset);
+		this.base = base;
+		this.trial = new TrialResult(this, document, invalid);
+	}
+
 	/**
-	 * Copy constructor to extract the contents of the given CRDT to populate this one 
-	 * @param crdt Source CRDT to copy
+	 * Constructor specifying the add and remove sets comprising a CRDT, storing them in the given log rather than one from the log
+	 * factory
+	 * @param log The operation log to hold the ADD and REMOVE sets
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
 	 */
-	public LastWriteWins(LastWriteWins crdt) { super(crdt); }
-	
+	protected LastWriteWins(OperationLog log, Collection<Operation> addset, Collection<Operation> remset) {
+		super(log, addset, remset);
+	}
+
 	/**
-	 * Constructor specifying the add and remove sets comprising a CRDT 
+	 * Constructor specifying the base and the add and remove sets comprising a CRDT, storing them in the given log rather than one
+	 * from the log factory.  Operations at or before the horizon of the base are ignored.
+	 * @param log The operation log to hold the ADD and REMOVE sets
 	 * @param addset Add set to use in this CRDT
 	 * @param remset Remove set to use in this CRDT
+	 * @param base The base into which the operations preceding those of the given sets were folded, or null when none were
 	 */
-	@JsonCreator
-	public LastWriteWins(@JsonProperty(ADDSET) Collection<Operation> addset,
-						 @JsonProperty(REMSET) Collection<Operation> remset) {
-		super(addset, remset);
+	protected LastWriteWins(OperationLog log, Collection<Operation> addset, Collection<Operation> remset, Base base) {
+		super(log, unfolded(base, addset), unfolded(base, remset));
+		this.base = null == base ? Base.EMPTY : base;
+	}
+
+	/**
+	 * Retrieve the given operations which follow the horizon of the given base
+	 * @param base The base into which earlier operations were folded, or null when none were
+	 * @param operations The operations to filter, in operation order
+	 * @return The operations following the horizon, in operation order
+	 */
+	private static Collection<Operation> unfolded(Base base, Collection<Operation> operations) {
+		return null == base || null == operations || Long.MIN_VALUE == base.getHorizon() ? operations
+				: operations.stream().filter(op -> op.getTimestamp() > base.getHorizon()).collect(Collectors.toList());
 	}
 
 	/* (non-Javadoc)
@@ -234,17 +1165,132 @@ public class LastWriteWins extends OperationTwoSet {
 		return this.getDocument(Long.MAX_VALUE);
 	}
 	
-	/* (non-Javadoc)
+	/**
+	 * Retrieve the document as of the given timestamp.  Reads as of an earlier timestamp than that of the latest operation are
+	 * materialized from the nearest checkpoint and retained in a small history, so alternating reads as of a few timestamps do
+	 * not each replay their operations.
+	 *
 	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#readValue()
 	 */
 	@Override
 	@JsonIgnore
 	public JsonNode getDocument(long timestamp) {
-		if (null == this.trial || this.trial.getTimestamp() != timestamp) {
-			this.trial = new TrialResult(this, timestamp);
+		if (timestamp < this.base.getHorizon()) {
+			throw new IllegalArgumentException("Document history through " + this.base.getHorizon() + " has been folded: " + timestamp);
+		}
+
+		TrialResult current = this.getTrial();
+
+		if (current.isCurrent(timestamp)) {
+			return current.getDocument();
+		}
+
+		TrialResult past = this.history.get(timestamp);
+
+		if (null == past) {
+			past = new TrialResult(current, timestamp);
+			this.history.put(timestamp, past);
+		}
+
+		return past.getDocument();
+	}
+
+	/**
+	 * Retrieve the trial processing all of the operations in this CRDT, building it if necessary
+	 *
+	 * @return The trial processing all of the operations in this CRDT
+	 */
+	private TrialResult getTrial() {
+		if (null == this.trial) {
+			this.trial = new TrialResult(this);
+		}
+
+		return this.trial;
+	}
+
+	/**
+	 * Determine whether the current document is materialized, so that reading it processes no operations beyond those which have
+	 * arrived since it was
+	 *
+	 * @return True exactly when the current document is materialized
+	 */
+	protected boolean isMaterialized() {
+		return null != this.trial;
+	}
+
+	/**
+	 * Adopt the materialization of the given CRDT in place of replaying the operations of this one.  The given CRDT must hold the
+	 * same operations over the same base as this one, and be configured with the same checkpoint spacing and undo depth, as one
+	 * replayed apart from this one while it could not change is.
+	 *
+	 * @param replica The CRDT whose materialization to adopt
+	 */
+	protected void adopt(LastWriteWins replica) {
+		this.trial = replica.getTrial();
+	}
+
+	/**
+	 * Retrieve the maximum number of operations processed between consecutive checkpoints
+	 *
+	 * @return The maximum number of operations processed between consecutive checkpoints
+	 */
+	@JsonIgnore
+	public int getCheckpointOperations() {
+		return this.checkpointOperations;
+	}
+
+	/**
+	 * Retrieve the maximum span of operation time processed between consecutive checkpoints
+	 *
+	 * @return The maximum span of operation time processed between consecutive checkpoints
+	 */
+	@JsonIgnore
+	public long getCheckpointInterval() {
+		return this.checkpointInterval;
+	}
+
+	/**
+	 * Set the spacing of the checkpoints used to accelerate reading the document as of an earlier timestamp.  A checkpoint is
+	 * recorded once either the given number of operations or the given span of operation time has been processed since the
+	 * previous one.  Closer spacing shortens historical reads at the expense of retaining more documents.
+	 *
+	 * @param operations Maximum number of operations processed between consecutive checkpoints
+	 * @param interval Maximum span of operation time processed between consecutive checkpoints
+	 */
+	public void setCheckpointSpacing(int operations, long interval) {
+		if (0 >= operations || 0 >= interval) {
+			throw new IllegalArgumentException("Checkpoint spacing must be positive: {\"operations\":" + operations + ",\"interval\":" + interval + "}");
+		}
+
+		this.checkpointOperations = operations;
+		this.checkpointInterval = interval;
+		this.trial = null;
+	}
+
+	/**
+	 * Retrieve the maximum number of recently processed operations which can be rolled back to insert or remove an operation
+	 *
+	 * @return The maximum number of recently processed operations which can be rolled back
+	 */
+	@JsonIgnore
+	public int getUndoDepth() {
+		return this.undoDepth;
+	}
+
+	/**
+	 * Set the maximum number of recently processed operations which can be rolled back to insert or remove an operation.  An
+	 * operation arriving or removed further back than this forces a full replay.  Greater depth avoids more replays at the
+	 * expense of retaining the values each operation overwrites; a depth of zero disables rolling back altogether.
+	 *
+	 * @param depth Maximum number of recently processed operations which can be rolled back
+	 */
+	public void setUndoDepth(int depth) {
+		if (0 > depth) {
+			throw new IllegalArgumentException("Undo depth must not be negative: " + depth);
 		}
 
-		return this.trial.getDocument();
+		this.undoDepth = depth;
+		this.trial = null;
 	}
 	
 	/**
@@ -253,11 +1299,7 @@ public class LastWriteWins extends OperationTwoSet {
 	 */
 	@JsonIgnore
 	public Collection<Operation> getInvalidOperations() {
-		if (null == trial) {
-			this.trial = new TrialResult(this);
-		}
-		
-		return this.trial.getInvalidOperations();
+		return this.getTrial().getInvalidOperations();
 	}
 	
 	/**
@@ -266,20 +1308,214 @@ public class LastWriteWins extends OperationTwoSet {
 	 */
 	@JsonIgnore
 	public Collection<Operation> getEffectiveOperations() {
-		if (null == trial) {
-			this.trial = new TrialResult(this);
-		}
-		
-		return this.trial.getEffectiveOperations();
+		return this.getTrial().getEffectiveOperations();
 	}
 	
+	/**
+	 * Count the effective operations of the given type, those which were processed without error in materializing the document.
+	 * The trial processes every active operation other than READ operations, which have no bearing on the document, so the
+	 * count follows from the active operations of the type less those the trial found invalid.
+	 *
+	 * @param type The OperationType of the effective operations to count
+	 * @return The number of effective operations of the given type
+	 */
+	private long countEffective(OperationType type) {
+		return OperationType.READ == type ? 0
+				: this.getBase().getOperationCount(type) - this.getBase().getInvalidCount(type) + super.getOperationCount(type) - this.getTrial().getInvalidCount(type);
+	}
+
+	/**
+	 * Retrieve the number of elements in the ADD set, including those folded into the base
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getAddCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getAddCount() {
+		return this.getBase().getAddCount() + super.getAddCount();
+	}
+
+	/**
+	 * Retrieve the number of elements of the given type in the ADD set, including those folded into the base
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getAddCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getAddCount(OperationType type) {
+		return this.getBase().getAddCount(type) + super.getAddCount(type);
+	}
+
+	/**
+	 * Retrieve the number of elements in the REMOVE set, including those folded into the base
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getRemCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getRemCount() {
+		return this.getBase().getRemCount() + super.getRemCount();
+	}
+
+	/**
+	 * Retrieve the number of elements of the given type in the REMOVE set, including those folded into the base
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getRemCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getRemCount(OperationType type) {
+		return this.getBase().getRemCount(type) + super.getRemCount(type);
+	}
+
+	/**
+	 * Retrieve the number of active operations, including those folded into the base, so that a folded CRDT is not empty
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getOperationCount()
+	 */
+	@Override
+	@JsonIgnore
+	public long getOperationCount() {
+		return this.getBase().getOperationCount() + super.getOperationCount();
+	}
+
+	/**
+	 * Retrieve the number of active operations of the given type, including those folded into the base
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#getOperationCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getOperationCount(OperationType type) {
+		return this.getBase().getOperationCount(type) + super.getOperationCount(type);
+	}
+
+	/**
+	 * Retrieve the base into which the causally stable operations of this CRDT have been folded
+	 *
+	 * @return The base of this CRDT, which is Base.EMPTY until operations are folded
+	 */
+	@JsonIgnore
+	public Base getBase() {
+		return this.base;
+	}
+
+	/**
+	 * Create the version vector of the operations folded into the base, to which those of the ADD and REMOVE sets are added
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#createVersionVector()
+	 */
+	@Override
+	protected VersionVector createVersionVector() {
+		return this.getBase().getSummary();
+	}
+
+	/**
+	 * Create a Merkle tree holding the digests of the operations folded into the base, to which those of the ADD and REMOVE sets
+	 * are added
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#createMerkleTree()
+	 */
+	@Override
+	protected MerkleTree createMerkleTree() {
+		MerkleTree rv = new MerkleTree();
+		rv.recordBuckets(this.getBase().getDigests());
+		return rv;
+	}
+
+	/**
+	 * Fold the operations with timestamps no later than the given stability horizon into the base document, and discard them from
+	 * both the ADD and REMOVE sets.  The horizon must be one through which every replica is known to hold each operation with its
+	 * final status, such as that of a StabilityTracker acknowledged through CRDTManager, so no operation or removal at or before it
+	 * remains to arrive.  Any that do arrive are taken to be repeats and ignored.  The document as of a timestamp before the horizon
+	 * is no longer available.  The operations folded are counted as they are found in the sets, so operations following the horizon
+	 * which arrive meanwhile, as they may at a LockFreeLastWriteWins, are not mistaken for folded ones.  The new base is published
+	 * before the folded operations are discarded, so a repeat inserted after checking the previous horizon is either discarded with
+	 * them or found to be at or before the new one by the CRDT which inserted it.
+	 *
+	 * The version vector and Merkle tree of the CRDT continue to cover the operations folded, which the base summarizes, so they
+	 * agree with those of a replica which folds at another horizon or not at all.  The sketch built by getSketch covers only the
+	 * operations which follow the horizon, so replicas reconciling by sketch must fold at the same horizon.
+	 *
+	 * The JSON and binary forms of a folded CRDT hold its base along with the operations which follow it, so either restores the
+	 * document, the counts and the summaries of the CRDT, but not its history before the horizon.
+	 *
+	 * @param horizon The stability horizon through which to fold operations
+	 * @return The number of operations discarded
+	 */
+	public long fold(long horizon) {
+		if (horizon <= this.base.getHorizon()) {
+			return 0;
+		}
+
+		TrialResult current = this.getTrial();
+		JsonNode document = current.getDocument();
+		List<Operation> invalidOperations = new ArrayList<>(current.getInvalidOperations());
+		TrialResult stable = current.isCurrent(horizon) ? current : new TrialResult(current, horizon);
+		long[] added = new long[OperationType.values().length];
+		long[] removed = new long[OperationType.values().length];
+		long[] active = new long[OperationType.values().length];
+		long[] invalid = new long[OperationType.values().length];
+		VersionVector summary = this.base.getSummary();
+		MerkleTree digests = new MerkleTree();
+
+		digests.recordBuckets(this.base.getDigests());
+
+		for (OperationType type : OperationType.values()) {
+			added[type.ordinal()] = this.base.getAddCount(type);
+			removed[type.ordinal()] = this.base.getRemCount(type);
+			active[type.ordinal()] = this.base.getOperationCount(type);
+			invalid[type.ordinal()] = this.base.getInvalidCount(type) + stable.getInvalidCount(type);
+		}
+
+		for (Operation op : super.getAddView()) {
+			if (op.getTimestamp() > horizon) {
+				break;
+			}
+
+			++added[op.getType().ordinal()];
+			summary.recordAdded(op);
+			digests.recordAdded(op);
+
+			if (!this.isRemoved(op)) {
+				++active[op.getType().ordinal()];
+			}
+		}
+
+		for (Operation op : super.getRemView()) {
+			if (op.getTimestamp() > horizon) {
+				break;
+			}
+
+			++removed[op.getType().ordinal()];
+			summary.recordRemoved(op);
+			digests.recordRemoved(op);
+		}
+
+		this.base = new Base(horizon, stable.getDocument(), added, removed, active, invalid, summary, digests.getBuckets());
+
+		long rv = this.discard(horizon);
+
+		this.history.clear();
+		this.trial = new TrialResult(this, document, invalidOperations);
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve the given operations which follow the stability horizon of the base, those at or before it having been folded
+	 *
+	 * @param operations The operations to filter, in operation order
+	 * @return The operations following the horizon, in operation order
+	 */
+	private Collection<Operation> unfolded(Collection<Operation> operations) {
+		return unfolded(this.base, operations);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#isCreated()
 	 */
 	@Override
 	@JsonIgnore
 	public boolean isCreated() {
-		return doesTypeExist(this.getEffectiveOperations(), OperationType.CREATE);
+		return 0 < this.countEffective(OperationType.CREATE);
 	}
 
 	/* (non-Javadoc)
@@ -288,7 +1524,7 @@ public class LastWriteWins extends OperationTwoSet {
 	@Override
 	@JsonIgnore
 	public boolean isRead() {
-		return doesTypeExist(this.getEffectiveOperations(), OperationType.READ);
+		return 0 < this.countEffective(OperationType.READ);
 	}
 
 	/* (non-Javadoc)
@@ -297,7 +1533,7 @@ public class LastWriteWins extends OperationTwoSet {
 	@Override
 	@JsonIgnore
 	public boolean isUpdated() {
-		return doesTypeExist(this.getEffectiveOperations(), OperationType.UPDATE);
+		return 0 < this.countEffective(OperationType.UPDATE);
 	}
 
 	/* (non-Javadoc)
@@ -306,18 +1542,41 @@ public class LastWriteWins extends OperationTwoSet {
 	@Override
 	@JsonIgnore
 	public boolean isDeleted() {
-		return doesTypeExist(this.getEffectiveOperations(), OperationType.DELETE);
+		return 0 < this.countEffective(OperationType.DELETE);
 	}
 	
 	/**
-	 * Insert an operation to the ADD set 
+	 * Insert an operation to the ADD set.  When the operation is later than all of those already processed by the current trial,
+	 * it is applied directly to the trial document.  When it is earlier than a few of them, the trial document is rolled back to
+	 * the point the operation belongs, which is reapplied from there.  Otherwise the trial is discarded and rebuilt on its next use.
 	 *
 	 * @param op The operation to add to the ADD set
 	 */
 	@Override
 	protected void addOperation(Operation op) {
-		if (null != op) {
+		if (null != op && op.getTimestamp() > this.base.getHorizon()) {
+			boolean effective = !this.isAdded(op) && !this.isRemoved(op);
+
 			super.addOperation(op);
+
+			if (effective) {
+				this.materializeAdded(op);
+			}
+		}
+	}
+
+	/**
+	 * Bring the materialization up to date with an operation newly effective in the ADD set, applying it to the current trial and
+	 * discarding the trial should that fail
+	 *
+	 * @param op The operation newly effective in the ADD set
+	 */
+	protected void materializeAdded(Operation op) {
+		if (OperationType.READ != op.getType()) {
+			this.history.invalidate(op.getTimestamp());
+		}
+
+		if (null != this.trial && !this.trial.append(op)) {
 			this.trial = null;
 		}
 	}
@@ -336,14 +1595,31 @@ public class LastWriteWins extends OperationTwoSet {
 	}
 	
 	/**
-	 * Insert an operation to the REMOVE set 
+	 * Insert an operation to the REMOVE set.  When the current trial processed the operation being removed, the operation is
+	 * rolled back from the trial document if it is recent enough, and otherwise the trial is discarded and rebuilt on its next use.
 	 *
 	 * @param op The operation to add to the REMOVE set
 	 */
 	@Override
 	protected void remOperation(Operation op) {
-		if (null != op) {
+		if (null != op && op.getTimestamp() > this.base.getHorizon()) {
 			super.remOperation(op);
+			this.materializeRemoved(op);
+		}
+	}
+
+	/**
+	 * Bring the materialization up to date with an operation newly added to the REMOVE set, withdrawing it from the current trial
+	 * and discarding the trial should that fail
+	 *
+	 * @param op The operation newly added to the REMOVE set
+	 */
+	protected void materializeRemoved(Operation op) {
+		if (OperationType.READ != op.getType()) {
+			this.history.invalidate(op.getTimestamp());
+		}
+
+		if (null != this.trial && !this.trial.retract(op)) {
 			this.trial = null;
 		}
 	}
@@ -361,6 +1637,127 @@ public class LastWriteWins extends OperationTwoSet {
 		}
 	}
 	
+	/**
+	 * Retrieve the operations of this CRDT which the replica summarized by the given version vector has not seen.  The operations are
+	 * returned as a CRDT, which is serialized and sent to the other replica in place of the full operation log, to be merged there.
+	 *
+	 * @param summary The version vector summarizing the operations of the other replica
+	 * @return A CRDT holding the operations unseen by the other replica
+	 */
+	public LastWriteWins getDelta(VersionVector summary) {
+		return new LastWriteWins(this.getAddDelta(summary), this.getRemDelta(summary));
+	}
+
+	/**
+	 * Write the base along with the ADD and REMOVE sets when operations have been folded into it, so the JSON form of an unfolded CRDT
+	 * is unchanged.  The base is read after the sets, so a fold underway can leave operations at or before its horizon among them,
+	 * which are ignored when the CRDT is read back, but can not leave the sets missing operations which the base omits.
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#writeSets(com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider)
+	 */
+	@Override
+	protected void writeSets(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		super.writeSets(gen, provider);
+
+		Base base = this.getBase();
+
+		if (Base.EMPTY != base) {
+			provider.defaultSerializeField(BASE, base, gen);
+		}
+	}
+
+	/**
+	 * Encode the ADD and REMOVE sets of this CRDT followed by its base in the compact binary form of OperationCodec, in place of its
+	 * JSON form for replication or storage
+	 *
+	 * @return The binary form of this CRDT
+	 */
+	public byte[] encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			OperationCodec.Encoder encoder = new OperationCodec.Encoder(out);
+			encoder.write(this.getAddView());
+			encoder.write(this.getRemView());
+			this.getBase().write(out, encoder);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode a CRDT from the binary form produced by encode
+	 *
+	 * @param bytes Binary form of the CRDT
+	 * @return The CRDT decoded, equal to one read from the JSON form of the original
+	 * @throws IOException when the bytes do not hold a CRDT
+	 */
+	public static LastWriteWins decode(byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		OperationCodec.Decoder decoder = new OperationCodec.Decoder(in);
+		List<Operation> addset = decoder.readOperations();
+		List<Operation> remset = decoder.readOperations();
+
+		return new LastWriteWins(addset, remset, Base.read(in, decoder));
+	}
+
+	/**
+	 * Merge the given ADD and REMOVE sets into those of this CRDT.  When a trial has been built, the operations new to this CRDT are
+	 * applied to it as they would be if added individually, which costs little when they follow those already processed, as the
+	 * log suffix replayed over a snapshot does.  Should any arrive too far out of order, the trial is discarded once rather than
+	 * maintained through the rest, so the document is materialized at most once, on its next read.
+	 *
+	 * @see com.cyberfront.crdt.OperationTwoSet#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	protected long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		List<Operation> added = new ArrayList<>();
+		List<Operation> removed = new ArrayList<>();
+
+		addset = this.unfolded(addset);
+		remset = this.unfolded(remset);
+
+		if (null != this.trial) {
+			for (Operation op : addset) {
+				if (!this.isAdded(op) && !this.isRemoved(op)) {
+					added.add(op);
+				}
+			}
+
+			for (Operation op : remset) {
+				if (!this.isRemoved(op)) {
+					removed.add(op);
+				}
+			}
+		}
+
+		long rv = super.merge(addset, remset);
+
+		if (0 < rv) {
+			this.history.clear();
+
+			if (null != this.trial && !(added.stream().allMatch(this.trial::append) && removed.stream().allMatch(this.trial::retract))) {
+				this.trial = null;
+			}
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#clear()
+	 */
+	@Override
+	public void clear() {
+		super.clear();
+		this.base = Base.EMPTY;
+		this.trial = null;
+		this.history.clear();
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.manager.OperationTwoSet#getSegment()
 	 */
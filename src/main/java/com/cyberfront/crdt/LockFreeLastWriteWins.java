@@ -0,0 +1,814 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.cyberfront.crdt.operation.ConcurrentOperationLog;
+import com.cyberfront.crdt.operation.MerkleTree;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The LockFreeLastWriteWins class is a LastWriteWins CRDT to which any number of threads deliver operations without locking.  The
+ * ADD and REMOVE sets are held in a ConcurrentOperationLog, so delivering an operation is a compare and set in a skip list, after
+ * which the delivery is queued for materialization and the version of the operations is advanced.
+ *
+ * The materialized document is published through an atomic reference as an immutable snapshot stamped with the version it
+ * reflects.  A reader finding the snapshot current returns it directly.  Otherwise the first reader to claim materialization brings
+ * the trial of the underlying LastWriteWins up to date with the queued deliveries, which it applies incrementally to the trial
+ * without copying the operations out of the log, and publishes a new snapshot; other readers arriving in the meantime are served
+ * the previous snapshot.  The same thread maintains the Merkle tree summarizing the sets from the queued deliveries.  Copies of the
+ * Merkle tree and of the invalid and effective operations are published in the same way as the document, when first requested
+ * after the operations change.  Historical reads are answered by the trial when materialization is unclaimed, and are otherwise
+ * replayed from a copy of the operations apart from it.  A reader waits its turn to claim materialization only when nothing has
+ * yet been published, and configuration, folding and clearing always do.
+ *
+ * Documents returned by this class are shared among readers and must not be modified.
+ */
+public class LockFreeLastWriteWins extends LastWriteWins {
+	/**
+	 * The Change enumeration identifies the kinds of change queued for materialization
+	 */
+	private enum Change {
+		/** An operation delivered to the ADD set */
+		ADD,
+
+		/** An operation delivered to the REMOVE set */
+		REMOVE,
+
+		/** Operations merged from another CRDT */
+		MERGE
+	}
+
+	/**
+	 * A Delivery records a change to the operations which the trial and the Merkle tree have yet to reflect
+	 */
+	private static class Delivery {
+		/** The kind of change */
+		private final Change change;
+
+		/** The operation changed, or null when operations were merged */
+		private final Operation operation;
+
+		/** The operations merged into the ADD set, or null unless operations were merged */
+		private final Collection<Operation> addset;
+
+		/** The operations merged into the REMOVE set, or null unless operations were merged */
+		private final Collection<Operation> remset;
+
+		/**
+		 * Constructor for a delivery of the given kind of change to the given operation
+		 *
+		 * @param change The kind of change
+		 * @param operation The operation changed
+		 */
+		private Delivery(Change change, Operation operation) {
+			this.change = change;
+			this.operation = operation;
+			this.addset = null;
+			this.remset = null;
+		}
+
+		/**
+		 * Constructor for a delivery of the operations merged from another CRDT
+		 *
+		 * @param addset The operations merged into the ADD set, in operation order
+		 * @param remset The operations merged into the REMOVE set, in operation order
+		 */
+		private Delivery(Collection<Operation> addset, Collection<Operation> remset) {
+			this.change = Change.MERGE;
+			this.operation = null;
+			this.addset = addset;
+			this.remset = remset;
+		}
+
+		/**
+		 * Give the change to the CRDT which has claimed materialization
+		 *
+		 * @param crdt The CRDT to bring up to date
+		 */
+		private void deliver(LockFreeLastWriteWins crdt) {
+			switch (this.change) {
+			case ADD:
+				crdt.added(this.operation);
+				break;
+			case REMOVE:
+				crdt.removed(this.operation);
+				break;
+			default:
+				this.addset.forEach(crdt::added);
+				this.remset.forEach(crdt::removed);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * A Snapshot is an immutable materialization of the CRDT as of a given version of its operations
+	 */
+	private static class Snapshot {
+		/** The version of the operations the snapshot reflects */
+		private final long version;
+
+		/** The document materialized from the operations */
+		private final JsonNode document;
+
+		/** Flags indicating, for each OperationType, whether an effective operation of that type was processed */
+		private final boolean[] effective = new boolean[OperationType.values().length];
+
+		/**
+		 * Constructor which records a materialization of the operations
+		 *
+		 * @param version The version of the operations materialized
+		 * @param document The document materialized from the operations
+		 * @param effective Predicate determining whether an effective operation of a given type was processed in materializing them
+		 */
+		private Snapshot(long version, JsonNode document, Predicate<OperationType> effective) {
+			this.version = version;
+			this.document = document;
+
+			for (OperationType type : OperationType.values()) {
+				this.effective[type.ordinal()] = effective.test(type);
+			}
+		}
+
+		/**
+		 * Retrieve the version of the operations the snapshot reflects
+		 *
+		 * @return The version of the operations the snapshot reflects
+		 */
+		private long getVersion() {
+			return this.version;
+		}
+
+		/**
+		 * Retrieve the document materialized from the operations
+		 *
+		 * @return The document materialized from the operations
+		 */
+		private JsonNode getDocument() {
+			return this.document;
+		}
+
+		/**
+		 * Determine whether an effective operation of the given type was processed in materializing the document
+		 *
+		 * @param type The OperationType to check
+		 * @return True exactly when an effective operation of the given type was processed
+		 */
+		private boolean isEffective(OperationType type) {
+			return this.effective[type.ordinal()];
+		}
+	}
+
+	/**
+	 * A Copy is state of the trial or the Merkle tree copied as of a given version of the operations
+	 */
+	private static class Copy<T> {
+		/** The version of the operations the copy reflects */
+		private final long version;
+
+		/** The state copied */
+		private final T value;
+
+		/**
+		 * Constructor which records a copy of state as of the given version of the operations
+		 *
+		 * @param version The version of the operations the copy reflects
+		 * @param value The state copied
+		 */
+		private Copy(long version, T value) {
+			this.version = version;
+			this.value = value;
+		}
+
+		/**
+		 * Retrieve the version of the operations the copy reflects
+		 *
+		 * @return The version of the operations the copy reflects
+		 */
+		private long getVersion() {
+			return this.version;
+		}
+
+		/**
+		 * Retrieve the state copied
+		 *
+		 * @return The state copied
+		 */
+		private T getValue() {
+			return this.value;
+		}
+	}
+
+	/** Changes delivered since the trial and the Merkle tree were last brought up to date */
+	private final Queue<Delivery> pending = new ConcurrentLinkedQueue<>();
+
+	/** Version of the operations, advanced after each change is queued */
+	private final AtomicLong version = new AtomicLong();
+
+	/** The most recently published materialization */
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+	/** The most recently published copy of the Merkle tree */
+	private final AtomicReference<Copy<MerkleTree>> merkleCopy = new AtomicReference<>();
+
+	/** The most recently published copy of the invalid operations */
+	private final AtomicReference<Copy<Collection<Operation>>> invalidCopy = new AtomicReference<>();
+
+	/** The most recently published copy of the effective operations */
+	private final AtomicReference<Copy<Collection<Operation>>> effectiveCopy = new AtomicReference<>();
+
+	/** Flag claimed by the thread materializing the operations */
+	private final AtomicBoolean materializing = new AtomicBoolean(false);
+
+	/** Threads parked waiting to claim materialization, in the order they arrived */
+	private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+	/** The thread which has claimed materialization, so that nested calls from that thread do not attempt to claim it again */
+	private volatile Thread owner = null;
+
+	/**
+	 * Merkle tree summarizing the ADD and REMOVE sets, only accessed by the thread which has claimed materialization.  Each
+	 * operation inserted into either set is recorded once, as its delivery is given to the tree.  Operations folded into the base
+	 * remain recorded, so the tree continues to cover them, as the base does once it is serialized.
+	 */
+	private final MerkleTree merkle = new MerkleTree();
+
+	/**
+	 * Default constructor
+	 */
+	public LockFreeLastWriteWins() {
+		this(Collections.emptyList(), Collections.emptyList());
+	}
+
+	/**
+	 * Copy constructor to extract the contents of the given CRDT to populate this one
+	 * @param crdt Source CRDT to copy
+	 */
+	public LockFreeLastWriteWins(LastWriteWins crdt) {
+		this(crdt.getAddView(), crdt.getRemView(), crdt.getBase());
+	}
+
+	/**
+	 * Constructor specifying the add and remove sets comprising a CRDT
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 */
+	public LockFreeLastWriteWins(Collection<Operation> addset, Collection<Operation> remset) {
+		this(addset, remset, null);
+	}
+
+	/**
+	 * Constructor specifying the base and the add and remove sets comprising a CRDT, as read from its JSON form
+	 * @param addset Add set to use in this CRDT
+	 * @param remset Remove set to use in this CRDT
+	 * @param base The base into which the operations preceding those of the given sets were folded, or null when none were
+	 */
+	@JsonCreator
+	public LockFreeLastWriteWins(@JsonProperty(ADDSET) Collection<Operation> addset,
+								 @JsonProperty(REMSET) Collection<Operation> remset,
+								 @JsonProperty(BASE) Base base) {
+		super(new ConcurrentOperationLog(), addset, remset, base);
+
+		this.merkle.recordBuckets(this.getBase().getDigests());
+
+		for (Operation op : this.getLog().getAddSet()) {
+			this.merkle.recordAdded(op);
+		}
+
+		for (Operation op : this.getLog().getRemSet()) {
+			this.merkle.recordRemoved(op);
+		}
+	}
+
+	/**
+	 * Determine whether the calling thread has claimed materialization
+	 *
+	 * @return True exactly when the calling thread has claimed materialization
+	 */
+	private boolean isOwner() {
+		return Thread.currentThread() == this.owner;
+	}
+
+	/**
+	 * Claim materialization, parking the calling thread until the thread holding it releases it.  An interrupt does not end the
+	 * wait, but is restored once materialization is claimed.
+	 */
+	private void claim() {
+		if (this.materializing.compareAndSet(false, true)) {
+			return;
+		}
+
+		Thread current = Thread.currentThread();
+		boolean interrupted = false;
+
+		this.waiters.add(current);
+
+		while (!this.materializing.compareAndSet(false, true)) {
+			LockSupport.park(this);
+			interrupted |= Thread.interrupted();
+		}
+
+		this.waiters.remove(current);
+
+		if (interrupted) {
+			current.interrupt();
+		}
+	}
+
+	/**
+	 * Release materialization, unparking the longest waiting thread so that it may claim it.  A waiter which enqueued itself before
+	 * the release is unparked by it, and one which enqueued itself after finds materialization released, so none is left parked.
+	 */
+	private void release() {
+		this.materializing.set(false);
+
+		Thread next = this.waiters.peek();
+
+		if (null != next) {
+			LockSupport.unpark(next);
+		}
+	}
+
+	/**
+	 * Bring the trial and the Merkle tree up to date with every change queued since they were last brought up to date.  The calling
+	 * thread must have claimed materialization.
+	 */
+	private void drain() {
+		for (Delivery delivery = this.pending.poll(); null != delivery; delivery = this.pending.poll()) {
+			delivery.deliver(this);
+		}
+	}
+
+	/**
+	 * Bring the trial and the Merkle tree up to date with an operation delivered to the ADD set.  The operation is applied to the
+	 * trial only when it remains effective, since the log may have removed, discarded or cleared it since it was delivered.
+	 *
+	 * @param op The operation delivered to the ADD set
+	 */
+	private void added(Operation op) {
+		this.merkle.recordAdded(op);
+
+		if (this.isAdded(op) && !this.isRemoved(op)) {
+			this.materializeAdded(op);
+		}
+	}
+
+	/**
+	 * Bring the trial and the Merkle tree up to date with an operation delivered to the REMOVE set
+	 *
+	 * @param op The operation delivered to the REMOVE set
+	 */
+	private void removed(Operation op) {
+		this.merkle.recordRemoved(op);
+		this.materializeRemoved(op);
+	}
+
+	/**
+	 * Record a change to the operations by queueing it for materialization and advancing the version.  The change is queued before
+	 * the version is advanced, so a materialization reflecting a given version has been given every change up to that version.
+	 *
+	 * @param change The kind of change
+	 * @param op The operation changed
+	 */
+	private void record(Change change, Operation op) {
+		this.record(new Delivery(change, op));
+	}
+
+	/**
+	 * Record a change to the operations by queueing the delivery for materialization and advancing the version
+	 *
+	 * @param delivery The delivery recording the change
+	 */
+	private void record(Delivery delivery) {
+		this.pending.add(delivery);
+		this.version.incrementAndGet();
+	}
+
+	/**
+	 * Evaluate an accessor of the trial or the Merkle tree once every queued change has been given to them, waiting for any other
+	 * thread which has claimed materialization to finish
+	 *
+	 * @param accessor The accessor to evaluate
+	 * @return The value of the accessor
+	 */
+	private <T> T exclusive(Supplier<T> accessor) {
+		if (this.isOwner()) {
+			this.drain();
+			return accessor.get();
+		}
+
+		this.claim();
+
+		try {
+			this.owner = Thread.currentThread();
+			this.drain();
+			return accessor.get();
+		} finally {
+			this.owner = null;
+			this.release();
+		}
+	}
+
+	/**
+	 * Evaluate an accessor of the trial or the Merkle tree once every queued change has been given to them, provided no other
+	 * thread has claimed materialization
+	 *
+	 * @param accessor The accessor to evaluate
+	 * @return The value of the accessor, or empty when another thread has claimed materialization
+	 */
+	private <T> Optional<T> attempt(Supplier<T> accessor) {
+		if (this.isOwner()) {
+			this.drain();
+			return Optional.ofNullable(accessor.get());
+		} else if (!this.materializing.compareAndSet(false, true)) {
+			return Optional.empty();
+		}
+
+		try {
+			this.owner = Thread.currentThread();
+			this.drain();
+			return Optional.ofNullable(accessor.get());
+		} finally {
+			this.owner = null;
+			this.release();
+		}
+	}
+
+	/**
+	 * Retrieve state published as of the current version of the operations.  When the state published is out of date, the
+	 * calling thread publishes it anew if no other thread has claimed materialization, and is otherwise served the state published
+	 * earlier.  Only when nothing has yet been published does a reader wait for another to materialize, after which it publishes
+	 * the state itself unless that published is current.
+	 *
+	 * @param published The reference through which the state is published
+	 * @param version Function retrieving the version of the operations reflected by published state
+	 * @param copier Function copying the state as of the given version of the operations, called having claimed materialization
+	 * @return The state published
+	 */
+	private <T> T getPublished(AtomicReference<T> published, ToLongFunction<T> version, LongFunction<T> copier) {
+		T current = published.get();
+
+		if (null != current && version.applyAsLong(current) == this.version.get()) {
+			return current;
+		}
+
+		Optional<T> rv = this.attempt(() -> this.publish(published, copier));
+
+		if (rv.isPresent()) {
+			return rv.get();
+		} else if (null != current) {
+			return current;
+		}
+
+		return this.exclusive(() -> {
+			T latest = published.get();
+			return null != latest && version.applyAsLong(latest) == this.version.get() ? latest : this.publish(published, copier);
+		});
+	}
+
+	/**
+	 * Publish a copy of state as of the current version of the operations.  The calling thread must have claimed materialization.
+	 *
+	 * @param published The reference through which to publish the state
+	 * @param copier Function copying the state as of the given version of the operations
+	 * @return The state published
+	 */
+	private <T> T publish(AtomicReference<T> published, LongFunction<T> copier) {
+		long version = this.version.get();
+		T rv;
+
+		this.drain();
+		rv = copier.apply(version);
+		published.set(rv);
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve a snapshot reflecting the current version of the operations, materializing it when no other thread is doing so
+	 *
+	 * @return A snapshot of the materialized CRDT
+	 */
+	private Snapshot getSnapshot() {
+		return this.getPublished(this.snapshot, Snapshot::getVersion,
+				version -> new Snapshot(version, super.getDocument(Long.MAX_VALUE), this::isEffective));
+	}
+
+	/**
+	 * Retrieve a copy of state of the trial or the Merkle tree reflecting the current version of the operations, copying it when no
+	 * other thread has claimed materialization
+	 *
+	 * @param published The reference through which the copy is published
+	 * @param copier Supplier of a copy of the state, called having claimed materialization
+	 * @return The copy of the state
+	 */
+	private <T> T getCopy(AtomicReference<Copy<T>> published, Supplier<T> copier) {
+		return this.getPublished(published, Copy::getVersion, version -> new Copy<>(version, copier.get())).getValue();
+	}
+
+	/**
+	 * Materialize the document as of the given time from a copy of the operations, apart from the trial.  The sets are copied
+	 * before the base, so that an operation folded meanwhile is found in the base should it be missing from the copies.
+	 *
+	 * @param timestamp The time as of which to materialize the document
+	 * @return The document as of the given time
+	 */
+	private JsonNode replay(long timestamp) {
+		Collection<Operation> addset = new ArrayList<>(this.getAddView());
+		Collection<Operation> remset = new ArrayList<>(this.getRemView());
+		LastWriteWins replica = new LastWriteWins(addset, remset, this.getBase());
+
+		replica.setCheckpointSpacing(this.getCheckpointOperations(), this.getCheckpointInterval());
+		replica.setUndoDepth(this.getUndoDepth());
+
+		return replica.getDocument(timestamp);
+	}
+
+	/**
+	 * Determine whether an effective operation of the given type is processed by the underlying LastWriteWins trial.  The calling
+	 * thread must have claimed materialization.
+	 *
+	 * @param type The OperationType to check
+	 * @return True exactly when an effective operation of the given type is processed
+	 */
+	private boolean isEffective(OperationType type) {
+		switch (type) {
+		case CREATE:
+			return super.isCreated();
+		case READ:
+			return super.isRead();
+		case UPDATE:
+			return super.isUpdated();
+		case DELETE:
+			return super.isDeleted();
+		default:
+			return false;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getDocument()
+	 */
+	@Override
+	@JsonIgnore
+	public JsonNode getDocument() {
+		return this.getSnapshot().getDocument();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getDocument(long)
+	 */
+	@Override
+	@JsonIgnore
+	public JsonNode getDocument(long timestamp) {
+		if (Long.MAX_VALUE == timestamp) {
+			return this.getDocument();
+		}
+
+		Optional<Copy<JsonNode>> rv = this.attempt(() -> new Copy<>(this.version.get(), super.getDocument(timestamp)));
+
+		return rv.isPresent() ? rv.get().getValue() : this.replay(timestamp);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isCreated()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isCreated() {
+		return this.getSnapshot().isEffective(OperationType.CREATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isRead()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isRead() {
+		return this.getSnapshot().isEffective(OperationType.READ);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isUpdated()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isUpdated() {
+		return this.getSnapshot().isEffective(OperationType.UPDATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#isDeleted()
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isDeleted() {
+		return this.getSnapshot().isEffective(OperationType.DELETE);
+	}
+
+	/**
+	 * Get a copy of the list of invalid operations for the current configuration
+	 * @return List of invalid operations
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getInvalidOperations() {
+		return this.getCopy(this.invalidCopy, () -> Collections.unmodifiableList(new ArrayList<>(super.getInvalidOperations())));
+	}
+
+	/**
+	 * Get a copy of the list of effective operations for the current configuration
+	 * @return List of effective operations
+	 */
+	@Override
+	@JsonIgnore
+	public Collection<Operation> getEffectiveOperations() {
+		return this.getCopy(this.effectiveCopy, () -> Collections.unmodifiableList(new ArrayList<>(super.getEffectiveOperations())));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#setCheckpointSpacing(int, long)
+	 */
+	@Override
+	public void setCheckpointSpacing(int operations, long interval) {
+		this.exclusive(() -> {
+			super.setCheckpointSpacing(operations, interval);
+			return null;
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#setUndoDepth(int)
+	 */
+	@Override
+	public void setUndoDepth(int depth) {
+		this.exclusive(() -> {
+			super.setUndoDepth(depth);
+			return null;
+		});
+	}
+
+	/**
+	 * Fold the causally stable operations into the base document once materialization is claimed.  The Merkle tree continues to
+	 * cover the operations folded.  Operations at or before the horizon delivered afterward are repeats, and are ignored.
+	 *
+	 * @see com.cyberfront.crdt.LastWriteWins#fold(long)
+	 */
+	@Override
+	public long fold(long horizon) {
+		return this.exclusive(() -> {
+			long rv = super.fold(horizon);
+			this.version.incrementAndGet();
+			return rv;
+		});
+	}
+
+	/**
+	 * Determine whether an operation inserted into the log follows the horizon of the base.  A fold publishes its horizon before
+	 * discarding the operations it folded, so an operation inserted after checking an earlier horizon is either discarded by the
+	 * fold or found here to be at or before the new one, in which case it is a repeat and is discarded again.
+	 *
+	 * @param op The operation inserted
+	 * @return True exactly when the operation follows the horizon of the base
+	 */
+	private boolean isUnfolded(Operation op) {
+		long horizon = this.getBase().getHorizon();
+
+		if (op.getTimestamp() > horizon) {
+			return true;
+		}
+
+		this.getLog().discard(horizon);
+		return false;
+	}
+
+	/**
+	 * Insert an operation to the ADD set without locking, queueing it for materialization when it is new to the ADD set
+	 *
+	 * @param op The operation to add to the ADD set
+	 */
+	@Override
+	protected void addOperation(Operation op) {
+		if (null != op && op.getTimestamp() > this.getBase().getHorizon() && this.getLog().add(op) && this.isUnfolded(op)) {
+			this.record(Change.ADD, op);
+		}
+	}
+
+	/**
+	 * Insert an operation to the REMOVE set without locking, queueing it for materialization when it is new to the REMOVE set
+	 *
+	 * @param op The operation to add to the REMOVE set
+	 */
+	@Override
+	protected void remOperation(Operation op) {
+		if (null != op && op.getTimestamp() > this.getBase().getHorizon() && this.getLog().remove(op) && this.isUnfolded(op)) {
+			this.record(Change.REMOVE, op);
+		}
+	}
+
+	/**
+	 * Retrieve a copy of the Merkle tree summarizing the ADD and REMOVE sets.  The tree is maintained incrementally by the thread
+	 * claiming materialization as it gives that thread the queued deliveries, so it is copied rather than rebuilt, and the copy is
+	 * published so that readers need not claim materialization for it.
+	 * @return A copy of the Merkle tree summarizing the ADD and REMOVE sets
+	 */
+	@Override
+	@JsonIgnore
+	public MerkleTree getMerkleTree() {
+		return new MerkleTree(this.getCopy(this.merkleCopy, () -> new MerkleTree(this.merkle)));
+	}
+
+	/**
+	 * Merge the given ADD and REMOVE sets without locking.  The operations new to this CRDT are queued for materialization as a
+	 * single change, so they are given to the trial together once materialization is next claimed.
+	 *
+	 * @see com.cyberfront.crdt.LastWriteWins#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	protected long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		List<Operation> added = new ArrayList<>();
+		List<Operation> removed = new ArrayList<>();
+
+		long horizon = this.getBase().getHorizon();
+
+		for (Operation op : addset) {
+			if (op.getTimestamp() > horizon && this.getLog().add(op) && this.isUnfolded(op)) {
+				added.add(op);
+			}
+		}
+
+		for (Operation op : remset) {
+			if (op.getTimestamp() > horizon && this.getLog().remove(op) && this.isUnfolded(op)) {
+				removed.add(op);
+			}
+		}
+
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			this.record(new Delivery(added, removed));
+		}
+
+		return added.size() + removed.size();
+	}
+
+	/**
+	 * Remove all operations once materialization is claimed.  Operations delivered while the CRDT is cleared may or may not survive.
+	 */
+	@Override
+	public void clear() {
+		this.exclusive(() -> {
+			super.clear();
+			this.merkle.clear();
+			this.version.incrementAndGet();
+			return null;
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.LastWriteWins#getSegment()
+	 */
+	@Override
+	protected String getSegment() {
+		return this.exclusive(() -> super.getSegment() + ",\"version\":" + this.version.get());
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt;
+
+import com.cyberfront.crdt.operation.OperationManager;
+
+/**
+ * The OperationJournal interface receives each operation pushed into a CRDTManager before it is applied, so that the operations can
+ * be recorded durably and the CRDT rebuilt from them later.  Journals report failures to record an operation by throwing an
+ * unchecked exception, in which case the operation is not applied.
+ */
+@FunctionalInterface
+public interface OperationJournal {
+	/**
+	 * Record an operation about to be pushed into a CRDTManager
+	 *
+	 * @param mgr The operation manager to record
+	 */
+	void record(OperationManager mgr);
+}
@@ -22,15 +22,32 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TreeSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
 
+import com.cyberfront.crdt.operation.MerkleTree;
 import com.cyberfront.crdt.operation.Operation.OperationType;
 import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.OperationLog;
+import com.cyberfront.crdt.operation.OperationSketch;
+import com.cyberfront.crdt.operation.SortedOperationLog;
+import com.cyberfront.crdt.operation.VersionVector;
 import com.cyberfront.crdt.support.Support;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 /**
  * This is an abstract class which defines a Two Set CRDT.  One set contains operations to use, called an ADD set, and the other contains
@@ -38,6 +55,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * That is, if an element is contained in the REMOVE set it will not be used if it is in the ADD set, regardless of when it was added to the
  * ADD set.
  */
+@JsonSerialize(using = OperationTwoSet.Serializer.class)
 public abstract class OperationTwoSet extends AbstractCRDT {
 	/** Property label for the add set property */
 	protected static final String ADDSET = "addset"; 
@@ -45,15 +63,68 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	/** Property label for the remove set property */
 	protected static final String REMSET = "remset"; 
 	
-	/** The ADD set. */
-	@JsonProperty(ADDSET)
-	private Collection<Operation> addSet;
+	/** Flag indicating whether the operations of deserialized CRDTs have their JSON Patches compiled as they are loaded */
+	private static volatile boolean compileOnLoad = false;
+
+	/** Supplier of the operation log in which each new CRDT stores its ADD and REMOVE sets */
+	private static volatile Supplier<OperationLog> logFactory = SortedOperationLog::new;
+
+	/** The operation log holding the ADD and REMOVE sets */
+	private final OperationLog log;
+
+	/**
+	 * Merkle tree summarizing the ADD and REMOVE sets, built when first requested and maintained as operations arrive thereafter.
+	 * Readers sharing a lock may build it concurrently, so it is published only once built.
+	 */
+	private volatile MerkleTree merkle = null;
+
+	/**
+	 * The Serializer class writes the ADD and REMOVE sets of a two set CRDT directly from its operation log to the generator, producing
+	 * the same JSON as the default bean serialization without first collecting the sets through their property accessors
+	 */
+	public static class Serializer extends StdSerializer<OperationTwoSet> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Default constructor for the serializer
+		 */
+		public Serializer() {
+			super(OperationTwoSet.class);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.fasterxml.jackson.databind.ser.std.StdSerializer#serialize(java.lang.Object, com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider)
+		 */
+		@Override
+		public void serialize(OperationTwoSet value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject(value);
+			value.writeSets(gen, provider);
+			gen.writeEndObject();
+		}
 
-	/** The REMOVE set. */
-	private Collection<Operation> remSet;
+		/* (non-Javadoc)
+		 * @see com.fasterxml.jackson.databind.JsonSerializer#serializeWithType(java.lang.Object, com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider, com.fasterxml.jackson.databind.jsontype.TypeSerializer)
+		 */
+		@Override
+		public void serializeWithType(OperationTwoSet value, JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
+			WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(value, JsonToken.START_OBJECT));
+			value.writeSets(gen, provider);
+			typeSer.writeTypeSuffix(gen, typeId);
+		}
+	}
 	
 	/** Default constructor for the two set instance... no fields are initialized */
-	public OperationTwoSet() { }
+	public OperationTwoSet() {
+		this(logFactory.get());
+	}
+
+	/**
+	 * Constructor for an empty two set instance storing its operations in the given log rather than one from the log factory
+	 * @param log The operation log to hold the ADD and REMOVE sets
+	 */
+	protected OperationTwoSet(OperationLog log) {
+		this.log = log;
+	}
 
 	/**
 	 * Copy constructor which duplicates the state of the given CRDT instance
@@ -71,8 +142,80 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	@JsonCreator
 	public OperationTwoSet(@JsonProperty(ADDSET) Collection<Operation> addset,
 						   @JsonProperty(REMSET) Collection<Operation> remset) {
-		this.getAddSet().addAll(addset);
-		this.getRemSet().addAll(remset);
+		this(logFactory.get(), addset, remset);
+	}
+
+	/**
+	 * Constructor to specifically define the add and remove sets, storing them in the given log rather than one from the log factory.
+	 * The sets are loaded with a single merge, which is linear in their size when they are presented in operation order, as they are
+	 * when read back from the serialized form of a CRDT.
+	 * @param log The operation log to hold the ADD and REMOVE sets
+	 * @param addset Add set to use in the constructed CRDT
+	 * @param remset Remove set to use in the constructed CRDT
+	 */
+	protected OperationTwoSet(OperationLog log, Collection<Operation> addset, Collection<Operation> remset) {
+		this(log);
+
+		if (isCompileOnLoad()) {
+			Operation.compile(addset);
+		}
+
+		this.log.merge(addset, remset);
+	}
+
+	/**
+	 * Determine whether the operations of deserialized CRDTs have their JSON Patches compiled as they are loaded
+	 *
+	 * @return True exactly when JSON Patches are compiled as CRDTs are loaded
+	 */
+	public static boolean isCompileOnLoad() {
+		return compileOnLoad;
+	}
+
+	/**
+	 * Set whether the operations of deserialized CRDTs have their JSON Patches compiled as they are loaded.  Compiling eagerly moves
+	 * the cost of parsing the patches to the time a CRDT is loaded, which suits loading many CRDTs in bulk ahead of processing them.
+	 * Otherwise each patch is compiled the first time it is processed.
+	 *
+	 * @param compile True to compile JSON Patches as CRDTs are loaded; false to compile them on first use
+	 */
+	public static void setCompileOnLoad(boolean compile) {
+		compileOnLoad = compile;
+	}
+
+	/**
+	 * Retrieve the supplier of the operation log in which each new CRDT stores its ADD and REMOVE sets
+	 *
+	 * @return The supplier of the operation log for each new CRDT
+	 */
+	public static Supplier<OperationLog> getLogFactory() {
+		return logFactory;
+	}
+
+	/**
+	 * Set the supplier of the operation log in which each new CRDT stores its ADD and REMOVE sets.  CRDTs already constructed
+	 * retain the log they were constructed with.  SortedOperationLog is used by default; ArrayOperationLog searches the keys of
+	 * the operation order in primitive arrays without touching the operations themselves, and TreeOperationLog keeps insertion
+	 * logarithmic however far out of order operations arrive.
+	 *
+	 * @param factory The supplier of the operation log for each new CRDT
+	 */
+	public static void setLogFactory(Supplier<OperationLog> factory) {
+		if (null == factory) {
+			throw new IllegalArgumentException("Operation log factory must not be null");
+		}
+
+		logFactory = factory;
+	}
+
+	/**
+	 * Retrieve the operation log holding the ADD and REMOVE sets.  Derived classes use this to store operations without the
+	 * processing performed by addOperation and remOperation.
+	 *
+	 * @return The operation log holding the ADD and REMOVE sets
+	 */
+	protected OperationLog getLog() {
+		return this.log;
 	}
 
 	/**
@@ -81,11 +224,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @return the ADD set
 	 */
 	private Collection<Operation> getAddSet() {
-		if (null == this.addSet) {
-			this.addSet = new TreeSet<>();
-		}
-		
-		return this.addSet;
+		return this.log.getAddSet();
 	}
 
 	/**
@@ -94,28 +233,29 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @return the REMOVE set
 	 */
 	private Collection<Operation> getRemSet() {
-		if (null == this.remSet) {
-			this.remSet = new TreeSet<>();
-		}
-		return this.remSet;
+		return this.log.getRemSet();
 	}
 	
 	/**
-	 * Generate and retrieve a copy of the add set for public consumption
-	 * @return A copy of the add set
+	 * Retrieve a read only view of the add set for public consumption.  Operations are immutable, so the view shares them with
+	 * the add set rather than copying them, and reflects any operations added later.  A caller which traverses it while the CRDT
+	 * may change must copy it first.
+	 * @return A read only view of the add set
 	 */
 	@JsonProperty(ADDSET)
-	public Collection<Operation> copyAddSet() {
-		return Operation.copy(this.getAddSet());
+	public Collection<Operation> getAddView() {
+		return this.getAddSet();
 	}
 
 	/**
-	 * Generate and retrieve a copy of the remove set for public consumption
-	 * @return A copy of the remove set
+	 * Retrieve a read only view of the remove set for public consumption.  Operations are immutable, so the view shares them with
+	 * the remove set rather than copying them, and reflects any operations removed later.  A caller which traverses it while the
+	 * CRDT may change must copy it first.
+	 * @return A read only view of the remove set
 	 */
 	@JsonProperty(REMSET)
-	public Collection<Operation> copyRemSet() {
-		return Operation.copy(this.getRemSet());
+	public Collection<Operation> getRemView() {
+		return this.getRemSet();
 	}
 
 	/**
@@ -128,6 +268,16 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 		return this.getAddSet().size();
 	}
 
+	/**
+	 * Retrieve the number of elements of the given type in the Add Set
+	 *
+	 * @param type The OperationType of the elements to count
+	 * @return The number of elements of the given type in the Add Set
+	 */
+	public long getAddCount(OperationType type) {
+		return this.log.getAddCount(type);
+	}
+
 	/**
 	 * Retrieve the number of elements in the Remove Set 
 	 * 
@@ -137,6 +287,16 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	public long getRemCount() {
 		return this.getRemSet().size();
 	}
+
+	/**
+	 * Retrieve the number of elements of the given type in the Remove Set
+	 *
+	 * @param type The OperationType of the elements to count
+	 * @return The number of elements of the given type in the Remove Set
+	 */
+	public long getRemCount(OperationType type) {
+		return this.log.getRemCount(type);
+	}
 	
 	/**
 	 * Retrieve the number of elements in the final operation set 
@@ -145,16 +305,67 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@JsonIgnore
 	public long getOperationCount() {
-		return this.getOpsSet().size();
+		long rv = 0;
+
+		for (OperationType type : OperationType.values()) {
+			rv += this.log.getOpsCount(type);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve the number of elements of the given type in the final operation set
+	 *
+	 * @param type The OperationType of the elements to count
+	 * @return The number of elements of the given type in the final operation set
+	 */
+	public long getOperationCount(OperationType type) {
+		return this.log.getOpsCount(type);
 	}
 	
+	/**
+	 * Write the ADD and REMOVE sets as the fields of the JSON object being generated for this CRDT, each operation with its type
+	 * information as the default serialization of an operation would write it
+	 *
+	 * @param gen The generator to which to write the fields
+	 * @param provider The provider from which to obtain the serializer for operations
+	 * @throws IOException when the generator fails to write
+	 */
+	protected void writeSets(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		JsonSerializer<Object> serializer = provider.findTypedValueSerializer(Operation.class, true, null);
+
+		writeSet(gen, provider, serializer, ADDSET, this.getAddSet());
+		writeSet(gen, provider, serializer, REMSET, this.getRemSet());
+	}
+
+	/**
+	 * Write a set of operations as an array field of the JSON object being generated
+	 *
+	 * @param gen The generator to which to write the field
+	 * @param provider The provider passed to the operation serializer
+	 * @param serializer The serializer for operations
+	 * @param name The name of the field
+	 * @param operations The operations to write
+	 * @throws IOException when the generator fails to write
+	 */
+	private static void writeSet(JsonGenerator gen, SerializerProvider provider, JsonSerializer<Object> serializer, String name, Collection<Operation> operations) throws IOException {
+		gen.writeArrayFieldStart(name);
+
+		for (Operation op : operations) {
+			serializer.serialize(op, gen, provider);
+		}
+
+		gen.writeEndArray();
+	}
+
 	/**
 	 * Insert an operation to the ADD set 
 	 *
 	 * @param op The operation to add to the ADD set
 	 */
 	protected void addOperation(Operation op) {
-		this.getAddSet().add(op);
+		this.insertAdd(op);
 	}
 	
 	/**
@@ -163,40 +374,245 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @param op The operation to add to the REMOVE set
 	 */
 	protected void remOperation(Operation op) {
-		this.getRemSet().add(op);
+		this.insertRem(op);
+	}
+
+	/**
+	 * Insert an operation to the ADD set of the operation log, bypassing any overriding behavior of addOperation
+	 *
+	 * @param op The operation to add to the ADD set
+	 */
+	private void insertAdd(Operation op) {
+		if (this.log.add(op) && null != this.merkle) {
+			this.merkle.recordAdded(op);
+		}
+	}
+
+	/**
+	 * Insert an operation to the REMOVE set of the operation log, bypassing any overriding behavior of remOperation
+	 *
+	 * @param op The operation to add to the REMOVE set
+	 */
+	private void insertRem(Operation op) {
+		if (this.log.remove(op) && null != this.merkle) {
+			this.merkle.recordRemoved(op);
+		}
 	}
 	
 	/**
-	 * This private static function returns a set resulting from removing all of the elements on the RHS from the set on the LHS
+	 * Merge the ADD and REMOVE sets of another two set CRDT into those of this one, as when bringing a replica which has been out of
+	 * contact up to date.  The sets are combined in a single pass where the operation log supports it, rather than inserting each
+	 * operation individually.
+	 *
+	 * @param other The CRDT whose operations to merge into this one
+	 * @return The number of operations which were not already members of the set into which they were merged
+	 */
+	public long merge(OperationTwoSet other) {
+		return this == other ? 0 : this.merge(other.getAddView(), other.getRemView());
+	}
+
+	/**
+	 * Merge the given ADD and REMOVE sets, each presented in operation order, into those of this CRDT
+	 *
+	 * @param addset Operations to merge into the ADD set
+	 * @param remset Operations to merge into the REMOVE set
+	 * @return The number of operations which were not already members of the set into which they were merged
+	 */
+	protected long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		if (null != this.merkle) {
+			for (Operation op : addset) {
+				if (!this.isAdded(op)) {
+					this.merkle.recordAdded(op);
+				}
+			}
+
+			for (Operation op : remset) {
+				if (!this.isRemoved(op)) {
+					this.merkle.recordRemoved(op);
+				}
+			}
+		}
+
+		return this.log.merge(addset, remset);
+	}
+
+	/**
+	 * Create the Merkle tree to which the operations of the ADD and REMOVE sets are added as the tree is built.  Derived classes which
+	 * discard operations seed it with those discarded, so the tree continues to cover them.
+	 *
+	 * @return The Merkle tree from which to build the summary of the ADD and REMOVE sets
+	 */
+	protected MerkleTree createMerkleTree() {
+		return new MerkleTree();
+	}
+
+	/**
+	 * Create the version vector to which the operations of the ADD and REMOVE sets are added as the vector is built.  Derived classes
+	 * which discard operations seed it with those discarded, so the vector continues to cover them.
 	 *
-	 * @param lhs The left hand side of the difference operator
-	 * @param rhs The right hand side of the difference operator
-	 * @return The set of elements resulting from removing all of the elements in RHS from LHS
-	 */
-	private static Collection<Operation> diff(Collection<Operation> lhs, Collection<Operation> rhs) {
-		Collection<Operation> rv = new TreeSet<>();
-		rv.addAll(lhs);
-		rv.removeAll(rhs);
+	 * @return The version vector from which to build the summary of the ADD and REMOVE sets
+	 */
+	protected VersionVector createVersionVector() {
+		return new VersionVector();
+	}
+
+	/**
+	 * Retrieve the Merkle tree summarizing the ADD and REMOVE sets, by which replicas locate the ranges of timestamps in which their
+	 * operations differ.  The tree is built from the operations held when first requested, and is then maintained as each operation
+	 * arrives.
+	 *
+	 * @return The Merkle tree summarizing the ADD and REMOVE sets
+	 */
+	@JsonIgnore
+	public MerkleTree getMerkleTree() {
+		if (null == this.merkle) {
+			MerkleTree tree = this.createMerkleTree();
+
+			for (Operation op : this.getAddSet()) {
+				tree.recordAdded(op);
+			}
+
+			for (Operation op : this.getRemSet()) {
+				tree.recordRemoved(op);
+			}
+
+			this.merkle = tree;
+		}
+
+		return this.merkle;
+	}
+
+	/**
+	 * Summarize the operations of this CRDT as the runs of counters of each origin in each of the ADD and REMOVE sets, from which
+	 * another replica determines which of its operations this one lacks
+	 *
+	 * @return The version vector summarizing the operations of this CRDT
+	 */
+	@JsonIgnore
+	public VersionVector getVersionVector() {
+		VersionVector rv = this.createVersionVector();
+
+		for (Operation op : this.getAddView()) {
+			rv.recordAdded(op);
+		}
+
+		for (Operation op : this.getRemView()) {
+			rv.recordRemoved(op);
+		}
+
 		return rv;
 	}
+
+	/**
+	 * Build a sketch of the ADD and REMOVE sets, from which another replica with a sketch of the same size recovers the operations
+	 * by which the two differ, provided they differ by no more than a fraction of its cells
+	 *
+	 * @param cells Number of cells in the sketch
+	 * @return The sketch of the ADD and REMOVE sets
+	 */
+	public OperationSketch getSketch(int cells) {
+		return OperationSketch.of(cells, this.getAddView(), this.getRemView());
+	}
+
+	/**
+	 * Retrieve the operations of the ADD set which the replica summarized by the given version vector has not seen
+	 *
+	 * @param summary The version vector summarizing the operations of the other replica
+	 * @return A read only list of the operations of the ADD set unseen by the other replica, in operation order
+	 */
+	public Collection<Operation> getAddDelta(VersionVector summary) {
+		List<Operation> rv = new ArrayList<>();
+
+		for (Operation op : this.getAddView()) {
+			if (!summary.isAdded(op)) {
+				rv.add(op);
+			}
+		}
+
+		return Collections.unmodifiableList(rv);
+	}
+
+	/**
+	 * Retrieve the operations of the REMOVE set which the replica summarized by the given version vector has not seen
+	 *
+	 * @param summary The version vector summarizing the operations of the other replica
+	 * @return A read only list of the operations of the REMOVE set unseen by the other replica, in operation order
+	 */
+	public Collection<Operation> getRemDelta(VersionVector summary) {
+		List<Operation> rv = new ArrayList<>();
+
+		for (Operation op : this.getRemView()) {
+			if (!summary.isRemoved(op)) {
+				rv.add(op);
+			}
+		}
+
+		return Collections.unmodifiableList(rv);
+	}
+
+	/**
+	 * Determine whether the given operation is contained in the ADD set
+	 *
+	 * @param op The operation to look for in the ADD set
+	 * @return True exactly when the operation is an element of the ADD set
+	 */
+	protected boolean isAdded(Operation op) {
+		return this.log.isAdded(op);
+	}
+
+	/**
+	 * Determine whether the given operation is contained in the REMOVE set
+	 *
+	 * @param op The operation to look for in the REMOVE set
+	 * @return True exactly when the operation is an element of the REMOVE set
+	 */
+	protected boolean isRemoved(Operation op) {
+		return this.log.isRemoved(op);
+	}
 	
 	/**
-	 * This method returns the collection of elements in the ADD set after those in the REMOVE set have been
+	 * This method returns a read only view of the elements in the ADD set after those in the REMOVE set have been
 	 * removed.
 	 *
 	 * @return The operations which are active in this Two Set CRDT
 	 */
 	@JsonIgnore
 	public Collection<Operation> getOpsSet() {
-		return diff(this.getAddSet(), this.getRemSet());
+		return this.log.getOpsSet();
+	}
+
+	/**
+	 * Retrieve the active operations with timestamps later than the one given, in operation order
+	 *
+	 * @param timestamp The timestamp which the operations retrieved must follow
+	 * @return A read only collection of the active operations later than the given timestamp
+	 */
+	@JsonIgnore
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		return this.log.getOpsAfter(timestamp);
+	}
+
+	/**
+	 * Discard the operations with timestamps no later than the one given from both the ADD and REMOVE sets, once they are no longer
+	 * needed.  The Merkle tree summarizing the sets continues to cover the operations discarded, as do those the derived class
+	 * seeds through createMerkleTree and createVersionVector.
+	 *
+	 * @param timestamp The latest timestamp of the operations to discard
+	 * @return The number of operations discarded
+	 */
+	protected long discard(long timestamp) {
+		return this.log.discard(timestamp);
 	}
 
 	/**
 	 * This method removes all elements in both the ADD and REMOVE sets, effectively reseting them to empty.
 	 */
 	public void clear() {
-		this.getAddSet().clear();
-		this.getRemSet().clear();
+		this.log.clear();
+
+		if (null != this.merkle) {
+			this.merkle.clear();
+		}
 	}
 
 	/**
@@ -208,7 +624,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@JsonIgnore
 	public boolean isEmpty() {
-		return (this.getAddSet().isEmpty() && this.getRemSet().isEmpty()) || this.getOpsSet().isEmpty();
+		return 0 == this.getOperationCount();
 	}
 
 	/**
@@ -233,7 +649,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	@Override
 	@JsonIgnore
 	public boolean isCreated() {
-		return doesTypeExist(this.getOpsSet(), OperationType.CREATE);
+		return 0 < this.getOperationCount(OperationType.CREATE);
 	}
 
 	/* (non-Javadoc)
@@ -242,7 +658,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	@Override
 	@JsonIgnore
 	public boolean isRead() {
-		return doesTypeExist(this.getOpsSet(), OperationType.READ);
+		return 0 < this.getOperationCount(OperationType.READ);
 	}
 
 	/* (non-Javadoc)
@@ -251,7 +667,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	@Override
 	@JsonIgnore
 	public boolean isUpdated() {
-		return doesTypeExist(this.getOpsSet(), OperationType.UPDATE);
+		return 0 < this.getOperationCount(OperationType.UPDATE);
 	}
 
 	/* (non-Javadoc)
@@ -260,7 +676,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	@Override
 	@JsonIgnore
 	public boolean isDeleted() {
-		return doesTypeExist(this.getOpsSet(), OperationType.DELETE);
+		return 0 < this.getOperationCount(OperationType.DELETE);
 	}
 	
 	/**
@@ -287,7 +703,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countCreated() {
-		return countOperations(this.getOpsSet(), OperationType.CREATE);
+		return this.getOperationCount(OperationType.CREATE);
 	}
 	
 	/* (non-Javadoc)
@@ -295,7 +711,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countRead() {
-		return countOperations(this.getOpsSet(), OperationType.READ);
+		return this.getOperationCount(OperationType.READ);
 	}
 	
 	/* (non-Javadoc)
@@ -303,7 +719,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countUpdate() {
-		return countOperations(this.getOpsSet(), OperationType.UPDATE);
+		return this.getOperationCount(OperationType.UPDATE);
 	}
 	
 	/* (non-Javadoc)
@@ -311,7 +727,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countDelete() {
-		return countOperations(this.getOpsSet(), OperationType.DELETE);
+		return this.getOperationCount(OperationType.DELETE);
 	}
 	
 	/* (non-Javadoc)
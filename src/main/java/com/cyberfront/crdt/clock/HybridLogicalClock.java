@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The HybridLogicalClock class is a TimestampSource issuing hybrid logical clock timestamps.  Each timestamp encodes physical time
+ * in milliseconds in its upper 48 bits and a logical counter in its lower 16 bits, so timestamps fit the existing long timestamp
+ * of an Operation, compare as plain longs, and remain close to wall clock time.
+ *
+ * A timestamp issued is the current physical time with a zero counter when that exceeds everything issued or observed so far, and
+ * otherwise the greatest timestamp issued or observed plus one.  Timestamps therefore never run backwards when the physical clock
+ * does, and an operation generated after another was received is always stamped later than it.  Should the counter overflow within
+ * a millisecond it carries into the physical time, which the clock then runs ahead of until physical time catches up.
+ *
+ * An observed timestamp whose physical time is further ahead of the local clock than the maximum drift allowed is ignored, so a
+ * single node with a badly set clock can not drag every other clock into the future.
+ */
+public class HybridLogicalClock implements TimestampSource {
+	/** Number of bits of the timestamp holding the logical counter */
+	public static final int LOGICAL_BITS = 16;
+
+	/** Mask selecting the logical counter of a timestamp */
+	public static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+
+	/** Default maximum amount, in milliseconds, by which an observed timestamp may lead the local physical clock */
+	private static final long MAX_DRIFT = 60000L;
+
+	/** Logger for writing data to the log. */
+	private static final Logger logger = LogManager.getLogger(HybridLogicalClock.class);
+
+	/** Source of physical time in milliseconds */
+	private final LongSupplier physical;
+
+	/** Maximum amount, in milliseconds, by which an observed timestamp may lead the local physical clock */
+	private final long maxDrift;
+
+	/** The greatest timestamp issued or observed */
+	private final AtomicLong latest = new AtomicLong(0);
+
+	/**
+	 * Default constructor for a clock following the system time
+	 */
+	public HybridLogicalClock() {
+		this(System::currentTimeMillis, MAX_DRIFT);
+	}
+
+	/**
+	 * Constructor for a clock following the given physical time
+	 *
+	 * @param physical Source of physical time in milliseconds
+	 * @param maxDrift Maximum amount, in milliseconds, by which an observed timestamp may lead the local physical clock
+	 */
+	public HybridLogicalClock(LongSupplier physical, long maxDrift) {
+		if (null == physical || 0 > maxDrift) {
+			throw new IllegalArgumentException("Invalid clock specification: {\"physical\":" + physical + ",\"maxDrift\":" + maxDrift + "}");
+		}
+
+		this.physical = physical;
+		this.maxDrift = maxDrift;
+	}
+
+	/**
+	 * Encode a physical time and logical counter as a timestamp
+	 *
+	 * @param physical Physical time in milliseconds
+	 * @param logical Logical counter
+	 * @return The timestamp encoding the physical time and logical counter
+	 */
+	public static long encode(long physical, long logical) {
+		return (physical << LOGICAL_BITS) | (logical & LOGICAL_MASK);
+	}
+
+	/**
+	 * Extract the physical time in milliseconds from a timestamp
+	 *
+	 * @param timestamp The timestamp to decode
+	 * @return The physical time encoded in the timestamp
+	 */
+	public static long getPhysical(long timestamp) {
+		return timestamp >>> LOGICAL_BITS;
+	}
+
+	/**
+	 * Extract the logical counter from a timestamp
+	 *
+	 * @param timestamp The timestamp to decode
+	 * @return The logical counter encoded in the timestamp
+	 */
+	public static long getLogical(long timestamp) {
+		return timestamp & LOGICAL_MASK;
+	}
+
+	/**
+	 * Retrieve the greatest timestamp issued or observed
+	 *
+	 * @return The greatest timestamp issued or observed
+	 */
+	public long getLatest() {
+		return this.latest.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.clock.TimestampSource#next()
+	 */
+	@Override
+	public long next() {
+		long now = encode(this.physical.getAsLong(), 0);
+		return this.latest.updateAndGet(prev -> Math.max(prev + 1, now));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.clock.TimestampSource#observe(long)
+	 */
+	@Override
+	public boolean observe(long timestamp) {
+		if (timestamp <= this.latest.get()) {
+			return true;
+		}
+
+		long now = this.physical.getAsLong();
+
+		if (getPhysical(timestamp) - now > this.maxDrift) {
+			logger.warn("Ignoring timestamp " + timestamp + " leading physical time " + now + " by more than " + this.maxDrift + " ms");
+			return false;
+		}
+
+		this.latest.accumulateAndGet(timestamp, Math::max);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		long timestamp = this.getLatest();
+		return "{\"physical\":" + getPhysical(timestamp) + ",\"logical\":" + getLogical(timestamp) + ",\"maxDrift\":" + this.maxDrift + "}";
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.clock;
+
+/**
+ * The TimestampSource interface defines a source of timestamps for newly generated operations.  A source is told of the
+ * timestamps of operations received from elsewhere, so that the operations it subsequently stamps follow them.
+ */
+public interface TimestampSource {
+	/**
+	 * Issue the timestamp for a newly generated operation.  Each timestamp issued exceeds every timestamp previously issued or
+	 * observed.
+	 *
+	 * @return The timestamp for a newly generated operation
+	 */
+	public abstract long next();
+
+	/**
+	 * Observe the timestamp of an operation received from elsewhere, so that timestamps subsequently issued follow it
+	 *
+	 * @param timestamp The timestamp of the operation received
+	 * @return True exactly when the timestamp was accepted; false when it was ignored as implausible
+	 */
+	public abstract boolean observe(long timestamp);
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.cyberfront.crdt.operation.Operation.OperationType;
+
+/**
+ * The AbstractOperationLog class implements the bookkeeping common to all operation logs, counting the operations of each type in
+ * each set and presenting the sets as read only views.  Derived classes provide the storage itself.
+ */
+public abstract class AbstractOperationLog implements OperationLog {
+	/**
+	 * The Membership enumeration identifies the sets of operations a log presents
+	 */
+	protected enum Membership {
+		/** Operations in the ADD set */
+		ADDED,
+
+		/** Operations in the REMOVE set */
+		REMOVED,
+
+		/** Operations in the ADD set but not the REMOVE set */
+		ACTIVE
+	}
+
+	/**
+	 * The View class presents the operations of a log with a given membership as a read only set
+	 */
+	private final class View extends AbstractSet<Operation> {
+		/** The membership of the operations presented */
+		private final Membership membership;
+
+		/**
+		 * Instantiates a new view
+		 *
+		 * @param membership The membership of the operations presented
+		 */
+		private View(Membership membership) {
+			this.membership = membership;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#iterator()
+		 */
+		@Override
+		public Iterator<Operation> iterator() {
+			return AbstractOperationLog.this.iterator(this.membership);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			return (int) AbstractOperationLog.this.count(this.membership);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#contains(java.lang.Object)
+		 */
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Operation)) {
+				return false;
+			}
+
+			Operation op = (Operation) o;
+
+			switch (this.membership) {
+			case ADDED:
+				return isAdded(op);
+			case REMOVED:
+				return isRemoved(op);
+			default:
+				return isAdded(op) && !isRemoved(op);
+			}
+		}
+	}
+
+	/** Number of operations of each type in the ADD set, indexed by the ordinal of the OperationType */
+	private final long[] addCounts = new long[OperationType.values().length];
+
+	/** Number of operations of each type in the REMOVE set, indexed by the ordinal of the OperationType */
+	private final long[] remCounts = new long[OperationType.values().length];
+
+	/** Number of operations of each type in the ADD set but not the REMOVE set, indexed by the ordinal of the OperationType */
+	private final long[] opsCounts = new long[OperationType.values().length];
+
+	/** Read only view of the ADD set */
+	private final Collection<Operation> addView = new View(Membership.ADDED);
+
+	/** Read only view of the REMOVE set */
+	private final Collection<Operation> remView = new View(Membership.REMOVED);
+
+	/** Read only view of the active operations */
+	private final Collection<Operation> opsView = new View(Membership.ACTIVE);
+
+	/**
+	 * Store the operation as a member of the ADD set
+	 *
+	 * @param op The operation to store
+	 * @return True exactly when the operation was not already a member of the ADD set
+	 */
+	protected abstract boolean insertAdd(Operation op);
+
+	/**
+	 * Store the operation as a member of the REMOVE set
+	 *
+	 * @param op The operation to store
+	 * @return True exactly when the operation was not already a member of the REMOVE set
+	 */
+	protected abstract boolean insertRem(Operation op);
+
+	/**
+	 * Discard all stored operations
+	 */
+	protected abstract void erase();
+
+	/**
+	 * Discard the stored operations with timestamps no later than the one given
+	 *
+	 * @param timestamp The latest timestamp of the operations to discard
+	 * @return The number of operations discarded
+	 */
+	protected abstract long truncate(long timestamp);
+
+	/**
+	 * Iterate over the stored operations with the given membership in operation order.  The iterator does not support removal.
+	 *
+	 * @param membership The membership of the operations to iterate over
+	 * @return Iterator over the operations with the given membership
+	 */
+	protected abstract Iterator<Operation> iterator(Membership membership);
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#add(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean add(Operation op) {
+		if (!this.insertAdd(op)) {
+			return false;
+		}
+
+		++this.addCounts[op.getType().ordinal()];
+		if (!this.isRemoved(op)) {
+			++this.opsCounts[op.getType().ordinal()];
+		}
+
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#remove(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean remove(Operation op) {
+		if (!this.insertRem(op)) {
+			return false;
+		}
+
+		++this.remCounts[op.getType().ordinal()];
+		if (this.isAdded(op)) {
+			--this.opsCounts[op.getType().ordinal()];
+		}
+
+		return true;
+	}
+
+	/**
+	 * Record the operations of the given sets one at a time.  Derived classes which can combine sorted operations in a single pass
+	 * override this.
+	 *
+	 * @see com.cyberfront.crdt.operation.OperationLog#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	public long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		long rv = 0;
+
+		for (Operation op : addset) {
+			rv += this.add(op) ? 1 : 0;
+		}
+
+		for (Operation op : remset) {
+			rv += this.remove(op) ? 1 : 0;
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getAddSet()
+	 */
+	@Override
+	public Collection<Operation> getAddSet() {
+		return this.addView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getRemSet()
+	 */
+	@Override
+	public Collection<Operation> getRemSet() {
+		return this.remView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsSet()
+	 */
+	@Override
+	public Collection<Operation> getOpsSet() {
+		return this.opsView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getAddCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getAddCount(OperationType type) {
+		return this.addCounts[type.ordinal()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getRemCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getRemCount(OperationType type) {
+		return this.remCounts[type.ordinal()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getOpsCount(OperationType type) {
+		return this.opsCounts[type.ordinal()];
+	}
+
+	/**
+	 * Recount the operations of each type in each set from the stored operations, for derived classes which store operations
+	 * without passing them through add and remove
+	 */
+	protected void recount() {
+		Arrays.fill(this.addCounts, 0);
+		Arrays.fill(this.remCounts, 0);
+		Arrays.fill(this.opsCounts, 0);
+
+		for (Iterator<Operation> it = this.iterator(Membership.ADDED); it.hasNext(); ) {
+			++this.addCounts[it.next().getType().ordinal()];
+		}
+
+		for (Iterator<Operation> it = this.iterator(Membership.REMOVED); it.hasNext(); ) {
+			++this.remCounts[it.next().getType().ordinal()];
+		}
+
+		for (Iterator<Operation> it = this.iterator(Membership.ACTIVE); it.hasNext(); ) {
+			++this.opsCounts[it.next().getType().ordinal()];
+		}
+	}
+
+	/**
+	 * Count the operations with the given membership
+	 *
+	 * @param membership The membership of the operations to count
+	 * @return The number of operations with the given membership
+	 */
+	private long count(Membership membership) {
+		long[] counts = Membership.ADDED == membership ? this.addCounts
+				: Membership.REMOVED == membership ? this.remCounts
+				: this.opsCounts;
+		long rv = 0;
+
+		for (long count : counts) {
+			rv += count;
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#discard(long)
+	 */
+	@Override
+	public long discard(long timestamp) {
+		long rv = this.truncate(timestamp);
+
+		if (0 < rv) {
+			this.recount();
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#clear()
+	 */
+	@Override
+	public void clear() {
+		this.erase();
+		Arrays.fill(this.addCounts, 0);
+		Arrays.fill(this.remCounts, 0);
+		Arrays.fill(this.opsCounts, 0);
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The ArrayOperationLog class stores the operations of both the ADD and REMOVE sets in a single sorted log laid out as parallel
+ * arrays, one per field of the operation order, with set membership tracked by a pair of bit sets.  Searches and comparisons touch
+ * only these primitive arrays, rather than the Operation instances, their boxed timestamps and UUIDs, and a tree node in each set
+ * holding them.
+ * 
+ * The Operation instances are kept in a further parallel array and presented as they were stored, so they retain their cached
+ * hashes and compiled JSON Patches from one replay to the next.  Operations arriving in order are appended in constant amortized
+ * time; those arriving out of order are spliced in by shifting the operations which follow them.
+ */
+public class ArrayOperationLog extends AbstractOperationLog {
+	/** Initial capacity of the log */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** Number of operations in the log */
+	private int size = 0;
+
+	/** Timestamps of the operations */
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+
+	/** Most significant bits of the operation identifiers */
+	private long[] mostSigBits = new long[INITIAL_CAPACITY];
+
+	/** Least significant bits of the operation identifiers */
+	private long[] leastSigBits = new long[INITIAL_CAPACITY];
+
+	/** Ordinals of the operation types */
+	private byte[] types = new byte[INITIAL_CAPACITY];
+
+	/** Hash codes of the JSON Patches of UPDATE operations, which break ties in the operation order */
+	private int[] hashes = new int[INITIAL_CAPACITY];
+
+	/** The operations themselves, presented as stored */
+	private Operation[] operations = new Operation[INITIAL_CAPACITY];
+
+	/** Membership of each operation in the ADD set */
+	private final BitSet added = new BitSet();
+
+	/** Membership of each operation in the REMOVE set */
+	private final BitSet removed = new BitSet();
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertAdd(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertAdd(Operation op) {
+		return this.insert(op, this.added);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertRem(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertRem(Operation op) {
+		return this.insert(op, this.removed);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isAdded(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isAdded(Operation op) {
+		int index = this.find(op);
+		return 0 <= index && this.added.get(index);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isRemoved(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isRemoved(Operation op) {
+		int index = this.find(op);
+		return 0 <= index && this.removed.get(index);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsAfter(long)
+	 */
+	@Override
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		int low = this.after(timestamp);
+		List<Operation> rv = new ArrayList<>(this.size - low);
+
+		for (int i = low; i < this.size; ++i) {
+			if (this.isMember(i, Membership.ACTIVE)) {
+				rv.add(this.get(i));
+			}
+		}
+
+		return Collections.unmodifiableList(rv);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#erase()
+	 */
+	@Override
+	protected void erase() {
+		Arrays.fill(this.operations, 0, this.size, null);
+		this.added.clear();
+		this.removed.clear();
+		this.size = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#truncate(long)
+	 */
+	@Override
+	protected long truncate(long timestamp) {
+		int count = this.after(timestamp);
+
+		if (0 < count) {
+			int tail = this.size - count;
+			BitSet added = this.added.get(count, this.size);
+			BitSet removed = this.removed.get(count, this.size);
+
+			System.arraycopy(this.timestamps, count, this.timestamps, 0, tail);
+			System.arraycopy(this.mostSigBits, count, this.mostSigBits, 0, tail);
+			System.arraycopy(this.leastSigBits, count, this.leastSigBits, 0, tail);
+			System.arraycopy(this.types, count, this.types, 0, tail);
+			System.arraycopy(this.hashes, count, this.hashes, 0, tail);
+			System.arraycopy(this.operations, count, this.operations, 0, tail);
+			Arrays.fill(this.operations, tail, this.size, null);
+
+			this.added.clear();
+			this.added.or(added);
+			this.removed.clear();
+			this.removed.or(removed);
+			this.size = tail;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Locate the first operation with a timestamp later than the one given by binary search
+	 *
+	 * @param timestamp The timestamp which the operation located must follow
+	 * @return Position of the first operation later than the timestamp, or the size of the log when there is none
+	 */
+	private int after(long timestamp) {
+		int low = 0;
+		int high = this.size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.timestamps[mid] <= timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#iterator(com.cyberfront.crdt.operation.AbstractOperationLog.Membership)
+	 */
+	@Override
+	protected Iterator<Operation> iterator(Membership membership) {
+		return new Iterator<Operation>() {
+			private int next = this.advance(0);
+
+			private int advance(int from) {
+				int rv = from;
+				while (rv < size && !isMember(rv, membership)) {
+					++rv;
+				}
+				return rv;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.next < size;
+			}
+
+			@Override
+			public Operation next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				Operation rv = get(this.next);
+				this.next = this.advance(this.next + 1);
+				return rv;
+			}
+		};
+	}
+
+	/**
+	 * Determine whether the operation at the given position has the given membership
+	 *
+	 * @param index Position of the operation in the log
+	 * @param membership The membership to test
+	 * @return True exactly when the operation has the given membership
+	 */
+	private boolean isMember(int index, Membership membership) {
+		switch (membership) {
+		case ADDED:
+			return this.added.get(index);
+		case REMOVED:
+			return this.removed.get(index);
+		default:
+			return this.added.get(index) && !this.removed.get(index);
+		}
+	}
+
+	/**
+	 * Retrieve the operation at the given position
+	 *
+	 * @param index Position of the operation in the log
+	 * @return The operation at the given position
+	 */
+	private Operation get(int index) {
+		return this.operations[index];
+	}
+
+	/**
+	 * Record the operation as a member of the given set, storing it first if it is not already in the log
+	 *
+	 * @param op The operation to record
+	 * @param membership The set in which to record the operation
+	 * @return True exactly when the operation was not already a member of the given set
+	 */
+	private boolean insert(Operation op, BitSet membership) {
+		int index = this.find(op);
+
+		if (0 > index) {
+			index = -index - 1;
+			this.splice(index, op);
+		} else if (membership.get(index)) {
+			return false;
+		}
+
+		membership.set(index);
+		return true;
+	}
+
+	/**
+	 * Locate the operation in the log by binary search.  The search checks the last operation first, since operations mostly
+	 * arrive in order.
+	 *
+	 * @param op The operation to locate
+	 * @return Position of the operation if present; otherwise -(p + 1) where p is the position at which it belongs
+	 */
+	private int find(Operation op) {
+		if (0 == this.size || 0 < this.compare(op, this.size - 1)) {
+			return -this.size - 1;
+		}
+
+		int low = 0;
+		int high = this.size - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = this.compare(op, mid);
+
+			if (cmp > 0) {
+				low = mid + 1;
+			} else if (cmp < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -low - 1;
+	}
+
+	/**
+	 * Compare an operation with the operation at the given position, consistently with Operation.compareTo
+	 *
+	 * @param op The operation to compare
+	 * @param index Position of the operation in the log to compare against
+	 * @return Negative, zero or positive as the given operation precedes, matches or follows the operation at the position
+	 */
+	private int compare(Operation op, int index) {
+		int rv = Long.compare(op.getTimestamp(), this.timestamps[index]);
+		rv = 0 == rv ? Integer.compare(op.getType().ordinal(), this.types[index]) : rv;
+		rv = 0 == rv ? Long.compare(op.getId().getMostSignificantBits(), this.mostSigBits[index]) : rv;
+		rv = 0 == rv ? Long.compare(op.getId().getLeastSignificantBits(), this.leastSigBits[index]) : rv;
+		rv = 0 == rv ? Integer.compare(op.getPayloadHash(), this.hashes[index]) : rv;
+
+		return rv;
+	}
+
+	/**
+	 * Store an operation at the given position, shifting those which follow it
+	 *
+	 * @param index Position at which to store the operation
+	 * @param op The operation to store
+	 */
+	private void splice(int index, Operation op) {
+		if (this.size == this.timestamps.length) {
+			int capacity = 2 * this.size;
+			this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+			this.mostSigBits = Arrays.copyOf(this.mostSigBits, capacity);
+			this.leastSigBits = Arrays.copyOf(this.leastSigBits, capacity);
+			this.types = Arrays.copyOf(this.types, capacity);
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.operations = Arrays.copyOf(this.operations, capacity);
+		}
+
+		int tail = this.size - index;
+
+		if (0 < tail) {
+			System.arraycopy(this.timestamps, index, this.timestamps, index + 1, tail);
+			System.arraycopy(this.mostSigBits, index, this.mostSigBits, index + 1, tail);
+			System.arraycopy(this.leastSigBits, index, this.leastSigBits, index + 1, tail);
+			System.arraycopy(this.types, index, this.types, index + 1, tail);
+			System.arraycopy(this.hashes, index, this.hashes, index + 1, tail);
+			System.arraycopy(this.operations, index, this.operations, index + 1, tail);
+			shift(this.added, index, this.size);
+			shift(this.removed, index, this.size);
+		}
+
+		this.timestamps[index] = op.getTimestamp();
+		this.mostSigBits[index] = op.getId().getMostSignificantBits();
+		this.leastSigBits[index] = op.getId().getLeastSignificantBits();
+		this.types[index] = (byte) op.getType().ordinal();
+		this.hashes[index] = op.getPayloadHash();
+		this.operations[index] = op;
+		++this.size;
+	}
+
+	/**
+	 * Shift the bits of a bit set from the given position up by one place, leaving the bit at the position clear
+	 *
+	 * @param bits The bit set to shift
+	 * @param index Position of the first bit to shift
+	 * @param size Number of bits in use
+	 */
+	private static void shift(BitSet bits, int index, int size) {
+		for (int i = bits.previousSetBit(size - 1); i >= index; i = bits.previousSetBit(i - 1)) {
+			bits.clear(i);
+			bits.set(i + 1);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.cyberfront.crdt.operation.Operation.OperationType;
+
+/**
+ * The ConcurrentOperationLog class stores the ADD and REMOVE sets in a single concurrent skip list, mapping each operation to
+ * flags recording its membership.  Operations are added and removed from any number of threads without locking: an operation's
+ * entry is inserted with a compare and set of the skip list, and its membership is changed with a compare and set of its flags.
+ * The counts of each type in each set are maintained atomically according to the membership each compare and set replaced.
+ *
+ * Views and counts are weakly consistent.  They reflect every change completed before they are read, and may or may not reflect
+ * changes in progress.  Clearing the log is not atomic with respect to operations added or removed while it is cleared.
+ */
+public class ConcurrentOperationLog implements OperationLog {
+	/** Flag marking an operation as a member of the ADD set */
+	private static final int ADDED = 1;
+
+	/** Flag marking an operation as a member of the REMOVE set */
+	private static final int REMOVED = 2;
+
+	/** Flag marking an entry as discarded by clear, after which its flags no longer change */
+	private static final int ERASED = 4;
+
+	/**
+	 * The View class presents the operations whose flags, under a mask, match a given value as a read only set
+	 */
+	private final class View extends AbstractSet<Operation> {
+		/** Mask selecting the flags examined */
+		private final int mask;
+
+		/** Value the examined flags must have */
+		private final int match;
+
+		/** Counts of the operations presented, indexed by the ordinal of their OperationType */
+		private final AtomicLongArray counts;
+
+		/**
+		 * Instantiates a new view
+		 *
+		 * @param mask Mask selecting the flags examined
+		 * @param match Value the examined flags must have
+		 * @param counts Counts of the operations presented
+		 */
+		private View(int mask, int match, AtomicLongArray counts) {
+			this.mask = mask;
+			this.match = match;
+			this.counts = counts;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#iterator()
+		 */
+		@Override
+		public Iterator<Operation> iterator() {
+			return select(states, this.mask, this.match).iterator();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			long rv = 0;
+
+			for (int i = 0; i < this.counts.length(); ++i) {
+				rv += this.counts.get(i);
+			}
+
+			return (int) Math.max(0, rv);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#contains(java.lang.Object)
+		 */
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Operation && this.match == (flags((Operation) o) & this.mask);
+		}
+	}
+
+	/** Membership flags of each operation in the log, in operation order */
+	private final ConcurrentNavigableMap<Operation, AtomicInteger> states = new ConcurrentSkipListMap<>();
+
+	/** Number of operations of each type in the ADD set, indexed by the ordinal of the OperationType */
+	private final AtomicLongArray addCounts = new AtomicLongArray(OperationType.values().length);
+
+	/** Number of operations of each type in the REMOVE set, indexed by the ordinal of the OperationType */
+	private final AtomicLongArray remCounts = new AtomicLongArray(OperationType.values().length);
+
+	/** Number of operations of each type in the ADD set but not the REMOVE set, indexed by the ordinal of the OperationType */
+	private final AtomicLongArray opsCounts = new AtomicLongArray(OperationType.values().length);
+
+	/** Read only view of the ADD set */
+	private final Collection<Operation> addView = new View(ADDED | ERASED, ADDED, this.addCounts);
+
+	/** Read only view of the REMOVE set */
+	private final Collection<Operation> remView = new View(REMOVED | ERASED, REMOVED, this.remCounts);
+
+	/** Read only view of the active operations */
+	private final Collection<Operation> opsView = new View(ADDED | REMOVED | ERASED, ADDED, this.opsCounts);
+
+	/**
+	 * Select the operations whose flags, under the given mask, match the given value
+	 *
+	 * @param states Membership flags of the operations to select from
+	 * @param mask Mask selecting the flags examined
+	 * @param match Value the examined flags must have
+	 * @return The operations selected, in operation order
+	 */
+	private static Stream<Operation> select(NavigableMap<Operation, AtomicInteger> states, int mask, int match) {
+		return states.entrySet().stream()
+				.filter(entry -> match == (entry.getValue().get() & mask))
+				.map(Map.Entry::getKey);
+	}
+
+	/**
+	 * Retrieve the membership flags of the given operation
+	 *
+	 * @param op The operation whose flags to retrieve
+	 * @return The membership flags of the operation, or zero when it is not in the log
+	 */
+	private int flags(Operation op) {
+		AtomicInteger state = this.states.get(op);
+		return null == state ? 0 : state.get();
+	}
+
+	/**
+	 * Set the given membership flag of an operation, inserting its entry if necessary, and update the counts according to the
+	 * flags replaced.  Should the entry be discarded by a concurrent clear, the flag is set on a fresh entry.
+	 *
+	 * @param op The operation to mark
+	 * @param flag The membership flag to set
+	 * @return True exactly when the flag was not already set
+	 */
+	private boolean mark(Operation op, int flag) {
+		int type = op.getType().ordinal();
+
+		for (;;) {
+			AtomicInteger state = this.states.computeIfAbsent(op, key -> new AtomicInteger());
+			int prev = state.getAndUpdate(flags -> 0 != (flags & ERASED) ? flags : flags | flag);
+
+			if (0 != (prev & ERASED)) {
+				this.states.remove(op, state);
+			} else if (0 != (prev & flag)) {
+				return false;
+			} else if (ADDED == flag) {
+				this.addCounts.incrementAndGet(type);
+				if (0 == (prev & REMOVED)) {
+					this.opsCounts.incrementAndGet(type);
+				}
+				return true;
+			} else {
+				this.remCounts.incrementAndGet(type);
+				if (0 != (prev & ADDED)) {
+					this.opsCounts.decrementAndGet(type);
+				}
+				return true;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#add(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean add(Operation op) {
+		return this.mark(op, ADDED);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#remove(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean remove(Operation op) {
+		return this.mark(op, REMOVED);
+	}
+
+	/**
+	 * Mark the operations of the given sets one at a time, since each insertion into the skip list is logarithmic whatever the
+	 * order of arrival
+	 *
+	 * @see com.cyberfront.crdt.operation.OperationLog#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	public long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		long rv = 0;
+
+		for (Operation op : addset) {
+			rv += this.mark(op, ADDED) ? 1 : 0;
+		}
+
+		for (Operation op : remset) {
+			rv += this.mark(op, REMOVED) ? 1 : 0;
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isAdded(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isAdded(Operation op) {
+		return this.addView.contains(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isRemoved(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isRemoved(Operation op) {
+		return this.remView.contains(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getAddSet()
+	 */
+	@Override
+	public Collection<Operation> getAddSet() {
+		return this.addView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getRemSet()
+	 */
+	@Override
+	public Collection<Operation> getRemSet() {
+		return this.remView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsSet()
+	 */
+	@Override
+	public Collection<Operation> getOpsSet() {
+		return this.opsView;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsAfter(long)
+	 */
+	@Override
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		NavigableMap<Operation, AtomicInteger> tail = 0 > timestamp ? this.states
+				: Long.MAX_VALUE == timestamp ? Collections.emptyNavigableMap()
+				: this.states.tailMap(new Operation(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), OperationType.CREATE, null, timestamp + 1), true);
+
+		return Collections.unmodifiableList(select(tail, ADDED | REMOVED | ERASED, ADDED).collect(Collectors.toList()));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getAddCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getAddCount(OperationType type) {
+		return this.addCounts.get(type.ordinal());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getRemCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getRemCount(OperationType type) {
+		return this.remCounts.get(type.ordinal());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsCount(com.cyberfront.crdt.operation.Operation.OperationType)
+	 */
+	@Override
+	public long getOpsCount(OperationType type) {
+		return this.opsCounts.get(type.ordinal());
+	}
+
+	/**
+	 * Discard the entries of the operations with timestamps no later than the one given, in the same way clear discards every entry
+	 *
+	 * @see com.cyberfront.crdt.operation.OperationLog#discard(long)
+	 */
+	@Override
+	public long discard(long timestamp) {
+		NavigableMap<Operation, AtomicInteger> head = Long.MAX_VALUE == timestamp ? this.states
+				: this.states.headMap(new Operation(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), OperationType.CREATE, null, timestamp + 1), false);
+		long rv = 0;
+
+		for (Map.Entry<Operation, AtomicInteger> entry : head.entrySet()) {
+			rv += this.erase(entry) ? 1 : 0;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Discard every entry in the log.  Each entry is first marked as erased, which fixes its flags, so that the counts can be
+	 * reduced by exactly the memberships it held.
+	 */
+	@Override
+	public void clear() {
+		for (Map.Entry<Operation, AtomicInteger> entry : this.states.entrySet()) {
+			this.erase(entry);
+		}
+	}
+
+	/**
+	 * Discard an entry of the log, marking it as erased and reducing the counts by the memberships it held
+	 *
+	 * @param entry The entry to discard
+	 * @return True exactly when this call erased the entry, rather than a concurrent one
+	 */
+	private boolean erase(Map.Entry<Operation, AtomicInteger> entry) {
+		int prev = entry.getValue().getAndUpdate(flags -> flags | ERASED);
+
+		if (0 == (prev & ERASED)) {
+			int type = entry.getKey().getType().ordinal();
+
+			if (0 != (prev & ADDED)) {
+				this.addCounts.decrementAndGet(type);
+			}
+
+			if (0 != (prev & REMOVED)) {
+				this.remCounts.decrementAndGet(type);
+			}
+
+			if (ADDED == (prev & (ADDED | REMOVED))) {
+				this.opsCounts.decrementAndGet(type);
+			}
+		}
+
+		this.states.remove(entry.getKey(), entry.getValue());
+		return 0 == (prev & ERASED);
+	}
+}
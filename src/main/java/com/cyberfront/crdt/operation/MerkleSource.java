@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.Map;
+
+/**
+ * The MerkleSource interface provides the digests of a Merkle tree, such as that of a remote replica, for comparison with a local
+ * MerkleTree.  A replica exposes its tree through this interface by relaying each request to the replica holding the tree.
+ */
+public interface MerkleSource {
+	/**
+	 * Retrieve the digest of the root of the tree
+	 *
+	 * @return The digest of the root
+	 */
+	public abstract long getRoot();
+
+	/**
+	 * Retrieve the digests of the children of the node with the given prefix at the given level which have operations beneath them
+	 *
+	 * @param level The level of the parent node, the root being at level zero
+	 * @param prefix The prefix identifying the parent node within its level
+	 * @return The digest of each child with operations beneath it, keyed by the prefix of the child
+	 */
+	public abstract Map<Long, Long> getChildren(int level, long prefix);
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.cyberfront.crdt.support.Support;
+
+/**
+ * The MerkleTree class summarizes the ADD and REMOVE sets of a CRDT as a tree of digests over ranges of operation timestamps, so that
+ * two replicas locate the ranges in which their operations differ by comparing digests level by level rather than comparing their
+ * operations.  Timestamps are grouped into buckets of a fixed width, forming the leaves of the tree, and each interior node combines
+ * the digests of the FANOUT nodes beneath it.  Digests are combined by exclusive or, so that recording an operation updates the single
+ * path from its leaf to the root without revisiting the other operations beneath them.
+ *
+ * Only nodes with operations beneath them are stored.  Comparing two trees descends one level per exchange, so replicas find the
+ * buckets in which they differ in at most getDepth() round trips, each carrying the digests of the children of the nodes found to
+ * differ.  The depth covers only the significant bits of a bucket, those of a timestamp above the bits the bucket spans.
+ */
+public class MerkleTree implements MerkleSource {
+	/** Number of bits of a bucket selecting the child at each level */
+	public static final int FANOUT_BITS = 4;
+
+	/** Number of children of each interior node */
+	public static final int FANOUT = 1 << FANOUT_BITS;
+
+	/** Default number of low order timestamp bits spanned by a bucket, so that a bucket spans a millisecond of HybridLogicalClock time */
+	public static final int BUCKET_BITS = 16;
+
+	/** Salt distinguishing the digests of operations in the ADD set */
+	private static final long ADDED = 0x6a09e667f3bcc908L;
+
+	/** Salt distinguishing the digests of operations in the REMOVE set */
+	private static final long REMOVED = 0xbb67ae8584caa73bL;
+
+	/** Number of low order timestamp bits spanned by a bucket */
+	private final int bucketBits;
+
+	/** Number of levels beneath the root, the deepest of which holds the buckets themselves */
+	private final int depth;
+
+	/** Digests of the nodes of each level with operations beneath them, keyed by prefix; the first entry holds the root */
+	private final List<Map<Long, Long>> levels = new ArrayList<>();
+
+	/**
+	 * Default constructor for an empty tree with buckets of the default width
+	 */
+	public MerkleTree() {
+		this(BUCKET_BITS);
+	}
+
+	/**
+	 * Constructor for an empty tree with buckets spanning the given number of low order timestamp bits.  Replicas comparing trees
+	 * must use the same bucket width.
+	 *
+	 * @param bucketBits Number of low order timestamp bits spanned by a bucket
+	 */
+	public MerkleTree(int bucketBits) {
+		if (0 > bucketBits || Long.SIZE <= bucketBits) {
+			throw new IllegalArgumentException("Bucket bits out of range: " + bucketBits);
+		}
+
+		this.bucketBits = bucketBits;
+		this.depth = (Long.SIZE - bucketBits + FANOUT_BITS - 1) / FANOUT_BITS;
+
+		for (int level = 0; level <= this.depth; ++level) {
+			this.levels.add(new HashMap<>());
+		}
+	}
+
+	/**
+	 * Copy constructor duplicating the digests of the given tree
+	 *
+	 * @param src The tree to copy
+	 */
+	public MerkleTree(MerkleTree src) {
+		this.bucketBits = src.bucketBits;
+		this.depth = src.depth;
+
+		for (Map<Long, Long> level : src.levels) {
+			this.levels.add(new HashMap<>(level));
+		}
+	}
+
+	/**
+	 * Retrieve the number of low order timestamp bits spanned by a bucket
+	 *
+	 * @return The number of low order timestamp bits spanned by a bucket
+	 */
+	public int getBucketBits() {
+		return this.bucketBits;
+	}
+
+	/**
+	 * Retrieve the number of levels beneath the root, which is the most round trips comparing two trees takes
+	 *
+	 * @return The number of levels beneath the root
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Record an operation as a member of the ADD set
+	 *
+	 * @param op The operation to record
+	 */
+	public void recordAdded(Operation op) {
+		this.toggle(op.getTimestamp() >>> this.bucketBits, digest(op, ADDED));
+	}
+
+	/**
+	 * Record an operation as a member of the REMOVE set
+	 *
+	 * @param op The operation to record
+	 */
+	public void recordRemoved(Operation op) {
+		this.toggle(op.getTimestamp() >>> this.bucketBits, digest(op, REMOVED));
+	}
+
+	/**
+	 * Retrieve the digests of the buckets with operations in them, from which recordBuckets restores the tree, as when the operations
+	 * themselves are no longer held
+	 *
+	 * @return The digest of each bucket with operations in it, keyed by the bucket
+	 */
+	public Map<Long, Long> getBuckets() {
+		return Collections.unmodifiableMap(new HashMap<>(this.levels.get(this.depth)));
+	}
+
+	/**
+	 * Record the digests of buckets retrieved from another tree with the same bucket width, as though their operations were recorded
+	 *
+	 * @param buckets The digest of each bucket, keyed by the bucket
+	 */
+	public void recordBuckets(Map<Long, Long> buckets) {
+		for (Map.Entry<Long, Long> entry : buckets.entrySet()) {
+			this.toggle(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Discard the digests of all operations
+	 */
+	public void clear() {
+		for (Map<Long, Long> level : this.levels) {
+			level.clear();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.MerkleSource#getRoot()
+	 */
+	@Override
+	public long getRoot() {
+		return this.levels.get(0).getOrDefault(0L, 0L);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.MerkleSource#getChildren(int, long)
+	 */
+	@Override
+	public Map<Long, Long> getChildren(int level, long prefix) {
+		if (0 > level || this.depth <= level) {
+			throw new IllegalArgumentException("Level out of range: " + level);
+		}
+
+		Map<Long, Long> children = this.levels.get(level + 1);
+		Map<Long, Long> rv = new HashMap<>();
+
+		for (int i = 0; i < FANOUT; ++i) {
+			long child = (prefix << FANOUT_BITS) | i;
+			Long digest = children.get(child);
+
+			if (null != digest) {
+				rv.put(child, digest);
+			}
+		}
+
+		return Collections.unmodifiableMap(rv);
+	}
+
+	/**
+	 * Locate the buckets in which the operations summarized by this tree differ from those summarized by the given source.  The trees
+	 * are descended one level at a time, retrieving from the source only the children of the nodes whose digests differ.
+	 *
+	 * @param source The digests of the tree to compare with this one, which must use the same bucket width
+	 * @return The buckets in which the operations differ, in increasing order
+	 */
+	public NavigableSet<Long> diff(MerkleSource source) {
+		List<Long> frontier = new ArrayList<>();
+
+		if (this.getRoot() != source.getRoot()) {
+			frontier.add(0L);
+		}
+
+		for (int level = 0; level < this.depth && !frontier.isEmpty(); ++level) {
+			List<Long> next = new ArrayList<>();
+
+			for (long prefix : frontier) {
+				Map<Long, Long> local = this.getChildren(level, prefix);
+				Map<Long, Long> remote = source.getChildren(level, prefix);
+				Set<Long> children = new HashSet<>(local.keySet());
+
+				children.addAll(remote.keySet());
+
+				for (long child : children) {
+					if (!local.getOrDefault(child, 0L).equals(remote.getOrDefault(child, 0L))) {
+						next.add(child);
+					}
+				}
+			}
+
+			frontier = next;
+		}
+
+		return new TreeSet<>(frontier);
+	}
+
+	/**
+	 * Retrieve the earliest timestamp in the given bucket
+	 *
+	 * @param bucket The bucket whose earliest timestamp to retrieve
+	 * @return The earliest timestamp in the bucket
+	 */
+	public long getFirstTimestamp(long bucket) {
+		return bucket << this.bucketBits;
+	}
+
+	/**
+	 * Retrieve the latest timestamp in the given bucket
+	 *
+	 * @param bucket The bucket whose latest timestamp to retrieve
+	 * @return The latest timestamp in the bucket
+	 */
+	public long getLastTimestamp(long bucket) {
+		return ((bucket + 1) << this.bucketBits) - 1;
+	}
+
+	/**
+	 * Combine a digest into every node on the path from the given bucket to the root
+	 *
+	 * @param bucket The bucket of the operation
+	 * @param digest The digest of the operation
+	 */
+	private void toggle(long bucket, long digest) {
+		this.levels.get(0).merge(0L, digest, MerkleTree::combine);
+
+		for (int level = 1; level <= this.depth; ++level) {
+			this.levels.get(level).merge(bucket >>> (FANOUT_BITS * (this.depth - level)), digest, MerkleTree::combine);
+		}
+	}
+
+	/**
+	 * Combine two digests, yielding null to discard a node whose digests have cancelled
+	 *
+	 * @param lhs The first digest
+	 * @param rhs The second digest
+	 * @return The combined digest, or null when it is zero
+	 */
+	private static Long combine(Long lhs, Long rhs) {
+		long rv = lhs ^ rhs;
+		return 0 == rv ? null : rv;
+	}
+
+	/**
+	 * Compute the digest of an operation as a member of a set.  The digest depends only on the identifier, timestamp and type of the
+	 * operation, which are the same on every replica, and not on the in-memory form of its JSON Patch.
+	 *
+	 * @param op The operation to digest
+	 * @param salt The salt distinguishing the set of which the operation is a member
+	 * @return The digest of the operation
+	 */
+	private static long digest(Operation op, long salt) {
+		long rv = Support.mix(salt ^ op.getId().getMostSignificantBits());
+		rv = Support.mix(rv ^ op.getId().getLeastSignificantBits());
+		rv = Support.mix(rv ^ op.getTimestamp());
+		return Support.mix(rv ^ op.getType().ordinal());
+	}
+}
@@ -0,0 +1,600 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jsonpatch.JsonPatchException;
+
+/**
+ * The MutablePatch class is a compiled form of an RFC 6902 JSON Patch which is applied to a document in place, rather than to a copy
+ * of it as JsonPatch does.  Each change made to the document is recorded in an UndoRecord, so a patch which fails part way through
+ * leaves the document exactly as it found it, and a patch which succeeds can later be reverted.
+ * 
+ * The semantics of each operation follow those of the JsonPatch implementation, so the two produce equal documents for any patch and
+ * document.  Values are read from the patch through the same reader JsonPatch uses, so a floating point value becomes the same
+ * BigDecimal node either way, and are copied on insertion so the document never shares nodes with the patch.
+ */
+public final class MutablePatch {
+	/** Reference token designating the position past the last element of an array */
+	private static final String LAST_ARRAY_ELEMENT = "-";
+
+	/**
+	 * The Kind enumeration lists the operations defined by RFC 6902
+	 */
+	private enum Kind {
+		ADD, REMOVE, REPLACE, MOVE, COPY, TEST
+	}
+
+	/**
+	 * The Step class holds a single compiled operation of the patch
+	 */
+	private static final class Step {
+		/** The kind of operation */
+		private final Kind kind;
+
+		/** Reference tokens of the target path */
+		private final String[] path;
+
+		/** Reference tokens of the source path for move and copy operations */
+		private final String[] from;
+
+		/** Value used by add, replace and test operations */
+		private final JsonNode value;
+
+		/**
+		 * Constructor to build a compiled operation
+		 *
+		 * @param kind The kind of operation
+		 * @param path Reference tokens of the target path
+		 * @param from Reference tokens of the source path, or null if not applicable
+		 * @param value Value of the operation, or null if not applicable
+		 */
+		private Step(Kind kind, String[] path, String[] from, JsonNode value) {
+			this.kind = kind;
+			this.path = path;
+			this.from = from;
+			this.value = value;
+		}
+	}
+
+	/** The compiled operations of the patch, in order */
+	private final List<Step> steps;
+
+	/**
+	 * Constructor to build a MutablePatch from its compiled operations
+	 *
+	 * @param steps The compiled operations of the patch
+	 */
+	private MutablePatch(List<Step> steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * Compile a JSON Patch from its JSON representation
+	 *
+	 * @param node JSON representation of the patch
+	 * @return The compiled patch
+	 * @throws IOException The representation is not a well formed JSON Patch
+	 */
+	public static MutablePatch fromJson(JsonNode node) throws IOException {
+		if (null == node || !node.isArray()) {
+			throw new IOException("JSON Patch must be an array of operations");
+		}
+
+		List<Step> steps = new ArrayList<>(node.size());
+
+		for (JsonNode element : node) {
+			steps.add(compile(element));
+		}
+
+		return new MutablePatch(steps);
+	}
+
+	/**
+	 * Compile a single operation of a JSON Patch
+	 *
+	 * @param node JSON representation of the operation
+	 * @return The compiled operation
+	 * @throws IOException The representation is not a well formed operation
+	 */
+	private static Step compile(JsonNode node) throws IOException {
+		if (!node.isObject() || !node.path("op").isTextual()) {
+			throw new IOException("JSON Patch operation must be an object with a textual op member");
+		}
+
+		Kind kind;
+
+		switch (node.get("op").textValue()) {
+		case "add":
+			kind = Kind.ADD;
+			break;
+		case "remove":
+			kind = Kind.REMOVE;
+			break;
+		case "replace":
+			kind = Kind.REPLACE;
+			break;
+		case "move":
+			kind = Kind.MOVE;
+			break;
+		case "copy":
+			kind = Kind.COPY;
+			break;
+		case "test":
+			kind = Kind.TEST;
+			break;
+		default:
+			throw new IOException("Unrecognized JSON Patch operation: " + node.get("op").textValue());
+		}
+
+		String[] path = parsePointer(node.get("path"));
+		String[] from = Kind.MOVE == kind || Kind.COPY == kind ? parsePointer(node.get("from")) : null;
+		JsonNode value = null;
+
+		if (Kind.ADD == kind || Kind.REPLACE == kind || Kind.TEST == kind) {
+			value = node.get("value");
+			if (null == value) {
+				throw new IOException("JSON Patch operation " + node.get("op").textValue() + " requires a value");
+			}
+			value = JacksonUtils.getReader().forType(JsonNode.class).readValue(value);
+		}
+
+		return new Step(kind, path, from, value);
+	}
+
+	/**
+	 * Parse a JSON Pointer into its unescaped reference tokens
+	 *
+	 * @param node JSON representation of the pointer
+	 * @return The reference tokens of the pointer
+	 * @throws IOException The representation is not a well formed JSON Pointer
+	 */
+	private static String[] parsePointer(JsonNode node) throws IOException {
+		if (null == node || !node.isTextual()) {
+			throw new IOException("JSON Pointer must be a string");
+		}
+
+		String pointer = node.textValue();
+
+		if (pointer.isEmpty()) {
+			return new String[0];
+		} else if ('/' != pointer.charAt(0)) {
+			throw new IOException("JSON Pointer must be empty or start with '/': " + pointer);
+		}
+
+		String[] rv = pointer.substring(1).split("/", -1);
+
+		for (int i = 0; i < rv.length; ++i) {
+			rv[i] = unescape(rv[i], pointer);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Unescape a single reference token of a JSON Pointer
+	 *
+	 * @param token The escaped reference token
+	 * @param pointer The pointer containing the token, used in error reporting
+	 * @return The unescaped reference token
+	 * @throws IOException The token contains an invalid escape sequence
+	 */
+	private static String unescape(String token, String pointer) throws IOException {
+		if (token.indexOf('~') < 0) {
+			return token;
+		}
+
+		StringBuilder rv = new StringBuilder(token.length());
+
+		for (int i = 0; i < token.length(); ++i) {
+			char c = token.charAt(i);
+			if ('~' != c) {
+				rv.append(c);
+			} else if (i + 1 < token.length() && '0' == token.charAt(i + 1)) {
+				rv.append('~');
+				++i;
+			} else if (i + 1 < token.length() && '1' == token.charAt(i + 1)) {
+				rv.append('/');
+				++i;
+			} else {
+				throw new IOException("Invalid escape sequence in JSON Pointer: " + pointer);
+			}
+		}
+
+		return rv.toString();
+	}
+
+	/**
+	 * Apply the patch to the given document in place, recording each change made in the undo record.  If any operation of the patch
+	 * fails, the changes made by its predecessors are reverted and removed from the undo record before the exception is raised.
+	 *
+	 * @param document The document to patch
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the patched document, which differs from the given document only where the root itself is replaced
+	 * @throws JsonPatchException An operation of the patch could not be applied to the document
+	 */
+	public JsonNode apply(JsonNode document, UndoRecord undo) throws JsonPatchException {
+		int mark = undo.size();
+		JsonNode root = document;
+
+		try {
+			for (Step step : this.steps) {
+				root = apply(step, root, undo);
+			}
+		} catch (JsonPatchException e) {
+			undo.revert(root, mark);
+			throw e;
+		}
+
+		return root;
+	}
+
+	/**
+	 * Apply a single operation to the document in place
+	 *
+	 * @param step The operation to apply
+	 * @param root The root of the document
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the document once the operation is applied
+	 * @throws JsonPatchException The operation could not be applied to the document
+	 */
+	private static JsonNode apply(Step step, JsonNode root, UndoRecord undo) throws JsonPatchException {
+		switch (step.kind) {
+		case ADD:
+			return add(root, step.path, step.value.deepCopy(), undo);
+		case REMOVE:
+			return remove(root, step.path, undo);
+		case REPLACE:
+			return replace(root, step.path, step.value.deepCopy(), undo);
+		case MOVE:
+			return move(root, step.from, step.path, undo);
+		case COPY:
+			return add(root, step.path, require(root, step.from).deepCopy(), undo);
+		case TEST:
+			if (!equivalent(require(root, step.path), step.value)) {
+				throw new JsonPatchException("value differs from expectations");
+			}
+			return root;
+		default:
+			throw new IllegalStateException("Unhandled JSON Patch operation: " + step.kind);
+		}
+	}
+
+	/**
+	 * Add a value at the given path
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the target path
+	 * @param value The value to add, which becomes part of the document
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the document once the value is added
+	 * @throws JsonPatchException The parent of the target path does not exist or is not a container
+	 */
+	private static JsonNode add(JsonNode root, String[] path, JsonNode value, UndoRecord undo) throws JsonPatchException {
+		if (0 == path.length) {
+			undo.replaceRoot(root);
+			return value;
+		}
+
+		JsonNode parent = resolve(root, path, path.length - 1);
+		String token = path[path.length - 1];
+		String[] parentPath = parentOf(path);
+
+		if (null == parent) {
+			throw new JsonPatchException("parent of node to add does not exist");
+		} else if (parent.isObject()) {
+			JsonNode previous = ((ObjectNode) parent).replace(token, value);
+			if (null == previous) {
+				undo.addProperty(parentPath, token);
+			} else {
+				undo.replaceProperty(parentPath, token, previous);
+			}
+		} else if (parent.isArray()) {
+			ArrayNode array = (ArrayNode) parent;
+			int index = LAST_ARRAY_ELEMENT.equals(token) ? array.size() : index(token);
+			if (index > array.size()) {
+				throw new JsonPatchException("no such index in target array");
+			}
+			array.insert(index, value);
+			undo.addElement(parentPath, index);
+		} else {
+			throw new JsonPatchException("parent of path to add to is not a container");
+		}
+
+		return root;
+	}
+
+	/**
+	 * Remove the value at the given path
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the target path
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the document once the value is removed
+	 * @throws JsonPatchException No value exists at the target path
+	 */
+	private static JsonNode remove(JsonNode root, String[] path, UndoRecord undo) throws JsonPatchException {
+		detach(root, path, undo);
+		return 0 == path.length ? MissingNode.getInstance() : root;
+	}
+
+	/**
+	 * Replace the value at the given path
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the target path
+	 * @param value The replacement value, which becomes part of the document
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the document once the value is replaced
+	 * @throws JsonPatchException No value exists at the target path
+	 */
+	private static JsonNode replace(JsonNode root, String[] path, JsonNode value, UndoRecord undo) throws JsonPatchException {
+		require(root, path);
+
+		if (0 == path.length) {
+			undo.replaceRoot(root);
+			return value;
+		}
+
+		JsonNode parent = resolve(root, path, path.length - 1);
+		String token = path[path.length - 1];
+
+		if (parent.isObject()) {
+			undo.replaceProperty(parentOf(path), token, ((ObjectNode) parent).replace(token, value));
+		} else {
+			int index = index(token);
+			undo.replaceElement(parentOf(path), index, ((ArrayNode) parent).set(index, value));
+		}
+
+		return root;
+	}
+
+	/**
+	 * Move the value at one path to another.  The undo record retains the detached value to restore it at the source, so a copy is
+	 * attached at the target; otherwise a document handed out while the value is at the target would share it with the document
+	 * the move is later reverted on.
+	 *
+	 * @param root The root of the document
+	 * @param from Reference tokens of the source path
+	 * @param path Reference tokens of the target path
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The root of the document once the value is moved
+	 * @throws JsonPatchException No value exists at the source path, or the parent of the target path does not exist once it is removed
+	 */
+	private static JsonNode move(JsonNode root, String[] from, String[] path, UndoRecord undo) throws JsonPatchException {
+		if (Arrays.equals(from, path)) {
+			require(root, from);
+			return root;
+		}
+
+		JsonNode value = detach(root, from, undo);
+		return add(0 == from.length ? MissingNode.getInstance() : root, path, value.deepCopy(), undo);
+	}
+
+	/**
+	 * Detach the value at the given path from the document, recording its removal
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the path
+	 * @param undo The record in which to accumulate the inverse of each change made
+	 * @return The value detached
+	 * @throws JsonPatchException No value exists at the path
+	 */
+	private static JsonNode detach(JsonNode root, String[] path, UndoRecord undo) throws JsonPatchException {
+		JsonNode rv = require(root, path);
+
+		if (0 == path.length) {
+			undo.replaceRoot(root);
+			return rv;
+		}
+
+		JsonNode parent = resolve(root, path, path.length - 1);
+		String token = path[path.length - 1];
+
+		if (parent.isObject()) {
+			undo.removeProperty(parentOf(path), token, position((ObjectNode) parent, token), ((ObjectNode) parent).remove(token));
+		} else {
+			int index = index(token);
+			undo.removeElement(parentOf(path), index, ((ArrayNode) parent).remove(index));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve the value at the given path, which must exist
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the path
+	 * @return The value at the path
+	 * @throws JsonPatchException No value exists at the path
+	 */
+	private static JsonNode require(JsonNode root, String[] path) throws JsonPatchException {
+		JsonNode rv = resolve(root, path, path.length);
+
+		if (null == rv || rv.isMissingNode()) {
+			throw new JsonPatchException("no such path in target JSON document");
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Resolve a prefix of the given path against a document
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens of the path
+	 * @param length Number of leading tokens of the path to resolve
+	 * @return The value at the path prefix, or null if none exists
+	 */
+	static JsonNode resolve(JsonNode root, String[] path, int length) {
+		JsonNode rv = root;
+
+		for (int i = 0; i < length && null != rv; ++i) {
+			if (rv.isObject()) {
+				rv = rv.get(path[i]);
+			} else if (rv.isArray()) {
+				int index = parseIndex(path[i]);
+				rv = index < 0 ? null : rv.get(index);
+			} else {
+				rv = null;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Insert a property into an object at the given position among its existing properties
+	 *
+	 * @param object The object into which to insert the property
+	 * @param key Name of the property to insert
+	 * @param index Position of the property once inserted
+	 * @param value Value of the property to insert
+	 */
+	static void insert(ObjectNode object, String key, int index, JsonNode value) {
+		if (index >= object.size()) {
+			object.set(key, value);
+			return;
+		}
+
+		List<Entry<String, JsonNode>> fields = new ArrayList<>(object.size());
+		for (Iterator<Entry<String, JsonNode>> it = object.fields(); it.hasNext();) {
+			fields.add(it.next());
+		}
+
+		object.removeAll();
+		for (int i = 0; i < fields.size(); ++i) {
+			if (i == index) {
+				object.set(key, value);
+			}
+			object.set(fields.get(i).getKey(), fields.get(i).getValue());
+		}
+	}
+
+	/**
+	 * Determine the position of a property among those of an object
+	 *
+	 * @param object The object holding the property
+	 * @param key Name of the property
+	 * @return Position of the property
+	 */
+	private static int position(ObjectNode object, String key) {
+		int rv = 0;
+
+		for (Iterator<String> it = object.fieldNames(); it.hasNext() && !key.equals(it.next());) {
+			++rv;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Build the path of the parent of the given path
+	 *
+	 * @param path Reference tokens of the path
+	 * @return Reference tokens of the parent path
+	 */
+	private static String[] parentOf(String[] path) {
+		return Arrays.copyOf(path, path.length - 1);
+	}
+
+	/**
+	 * Parse a reference token as an array index
+	 *
+	 * @param token The reference token
+	 * @return The array index
+	 * @throws JsonPatchException The token is not an array index
+	 */
+	private static int index(String token) throws JsonPatchException {
+		int rv = parseIndex(token);
+
+		if (rv < 0) {
+			throw new JsonPatchException("reference token is not an array index");
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Parse a reference token as an array index
+	 *
+	 * @param token The reference token
+	 * @return The array index, or -1 if the token is not an array index
+	 */
+	private static int parseIndex(String token) {
+		try {
+			return Integer.parseInt(token);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Determine whether two values are equivalent for the purposes of a test operation, where numbers are compared by value
+	 *
+	 * @param left The first value
+	 * @param right The second value
+	 * @return True exactly when the values are equivalent
+	 */
+	private static boolean equivalent(JsonNode left, JsonNode right) {
+		if (left.isNumber() && right.isNumber()) {
+			return 0 == left.decimalValue().compareTo(right.decimalValue());
+		} else if (left.isArray() && right.isArray()) {
+			if (left.size() != right.size()) {
+				return false;
+			}
+			for (int i = 0; i < left.size(); ++i) {
+				if (!equivalent(left.get(i), right.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		} else if (left.isObject() && right.isObject()) {
+			if (left.size() != right.size()) {
+				return false;
+			}
+			for (Iterator<Entry<String, JsonNode>> it = left.fields(); it.hasNext();) {
+				Entry<String, JsonNode> entry = it.next();
+				JsonNode other = right.get(entry.getKey());
+				if (null == other || !equivalent(entry.getValue(), other)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		return left.equals(right);
+	}
+}
@@ -23,11 +23,15 @@
 package com.cyberfront.crdt.operation;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.Supplier;
 
-import org.apache.commons.lang3.ObjectUtils;
 import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -40,7 +44,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 //import com.flipkart.zjsonpatch.JsonDiff;				// Use this with zjsonpatch
 
@@ -69,6 +72,9 @@ public final class Operation implements Comparable<Operation> {
 
 	/** The ObjectMapper used to create empty JsonNode object to start the chain of JsonDiff derived operations */
 	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/** Supplier of the identifiers of operations generated without the generator of a particular replica */
+	private static volatile Supplier<UUID> idGenerator = new SequentialIdGenerator();
 	
 	/**
 	 * The Enum OperationType lists the types of operations which comprise the types of operations which can 
@@ -105,6 +111,85 @@ public final class Operation implements Comparable<Operation> {
 	@JsonProperty(TIMESTAMP)
 	private final Long timestamp;
 
+	/** The compiled form of the JSON Patch held by UPDATE operations; compiled once, on first use, and shared thereafter */
+	@JsonIgnore
+	private volatile MutablePatch patch;
+
+	/** Hash of the JSON Patch held by UPDATE operations, or zero for other operations; computed once as the operation is constructed */
+	@JsonIgnore
+	private final int payloadHash;
+
+	/** Hash of the whole operation; computed once as the operation is constructed */
+	@JsonIgnore
+	private final int hash;
+
+	/**
+	 * Comparator equating numeric JSON nodes of equal value regardless of their node types, so a JSON Patch compares equal to its own
+	 * serialized form however the reader of that form represents its numbers, as the exact decimals of the binary form and of JSON
+	 * read by JacksonUtils, or the narrower integers and doubles of JSON read by a plain ObjectMapper.  The patch is kept as given,
+	 * so no precision is lost from the values it carries into a document.
+	 */
+	private static final Comparator<JsonNode> NUMERIC_VALUE = (first, second) -> {
+		if (!first.isNumber() || !second.isNumber()) {
+			return first.equals(second) ? 0 : 1;
+		} else if (!isFinite(first) || !isFinite(second)) {
+			return Double.compare(first.doubleValue(), second.doubleValue());
+		}
+
+		return decimal(first).compareTo(decimal(second));
+	};
+
+	/**
+	 * Determine whether a numeric JSON node holds a finite value, as every number but a non-finite float or double does
+	 *
+	 * @param node The numeric JSON node
+	 * @return True exactly when the node holds a finite value
+	 */
+	private static boolean isFinite(JsonNode node) {
+		return !(node.isDouble() || node.isFloat()) || Double.isFinite(node.doubleValue());
+	}
+
+	/**
+	 * Retrieve the exact value of a numeric JSON node holding a finite value.  A float takes the value of its shortest decimal form,
+	 * as its serialized form reads, rather than of the double it widens to.
+	 *
+	 * @param node The numeric JSON node
+	 * @return The value of the node
+	 */
+	private static BigDecimal decimal(JsonNode node) {
+		return node.isFloat() ? new BigDecimal(Float.toString(node.floatValue()))
+				: node.isIntegralNumber() ? new BigDecimal(node.bigIntegerValue()) : node.decimalValue();
+	}
+
+	/**
+	 * Compute the hash of a JSON Patch, or any JSON node within it, from the values of its numbers rather than their node types,
+	 * consistent with comparing patches using NUMERIC_VALUE
+	 *
+	 * @param node The JSON node to hash
+	 * @return The hash of the JSON node
+	 */
+	private static int hashPayload(JsonNode node) {
+		int rv = 0;
+
+		switch (node.getNodeType()) {
+		case NUMBER:
+			return isFinite(node) ? decimal(node).stripTrailingZeros().hashCode() : Double.hashCode(node.doubleValue());
+		case ARRAY:
+			for (JsonNode element : node) {
+				rv = 31 * rv + hashPayload(element);
+			}
+			return rv;
+		case OBJECT:
+			for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+				Map.Entry<String, JsonNode> field = it.next();
+				rv += field.getKey().hashCode() ^ hashPayload(field.getValue());
+			}
+			return rv;
+		default:
+			return node.hashCode();
+		}
+	}
+
 	/**
 	 * This constructor initializes elements of this abstract class instance given an operation and a 
 	 * timestamp associated with executing the operation.
@@ -113,7 +198,7 @@ public final class Operation implements Comparable<Operation> {
 	 * @param timestamp The effective timestamp associated with the execution of this operation
 	 */
 	public Operation(OperationType type, Long timestamp) {
-		this(UUID.randomUUID(), type, null, timestamp);
+		this(generateId(), type, null, timestamp);
 	}
 	
 	/**
@@ -124,16 +209,23 @@ public final class Operation implements Comparable<Operation> {
 	 * @param timestamp The effective time stamp of the operation 
 	 */
 	public Operation(JsonNode op, Long timestamp) {
-		this(UUID.randomUUID(), OperationType.UPDATE, op, timestamp);
+		this(generateId(), OperationType.UPDATE, op, timestamp);
 	}
 
 	/**
-	 * This is essentially a copy constructor for duplicating some source AbstractOperation
+	 * This is essentially a copy constructor for duplicating some source AbstractOperation.  The source was validated as it was
+	 * constructed, so the copy shares its JSON Patch, compiled form and hashes rather than walking the patch again.
 	 *
 	 * @param src The source operation to copy
 	 */
 	public Operation(Operation src) {
-		this(src.getId(), src.getType(), src.getOp(), src.getTimestamp());
+		this.id = src.id;
+		this.type = src.type;
+		this.op = src.op;
+		this.timestamp = src.timestamp;
+		this.patch = src.patch;
+		this.payloadHash = src.payloadHash;
+		this.hash = src.hash;
 	}
 	
 	/**
@@ -156,6 +248,45 @@ public final class Operation implements Comparable<Operation> {
 		if (!this.validate()) {
 			throw new IllegalArgumentException("Operation Failed Validation: " + this.toString());
 		}
+
+		this.payloadHash = null == this.op ? 0 : hashPayload(this.op);
+		this.hash = this.computeHash();
+	}
+
+	/**
+	 * Retrieve the supplier of the identifiers of newly generated operations
+	 *
+	 * @return The supplier of the identifiers of newly generated operations
+	 */
+	public static Supplier<UUID> getIdGenerator() {
+		return idGenerator;
+	}
+
+	/**
+	 * Set the supplier of the identifiers of operations generated without the generator of a particular replica, as by the
+	 * constructors which take no identifier.  This one supplier is shared by every replica in the process, so replicas generating
+	 * operations should each use a generator of their own, as CRDTManager does, rather than rely on it.  A SequentialIdGenerator
+	 * with a randomly chosen node identifier is used by default.  UUID::randomUUID restores fully random identifiers, but makes
+	 * each operation an origin of its own, so a VersionVector then grows with the number of operations rather than of replicas.
+	 * Every identifier supplied must be unique across all nodes.
+	 *
+	 * @param generator The supplier of the identifiers of newly generated operations
+	 */
+	public static void setIdGenerator(Supplier<UUID> generator) {
+		if (null == generator) {
+			throw new IllegalArgumentException("Operation identifier generator must not be null");
+		}
+
+		idGenerator = generator;
+	}
+
+	/**
+	 * Generate an identifier for a new operation
+	 *
+	 * @return An identifier for a new operation
+	 */
+	public static UUID generateId() {
+		return idGenerator.get();
 	}
 
 	/**
@@ -170,6 +301,16 @@ public final class Operation implements Comparable<Operation> {
 		return OperationType.UPDATE.equals(this.getType()) ^ (null == this.getOp());
 	}
 	
+	/**
+	 * Retrieve the hash of the JSON Patch held by an UPDATE operation, which orders UPDATE operations sharing a timestamp and
+	 * identifier.  The hash is computed once, so comparing operations never walks their patches.
+	 *
+	 * @return The hash of the JSON Patch, or zero for operations other than UPDATE
+	 */
+	int getPayloadHash() {
+		return this.payloadHash;
+	}
+
 	/**
 	 * Retrieve the operation ID value
 	 * @return The operation ID value
@@ -272,6 +413,52 @@ public final class Operation implements Comparable<Operation> {
 		return rv;
 	}
 	
+	/**
+	 * Retrieve the compiled JSON Patch for this operation, compiling it on first use.  A compiled patch is immutable, so threads
+	 * racing through the first use may each compile it without harm, and every later use shares the published instance.
+	 *
+	 * @return The compiled JSON Patch, or null if this is not an UPDATE operation
+	 * @throws IOException results when the operation does not hold a valid RFC 6902 JSON Patch
+	 */
+	private MutablePatch getPatch() throws IOException {
+		MutablePatch rv = this.patch;
+
+		if (null == rv && null != this.getOp()) {
+			rv = MutablePatch.fromJson(this.getOp());
+			this.patch = rv;
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Compile the JSON Patch for this operation ahead of its first use.  An operation whose patch cannot be compiled is left
+	 * uncompiled, and will be found invalid when it is processed.
+	 *
+	 * @return True exactly when the operation is ready to be processed without compiling its patch
+	 */
+	public boolean compile() {
+		try {
+			this.getPatch();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Compile the JSON Patches for each of the operations in the given collection ahead of their first use
+	 *
+	 * @param operations The collection of operations to compile
+	 */
+	public static void compile(Collection<Operation> operations) {
+		if (null != operations) {
+			for (Operation op : operations) {
+				op.compile();
+			}
+		}
+	}
+
 	/**
 	 * Process the operation on the document presented and return the resulting document to the calling routine 
 	 *
@@ -289,7 +476,7 @@ public final class Operation implements Comparable<Operation> {
 		case UPDATE:
 			return null == document
 			? null
-			: JsonPatch.fromJson(this.getOp()).apply(document);		// Use this with jsonpatch
+			: this.getPatch().apply(document.deepCopy(), new UndoRecord());
 //			: JsonPatch.apply(this.getOp(), document);				// Use this with zjsonpatch
 		case DELETE:
 				return null;
@@ -299,16 +486,48 @@ public final class Operation implements Comparable<Operation> {
 		}
 		return null;
 	}
+
+	/**
+	 * Process the operation on the document presented, modifying it in place rather than copying it.  Each change made to the
+	 * document is recorded in the undo record, from which the document may later be restored.  An operation which cannot be applied
+	 * leaves the document and the undo record as it found them.
+	 *
+	 * @param document The document to which the operation will be applied, and which it may modify
+	 * @param undo The record in which to accumulate the inverse of each change made to the document
+	 * @return The JSON document which results from applying the operation, which is the given document unless its root is replaced
+	 * @throws JsonPatchException results when the operation cannot be applied to the provided document
+	 * @throws IOException results when the something other than an operation is encoded in one of the derived class instances
+	 */
+	public JsonNode processOperation(JsonNode document, UndoRecord undo) throws JsonPatchException, IOException {
+		switch (this.getType()) {
+		case CREATE:
+			undo.replaceRoot(document);
+			return getMapper().createObjectNode();
+		case READ:
+			return document;
+		case UPDATE:
+			return null == document
+			? null
+			: this.getPatch().apply(document, undo);
+		case DELETE:
+			undo.replaceRoot(document);
+			return null;
+		default:
+			break;
+		}
+		return null;
+	}
 	
 	/* (non-Javadoc)
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
 	 */
 	@Override
 	public int compareTo(Operation op) {
-		int rv = Long.compare(this.getTimestamp(), op.getTimestamp());
-		rv = 0 == rv ? ObjectUtils.compare(this.getType(), op.getType()) : rv;
-		rv = 0 == rv ? ObjectUtils.compare(this.getId(), op.getId()) : rv;
-		rv = 0 == rv ? ObjectUtils.compare(null == this.getOp() ? null : this.getOp().hashCode(), null == op.getOp() ? null : op.getOp().hashCode()) : rv;
+		int rv = Long.compare(this.timestamp, op.timestamp);
+		rv = 0 == rv ? Integer.compare(this.type.ordinal(), op.type.ordinal()) : rv;
+		rv = 0 == rv ? Long.compare(this.id.getMostSignificantBits(), op.id.getMostSignificantBits()) : rv;
+		rv = 0 == rv ? Long.compare(this.id.getLeastSignificantBits(), op.id.getLeastSignificantBits()) : rv;
+		rv = 0 == rv ? Integer.compare(this.payloadHash, op.payloadHash) : rv;
 
 		return rv;
 	}
@@ -326,10 +545,11 @@ public final class Operation implements Comparable<Operation> {
 
 		Operation oper = (Operation) obj;
 		
-		return this.getTimestamp().equals(oper.getTimestamp()) &&
+		return this.hash == oper.hash &&
+				this.getTimestamp().equals(oper.getTimestamp()) &&
 				Objects.equals(this.getId(), oper.getId()) &&
 				Objects.equals(this.getType(), oper.getType()) &&
-				Objects.equals(this.getOp(), oper.getOp());
+				(null == this.getOp() ? null == oper.getOp() : null != oper.getOp() && this.getOp().equals(NUMERIC_VALUE, oper.getOp()));
 	}
 	
 	/* (non-Javadoc)
@@ -337,11 +557,20 @@ public final class Operation implements Comparable<Operation> {
 	 */
 	@Override
 	public int hashCode() {
+		return this.hash;
+	}
+
+	/**
+	 * Compute the hash of the whole operation, using the hash of the JSON Patch computed beforehand
+	 *
+	 * @return The hash of the operation
+	 */
+	private int computeHash() {
 		int hash = 1;
 		
 		hash = hash * 13 + (null != this.getId() ? this.getId().hashCode() : 0);
 		hash = hash * 17 + (null != this.getType() ? this.getType().hashCode() : 0);
-		hash = hash * 19 + (null != this.getOp() ? this.getOp().hashCode() : 0);
+		hash = hash * 19 + this.payloadHash;
 		hash = hash * 23 + (null != this.getTimestamp() ? this.getTimestamp().hashCode() : 0);
 		
 		return hash;
@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The OperationCodec class is a compact binary form of operations and operation managers, an alternative to their JSON form for
+ * replication and storage.  Each operation is written as a single type byte, its identifier as 16 raw bytes, its timestamp as a
+ * variable length difference from the timestamp of the operation written before it, and its JSON Patch, if any, as a tagged binary
+ * tree in which each distinct string is written once and referenced by index thereafter.
+ *
+ * An Encoder and the Decoder reading its output must see the same sequence of operations, since both the timestamp differences and
+ * the string table depend on what came before.  Decoding yields operations equal to those read from the JSON form of the originals,
+ * so integral numbers decode to the narrowest of int, long and big integer, and other numbers to double, as the JSON reader does.
+ */
+public final class OperationCodec {
+	/** Format version written at the start of each encoded sequence */
+	public static final int VERSION = 1;
+
+	/** Tag of a null JSON node */
+	private static final int NULL = 0;
+
+	/** Tag of a true JSON node */
+	private static final int TRUE = 1;
+
+	/** Tag of a false JSON node */
+	private static final int FALSE = 2;
+
+	/** Tag of an integral JSON node which fits in a long, followed by its zig-zag variable length value */
+	private static final int INTEGRAL = 3;
+
+	/** Tag of an integral JSON node which does not fit in a long, followed by its two's complement bytes */
+	private static final int BIG_INTEGRAL = 4;
+
+	/** Tag of a floating point JSON node, followed by its eight byte value */
+	private static final int FLOATING = 5;
+
+	/** Tag of a text JSON node, followed by a string reference */
+	private static final int TEXT = 6;
+
+	/** Tag of an array JSON node, followed by its element count and elements */
+	private static final int ARRAY = 7;
+
+	/** Tag of an object JSON node, followed by its field count and its name and value pairs */
+	private static final int OBJECT = 8;
+
+	/** Tag of a decimal JSON node, followed by its zig-zag variable length scale and the two's complement bytes of its unscaled value */
+	private static final int DECIMAL = 9;
+
+	/** Factory used to create decoded JSON nodes */
+	private static final JsonNodeFactory factory = JsonNodeFactory.instance;
+
+	/**
+	 * Hidden constructor, as the class provides only static methods and the nested Encoder and Decoder
+	 */
+	private OperationCodec() { }
+
+	/**
+	 * The Encoder class writes a sequence of operations or operation managers to a DataOutput instance
+	 */
+	public static class Encoder {
+		/** Destination of the encoded form */
+		private final DataOutput out;
+
+		/** Index of each string written so far */
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		/** Timestamp of the operation written last */
+		private long previous = 0;
+
+		/**
+		 * Constructor for an encoder writing to the given destination, beginning with the format version
+		 * @param out Destination of the encoded form
+		 * @throws IOException when the destination can not be written
+		 */
+		public Encoder(DataOutput out) throws IOException {
+			this.out = out;
+			this.out.writeByte(VERSION);
+		}
+
+		/**
+		 * Write an operation
+		 * @param op Operation to write
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(Operation op) throws IOException {
+			this.out.writeByte(op.getType().ordinal());
+			this.out.writeLong(op.getId().getMostSignificantBits());
+			this.out.writeLong(op.getId().getLeastSignificantBits());
+			this.writeSigned(op.getTimestamp() - this.previous);
+			this.previous = op.getTimestamp();
+
+			if (null != op.getOp()) {
+				this.write(op.getOp());
+			}
+		}
+
+		/**
+		 * Write an operation manager, its status as a single byte followed by its operation
+		 * @param mgr Operation manager to write
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(OperationManager mgr) throws IOException {
+			this.out.writeByte(mgr.getStatus().ordinal());
+			this.write(mgr.getOperation());
+		}
+
+		/**
+		 * Write a collection of operations, its size followed by each operation
+		 * @param ops Operations to write
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(Collection<Operation> ops) throws IOException {
+			this.writeUnsigned(ops.size());
+
+			for (Operation op : ops) {
+				this.write(op);
+			}
+		}
+
+		/**
+		 * Write a document, a flag marking whether it is present followed by the document as a tagged tree
+		 * @param document Document to write, which may be null
+		 * @throws IOException when the destination can not be written
+		 */
+		public void writeDocument(JsonNode document) throws IOException {
+			this.out.writeBoolean(null != document);
+
+			if (null != document) {
+				this.write(document);
+			}
+		}
+
+		/**
+		 * Write an array of counts, its length followed by each count
+		 * @param counts Counts to write, none of which may be negative
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(long[] counts) throws IOException {
+			this.writeUnsigned(counts.length);
+
+			for (long count : counts) {
+				this.writeUnsigned(count);
+			}
+		}
+
+		/**
+		 * Write a version vector, the runs of counters of each origin in the ADD set followed by those in the REMOVE set
+		 * @param summary Version vector to write
+		 * @throws IOException when the destination can not be written
+		 */
+		public void write(VersionVector summary) throws IOException {
+			this.write(summary.getAdded());
+			this.write(summary.getRemoved());
+		}
+
+		/**
+		 * Write the runs of counters of each origin, the number of origins followed by each origin, its number of runs, and each
+		 * run as the gap from the end of the one before it and its length, the first run starting from zero
+		 * @param runs First and last counter of each run of each origin
+		 * @throws IOException when the destination can not be written
+		 */
+		private void write(Map<Long, long[]> runs) throws IOException {
+			this.writeUnsigned(runs.size());
+
+			for (Map.Entry<Long, long[]> entry : runs.entrySet()) {
+				long[] bounds = entry.getValue();
+				long previous = 0;
+
+				this.out.writeLong(entry.getKey());
+				this.writeUnsigned(bounds.length / 2);
+
+				for (int index = 0; index < bounds.length; index += 2) {
+					this.writeSigned(bounds[index] - previous);
+					this.writeUnsigned(bounds[index + 1] - bounds[index]);
+					previous = bounds[index + 1];
+				}
+			}
+		}
+
+		/**
+		 * Write a JSON node as a tagged tree
+		 * @param node JSON node to write
+		 * @throws IOException when the destination can not be written
+		 */
+		private void write(JsonNode node) throws IOException {
+			switch (node.getNodeType()) {
+			case NULL:
+				this.out.writeByte(NULL);
+				break;
+			case BOOLEAN:
+				this.out.writeByte(node.booleanValue() ? TRUE : FALSE);
+				break;
+			case NUMBER:
+				if (node.isIntegralNumber() && node.canConvertToLong()) {
+					this.out.writeByte(INTEGRAL);
+					this.writeSigned(node.longValue());
+				} else if (node.isIntegralNumber()) {
+					byte[] bytes = node.bigIntegerValue().toByteArray();
+					this.out.writeByte(BIG_INTEGRAL);
+					this.writeUnsigned(bytes.length);
+					this.out.write(bytes);
+				} else if (node.isBigDecimal()) {
+					byte[] bytes = node.decimalValue().unscaledValue().toByteArray();
+					this.out.writeByte(DECIMAL);
+					this.writeSigned(node.decimalValue().scale());
+					this.writeUnsigned(bytes.length);
+					this.out.write(bytes);
+				} else {
+					this.out.writeByte(FLOATING);
+					this.out.writeDouble(node.doubleValue());
+				}
+				break;
+			case STRING:
+			case BINARY:
+				this.out.writeByte(TEXT);
+				this.writeString(node.asText());
+				break;
+			case ARRAY:
+				this.out.writeByte(ARRAY);
+				this.writeUnsigned(node.size());
+				for (JsonNode element : node) {
+					this.write(element);
+				}
+				break;
+			case OBJECT:
+				this.out.writeByte(OBJECT);
+				this.writeUnsigned(node.size());
+				for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+					Map.Entry<String, JsonNode> field = it.next();
+					this.writeString(field.getKey());
+					this.write(field.getValue());
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("JSON node type has no binary form: " + node.getNodeType());
+			}
+		}
+
+		/**
+		 * Write a string as the index of its earlier occurrence plus one, or zero followed by its UTF-8 bytes for its first
+		 * @param value String to write
+		 * @throws IOException when the destination can not be written
+		 */
+		private void writeString(String value) throws IOException {
+			Integer index = this.strings.get(value);
+
+			if (null != index) {
+				this.writeUnsigned(index + 1);
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				this.strings.put(value, this.strings.size());
+				this.writeUnsigned(0);
+				this.writeUnsigned(bytes.length);
+				this.out.write(bytes);
+			}
+		}
+
+		/**
+		 * Write a signed value as a zig-zag variable length integer, so values near zero of either sign are short
+		 * @param value Value to write
+		 * @throws IOException when the destination can not be written
+		 */
+		private void writeSigned(long value) throws IOException {
+			this.writeUnsigned((value << 1) ^ (value >> 63));
+		}
+
+		/**
+		 * Write an unsigned value as a variable length integer of seven bits per byte, least significant first
+		 * @param value Value to write
+		 * @throws IOException when the destination can not be written
+		 */
+		private void writeUnsigned(long value) throws IOException {
+			while (0 != (value & ~0x7FL)) {
+				this.out.writeByte((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			this.out.writeByte((int) value);
+		}
+	}
+
+	/**
+	 * The Decoder class reads a sequence of operations or operation managers written by an Encoder from a DataInput instance
+	 */
+	public static class Decoder {
+		/** Source of the encoded form */
+		private final DataInput in;
+
+		/** Strings read so far, in the order they were first written */
+		private final List<String> strings = new ArrayList<>();
+
+		/** Timestamp of the operation read last */
+		private long previous = 0;
+
+		/**
+		 * Constructor for a decoder reading from the given source, beginning with the format version
+		 * @param in Source of the encoded form
+		 * @throws IOException when the source can not be read or was written in an unknown format version
+		 */
+		public Decoder(DataInput in) throws IOException {
+			this.in = in;
+
+			int version = this.in.readUnsignedByte();
+			if (VERSION != version) {
+				throw new IOException("Unknown binary operation format version: " + version);
+			}
+		}
+
+		/**
+		 * Read an operation
+		 * @return The operation read
+		 * @throws IOException when the source can not be read or does not hold an operation
+		 */
+		public Operation readOperation() throws IOException {
+			OperationType type = readEnum(OperationType.values(), this.in.readUnsignedByte());
+			UUID id = new UUID(this.in.readLong(), this.in.readLong());
+			long timestamp = this.previous + this.readSigned();
+			JsonNode op = OperationType.UPDATE.equals(type) ? this.readNode() : null;
+
+			this.previous = timestamp;
+
+			try {
+				return new Operation(id, type, op, timestamp);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Read an operation manager
+		 * @return The operation manager read
+		 * @throws IOException when the source can not be read or does not hold an operation manager
+		 */
+		public OperationManager readOperationManager() throws IOException {
+			StatusType status = readEnum(StatusType.values(), this.in.readUnsignedByte());
+			return new OperationManager(status, this.readOperation());
+		}
+
+		/**
+		 * Read a collection of operations written as its size followed by each operation
+		 * @return The operations read, in the order they were written
+		 * @throws IOException when the source can not be read or does not hold a collection of operations
+		 */
+		public List<Operation> readOperations() throws IOException {
+			int count = (int) this.readUnsigned();
+			List<Operation> rv = new ArrayList<>(count);
+
+			for (int i = 0; i < count; ++i) {
+				rv.add(this.readOperation());
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Read a document written by writeDocument
+		 * @return The document read, or null if none was written
+		 * @throws IOException when the source can not be read or does not hold a document
+		 */
+		public JsonNode readDocument() throws IOException {
+			return this.in.readBoolean() ? this.readNode() : null;
+		}
+
+		/**
+		 * Read an array of counts written as its length followed by each count
+		 * @return The counts read
+		 * @throws IOException when the source can not be read
+		 */
+		public long[] readCounts() throws IOException {
+			long[] rv = new long[Math.toIntExact(this.readUnsigned())];
+
+			for (int index = 0; index < rv.length; ++index) {
+				rv[index] = this.readUnsigned();
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Read a version vector
+		 * @return The version vector read
+		 * @throws IOException when the source can not be read or does not hold a version vector
+		 */
+		public VersionVector readVersionVector() throws IOException {
+			Map<Long, long[]> added = this.readRuns();
+			return new VersionVector(added, this.readRuns());
+		}
+
+		/**
+		 * Read the runs of counters of each origin, written as the number of origins followed by each origin, its number of runs, and
+		 * each run as the gap from the end of the one before it and its length
+		 * @return The first and last counter of each run of each origin
+		 * @throws IOException when the source can not be read
+		 */
+		private Map<Long, long[]> readRuns() throws IOException {
+			Map<Long, long[]> rv = new HashMap<>();
+
+			for (long count = this.readUnsigned(); count > 0; --count) {
+				long origin = this.in.readLong();
+				long[] bounds = new long[Math.toIntExact(2 * this.readUnsigned())];
+				long previous = 0;
+
+				for (int index = 0; index < bounds.length; index += 2) {
+					bounds[index] = previous + this.readSigned();
+					bounds[index + 1] = bounds[index] + this.readUnsigned();
+					previous = bounds[index + 1];
+				}
+
+				rv.put(origin, bounds);
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Read a JSON node written as a tagged tree
+		 * @return The JSON node read
+		 * @throws IOException when the source can not be read or does not hold a JSON node
+		 */
+		private JsonNode readNode() throws IOException {
+			int tag = this.in.readUnsignedByte();
+
+			switch (tag) {
+			case NULL:
+				return factory.nullNode();
+			case TRUE:
+				return factory.booleanNode(true);
+			case FALSE:
+				return factory.booleanNode(false);
+			case INTEGRAL:
+				long value = this.readSigned();
+				return value == (int) value ? factory.numberNode((int) value) : factory.numberNode(value);
+			case BIG_INTEGRAL:
+				return factory.numberNode(new BigInteger(this.readBytes()));
+			case FLOATING:
+				return factory.numberNode(this.in.readDouble());
+			case DECIMAL:
+				int scale = Math.toIntExact(this.readSigned());
+				return DecimalNode.valueOf(new BigDecimal(new BigInteger(this.readBytes()), scale));
+			case TEXT:
+				return factory.textNode(this.readString());
+			case ARRAY:
+				ArrayNode array = factory.arrayNode();
+				for (long count = this.readUnsigned(); count > 0; --count) {
+					array.add(this.readNode());
+				}
+				return array;
+			case OBJECT:
+				ObjectNode object = factory.objectNode();
+				for (long count = this.readUnsigned(); count > 0; --count) {
+					String name = this.readString();
+					object.set(name, this.readNode());
+				}
+				return object;
+			default:
+				throw new IOException("Unknown binary JSON node tag: " + tag);
+			}
+		}
+
+		/**
+		 * Read a string written as a reference to an earlier occurrence or as its UTF-8 bytes
+		 * @return The string read
+		 * @throws IOException when the source can not be read or refers to a string not yet read
+		 */
+		private String readString() throws IOException {
+			long reference = this.readUnsigned();
+
+			if (0 == reference) {
+				String value = new String(this.readBytes(), StandardCharsets.UTF_8);
+				this.strings.add(value);
+				return value;
+			} else if (reference > this.strings.size()) {
+				throw new IOException("Binary string reference out of range: " + reference);
+			}
+
+			return this.strings.get((int) reference - 1);
+		}
+
+		/**
+		 * Read a byte array written as its length followed by its content
+		 * @return The bytes read
+		 * @throws IOException when the source can not be read
+		 */
+		private byte[] readBytes() throws IOException {
+			byte[] bytes = new byte[(int) this.readUnsigned()];
+			this.in.readFully(bytes);
+			return bytes;
+		}
+
+		/**
+		 * Read a signed value written as a zig-zag variable length integer
+		 * @return The value read
+		 * @throws IOException when the source can not be read
+		 */
+		private long readSigned() throws IOException {
+			long value = this.readUnsigned();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/**
+		 * Read an unsigned value written as a variable length integer
+		 * @return The value read
+		 * @throws IOException when the source can not be read or the value exceeds 64 bits
+		 */
+		private long readUnsigned() throws IOException {
+			long value = 0;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = this.in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+
+				if (0 == (b & 0x80)) {
+					return value;
+				}
+			}
+
+			throw new IOException("Malformed variable length integer");
+		}
+
+		/**
+		 * Resolve the enumeration value of the given ordinal
+		 * @param values Values of the enumeration
+		 * @param ordinal Ordinal read
+		 * @return The enumeration value with the given ordinal
+		 * @throws IOException when the ordinal is out of range
+		 */
+		private static <T extends Enum<T>> T readEnum(T[] values, int ordinal) throws IOException {
+			if (ordinal >= values.length) {
+				throw new IOException("Unknown binary " + values[0].getDeclaringClass().getSimpleName() + " ordinal: " + ordinal);
+			}
+
+			return values[ordinal];
+		}
+	}
+
+	/**
+	 * Encode a single operation
+	 * @param op Operation to encode
+	 * @return The binary form of the operation
+	 */
+	public static byte[] encode(Operation op) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try {
+			new Encoder(new DataOutputStream(bytes)).write(op);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encode a single operation manager
+	 * @param mgr Operation manager to encode
+	 * @return The binary form of the operation manager
+	 */
+	public static byte[] encode(OperationManager mgr) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try {
+			new Encoder(new DataOutputStream(bytes)).write(mgr);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode a single operation
+	 * @param bytes Binary form of the operation
+	 * @return The operation decoded
+	 * @throws IOException when the bytes do not hold an operation
+	 */
+	public static Operation decodeOperation(byte[] bytes) throws IOException {
+		return new Decoder(new DataInputStream(new ByteArrayInputStream(bytes))).readOperation();
+	}
+
+	/**
+	 * Decode a single operation manager
+	 * @param bytes Binary form of the operation manager
+	 * @return The operation manager decoded
+	 * @throws IOException when the bytes do not hold an operation manager
+	 */
+	public static OperationManager decodeOperationManager(byte[] bytes) throws IOException {
+		return new Decoder(new DataInputStream(new ByteArrayInputStream(bytes))).readOperationManager();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.Collection;
+
+import com.cyberfront.crdt.operation.Operation.OperationType;
+
+/**
+ * The OperationLog interface defines the storage of the operations held by a two set CRDT.  Each operation held is recorded as a
+ * member of the ADD set, the REMOVE set, or both, and the operations of each set are presented in operation order.  Implementations
+ * also count the operations of each type in each set, so that the number of operations of a type is available without scanning the
+ * log.
+ */
+public interface OperationLog {
+	/**
+	 * Record the operation as a member of the ADD set
+	 *
+	 * @param op The operation to add to the ADD set
+	 * @return True exactly when the operation was not already a member of the ADD set
+	 */
+	public abstract boolean add(Operation op);
+
+	/**
+	 * Record the operation as a member of the REMOVE set
+	 *
+	 * @param op The operation to add to the REMOVE set
+	 * @return True exactly when the operation was not already a member of the REMOVE set
+	 */
+	public abstract boolean remove(Operation op);
+
+	/**
+	 * Record the operations of the given ADD and REMOVE sets, such as those of another replica, as members of the respective sets
+	 * of this log.  Logs able to do so combine the operations in a single pass over this log and the sets given, which are expected
+	 * to be presented in operation order.
+	 *
+	 * @param addset Operations to add to the ADD set
+	 * @param remset Operations to add to the REMOVE set
+	 * @return The number of operations which were not already members of the set to which they were added
+	 */
+	public abstract long merge(Collection<Operation> addset, Collection<Operation> remset);
+
+	/**
+	 * Determine whether the operation is a member of the ADD set
+	 *
+	 * @param op The operation to look for in the ADD set
+	 * @return True exactly when the operation is a member of the ADD set
+	 */
+	public abstract boolean isAdded(Operation op);
+
+	/**
+	 * Determine whether the operation is a member of the REMOVE set
+	 *
+	 * @param op The operation to look for in the REMOVE set
+	 * @return True exactly when the operation is a member of the REMOVE set
+	 */
+	public abstract boolean isRemoved(Operation op);
+
+	/**
+	 * Retrieve a read only view of the ADD set, presented in operation order
+	 *
+	 * @return A read only view of the ADD set
+	 */
+	public abstract Collection<Operation> getAddSet();
+
+	/**
+	 * Retrieve a read only view of the REMOVE set, presented in operation order
+	 *
+	 * @return A read only view of the REMOVE set
+	 */
+	public abstract Collection<Operation> getRemSet();
+
+	/**
+	 * Retrieve a read only view of the active operations, those in the ADD set but not the REMOVE set, presented in operation order
+	 *
+	 * @return A read only view of the active operations
+	 */
+	public abstract Collection<Operation> getOpsSet();
+
+	/**
+	 * Retrieve the active operations with timestamps later than the one given, in operation order
+	 *
+	 * @param timestamp The timestamp which the operations retrieved must follow
+	 * @return A read only collection of the active operations later than the given timestamp
+	 */
+	public abstract Collection<Operation> getOpsAfter(long timestamp);
+
+	/**
+	 * Retrieve the number of operations of the given type in the ADD set
+	 *
+	 * @param type The OperationType of the operations to count
+	 * @return The number of operations of the given type in the ADD set
+	 */
+	public abstract long getAddCount(OperationType type);
+
+	/**
+	 * Retrieve the number of operations of the given type in the REMOVE set
+	 *
+	 * @param type The OperationType of the operations to count
+	 * @return The number of operations of the given type in the REMOVE set
+	 */
+	public abstract long getRemCount(OperationType type);
+
+	/**
+	 * Retrieve the number of active operations of the given type, those in the ADD set but not the REMOVE set
+	 *
+	 * @param type The OperationType of the operations to count
+	 * @return The number of active operations of the given type
+	 */
+	public abstract long getOpsCount(OperationType type);
+
+	/**
+	 * Discard the operations with timestamps no later than the one given from both the ADD and REMOVE sets, as when they have been
+	 * folded into a base document and are no longer needed.
+	 * @param timestamp The latest timestamp of the operations to discard
+	 * @return The number of operations discarded, each counted once whatever the sets of which it was a member
+	 */
+	public abstract long discard(long timestamp);
+
+	/**
+	 * Remove all operations from both the ADD and REMOVE sets
+	 */
+	public abstract void clear();
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The OperationSketch class is an invertible Bloom lookup table over the ADD and REMOVE sets of a CRDT, keyed by the identifier and
+ * timestamp of each operation along with the set of which it is a member.  The sketch has a fixed number of cells however many
+ * operations it holds.  Subtracting the sketch of one replica from that of another cancels the operations they share, leaving only
+ * those held by just one of the two, which are then recovered by peeling cells holding a single key.  Two replicas whose operations
+ * differ by fewer keys than a fraction of the cells thereby find the difference with a single exchange of sketches.
+ *
+ * Each key is stored in one cell of each of HASH_COUNT partitions of the table, each cell holding the number of keys stored there
+ * along with the exclusive or of their fields and of their checksums.  When the difference is too large to recover, decode returns
+ * null, and the replicas fall back to a larger sketch or a full merge.
+ */
+public class OperationSketch {
+	/**
+	 * The Key class identifies an operation as a member of either the ADD or REMOVE set
+	 */
+	public static class Key {
+		/** Property label for the operation identifier */
+		private static final String ID = "id";
+
+		/** Property label for the operation timestamp */
+		private static final String TIMESTAMP = "timestamp";
+
+		/** Property label for the flag marking membership in the REMOVE set */
+		private static final String REMOVED = "removed";
+
+		/** The operation identifier */
+		private final UUID id;
+
+		/** The operation timestamp */
+		private final long timestamp;
+
+		/** Flag marking membership in the REMOVE set rather than the ADD set */
+		private final boolean removed;
+
+		/**
+		 * Constructor specifying each field of the key
+		 *
+		 * @param id The operation identifier
+		 * @param timestamp The operation timestamp
+		 * @param removed True when the key identifies a member of the REMOVE set; false for a member of the ADD set
+		 */
+		@JsonCreator
+		public Key(@JsonProperty(ID) UUID id,
+				   @JsonProperty(TIMESTAMP) long timestamp,
+				   @JsonProperty(REMOVED) boolean removed) {
+			this.id = id;
+			this.timestamp = timestamp;
+			this.removed = removed;
+		}
+
+		/**
+		 * Constructor for the key of an operation as a member of the given set
+		 *
+		 * @param op The operation identified
+		 * @param removed True for membership in the REMOVE set; false for membership in the ADD set
+		 */
+		public Key(Operation op, boolean removed) {
+			this(op.getId(), op.getTimestamp(), removed);
+		}
+
+		/**
+		 * Retrieve the operation identifier
+		 *
+		 * @return The operation identifier
+		 */
+		@JsonProperty(ID)
+		public UUID getId() {
+			return this.id;
+		}
+
+		/**
+		 * Retrieve the operation timestamp
+		 *
+		 * @return The operation timestamp
+		 */
+		@JsonProperty(TIMESTAMP)
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+
+		/**
+		 * Determine whether the key identifies a member of the REMOVE set
+		 *
+		 * @return True for a member of the REMOVE set; false for a member of the ADD set
+		 */
+		@JsonProperty(REMOVED)
+		public boolean isRemoved() {
+			return this.removed;
+		}
+
+		/**
+		 * Compute the checksum of the key, which also selects the cells holding it
+		 *
+		 * @return The checksum of the key
+		 */
+		private long checksum() {
+			long rv = Support.mix((this.removed ? REMOVED_SALT : ADDED_SALT) ^ this.id.getMostSignificantBits());
+			rv = Support.mix(rv ^ this.id.getLeastSignificantBits());
+			return Support.mix(rv ^ this.timestamp);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (null == obj || !(obj instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) obj;
+
+			return this.timestamp == key.timestamp && this.removed == key.removed && Objects.equals(this.id, key.id);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return Long.hashCode(this.checksum());
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "{\"id\":\"" + this.id + "\",\"timestamp\":" + this.timestamp + ",\"removed\":" + this.removed + "}";
+		}
+	}
+
+	/**
+	 * The Difference class holds the keys recovered from subtracting one sketch from another
+	 */
+	public static class Difference {
+		/** Keys held only by the replica whose sketch was subtracted from */
+		private final List<Key> local = new ArrayList<>();
+
+		/** Keys held only by the replica whose sketch was subtracted */
+		private final List<Key> remote = new ArrayList<>();
+
+		/**
+		 * Retrieve the keys held only by the replica whose sketch was subtracted from
+		 *
+		 * @return A read only list of the keys held only locally
+		 */
+		public List<Key> getLocal() {
+			return Collections.unmodifiableList(this.local);
+		}
+
+		/**
+		 * Retrieve the keys held only by the replica whose sketch was subtracted
+		 *
+		 * @return A read only list of the keys held only remotely
+		 */
+		public List<Key> getRemote() {
+			return Collections.unmodifiableList(this.remote);
+		}
+
+		/**
+		 * Determine whether no keys differ
+		 *
+		 * @return True exactly when neither replica holds a key the other lacks
+		 */
+		@JsonIgnore
+		public boolean isEmpty() {
+			return this.local.isEmpty() && this.remote.isEmpty();
+		}
+	}
+
+	/** Number of cells in which each key is stored, one in each partition of the table */
+	public static final int HASH_COUNT = 3;
+
+	/** Default number of cells, which recovers differences of a few dozen keys */
+	public static final int CELL_COUNT = 96;
+
+	/** Property label for the number of keys in each cell */
+	private static final String COUNTS = "counts";
+
+	/** Property label for the exclusive or of the most significant identifier bits in each cell */
+	private static final String MOST_SIG_BITS = "mostSigBits";
+
+	/** Property label for the exclusive or of the least significant identifier bits in each cell */
+	private static final String LEAST_SIG_BITS = "leastSigBits";
+
+	/** Property label for the exclusive or of the timestamps in each cell */
+	private static final String TIMESTAMPS = "timestamps";
+
+	/** Property label for the exclusive or of the set membership flags in each cell */
+	private static final String FLAGS = "flags";
+
+	/** Property label for the exclusive or of the checksums in each cell */
+	private static final String CHECKSUMS = "checksums";
+
+	/** Salt distinguishing the checksums of members of the ADD set */
+	private static final long ADDED_SALT = 0x3c6ef372fe94f82bL;
+
+	/** Salt distinguishing the checksums of members of the REMOVE set */
+	private static final long REMOVED_SALT = 0xa54ff53a5f1d36f1L;
+
+	/** Number of keys stored in each cell, negative when more were subtracted than stored */
+	private final int[] counts;
+
+	/** Exclusive or of the most significant identifier bits of the keys in each cell */
+	private final long[] mostSigBits;
+
+	/** Exclusive or of the least significant identifier bits of the keys in each cell */
+	private final long[] leastSigBits;
+
+	/** Exclusive or of the timestamps of the keys in each cell */
+	private final long[] timestamps;
+
+	/** Exclusive or of the set membership flags of the keys in each cell */
+	private final int[] flags;
+
+	/** Exclusive or of the checksums of the keys in each cell */
+	private final long[] checksums;
+
+	/**
+	 * Default constructor for an empty sketch with the default number of cells
+	 */
+	public OperationSketch() {
+		this(CELL_COUNT);
+	}
+
+	/**
+	 * Constructor for an empty sketch with at least the given number of cells, rounded up to a multiple of HASH_COUNT.  Replicas
+	 * comparing sketches must use the same number of cells.
+	 *
+	 * @param cells Minimum number of cells
+	 */
+	public OperationSketch(int cells) {
+		if (0 >= cells) {
+			throw new IllegalArgumentException("Cell count must be positive: " + cells);
+		}
+
+		int size = HASH_COUNT * ((cells + HASH_COUNT - 1) / HASH_COUNT);
+
+		this.counts = new int[size];
+		this.mostSigBits = new long[size];
+		this.leastSigBits = new long[size];
+		this.timestamps = new long[size];
+		this.flags = new int[size];
+		this.checksums = new long[size];
+	}
+
+	/**
+	 * Constructor specifying the content of each cell, used to decode a sketch received from another replica
+	 *
+	 * @param counts Number of keys stored in each cell
+	 * @param mostSigBits Exclusive or of the most significant identifier bits of the keys in each cell
+	 * @param leastSigBits Exclusive or of the least significant identifier bits of the keys in each cell
+	 * @param timestamps Exclusive or of the timestamps of the keys in each cell
+	 * @param flags Exclusive or of the set membership flags of the keys in each cell
+	 * @param checksums Exclusive or of the checksums of the keys in each cell
+	 */
+	@JsonCreator
+	public OperationSketch(@JsonProperty(COUNTS) int[] counts,
+						   @JsonProperty(MOST_SIG_BITS) long[] mostSigBits,
+						   @JsonProperty(LEAST_SIG_BITS) long[] leastSigBits,
+						   @JsonProperty(TIMESTAMPS) long[] timestamps,
+						   @JsonProperty(FLAGS) int[] flags,
+						   @JsonProperty(CHECKSUMS) long[] checksums) {
+		int size = counts.length;
+
+		if (0 == size || 0 != size % HASH_COUNT || size != mostSigBits.length || size != leastSigBits.length
+				|| size != timestamps.length || size != flags.length || size != checksums.length) {
+			throw new IllegalArgumentException("Malformed sketch: {\"size\":" + size + "}");
+		}
+
+		this.counts = counts.clone();
+		this.mostSigBits = mostSigBits.clone();
+		this.leastSigBits = leastSigBits.clone();
+		this.timestamps = timestamps.clone();
+		this.flags = flags.clone();
+		this.checksums = checksums.clone();
+	}
+
+	/**
+	 * Copy constructor duplicating the cells of the given sketch
+	 *
+	 * @param src The sketch to copy
+	 */
+	public OperationSketch(OperationSketch src) {
+		this(src.counts, src.mostSigBits, src.leastSigBits, src.timestamps, src.flags, src.checksums);
+	}
+
+	/**
+	 * Retrieve the number of keys stored in each cell
+	 *
+	 * @return The number of keys stored in each cell
+	 */
+	@JsonProperty(COUNTS)
+	public int[] getCounts() {
+		return this.counts.clone();
+	}
+
+	/**
+	 * Retrieve the exclusive or of the most significant identifier bits of the keys in each cell
+	 *
+	 * @return The exclusive or of the most significant identifier bits in each cell
+	 */
+	@JsonProperty(MOST_SIG_BITS)
+	public long[] getMostSigBits() {
+		return this.mostSigBits.clone();
+	}
+
+	/**
+	 * Retrieve the exclusive or of the least significant identifier bits of the keys in each cell
+	 *
+	 * @return The exclusive or of the least significant identifier bits in each cell
+	 */
+	@JsonProperty(LEAST_SIG_BITS)
+	public long[] getLeastSigBits() {
+		return this.leastSigBits.clone();
+	}
+
+	/**
+	 * Retrieve the exclusive or of the timestamps of the keys in each cell
+	 *
+	 * @return The exclusive or of the timestamps in each cell
+	 */
+	@JsonProperty(TIMESTAMPS)
+	public long[] getTimestamps() {
+		return this.timestamps.clone();
+	}
+
+	/**
+	 * Retrieve the exclusive or of the set membership flags of the keys in each cell
+	 *
+	 * @return The exclusive or of the set membership flags in each cell
+	 */
+	@JsonProperty(FLAGS)
+	public int[] getFlags() {
+		return this.flags.clone();
+	}
+
+	/**
+	 * Retrieve the exclusive or of the checksums of the keys in each cell
+	 *
+	 * @return The exclusive or of the checksums in each cell
+	 */
+	@JsonProperty(CHECKSUMS)
+	public long[] getChecksums() {
+		return this.checksums.clone();
+	}
+
+	/**
+	 * Retrieve the number of cells
+	 *
+	 * @return The number of cells
+	 */
+	@JsonIgnore
+	public int getCellCount() {
+		return this.counts.length;
+	}
+
+	/**
+	 * Store an operation as a member of the ADD set
+	 *
+	 * @param op The operation to store
+	 */
+	public void recordAdded(Operation op) {
+		this.toggle(new Key(op, false), 1);
+	}
+
+	/**
+	 * Store an operation as a member of the REMOVE set
+	 *
+	 * @param op The operation to store
+	 */
+	public void recordRemoved(Operation op) {
+		this.toggle(new Key(op, true), 1);
+	}
+
+	/**
+	 * Subtract the given sketch from this one, leaving a sketch of the keys held by only one of the two.  Keys held only by this
+	 * sketch remain with positive counts and those held only by the one subtracted with negative counts.
+	 *
+	 * @param other The sketch to subtract, which must have the same number of cells
+	 * @return A new sketch of the difference between the two
+	 */
+	public OperationSketch subtract(OperationSketch other) {
+		if (this.getCellCount() != other.getCellCount()) {
+			throw new IllegalArgumentException("Sketch size mismatch: {\"local\":" + this.getCellCount() + ",\"remote\":" + other.getCellCount() + "}");
+		}
+
+		OperationSketch rv = new OperationSketch(this);
+
+		for (int i = 0; i < rv.getCellCount(); ++i) {
+			rv.counts[i] -= other.counts[i];
+			rv.mostSigBits[i] ^= other.mostSigBits[i];
+			rv.leastSigBits[i] ^= other.leastSigBits[i];
+			rv.timestamps[i] ^= other.timestamps[i];
+			rv.flags[i] ^= other.flags[i];
+			rv.checksums[i] ^= other.checksums[i];
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Recover the keys of a sketch produced by subtract by repeatedly removing the key held alone in some cell.  A cell holds a single
+	 * key when its count is one, or minus one, and the checksum of the key its fields form matches the checksum held.
+	 *
+	 * @return The keys recovered, or null when the keys could not all be recovered because the sketch holds too many
+	 */
+	public Difference decode() {
+		OperationSketch work = new OperationSketch(this);
+		Difference rv = new Difference();
+		Deque<Integer> pure = new ArrayDeque<>();
+
+		for (int i = 0; i < work.getCellCount(); ++i) {
+			pure.add(i);
+		}
+
+		while (!pure.isEmpty()) {
+			int cell = pure.poll();
+			int count = work.counts[cell];
+
+			if (1 == Math.abs(count)) {
+				Key key = new Key(new UUID(work.mostSigBits[cell], work.leastSigBits[cell]), work.timestamps[cell], 0 != work.flags[cell]);
+
+				if (key.checksum() == work.checksums[cell]) {
+					(0 < count ? rv.local : rv.remote).add(key);
+
+					for (int index : work.cells(key.checksum())) {
+						pure.add(index);
+					}
+
+					work.toggle(key, -count);
+				}
+			}
+		}
+
+		for (int i = 0; i < work.getCellCount(); ++i) {
+			if (0 != work.counts[i] || 0 != work.checksums[i]) {
+				return null;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Add a key to, or remove a key from, each of its cells
+	 *
+	 * @param key The key to add or remove
+	 * @param delta One to add the key; minus one to remove it
+	 */
+	private void toggle(Key key, int delta) {
+		long checksum = key.checksum();
+
+		for (int cell : this.cells(checksum)) {
+			this.counts[cell] += delta;
+			this.mostSigBits[cell] ^= key.getId().getMostSignificantBits();
+			this.leastSigBits[cell] ^= key.getId().getLeastSignificantBits();
+			this.timestamps[cell] ^= key.getTimestamp();
+			this.flags[cell] ^= key.isRemoved() ? 1 : 0;
+			this.checksums[cell] ^= checksum;
+		}
+	}
+
+	/**
+	 * Select the cells holding the key with the given checksum, one in each partition of the table
+	 *
+	 * @param checksum The checksum of the key
+	 * @return The index of the cell in each partition
+	 */
+	private int[] cells(long checksum) {
+		int width = this.getCellCount() / HASH_COUNT;
+		int[] rv = new int[HASH_COUNT];
+
+		for (int i = 0; i < HASH_COUNT; ++i) {
+			rv[i] = i * width + (int) Long.remainderUnsigned(Support.mix(checksum + i), width);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Build a sketch of the given ADD and REMOVE sets
+	 *
+	 * @param cells Minimum number of cells
+	 * @param addset The operations of the ADD set
+	 * @param remset The operations of the REMOVE set
+	 * @return The sketch of the sets
+	 */
+	public static OperationSketch of(int cells, Collection<Operation> addset, Collection<Operation> remset) {
+		OperationSketch rv = new OperationSketch(cells);
+
+		for (Operation op : addset) {
+			rv.recordAdded(op);
+		}
+
+		for (Operation op : remset) {
+			rv.recordRemoved(op);
+		}
+
+		return rv;
+	}
+}
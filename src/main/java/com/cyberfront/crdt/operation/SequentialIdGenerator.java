@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The SequentialIdGenerator class issues operation identifiers scoped to a node.  Each identifier packs the node identifier into
+ * its most significant bits and the next value of a counter into its least significant bits, so issuing one is an atomic
+ * increment rather than a draw from a shared SecureRandom.  Identifiers issued by one generator increase in the order issued, so
+ * operations from one node sharing a timestamp and type are ordered by their creation.
+ *
+ * The counter begins at the current time in milliseconds shifted left by twenty bits.  A node restarting with the same node
+ * identifier therefore continues past the identifiers it issued previously, unless it issued more than about a million a
+ * millisecond on average or its clock has been set back.
+ */
+public class SequentialIdGenerator implements Supplier<UUID> {
+	/** Number of bits the starting time is shifted to leave room for identifiers issued within each millisecond */
+	private static final int COUNTER_BITS = 20;
+
+	/** Source of node identifiers for generators which are not given one */
+	private static final SecureRandom random = new SecureRandom();
+
+	/** Identifier of the node issuing identifiers */
+	private final long nodeId;
+
+	/** Counter supplying the least significant bits of each identifier */
+	private final AtomicLong counter;
+
+	/**
+	 * Constructor for a generator with a randomly chosen node identifier
+	 */
+	public SequentialIdGenerator() {
+		this(random.nextLong());
+	}
+
+	/**
+	 * Constructor for a generator with the given node identifier, which must be distinct from that of every other node issuing
+	 * operations
+	 *
+	 * @param nodeId Identifier of the node issuing identifiers
+	 */
+	public SequentialIdGenerator(long nodeId) {
+		this(nodeId, System.currentTimeMillis() << COUNTER_BITS);
+	}
+
+	/**
+	 * Constructor for a generator with the given node identifier and initial counter value
+	 *
+	 * @param nodeId Identifier of the node issuing identifiers
+	 * @param counter The value of the least significant bits of the first identifier issued
+	 */
+	public SequentialIdGenerator(long nodeId, long counter) {
+		this.nodeId = nodeId;
+		this.counter = new AtomicLong(counter);
+	}
+
+	/**
+	 * Retrieve the identifier of the node issuing identifiers
+	 *
+	 * @return The identifier of the node issuing identifiers
+	 */
+	public long getNodeId() {
+		return this.nodeId;
+	}
+
+	/**
+	 * Issue the next identifier
+	 *
+	 * @return The next identifier
+	 */
+	@Override
+	public UUID get() {
+		return new UUID(this.nodeId, this.counter.getAndIncrement());
+	}
+}
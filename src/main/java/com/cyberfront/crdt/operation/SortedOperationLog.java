@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The SortedOperationLog class stores the operations of both the ADD and REMOVE sets in a single array kept in operation order, with
+ * the set membership of each operation held in a parallel array of flags.  Since operations almost always arrive at or near the end
+ * of the order, an arriving operation is first compared with the last one held, and when it follows it is appended in constant
+ * amortized time.  Operations arriving out of order are located by binary search and spliced in.  Iteration is a sequential scan of
+ * the array, and the operations following a given timestamp are located by binary search.  The operations of another replica are
+ * merged with those held in a single pass, rather than spliced in one at a time.
+ */
+public class SortedOperationLog extends AbstractOperationLog {
+	/** Initial capacity of the log */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** Flag marking membership in the ADD set */
+	private static final byte ADDED = 1;
+
+	/** Flag marking membership in the REMOVE set */
+	private static final byte REMOVED = 2;
+
+	/** Number of operations in the log */
+	private int size = 0;
+
+	/** The operations in operation order */
+	private Operation[] operations = new Operation[INITIAL_CAPACITY];
+
+	/** Set membership flags of each operation */
+	private byte[] flags = new byte[INITIAL_CAPACITY];
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertAdd(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertAdd(Operation op) {
+		return this.insert(op, ADDED);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertRem(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertRem(Operation op) {
+		return this.insert(op, REMOVED);
+	}
+
+	/**
+	 * Combine the operations of the given sets with those held in a single pass, building the merged arrays afresh.  When either set
+	 * is not presented in operation order, its operations are instead recorded one at a time.
+	 *
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#merge(java.util.Collection, java.util.Collection)
+	 */
+	@Override
+	public long merge(Collection<Operation> addset, Collection<Operation> remset) {
+		if (!isOrdered(addset) || !isOrdered(remset)) {
+			return super.merge(addset, remset);
+		}
+
+		Operation[] merged = new Operation[Math.max(INITIAL_CAPACITY, this.size + addset.size() + remset.size())];
+		byte[] mergedFlags = new byte[merged.length];
+		Iterator<Operation> adds = addset.iterator();
+		Iterator<Operation> rems = remset.iterator();
+		Operation add = adds.hasNext() ? adds.next() : null;
+		Operation rem = rems.hasNext() ? rems.next() : null;
+		int index = 0;
+		int count = 0;
+		long rv = 0;
+
+		while (index < this.size || null != add || null != rem) {
+			Operation op = earliest(earliest(index < this.size ? this.operations[index] : null, add), rem);
+			byte prior = 0;
+			byte flag = 0;
+
+			if (index < this.size && 0 == op.compareTo(this.operations[index])) {
+				prior = this.flags[index++];
+			}
+
+			if (null != add && 0 == op.compareTo(add)) {
+				flag |= ADDED;
+				add = adds.hasNext() ? adds.next() : null;
+			}
+
+			if (null != rem && 0 == op.compareTo(rem)) {
+				flag |= REMOVED;
+				rem = rems.hasNext() ? rems.next() : null;
+			}
+
+			rv += Integer.bitCount(flag & ~prior);
+			merged[count] = op;
+			mergedFlags[count++] = (byte) (prior | flag);
+		}
+
+		this.operations = merged;
+		this.flags = mergedFlags;
+		this.size = count;
+		this.recount();
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isAdded(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isAdded(Operation op) {
+		int index = this.find(op);
+		return 0 <= index && 0 != (this.flags[index] & ADDED);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isRemoved(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isRemoved(Operation op) {
+		int index = this.find(op);
+		return 0 <= index && 0 != (this.flags[index] & REMOVED);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsAfter(long)
+	 */
+	@Override
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		int low = this.after(timestamp);
+		List<Operation> rv = new ArrayList<>(this.size - low);
+
+		for (int i = low; i < this.size; ++i) {
+			if (ADDED == this.flags[i]) {
+				rv.add(this.operations[i]);
+			}
+		}
+
+		return Collections.unmodifiableList(rv);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#erase()
+	 */
+	@Override
+	protected void erase() {
+		Arrays.fill(this.operations, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#truncate(long)
+	 */
+	@Override
+	protected long truncate(long timestamp) {
+		int count = this.after(timestamp);
+
+		if (0 < count) {
+			System.arraycopy(this.operations, count, this.operations, 0, this.size - count);
+			System.arraycopy(this.flags, count, this.flags, 0, this.size - count);
+			Arrays.fill(this.operations, this.size - count, this.size, null);
+			this.size -= count;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Locate the first operation with a timestamp later than the one given by bisection
+	 *
+	 * @param timestamp The timestamp which the operation located must follow
+	 * @return Position of the first operation later than the timestamp, or the size of the log when there is none
+	 */
+	private int after(long timestamp) {
+		int low = 0;
+		int high = this.size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.operations[mid].getTimestamp() <= timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#iterator(com.cyberfront.crdt.operation.AbstractOperationLog.Membership)
+	 */
+	@Override
+	protected Iterator<Operation> iterator(Membership membership) {
+		byte mask = Membership.REMOVED == membership ? REMOVED : ADDED;
+		byte match = Membership.ACTIVE == membership ? ADDED : mask;
+		byte test = Membership.ACTIVE == membership ? (byte) (ADDED | REMOVED) : mask;
+
+		return new Iterator<Operation>() {
+			private int next = this.advance(0);
+
+			private int advance(int from) {
+				int rv = from;
+				while (rv < size && match != (flags[rv] & test)) {
+					++rv;
+				}
+				return rv;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.next < size;
+			}
+
+			@Override
+			public Operation next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				Operation rv = operations[this.next];
+				this.next = this.advance(this.next + 1);
+				return rv;
+			}
+		};
+	}
+
+	/**
+	 * Record the operation as a member of the set given by the flag, storing it first if it is not already in the log
+	 *
+	 * @param op The operation to record
+	 * @param flag The flag of the set in which to record the operation
+	 * @return True exactly when the operation was not already a member of the set
+	 */
+	private boolean insert(Operation op, byte flag) {
+		int index = this.find(op);
+
+		if (0 > index) {
+			index = -index - 1;
+			this.splice(index, op);
+		} else if (0 != (this.flags[index] & flag)) {
+			return false;
+		}
+
+		this.flags[index] |= flag;
+		return true;
+	}
+
+	/**
+	 * Determine whether the operations are presented in strictly increasing operation order
+	 *
+	 * @param operations The operations to examine
+	 * @return True exactly when each operation follows the one before it
+	 */
+	private static boolean isOrdered(Collection<Operation> operations) {
+		Operation previous = null;
+
+		for (Operation op : operations) {
+			if (null != previous && 0 <= previous.compareTo(op)) {
+				return false;
+			}
+
+			previous = op;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Select the earlier of two operations, either of which may be absent.  The first is selected when they are equal, so that the
+	 * operation already held is retained in preference to an equal one arriving.
+	 *
+	 * @param first The first operation, or null
+	 * @param second The second operation, or null
+	 * @return The earlier of the operations present, or null when neither is
+	 */
+	private static Operation earliest(Operation first, Operation second) {
+		if (null == first) {
+			return second;
+		} else if (null == second) {
+			return first;
+		}
+
+		return 0 < first.compareTo(second) ? second : first;
+	}
+
+	/**
+	 * Locate the operation in the log.  The last operation is checked first, since operations mostly arrive in order, and the log is
+	 * otherwise searched by bisection.
+	 *
+	 * @param op The operation to locate
+	 * @return Position of the operation if present; otherwise -(p + 1) where p is the position at which it belongs
+	 */
+	private int find(Operation op) {
+		if (0 == this.size || 0 < op.compareTo(this.operations[this.size - 1])) {
+			return -this.size - 1;
+		}
+
+		return Arrays.binarySearch(this.operations, 0, this.size, op);
+	}
+
+	/**
+	 * Store an operation at the given position, shifting those which follow it
+	 *
+	 * @param index Position at which to store the operation
+	 * @param op The operation to store
+	 */
+	private void splice(int index, Operation op) {
+		if (this.size == this.operations.length) {
+			this.operations = Arrays.copyOf(this.operations, 2 * this.size);
+			this.flags = Arrays.copyOf(this.flags, 2 * this.size);
+		}
+
+		if (index < this.size) {
+			System.arraycopy(this.operations, index, this.operations, index + 1, this.size - index);
+			System.arraycopy(this.flags, index, this.flags, index + 1, this.size - index);
+		}
+
+		this.operations[index] = op;
+		this.flags[index] = 0;
+		++this.size;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.cyberfront.crdt.support.Support;
+
+/**
+ * The StabilityTracker class determines which operations are causally stable, meaning every replica is known to have received them.
+ * Each replica is identified by the node identifier of the SequentialIdGenerator from which it generates its operations, which must be
+ * its own, as installed with CRDTManager.setIdGenerator.  A replica acknowledges a timestamp once every operation with a timestamp no
+ * later than that one has arrived there with its final status, approved or rejected, as CRDTManager.acknowledge assures.  An
+ * operation still PENDING may yet be rejected, so it is not settled until its approval or rejection arrives.  The stability horizon
+ * is the least timestamp acknowledged by any replica.  No operation or removal at or before the horizon remains to arrive anywhere,
+ * so a replica may fold those operations into a base document and discard them, along with their tombstones in the REMOVE set.
+ *
+ * The set of replicas is fixed when the tracker is created, since a replica unknown to it could still be missing operations the
+ * horizon covers.  Acknowledgements never move backward, so those delivered out of order are harmless.
+ */
+public class StabilityTracker {
+	/** The latest timestamp acknowledged by each replica */
+	private final Map<Long, Long> acknowledged = new HashMap<>();
+
+	/**
+	 * Constructor for a tracker of the given replicas, none of which has acknowledged any timestamp
+	 * @param nodes The node identifiers of the replicas
+	 */
+	public StabilityTracker(Collection<Long> nodes) {
+		for (long node : nodes) {
+			this.acknowledged.put(node, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Retrieve the node identifiers of the replicas tracked
+	 * @return A read only view of the node identifiers of the replicas
+	 */
+	public synchronized Set<Long> getNodes() {
+		return Collections.unmodifiableSet(this.acknowledged.keySet());
+	}
+
+	/**
+	 * Record that every operation with a timestamp no later than the one given has arrived at the given replica with its final status
+	 * @param node The node identifier of the replica
+	 * @param timestamp The timestamp acknowledged
+	 */
+	public synchronized void acknowledge(long node, long timestamp) {
+		Long previous = this.acknowledged.get(node);
+
+		if (null == previous) {
+			throw new IllegalArgumentException("Acknowledgement from an untracked node: " + node);
+		}
+
+		this.acknowledged.put(node, Math.max(previous, timestamp));
+	}
+
+	/**
+	 * Retrieve the latest timestamp acknowledged by the given replica
+	 * @param node The node identifier of the replica
+	 * @return The latest timestamp acknowledged by the replica, or Long.MIN_VALUE if it has acknowledged none
+	 */
+	public synchronized long getAcknowledged(long node) {
+		Long rv = this.acknowledged.get(node);
+
+		if (null == rv) {
+			throw new IllegalArgumentException("Untracked node: " + node);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve the stability horizon, the least timestamp acknowledged by any replica.  Every operation with a timestamp no later
+	 * than the horizon has been received by every replica.
+	 * @return The stability horizon, or Long.MIN_VALUE until every replica has acknowledged a timestamp
+	 */
+	public synchronized long getHorizon() {
+		return this.acknowledged.values().stream().mapToLong(Long::longValue).min().orElse(Long.MIN_VALUE);
+	}
+
+	/**
+	 * Generate a JSON formatted segment listing the acknowledged timestamps and the horizon
+	 * @return The JSON formatted segment
+	 */
+	protected synchronized String getSegment() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("\"acknowledged\":" + Support.convert(this.acknowledged) + ",");
+		sb.append("\"horizon\":" + this.getHorizon());
+
+		return sb.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{" + this.getSegment() + "}";
+	}
+}
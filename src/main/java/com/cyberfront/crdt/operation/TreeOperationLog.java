@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.cyberfront.crdt.operation.Operation.OperationType;
+
+/**
+ * The TreeOperationLog class stores the ADD and REMOVE sets as a pair of red-black trees of Operation instances.  Lookups and
+ * insertions take logarithmic time wherever the operation falls in the order.
+ */
+public class TreeOperationLog extends AbstractOperationLog {
+	/** The ADD set */
+	private final NavigableSet<Operation> addSet = new TreeSet<>();
+
+	/** The REMOVE set */
+	private final NavigableSet<Operation> remSet = new TreeSet<>();
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertAdd(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertAdd(Operation op) {
+		return this.addSet.add(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#insertRem(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	protected boolean insertRem(Operation op) {
+		return this.remSet.add(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isAdded(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isAdded(Operation op) {
+		return this.addSet.contains(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#isRemoved(com.cyberfront.crdt.operation.Operation)
+	 */
+	@Override
+	public boolean isRemoved(Operation op) {
+		return this.remSet.contains(op);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.OperationLog#getOpsAfter(long)
+	 */
+	@Override
+	public Collection<Operation> getOpsAfter(long timestamp) {
+		NavigableSet<Operation> tail = 0 > timestamp ? this.addSet
+				: Long.MAX_VALUE == timestamp ? Collections.emptyNavigableSet()
+				: this.addSet.tailSet(new Operation(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), OperationType.CREATE, null, timestamp + 1), true);
+
+		return Collections.unmodifiableList(tail.stream().filter(op -> !this.remSet.contains(op)).collect(Collectors.toList()));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#erase()
+	 */
+	@Override
+	protected void erase() {
+		this.addSet.clear();
+		this.remSet.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#truncate(long)
+	 */
+	@Override
+	protected long truncate(long timestamp) {
+		if (Long.MAX_VALUE == timestamp) {
+			long rv = this.addSet.size() + this.remSet.stream().filter(op -> !this.addSet.contains(op)).count();
+			this.erase();
+			return rv;
+		}
+
+		Operation bound = new Operation(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), OperationType.CREATE, null, timestamp + 1);
+		NavigableSet<Operation> added = this.addSet.headSet(bound, false);
+		NavigableSet<Operation> removed = this.remSet.headSet(bound, false);
+		long rv = added.size() + removed.stream().filter(op -> !added.contains(op)).count();
+
+		added.clear();
+		removed.clear();
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operation.AbstractOperationLog#iterator(com.cyberfront.crdt.operation.AbstractOperationLog.Membership)
+	 */
+	@Override
+	protected Iterator<Operation> iterator(Membership membership) {
+		switch (membership) {
+		case ADDED:
+			return Collections.unmodifiableNavigableSet(this.addSet).iterator();
+		case REMOVED:
+			return Collections.unmodifiableNavigableSet(this.remSet).iterator();
+		default:
+			return this.addSet.stream().filter(op -> !this.remSet.contains(op)).iterator();
+		}
+	}
+}
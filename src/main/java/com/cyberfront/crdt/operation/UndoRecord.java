@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The UndoRecord class accumulates the inverse of each change made to a JSON document as operations are applied to it in place.
+ * Reverting the record restores the document to its state before the first change was recorded.
+ * 
+ * Changes are recorded by the path of the container they modify rather than by a reference to the container.  The record therefore
+ * remains valid when the document is replaced by a deep copy of itself, so long as changes are reverted in the reverse of the order
+ * in which they were made.
+ */
+public final class UndoRecord {
+	/**
+	 * The Inverse interface defines a single step in reverting the changes recorded in an UndoRecord
+	 */
+	private interface Inverse {
+		/**
+		 * Revert a single change to the given document
+		 *
+		 * @param root The root of the document to revert
+		 * @return The root of the document once the change is reverted
+		 */
+		JsonNode revert(JsonNode root);
+	}
+
+	/** The inverse of each recorded change in the order the changes were made */
+	private final List<Inverse> inverses = new ArrayList<>();
+
+	/**
+	 * Retrieve the number of changes recorded
+	 *
+	 * @return The number of changes recorded
+	 */
+	public int size() {
+		return this.inverses.size();
+	}
+
+	/**
+	 * Determine whether any changes are recorded
+	 *
+	 * @return True exactly when no changes are recorded
+	 */
+	public boolean isEmpty() {
+		return this.inverses.isEmpty();
+	}
+
+	/**
+	 * Discard all recorded changes
+	 */
+	public void clear() {
+		this.inverses.clear();
+	}
+
+	/**
+	 * Revert all recorded changes to the given document and discard them
+	 *
+	 * @param root The root of the document to revert
+	 * @return The root of the document once all recorded changes are reverted
+	 */
+	public JsonNode revert(JsonNode root) {
+		return this.revert(root, 0);
+	}
+
+	/**
+	 * Revert the changes recorded after the given mark and discard them
+	 *
+	 * @param root The root of the document to revert
+	 * @param mark The number of recorded changes to retain
+	 * @return The root of the document once the changes following the mark are reverted
+	 */
+	JsonNode revert(JsonNode root, int mark) {
+		JsonNode rv = root;
+
+		for (int i = this.inverses.size() - 1; i >= mark; --i) {
+			rv = this.inverses.remove(i).revert(rv);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Record the replacement of the document root
+	 *
+	 * @param previous The root of the document prior to its replacement
+	 */
+	void replaceRoot(JsonNode previous) {
+		this.inverses.add(root -> previous);
+	}
+
+	/**
+	 * Record the addition of a new property to an object
+	 *
+	 * @param parent Path to the object to which the property was added
+	 * @param key Name of the property added
+	 */
+	void addProperty(String[] parent, String key) {
+		this.inverses.add(root -> {
+			((ObjectNode) resolve(root, parent)).remove(key);
+			return root;
+		});
+	}
+
+	/**
+	 * Record the replacement of the value of an existing property of an object
+	 *
+	 * @param parent Path to the object holding the property
+	 * @param key Name of the property replaced
+	 * @param previous Value of the property prior to its replacement
+	 */
+	void replaceProperty(String[] parent, String key, JsonNode previous) {
+		this.inverses.add(root -> {
+			((ObjectNode) resolve(root, parent)).set(key, previous);
+			return root;
+		});
+	}
+
+	/**
+	 * Record the removal of a property from an object
+	 *
+	 * @param parent Path to the object from which the property was removed
+	 * @param key Name of the property removed
+	 * @param index Position of the property among those of the object prior to its removal
+	 * @param previous Value of the property prior to its removal
+	 */
+	void removeProperty(String[] parent, String key, int index, JsonNode previous) {
+		this.inverses.add(root -> {
+			MutablePatch.insert((ObjectNode) resolve(root, parent), key, index, previous);
+			return root;
+		});
+	}
+
+	/**
+	 * Record the insertion of an element into an array
+	 *
+	 * @param parent Path to the array into which the element was inserted
+	 * @param index Position of the inserted element
+	 */
+	void addElement(String[] parent, int index) {
+		this.inverses.add(root -> {
+			((ArrayNode) resolve(root, parent)).remove(index);
+			return root;
+		});
+	}
+
+	/**
+	 * Record the replacement of an element of an array
+	 *
+	 * @param parent Path to the array holding the element
+	 * @param index Position of the replaced element
+	 * @param previous Value of the element prior to its replacement
+	 */
+	void replaceElement(String[] parent, int index, JsonNode previous) {
+		this.inverses.add(root -> {
+			((ArrayNode) resolve(root, parent)).set(index, previous);
+			return root;
+		});
+	}
+
+	/**
+	 * Record the removal of an element from an array
+	 *
+	 * @param parent Path to the array from which the element was removed
+	 * @param index Position of the element prior to its removal
+	 * @param previous Value of the element prior to its removal
+	 */
+	void removeElement(String[] parent, int index, JsonNode previous) {
+		this.inverses.add(root -> {
+			((ArrayNode) resolve(root, parent)).insert(index, previous);
+			return root;
+		});
+	}
+
+	/**
+	 * Resolve the container at the given path.  Since changes are reverted in the reverse order they were made, the container
+	 * modified by a change is always present when that change is reverted.
+	 *
+	 * @param root The root of the document
+	 * @param path Reference tokens leading from the root to the container
+	 * @return The container at the given path
+	 */
+	private static JsonNode resolve(JsonNode root, String[] path) {
+		return MutablePatch.resolve(root, path, path.length);
+	}
+}
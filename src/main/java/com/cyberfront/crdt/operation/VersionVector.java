@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.operation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The VersionVector class is a compact summary of the operations a replica holds, recording for each origin the counters of the
+ * operations from that origin in each of the ADD and REMOVE sets.  The origin of an operation is the node identifier forming the
+ * most significant bits of its identifier, and its counter the least significant bits, as assigned by a SequentialIdGenerator.  A
+ * replica given the version vector of another sends only those operations the other has not yet seen, rather than its entire
+ * operation log.  Each replica must therefore generate its operations with a SequentialIdGenerator of its own, as CRDTManager does
+ * unless given another; replicas sharing a node identifier appear as one origin, and random identifiers make every operation an
+ * origin of its own.
+ *
+ * The counters of each origin are kept as a dotted version vector, a run of consecutive counters followed by the runs of those
+ * which arrived ahead of a gap.  An operation is taken as seen only when its own counter is recorded, so operations arriving out of
+ * order, and removals of earlier operations after later ones, are never mistaken for seen.  The REMOVE set holds the operations
+ * removed rather than removal events, so its runs are kept by the origin of each removed operation; removals of scattered
+ * operations leave one run for each, bounded by the size of the REMOVE set.  The runs of each origin are listed in JSON as a flat
+ * array of the first and last counter of each run.
+ */
+public class VersionVector {
+	/** Property label for the counters of the ADD set */
+	private static final String ADDED = "added";
+
+	/** Property label for the counters of the REMOVE set */
+	private static final String REMOVED = "removed";
+
+	/** Runs of counters of the operations of each origin in the ADD set, mapping the first counter of each run to its last */
+	private final Map<Long, NavigableMap<Long, Long>> added = new HashMap<>();
+
+	/** Runs of counters of the operations of each origin in the REMOVE set, mapping the first counter of each run to its last */
+	private final Map<Long, NavigableMap<Long, Long>> removed = new HashMap<>();
+
+	/**
+	 * Default constructor for a version vector summarizing no operations
+	 */
+	public VersionVector() { }
+
+	/**
+	 * Copy constructor duplicating the runs of counters of the given version vector
+	 *
+	 * @param src The version vector to copy
+	 */
+	public VersionVector(VersionVector src) {
+		copy(this.added, src.added);
+		copy(this.removed, src.removed);
+	}
+
+	/**
+	 * Constructor specifying the runs of counters of each origin in each set
+	 * @param added First and last counter of each run of each origin in the ADD set
+	 * @param removed First and last counter of each run of each origin in the REMOVE set
+	 */
+	@JsonCreator
+	public VersionVector(@JsonProperty(ADDED) Map<Long, long[]> added,
+						 @JsonProperty(REMOVED) Map<Long, long[]> removed) {
+		restore(this.added, added);
+		restore(this.removed, removed);
+	}
+
+	/**
+	 * Retrieve the origin of an operation, the node identifier forming the most significant bits of its identifier
+	 *
+	 * @param op The operation whose origin to retrieve
+	 * @return The origin of the operation
+	 */
+	public static long getOrigin(Operation op) {
+		return op.getId().getMostSignificantBits();
+	}
+
+	/**
+	 * Retrieve the counter of an operation, the sequence number forming the least significant bits of its identifier
+	 *
+	 * @param op The operation whose counter to retrieve
+	 * @return The counter of the operation
+	 */
+	public static long getCounter(Operation op) {
+		return op.getId().getLeastSignificantBits();
+	}
+
+	/**
+	 * Retrieve the runs of counters of the operations of each origin in the ADD set
+	 *
+	 * @return The first and last counter of each run of each origin in the ADD set
+	 */
+	@JsonProperty(ADDED)
+	public Map<Long, long[]> getAdded() {
+		return flatten(this.added);
+	}
+
+	/**
+	 * Retrieve the runs of counters of the operations of each origin in the REMOVE set
+	 *
+	 * @return The first and last counter of each run of each origin in the REMOVE set
+	 */
+	@JsonProperty(REMOVED)
+	public Map<Long, long[]> getRemoved() {
+		return flatten(this.removed);
+	}
+
+	/**
+	 * Record an operation of the ADD set in the summary
+	 *
+	 * @param op The operation to record
+	 */
+	public void recordAdded(Operation op) {
+		record(this.added.computeIfAbsent(getOrigin(op), origin -> new TreeMap<>()), getCounter(op));
+	}
+
+	/**
+	 * Record an operation of the REMOVE set in the summary
+	 *
+	 * @param op The operation to record
+	 */
+	public void recordRemoved(Operation op) {
+		record(this.removed.computeIfAbsent(getOrigin(op), origin -> new TreeMap<>()), getCounter(op));
+	}
+
+	/**
+	 * Determine whether the summarized replica has seen the given operation in its ADD set
+	 *
+	 * @param op The operation to look for
+	 * @return True exactly when the ADD set summarized includes the counter of the operation for its origin
+	 */
+	public boolean isAdded(Operation op) {
+		return isCovered(this.added.get(getOrigin(op)), getCounter(op));
+	}
+
+	/**
+	 * Determine whether the summarized replica has seen the given operation in its REMOVE set
+	 *
+	 * @param op The operation to look for
+	 * @return True exactly when the REMOVE set summarized includes the counter of the operation for its origin
+	 */
+	public boolean isRemoved(Operation op) {
+		return isCovered(this.removed.get(getOrigin(op)), getCounter(op));
+	}
+
+	/**
+	 * Add a counter to the runs of an origin, joining it with the runs ending just before or starting just after it
+	 *
+	 * @param runs Runs of counters of the origin, mapping the first counter of each run to its last
+	 * @param counter The counter to add
+	 */
+	private static void record(NavigableMap<Long, Long> runs, long counter) {
+		Map.Entry<Long, Long> before = runs.floorEntry(counter);
+
+		if (null != before && before.getValue() >= counter) {
+			return;
+		}
+
+		long first = counter;
+		long last = counter;
+
+		if (null != before && counter != Long.MIN_VALUE && before.getValue() == counter - 1) {
+			first = before.getKey();
+		}
+
+		if (counter != Long.MAX_VALUE) {
+			Long after = runs.remove(counter + 1);
+
+			if (null != after) {
+				last = after;
+			}
+		}
+
+		runs.put(first, last);
+	}
+
+	/**
+	 * Determine whether a counter falls within one of the runs of an origin
+	 *
+	 * @param runs Runs of counters of the origin, or null when none were recorded
+	 * @param counter The counter to look for
+	 * @return True exactly when the counter lies between the first and last counter of one of the runs
+	 */
+	private static boolean isCovered(NavigableMap<Long, Long> runs, long counter) {
+		Map.Entry<Long, Long> before = null == runs ? null : runs.floorEntry(counter);
+		return null != before && counter <= before.getValue();
+	}
+
+	/**
+	 * Copy the runs of each origin
+	 *
+	 * @param target Runs of counters of each origin to fill
+	 * @param source Runs of counters of each origin to copy
+	 */
+	private static void copy(Map<Long, NavigableMap<Long, Long>> target, Map<Long, NavigableMap<Long, Long>> source) {
+		for (Map.Entry<Long, NavigableMap<Long, Long>> entry : source.entrySet()) {
+			target.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Convert the runs of each origin to arrays listing the first and last counter of each run in turn
+	 *
+	 * @param source Runs of counters of each origin
+	 * @return The first and last counter of each run of each origin
+	 */
+	private static Map<Long, long[]> flatten(Map<Long, NavigableMap<Long, Long>> source) {
+		Map<Long, long[]> rv = new HashMap<>();
+
+		for (Map.Entry<Long, NavigableMap<Long, Long>> entry : source.entrySet()) {
+			long[] bounds = new long[2 * entry.getValue().size()];
+			int index = 0;
+
+			for (Map.Entry<Long, Long> run : entry.getValue().entrySet()) {
+				bounds[index++] = run.getKey();
+				bounds[index++] = run.getValue();
+			}
+
+			rv.put(entry.getKey(), bounds);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Restore the runs of each origin from arrays listing the first and last counter of each run in turn
+	 *
+	 * @param target Runs of counters of each origin to fill
+	 * @param source The first and last counter of each run of each origin, which may be null
+	 */
+	private static void restore(Map<Long, NavigableMap<Long, Long>> target, Map<Long, long[]> source) {
+		if (null == source) {
+			return;
+		}
+
+		for (Map.Entry<Long, long[]> entry : source.entrySet()) {
+			long[] bounds = entry.getValue();
+
+			if (null == bounds || 0 != bounds.length % 2) {
+				throw new IllegalArgumentException("Runs of origin " + entry.getKey() + " must list a first and last counter for each");
+			}
+
+			NavigableMap<Long, Long> runs = target.computeIfAbsent(entry.getKey(), origin -> new TreeMap<>());
+
+			for (int index = 0; index < bounds.length; index += 2) {
+				if (bounds[index] > bounds[index + 1]) {
+					throw new IllegalArgumentException("Run of origin " + entry.getKey() + " must not end before it starts");
+				}
+
+				runs.put(bounds[index], bounds[index + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Generate a JSON formatted list of the runs of each origin
+	 *
+	 * @param runs Runs of counters of each origin
+	 * @return The JSON formatted list of the first and last counter of each run of each origin
+	 */
+	private static String convert(Map<Long, NavigableMap<Long, Long>> runs) {
+		Map<Long, String> bounds = new HashMap<>();
+
+		for (Map.Entry<Long, long[]> entry : flatten(runs).entrySet()) {
+			bounds.put(entry.getKey(), Arrays.toString(entry.getValue()));
+		}
+
+		return Support.convert(bounds);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (null == obj || !(obj instanceof VersionVector)) {
+			return false;
+		}
+
+		VersionVector vector = (VersionVector) obj;
+
+		return this.added.equals(vector.added) && this.removed.equals(vector.removed);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * this.added.hashCode() + this.removed.hashCode();
+	}
+
+	/**
+	 * Generate a JSON formatted segment listing the fields of the version vector
+	 *
+	 * @return The JSON formatted segment
+	 */
+	protected String getSegment() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("\"added\":" + convert(this.added) + ",");
+		sb.append("\"removed\":" + convert(this.removed));
+
+		return sb.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{" + this.getSegment() + "}";
+	}
+}
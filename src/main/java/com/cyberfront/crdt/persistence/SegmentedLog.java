@@ -0,0 +1,599 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.OperationJournal;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.OperationCodec;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+
+/**
+ * The SegmentedLog class persists the operations pushed into CRDTManager instances in an append only log, from which their CRDTs are
+ * rebuilt after a restart.  The log is a directory of fixed size segment files, each memory mapped.  Each record holds the key of
+ * the CRDT to which an operation manager was pushed and the manager in the binary form of OperationCodec, which is encoded directly
+ * into the mapped segment.  The length and checksum preceding each record are written once the record is complete, so a record torn
+ * by a crash ends the replay of its segment rather than corrupting it.  When a record does not fit in the remaining space of the
+ * active segment, a new segment is started.
+ *
+ * Since the ADD and REMOVE sets of a CRDT are indifferent to the order and repetition of the operations delivered to them, segments
+ * are replayed in any order, and compaction simply rewrites the distinct operations of the sealed segments as new records before
+ * deleting those segments.  A crash during compaction leaves some operations recorded twice, which is harmless.
+ *
+ * Segments are opened anew on each start, so the log of a previous run is sealed and a new active segment begun.  Writes reach the
+ * file system as the mapped pages are written back, or when flush is called.
+ *
+ * Taking a snapshot folds the sealed segments into a Snapshot file, along with the previous snapshot, and then deletes them, so a
+ * restart reads the latest snapshot and replays only the segments which follow it rather than the entire history of the log.  Given
+ * a stability horizon, the operations of each CRDT at or before it are folded into its base document as well, so the snapshot holds
+ * only the operations which follow it.
+ */
+public class SegmentedLog implements Closeable {
+	/** Default size of each segment file in bytes */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+	/** Value marking the start of each segment file */
+	private static final int MAGIC = 0x43524454;
+
+	/** Size of the segment header holding the magic value */
+	private static final int HEADER_SIZE = 4;
+
+	/** Size of the record header holding the payload length and checksum */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** Suffix of segment file names, which are the hexadecimal sequence number of the segment followed by this suffix */
+	private static final String SUFFIX = ".segment";
+
+	/** Logger to use when displaying state information */
+	private static final Logger logger = LogManager.getLogger(SegmentedLog.class);
+
+	/** Directory holding the segment files */
+	private final Path directory;
+
+	/** Size of each segment file in bytes */
+	private final int segmentSize;
+
+	/** Sequence number of the last segment covered by the latest snapshot, or zero when there is no snapshot */
+	private long covered = 0;
+
+	/** Sequence numbers of the sealed segments, which receive no further records */
+	private final List<Long> sealed = new ArrayList<>();
+
+	/** Sequence number of the active segment, to which records are appended */
+	private long sequence;
+
+	/** Mapped buffer of the active segment, positioned where the next record begins */
+	private MappedByteBuffer active;
+
+	/**
+	 * The BufferOutput class is an output stream writing directly into a byte buffer, so records are encoded in place in the mapped
+	 * segment rather than in an intermediate array
+	 */
+	private static class BufferOutput extends OutputStream {
+		/** Buffer into which to write */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Constructor for a stream writing into the given buffer at its position
+		 * @param buffer Buffer into which to write
+		 */
+		BufferOutput(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.OutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) {
+			this.buffer.put((byte) b);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.buffer.put(b, off, len);
+		}
+	}
+
+	/**
+	 * Constructor for a log in the given directory with segments of the default size
+	 * @param directory Directory holding the segment files, which is created if it does not exist
+	 * @throws IOException when the directory can not be read or the active segment created
+	 */
+	public SegmentedLog(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor for a log in the given directory with segments of the given size.  Segments already in the directory are sealed
+	 * and a new active segment begun.  Segments and snapshots superseded by the latest snapshot, which remain when a restart follows
+	 * a snapshot too closely for them to have been deleted, are deleted.
+	 * @param directory Directory holding the segment files, which is created if it does not exist
+	 * @param segmentSize Size of each segment file in bytes
+	 * @throws IOException when the directory can not be read or the active segment created
+	 */
+	public SegmentedLog(Path directory, int segmentSize) throws IOException {
+		if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		}
+
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+
+		List<Long> snapshots = this.list(Snapshot.SUFFIX);
+		List<Long> segments = this.list(SUFFIX);
+
+		this.covered = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+
+		for (long seq : snapshots.subList(0, Math.max(0, snapshots.size() - 1))) {
+			Files.deleteIfExists(Snapshot.getPath(this.directory, seq));
+		}
+
+		for (long seq : segments) {
+			if (seq > this.covered) {
+				this.sealed.add(seq);
+			} else {
+				Files.deleteIfExists(this.getPath(seq));
+			}
+		}
+
+		this.sequence = this.sealed.isEmpty() ? this.covered : this.sealed.get(this.sealed.size() - 1);
+		this.roll();
+	}
+
+	/**
+	 * List the sequence numbers of the files in the log directory with the given suffix
+	 * @param suffix Suffix of the file names to list
+	 * @return The sequence numbers of the files, in ascending order
+	 * @throws IOException when the directory can not be read
+	 */
+	private List<Long> list(String suffix) throws IOException {
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			return paths.map(path -> path.getFileName().toString())
+					.filter(name -> name.endsWith(suffix))
+					.map(name -> Long.parseUnsignedLong(name.substring(0, name.length() - suffix.length()), 16))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Retrieve the path of the segment file with the given sequence number
+	 * @param sequence Sequence number of the segment
+	 * @return The path of the segment file
+	 */
+	private Path getPath(long sequence) {
+		return this.directory.resolve(String.format("%016x", sequence) + SUFFIX);
+	}
+
+	/**
+	 * Retrieve the paths of the segment files of the log, sealed and active, in the order they were begun
+	 * @return The paths of the segment files
+	 */
+	public synchronized List<Path> getSegments() {
+		List<Path> rv = this.sealed.stream().map(this::getPath).collect(Collectors.toList());
+		rv.add(this.getPath(this.sequence));
+		return rv;
+	}
+
+	/**
+	 * Retrieve the path of the latest snapshot file
+	 * @return The path of the latest snapshot file, or null when no snapshot has been taken
+	 */
+	public synchronized Path getSnapshot() {
+		return 0 == this.covered ? null : Snapshot.getPath(this.directory, this.covered);
+	}
+
+	/**
+	 * Retrieve the size of each segment file in bytes
+	 * @return The size of each segment file in bytes
+	 */
+	public int getSegmentSize() {
+		return this.segmentSize;
+	}
+
+	/**
+	 * Seal the active segment, if any, and begin a new one with the next sequence number
+	 * @throws IOException when the new segment can not be created
+	 */
+	private void roll() throws IOException {
+		if (null != this.active) {
+			this.active.force();
+			this.sealed.add(this.sequence);
+		}
+
+		++this.sequence;
+
+		try (FileChannel channel = FileChannel.open(this.getPath(this.sequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			this.active = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+		}
+
+		force(this.directory);
+
+		this.active.putInt(MAGIC);
+	}
+
+	/**
+	 * Force the entries of a directory to storage, so a file created or renamed in it survives a crash along with the records forced
+	 * into it.  Windows can not open a directory as a channel and keeps its entries durable without this, so the failure is ignored
+	 * there.
+	 * @param directory Directory whose entries to force
+	 * @throws IOException when the directory can not be forced
+	 */
+	static void force(Path directory) throws IOException {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			if (!System.getProperty("os.name").startsWith("Windows")) {
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Append a record of an operation manager pushed into the CRDT with the given key, beginning a new segment when the record does
+	 * not fit in the active one
+	 * @param key Key of the CRDT into which the operation manager was pushed
+	 * @param mgr Operation manager to record
+	 * @throws IOException when a new segment can not be created
+	 */
+	public synchronized void append(UUID key, OperationManager mgr) throws IOException {
+		if (null == this.active) {
+			throw new IllegalStateException("Segmented log is closed: " + this.directory);
+		} else if (!this.write(key, mgr)) {
+			this.roll();
+
+			if (!this.write(key, mgr)) {
+				throw new IllegalArgumentException("Record exceeds segment size of " + this.segmentSize + ": " + mgr.toString());
+			}
+		}
+	}
+
+	/**
+	 * Write a record into the active segment.  The payload is encoded in place following space reserved for the record header, and
+	 * the checksum and then the length are written once the payload is complete.
+	 * @param key Key of the CRDT into which the operation manager was pushed
+	 * @param mgr Operation manager to record
+	 * @return True if the record was written, or false if it did not fit in the active segment
+	 * @throws IOException when the record can not be encoded
+	 */
+	private boolean write(UUID key, OperationManager mgr) throws IOException {
+		int start = this.active.position();
+
+		if (this.active.remaining() <= RECORD_HEADER_SIZE) {
+			return false;
+		}
+
+		try {
+			this.active.position(start + RECORD_HEADER_SIZE);
+			DataOutputStream out = new DataOutputStream(new BufferOutput(this.active));
+			out.writeLong(key.getMostSignificantBits());
+			out.writeLong(key.getLeastSignificantBits());
+			new OperationCodec.Encoder(out).write(mgr);
+		} catch (BufferOverflowException e) {
+			this.active.position(start);
+			return false;
+		}
+
+		int end = this.active.position();
+		ByteBuffer payload = this.active.duplicate();
+		CRC32 crc = new CRC32();
+
+		payload.position(start + RECORD_HEADER_SIZE).limit(end);
+		crc.update(payload);
+
+		this.active.putInt(start + Integer.BYTES, (int) crc.getValue());
+		this.active.putInt(start, end - start - RECORD_HEADER_SIZE);
+
+		return true;
+	}
+
+	/**
+	 * Retrieve a journal recording the operations pushed into the CRDTManager with the given key in this log, for use with
+	 * CRDTManager.setJournal.  Failures to record an operation are reported as an UncheckedIOException.
+	 * @param key Key of the CRDT whose operations to record
+	 * @return A journal recording operations in this log under the given key
+	 */
+	public OperationJournal journal(UUID key) {
+		return mgr -> {
+			try {
+				this.append(key, mgr);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/**
+	 * Force the records appended to the active segment to the storage device.  Segments are forced as they are sealed, so this makes
+	 * every record appended before the call durable.  The lock is held only to find the active segment, so appends proceed while it
+	 * is forced.
+	 */
+	public void flush() {
+		MappedByteBuffer current;
+
+		synchronized (this) {
+			current = this.active;
+		}
+
+		if (null != current) {
+			current.force();
+		}
+	}
+
+	/**
+	 * Replay each record of the log, sealed and active, passing its key and operation manager to the given consumer.  Records folded
+	 * into a snapshot are no longer in the log, so are not replayed.
+	 * @param consumer Consumer of the key and operation manager of each record
+	 * @throws IOException when a segment can not be read
+	 */
+	public synchronized void replay(BiConsumer<UUID, OperationManager> consumer) throws IOException {
+		for (long seq : this.sealed) {
+			this.replay(seq, consumer);
+		}
+
+		this.replay(this.sequence, consumer);
+	}
+
+	/**
+	 * Replay each record of a single segment, ending with the first record which is absent, incomplete or fails its checksum
+	 * @param seq Sequence number of the segment to replay
+	 * @param consumer Consumer of the key and operation manager of each record
+	 * @throws IOException when the segment can not be read or is not a segment file
+	 */
+	private void replay(long seq, BiConsumer<UUID, OperationManager> consumer) throws IOException {
+		ByteBuffer buffer;
+
+		if (seq == this.sequence && null != this.active) {
+			buffer = this.active.duplicate();
+			buffer.flip();
+		} else {
+			try (FileChannel channel = FileChannel.open(this.getPath(seq), StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		}
+
+		if (buffer.remaining() < HEADER_SIZE || 0 == buffer.getInt(0)) {
+			return;
+		} else if (MAGIC != buffer.getInt()) {
+			throw new IOException("Not a segment file: " + this.getPath(seq));
+		}
+
+		while (buffer.remaining() > RECORD_HEADER_SIZE) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+
+			if (length <= 0 || length > buffer.remaining()) {
+				return;
+			}
+
+			byte[] payload = new byte[length];
+			CRC32 crc = new CRC32();
+			buffer.get(payload);
+			crc.update(payload);
+
+			if (checksum != (int) crc.getValue()) {
+				logger.warn("Torn record in segment " + this.getPath(seq) + " at offset " + (buffer.position() - length - RECORD_HEADER_SIZE));
+				return;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			UUID key = new UUID(in.readLong(), in.readLong());
+			consumer.accept(key, new OperationCodec.Decoder(in).readOperationManager());
+		}
+	}
+
+	/**
+	 * Rebuild the CRDT of each key from the latest snapshot, if any, and the operations recorded for it in the log since
+	 * @return The CRDT rebuilt for each key, those in the snapshot first followed by the others in the order each was first recorded
+	 * @throws IOException when the snapshot or a segment can not be read
+	 */
+	public synchronized Map<UUID, LastWriteWins> rebuild() throws IOException {
+		List<Long> segments = new ArrayList<>(this.sealed);
+		segments.add(this.sequence);
+
+		return this.rebuild(this.loadSnapshot(), segments);
+	}
+
+	/**
+	 * Read the latest snapshot
+	 * @return The CRDT of each key in the latest snapshot, or an empty map when no snapshot has been taken
+	 * @throws IOException when the snapshot can not be read
+	 */
+	private Map<UUID, LastWriteWins> loadSnapshot() throws IOException {
+		return 0 == this.covered ? new LinkedHashMap<>() : Snapshot.read(Snapshot.getPath(this.directory, this.covered)).getCrdts();
+	}
+
+	/**
+	 * Rebuild the CRDT of each key from the given base and the operations recorded for it in the given segments.  The segments are
+	 * read in turn, and the operations gathered for each key are then merged into its CRDT in parallel across keys.  Since the base
+	 * CRDTs of a snapshot have their documents materialized, operations following those of the snapshot are applied directly to
+	 * them rather than replaying the operations of the snapshot.
+	 * @param base The CRDT of each key from which to begin, which is updated in place
+	 * @param segments Sequence numbers of the segments to replay
+	 * @return The CRDT rebuilt for each key, those in the base first followed by the others in the order each was first recorded
+	 * @throws IOException when a segment can not be read
+	 */
+	private Map<UUID, LastWriteWins> rebuild(Map<UUID, LastWriteWins> base, List<Long> segments) throws IOException {
+		Map<UUID, List<Operation>> addsets = new LinkedHashMap<>();
+		Map<UUID, List<Operation>> remsets = new HashMap<>();
+		Map<UUID, LastWriteWins> rv = new LinkedHashMap<>(base);
+		BiConsumer<UUID, OperationManager> consumer = (key, mgr) -> {
+			List<Operation> addset = addsets.computeIfAbsent(key, k -> new ArrayList<>());
+			List<Operation> remset = remsets.computeIfAbsent(key, k -> new ArrayList<>());
+
+			switch (mgr.getStatus()) {
+			case APPROVED:
+			case PENDING:
+				addset.add(mgr.getOperation());
+				break;
+			case REJECTED:
+				remset.add(mgr.getOperation());
+				break;
+			default:
+				break;
+			}
+		};
+
+		for (long seq : segments) {
+			this.replay(seq, consumer);
+		}
+
+		List<UUID> keys = new ArrayList<>(addsets.keySet());
+		List<LastWriteWins> crdts = keys.parallelStream().map(key -> {
+			LastWriteWins suffix = new LastWriteWins(addsets.get(key), remsets.get(key));
+			LastWriteWins crdt = base.get(key);
+
+			if (null == crdt) {
+				return suffix;
+			}
+
+			crdt.merge(suffix);
+			return crdt;
+		}).collect(Collectors.toList());
+
+		for (int i = 0; i < keys.size(); ++i) {
+			rv.put(keys.get(i), crdts.get(i));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Take a snapshot without folding any operations into the base documents of the CRDTs
+	 * @return The number of segment files folded into the snapshot
+	 * @throws IOException when a segment or the previous snapshot can not be read, or the new snapshot written
+	 */
+	public int snapshot() throws IOException {
+		return this.snapshot(Long.MIN_VALUE);
+	}
+
+	/**
+	 * Take a snapshot, folding the sealed segments into a new snapshot along with the previous one and then deleting them.  The active
+	 * segment is sealed first, so every record appended before the snapshot began is covered by it.  The operations of each CRDT at or
+	 * before the given stability horizon are folded into its base document, in parallel across CRDTs.  The previous snapshot is deleted
+	 * only once the new one is complete, so a crash leaves either the previous snapshot with all of the segments following it, or the
+	 * new one.  Appends wait for the snapshot to finish.
+	 * @param horizon The stability horizon through which to fold operations, such as that of a StabilityTracker
+	 * @return The number of segment files folded into the snapshot
+	 * @throws IOException when a segment or the previous snapshot can not be read, or the new snapshot written
+	 */
+	public synchronized int snapshot(long horizon) throws IOException {
+		this.roll();
+
+		List<Long> folded = new ArrayList<>(this.sealed);
+		long last = folded.get(folded.size() - 1);
+		long previous = this.covered;
+		Map<UUID, LastWriteWins> state = this.rebuild(this.loadSnapshot(), folded);
+
+		state.values().parallelStream().forEach(crdt -> crdt.fold(horizon));
+		Snapshot.write(Snapshot.getPath(this.directory, last), last, state);
+
+		this.covered = last;
+		this.sealed.removeAll(folded);
+
+		if (0 != previous) {
+			Files.deleteIfExists(Snapshot.getPath(this.directory, previous));
+		}
+
+		for (long seq : folded) {
+			Files.deleteIfExists(this.getPath(seq));
+		}
+
+		return folded.size();
+	}
+
+	/**
+	 * Compact the sealed segments, rewriting the distinct operations recorded in them as new records and then deleting them.  The
+	 * active segment is sealed first, so every record appended before compaction began is compacted.  Appends wait for compaction to
+	 * finish.
+	 * @return The number of segment files reclaimed
+	 * @throws IOException when a segment can not be read, written or deleted
+	 */
+	public synchronized int compact() throws IOException {
+		this.roll();
+
+		List<Long> compacted = new ArrayList<>(this.sealed);
+		Map<UUID, LastWriteWins> state = this.rebuild(new LinkedHashMap<>(), compacted);
+
+		for (Map.Entry<UUID, LastWriteWins> entry : state.entrySet()) {
+			for (Operation op : entry.getValue().getAddView()) {
+				this.append(entry.getKey(), new OperationManager(StatusType.APPROVED, op));
+			}
+
+			for (Operation op : entry.getValue().getRemView()) {
+				this.append(entry.getKey(), new OperationManager(StatusType.REJECTED, op));
+			}
+		}
+
+		this.flush();
+		this.sealed.removeAll(compacted);
+
+		for (long seq : compacted) {
+			Files.deleteIfExists(this.getPath(seq));
+		}
+
+		return compacted.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() {
+		this.flush();
+		this.active = null;
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LastWriteWins.Base;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.OperationCodec;
+import com.cyberfront.crdt.operation.VersionVector;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The Snapshot class is a file capturing the state of a set of CRDTs as of the end of a given segment of a SegmentedLog, so they are
+ * restored after a restart by reading the snapshot and replaying only the segments which follow it.  For each CRDT the snapshot holds
+ * its ADD and REMOVE sets, the document materialized from them along with the operations found invalid in doing so, its version
+ * vector, and its base.  Operations at or before the stability horizon of the base have been folded into the base document, so only
+ * the tail following the horizon is retained, which any operation arriving out of order is placed among.  The document spares
+ * replaying the tail, and the version vector lets the restored replica ask its peers for what it missed without first summarizing
+ * its operations.
+ *
+ * Each CRDT is encoded in the binary form of OperationCodec as a separate entry with its own checksum, so entries are encoded when
+ * writing and decoded when reading in parallel.  A snapshot is written to a temporary file which is forced to the storage device and
+ * then renamed, so a snapshot file is always complete.
+ */
+public class Snapshot {
+	/** Suffix of snapshot file names, which are the hexadecimal sequence number of the last segment covered followed by this suffix */
+	public static final String SUFFIX = ".snapshot";
+
+	/** Suffix appended to the name of a snapshot file while it is written */
+	private static final String TEMPORARY = ".tmp";
+
+	/** Value marking the start of each snapshot file */
+	private static final int MAGIC = 0x534E4150;
+
+	/** Sequence number of the last segment whose records the snapshot covers */
+	private final long sequence;
+
+	/** The CRDT restored for each key, in the order they were written */
+	private final Map<UUID, LastWriteWins> crdts;
+
+	/** The version vector of each CRDT as of the snapshot */
+	private final Map<UUID, VersionVector> summaries;
+
+	/**
+	 * The Entry class holds a single CRDT decoded from a snapshot along with its version vector
+	 */
+	private static class Entry {
+		/** The CRDT decoded */
+		private final LastWriteWins crdt;
+
+		/** The version vector of the CRDT */
+		private final VersionVector summary;
+
+		/**
+		 * Constructor for an entry decoded from a snapshot
+		 * @param crdt The CRDT decoded
+		 * @param summary The version vector of the CRDT
+		 */
+		private Entry(LastWriteWins crdt, VersionVector summary) {
+			this.crdt = crdt;
+			this.summary = summary;
+		}
+	}
+
+	/**
+	 * Constructor for a snapshot read from a file
+	 * @param sequence Sequence number of the last segment whose records the snapshot covers
+	 * @param crdts The CRDT restored for each key
+	 * @param summaries The version vector of each CRDT as of the snapshot
+	 */
+	private Snapshot(long sequence, Map<UUID, LastWriteWins> crdts, Map<UUID, VersionVector> summaries) {
+		this.sequence = sequence;
+		this.crdts = crdts;
+		this.summaries = summaries;
+	}
+
+	/**
+	 * Retrieve the sequence number of the last segment whose records the snapshot covers
+	 * @return The sequence number of the last segment covered
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Retrieve the CRDT restored for each key, whose documents are already materialized
+	 * @return The CRDT restored for each key, in the order they were written
+	 */
+	public Map<UUID, LastWriteWins> getCrdts() {
+		return this.crdts;
+	}
+
+	/**
+	 * Retrieve the version vector of each CRDT as of the snapshot
+	 * @return A read only view of the version vector of each CRDT
+	 */
+	public Map<UUID, VersionVector> getSummaries() {
+		return Collections.unmodifiableMap(this.summaries);
+	}
+
+	/**
+	 * Retrieve the path of the snapshot file covering the segments up to the one with the given sequence number
+	 * @param directory Directory holding the snapshot file
+	 * @param sequence Sequence number of the last segment covered
+	 * @return The path of the snapshot file
+	 */
+	public static Path getPath(Path directory, long sequence) {
+		return directory.resolve(String.format("%016x", sequence) + SUFFIX);
+	}
+
+	/**
+	 * Write a snapshot of the given CRDTs, materializing the document of each in parallel
+	 * @param path Path of the snapshot file to write, which replaces any existing file only once complete, and whose directory entry
+	 * is forced to storage before returning
+	 * @param sequence Sequence number of the last segment whose records the CRDTs reflect
+	 * @param crdts The CRDT of each key
+	 * @throws IOException when the snapshot file can not be written
+	 */
+	public static void write(Path path, long sequence, Map<UUID, ? extends LastWriteWins> crdts) throws IOException {
+		List<UUID> keys = new ArrayList<>(crdts.keySet());
+		List<byte[]> payloads = keys.parallelStream().map(key -> encode(crdts.get(key))).collect(Collectors.toList());
+		Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY);
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+			out.writeInt(MAGIC);
+			out.writeLong(sequence);
+			out.writeInt(keys.size());
+
+			for (int i = 0; i < keys.size(); ++i) {
+				byte[] payload = payloads.get(i);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+
+				out.writeLong(keys.get(i).getMostSignificantBits());
+				out.writeLong(keys.get(i).getLeastSignificantBits());
+				out.writeInt(payload.length);
+				out.writeInt((int) crc.getValue());
+				out.write(payload);
+			}
+
+			out.flush();
+			channel.force(true);
+		}
+
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		SegmentedLog.force(path.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Read a snapshot, decoding the CRDT of each key in parallel
+	 * @param path Path of the snapshot file to read
+	 * @return The snapshot read
+	 * @throws IOException when the file can not be read or is not a complete snapshot
+	 */
+	public static Snapshot read(Path path) throws IOException {
+		ByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.remaining() < Integer.BYTES || MAGIC != buffer.getInt()) {
+			throw new IOException("Not a snapshot file: " + path);
+		}
+
+		long sequence = buffer.getLong();
+		int count = buffer.getInt();
+		List<UUID> keys = new ArrayList<>(count);
+		List<byte[]> payloads = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			UUID key = new UUID(buffer.getLong(), buffer.getLong());
+			byte[] payload = new byte[buffer.getInt()];
+			int checksum = buffer.getInt();
+			CRC32 crc = new CRC32();
+
+			buffer.get(payload);
+			crc.update(payload);
+
+			if (checksum != (int) crc.getValue()) {
+				throw new IOException("Corrupt entry in snapshot " + path + " for key " + key);
+			}
+
+			keys.add(key);
+			payloads.add(payload);
+		}
+
+		List<Entry> entries;
+
+		try {
+			entries = payloads.parallelStream().map(Snapshot::decode).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw new IOException("Malformed entry in snapshot " + path, e.getCause());
+		}
+
+		Map<UUID, LastWriteWins> crdts = new LinkedHashMap<>();
+		Map<UUID, VersionVector> summaries = new LinkedHashMap<>();
+
+		for (int i = 0; i < count; ++i) {
+			crdts.put(keys.get(i), entries.get(i).crdt);
+			summaries.put(keys.get(i), entries.get(i).summary);
+		}
+
+		return new Snapshot(sequence, crdts, summaries);
+	}
+
+	/**
+	 * Encode the entry of a single CRDT: its ADD and REMOVE sets, its invalid operations, its document, its version vector and its
+	 * base, the last as the horizon and the counts of each set followed by the base document
+	 * @param crdt The CRDT to encode
+	 * @return The binary form of the entry
+	 */
+	private static byte[] encode(LastWriteWins crdt) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			OperationCodec.Encoder encoder = new OperationCodec.Encoder(out);
+			JsonNode document = crdt.getDocument();
+			Base base = crdt.getBase();
+
+			encoder.write(crdt.getAddView());
+			encoder.write(crdt.getRemView());
+			encoder.write(crdt.getInvalidOperations());
+			encoder.writeDocument(document);
+			encoder.write(crdt.getVersionVector());
+			base.write(out, encoder);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode the entry of a single CRDT, restoring the CRDT with its document already materialized
+	 * @param payload The binary form of the entry
+	 * @return The entry decoded
+	 */
+	private static Entry decode(byte[] payload) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			OperationCodec.Decoder decoder = new OperationCodec.Decoder(in);
+			List<Operation> addset = decoder.readOperations();
+			List<Operation> remset = decoder.readOperations();
+			List<Operation> invalid = decoder.readOperations();
+			JsonNode document = decoder.readDocument();
+			VersionVector summary = decoder.readVersionVector();
+			Base base = Base.read(in, decoder);
+
+			return new Entry(new LastWriteWins(base, addset, remset, document, invalid), summary);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
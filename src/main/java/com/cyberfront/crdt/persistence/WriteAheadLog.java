@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cyberfront.crdt.OperationJournal;
+import com.cyberfront.crdt.operation.OperationManager;
+
+/**
+ * The WriteAheadLog class records the operations pushed into CRDTManager instances in a SegmentedLog before they are applied,
+ * returning once each record is as durable as the configured Durability requires.  With BATCHED durability, concurrent appends are
+ * made durable together by group commit: the first append to need a flush performs it on behalf of every record appended so far,
+ * while appends arriving during that flush wait for the next, which then covers all of them.  The number of flushes thus follows the
+ * rate at which the storage device completes them rather than the rate of appends, which PER_OP durability is bound by.
+ *
+ * Counters of appends, flushes and append latency are kept for monitoring, and may be reset.
+ */
+public class WriteAheadLog implements Closeable {
+	/**
+	 * The Durability enumeration defines when an append returns relative to its record reaching the storage device
+	 */
+	public enum Durability {
+		/** Return once the record is written to the mapped segment, leaving it to be written back by the operating system */
+		NONE,
+
+		/** Return once a flush begun after the record was written completes, sharing flushes among concurrent appends */
+		BATCHED,
+
+		/** Flush after each record, returning once that flush completes */
+		PER_OP
+	}
+
+	/** The log in which records are written */
+	private final SegmentedLog log;
+
+	/** The durability each append assures before returning */
+	private final Durability durability;
+
+	/** Number of records written, which serves as the ticket of each record */
+	private long written = 0;
+
+	/** Ticket of the latest record known to be durable */
+	private long durable = 0;
+
+	/** Flag indicating whether an append is performing a flush on behalf of the others */
+	private boolean flushing = false;
+
+	/** Number of appends completed since the counters were reset */
+	private final LongAdder appendCount = new LongAdder();
+
+	/** Number of flushes completed since the counters were reset */
+	private final LongAdder flushCount = new LongAdder();
+
+	/** Total latency of the appends completed since the counters were reset, in nanoseconds */
+	private final LongAdder totalLatency = new LongAdder();
+
+	/** Maximum latency of the appends completed since the counters were reset, in nanoseconds */
+	private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+	/** Time at which the counters were last reset, in nanoseconds */
+	private final AtomicLong resetTime = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Constructor for a write ahead log recording in the given log with BATCHED durability
+	 * @param log The log in which to write records
+	 */
+	public WriteAheadLog(SegmentedLog log) {
+		this(log, Durability.BATCHED);
+	}
+
+	/**
+	 * Constructor for a write ahead log recording in the given log with the given durability
+	 * @param log The log in which to write records
+	 * @param durability The durability each append assures before returning
+	 */
+	public WriteAheadLog(SegmentedLog log, Durability durability) {
+		if (null == log || null == durability) {
+			throw new IllegalArgumentException("Write ahead log requires a log and durability");
+		}
+
+		this.log = log;
+		this.durability = durability;
+	}
+
+	/**
+	 * Retrieve the log in which records are written
+	 * @return The log in which records are written
+	 */
+	public SegmentedLog getLog() {
+		return this.log;
+	}
+
+	/**
+	 * Retrieve the durability each append assures before returning
+	 * @return The durability each append assures before returning
+	 */
+	public Durability getDurability() {
+		return this.durability;
+	}
+
+	/**
+	 * Append a record of an operation manager pushed into the CRDT with the given key, returning once the record is as durable as
+	 * the durability of this log requires
+	 * @param key Key of the CRDT into which the operation manager was pushed
+	 * @param mgr Operation manager to record
+	 * @throws IOException when the record can not be written
+	 */
+	public void append(UUID key, OperationManager mgr) throws IOException {
+		long start = System.nanoTime();
+
+		this.log.append(key, mgr);
+
+		switch (this.durability) {
+		case PER_OP:
+			this.log.flush();
+			this.flushCount.increment();
+			break;
+		case BATCHED:
+			this.commit(this.issue());
+			break;
+		default:
+			break;
+		}
+
+		long latency = System.nanoTime() - start;
+		this.appendCount.increment();
+		this.totalLatency.add(latency);
+		this.maxLatency.accumulate(latency);
+	}
+
+	/**
+	 * Issue the ticket of a record just written.  Every record written before the ticket was issued has a lower ticket.
+	 * @return The ticket of the record
+	 */
+	private synchronized long issue() {
+		return ++this.written;
+	}
+
+	/**
+	 * Wait until the record with the given ticket is durable.  When no flush is in progress, the caller performs one covering every
+	 * record written so far, and otherwise waits for the flush in progress to complete and checks again.
+	 * @param ticket The ticket of the record to make durable
+	 * @throws IOException when interrupted while waiting
+	 */
+	private void commit(long ticket) throws IOException {
+		long target;
+
+		synchronized (this) {
+			while (this.durable < ticket && this.flushing) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted awaiting group commit", e);
+				}
+			}
+
+			if (this.durable >= ticket) {
+				return;
+			}
+
+			this.flushing = true;
+			target = this.written;
+		}
+
+		try {
+			this.log.flush();
+			this.flushCount.increment();
+		} finally {
+			synchronized (this) {
+				this.flushing = false;
+				this.durable = Math.max(this.durable, target);
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Retrieve a journal recording the operations pushed into the CRDTManager with the given key in this log, for use with
+	 * CRDTManager.setJournal.  Failures to record an operation are reported as an UncheckedIOException.
+	 * @param key Key of the CRDT whose operations to record
+	 * @return A journal recording operations in this log under the given key
+	 */
+	public OperationJournal journal(UUID key) {
+		return mgr -> {
+			try {
+				this.append(key, mgr);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/**
+	 * Retrieve the number of appends completed since the counters were reset
+	 * @return The number of appends completed
+	 */
+	public long getAppendCount() {
+		return this.appendCount.sum();
+	}
+
+	/**
+	 * Retrieve the number of flushes completed since the counters were reset
+	 * @return The number of flushes completed
+	 */
+	public long getFlushCount() {
+		return this.flushCount.sum();
+	}
+
+	/**
+	 * Retrieve the mean latency of the appends completed since the counters were reset
+	 * @return The mean latency of the appends in nanoseconds, or zero when none have completed
+	 */
+	public long getMeanLatency() {
+		long count = this.appendCount.sum();
+		return 0 == count ? 0 : this.totalLatency.sum() / count;
+	}
+
+	/**
+	 * Retrieve the maximum latency of the appends completed since the counters were reset
+	 * @return The maximum latency of the appends in nanoseconds
+	 */
+	public long getMaxLatency() {
+		return this.maxLatency.get();
+	}
+
+	/**
+	 * Retrieve the rate of appends completed since the counters were reset
+	 * @return The number of appends completed per second
+	 */
+	public double getThroughput() {
+		long elapsed = System.nanoTime() - this.resetTime.get();
+		return 0 >= elapsed ? 0.0 : this.appendCount.sum() * 1e9 / elapsed;
+	}
+
+	/**
+	 * Reset the counters of appends, flushes and latency
+	 */
+	public void resetCounters() {
+		this.appendCount.reset();
+		this.flushCount.reset();
+		this.totalLatency.reset();
+		this.maxLatency.reset();
+		this.resetTime.set(System.nanoTime());
+	}
+
+	/**
+	 * Make every record written durable and close the underlying log
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		this.log.close();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{\"durability\":\"" + this.getDurability() + "\",\"appendCount\":" + this.getAppendCount() + ",\"flushCount\":"
+				+ this.getFlushCount() + ",\"meanLatency\":" + this.getMeanLatency() + ",\"maxLatency\":" + this.getMaxLatency()
+				+ ",\"throughput\":" + this.getThroughput() + "}";
+	}
+}
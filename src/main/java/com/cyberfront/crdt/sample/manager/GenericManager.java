@@ -46,7 +46,7 @@ public class GenericManager <T> extends GenericCRDTManager<T> {
 	@SuppressWarnings("unchecked")
 	public GenericManager(T object, long timestamp) {
 		super((Class<T>) object.getClass());
-		Operation create = CRDTManager.generateCreate(timestamp);
+		Operation create = CRDTManager.generateCreate(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, create);
 		this.push(mgr);
 		this.update(object, timestamp);
@@ -59,7 +59,7 @@ public class GenericManager <T> extends GenericCRDTManager<T> {
 	 * @return The value of the managed POJO at the given timestamp
 	 */
 	public T read(long timestamp) {
-		Operation read = CRDTManager.generateRead(timestamp);
+		Operation read = CRDTManager.generateRead(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, read);
 		this.push(mgr);
 		return this.getObject(timestamp);
@@ -83,7 +83,7 @@ public class GenericManager <T> extends GenericCRDTManager<T> {
 	 * @param timestamp The timestamp at which the POJO is deleted
 	 */
 	public void delete(long timestamp) {
-		Operation delete = CRDTManager.generateDelete(timestamp);
+		Operation delete = CRDTManager.generateDelete(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, delete);
 		this.push(mgr);
 	}
@@ -48,7 +48,7 @@ public class JsonManager extends CRDTManager {
 	 * @param timestamp the timestamp
 	 */
 	public JsonManager(long timestamp) {
-		Operation create = CRDTManager.generateCreate(timestamp);
+		Operation create = CRDTManager.generateCreate(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, create);
 		this.push(mgr);
 	}
@@ -68,7 +68,7 @@ public class JsonManager extends CRDTManager {
 	 * @return the json node
 	 */
 	public JsonNode read(long timestamp) {
-		Operation read = CRDTManager.generateRead(timestamp);
+		Operation read = CRDTManager.generateRead(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, read);
 		this.push(mgr);
 		return this.getCrdt().getDocument(timestamp);
@@ -81,7 +81,7 @@ public class JsonManager extends CRDTManager {
 	 * @param timestamp Effective timestamp of the document
 	 */
 	public void update(JsonNode document, long timestamp) {
-		Operation update = CRDTManager.generateUpdate(this.getCrdt().getDocument(timestamp), document, timestamp);
+		Operation update = CRDTManager.generateUpdate(this.getIdGenerator(), this.getCrdt().getDocument(timestamp), document, timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, update);
 		this.push(mgr);
 	}
@@ -92,7 +92,7 @@ public class JsonManager extends CRDTManager {
 	 * @param timestamp Timestamp for the delete operation
 	 */
 	public void delete(long timestamp) {
-		Operation delete = CRDTManager.generateDelete(timestamp);
+		Operation delete = CRDTManager.generateDelete(this.getIdGenerator(), timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, delete);
 		this.push(mgr);
 	}
@@ -25,11 +25,15 @@ package com.cyberfront.crdt.sample.simulation;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 
+import com.cyberfront.crdt.operation.SequentialIdGenerator;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
@@ -48,6 +52,10 @@ public abstract class AbstractNode {
 	/** The node identifier. */
 	private final UUID id;
 	
+	/** Generator of the identifiers of the operations generated at this node, shared by each of its CRDT instances */
+	@JsonIgnore
+	private final SequentialIdGenerator idGenerator;
+
 	/** The datastore containinf all of the CRDT instances for this node.. */
 	private Map<UUID, SimCRDTManager<? extends AbstractDataType>> datastore;
 
@@ -58,6 +66,7 @@ public abstract class AbstractNode {
 	 */
 	public AbstractNode(UUID id) {
 		this.id = id;
+		this.idGenerator = new SequentialIdGenerator(id.getMostSignificantBits() ^ id.getLeastSignificantBits());
 	}
 
 	/**
@@ -68,6 +77,17 @@ public abstract class AbstractNode {
 	public UUID getId() {
 		return id;
 	}
+
+	/**
+	 * Retrieve the generator of the identifiers of the operations generated at this node, whose node identifier is derived from
+	 * the identifier of the node
+	 *
+	 * @return The generator of the identifiers of the operations generated at this node
+	 */
+	@JsonIgnore
+	public SequentialIdGenerator getIdGenerator() {
+		return this.idGenerator;
+	}
 	
 	/**
 	 * Retrieve the data store and return to the calling routine.  It will create new datastore if none exists, though
@@ -95,11 +115,12 @@ public abstract class AbstractNode {
 	}
 	
 	/**
-	 * Adds a new CRDT to the node
+	 * Adds a new CRDT to the node, which generates its operations with identifiers from the generator of the node
 	 *
 	 * @param crdt The CRDT to add to the node
 	 */
 	protected void addCRDT(SimCRDTManager<? extends AbstractDataType> crdt) {
+		crdt.setIdGenerator(this.idGenerator);
 		this.getDatastore().put(crdt.getObjectId(), crdt);
 	}
 
@@ -122,6 +143,41 @@ public abstract class AbstractNode {
 		return this.getDatastore().get(this.pickCrdtId());
 	}
 	
+	/**
+	 * Retrieve the digest of the Merkle tree root of each CRDT in the datastore.  Each root is maintained as operations arrive, so
+	 * comparing the roots of two nodes identifies the CRDTs in which they differ without comparing any documents or operations.
+	 *
+	 * @return The digest of the Merkle tree root of each CRDT, keyed by the object identifier of the CRDT
+	 */
+	@JsonIgnore
+	public Map<UUID, Long> getDigests() {
+		Map<UUID, Long> rv = new TreeMap<>();
+
+		for (Map.Entry<UUID, SimCRDTManager<? extends AbstractDataType>> entry : this.getDatastore().entrySet()) {
+			rv.put(entry.getKey(), entry.getValue().getCrdt().getMerkleTree().getRoot());
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Identify the CRDTs whose operations differ between this node and another, including those held by only one of the two.  The
+	 * ranges of timestamps in which a given CRDT differs are then located by comparing its Merkle trees on the two nodes.
+	 *
+	 * @param other The node to compare with this one
+	 * @return The object identifiers of the CRDTs which differ between the nodes
+	 */
+	public NavigableSet<UUID> getDivergent(AbstractNode other) {
+		Map<UUID, Long> local = this.getDigests();
+		Map<UUID, Long> remote = other.getDigests();
+		NavigableSet<UUID> rv = new TreeSet<>(local.keySet());
+
+		rv.addAll(remote.keySet());
+		rv.removeIf(id -> local.containsKey(id) && local.get(id).equals(remote.get(id)));
+
+		return rv;
+	}
+
 	/**
 	 * Convert the data store to a string value
 	 *
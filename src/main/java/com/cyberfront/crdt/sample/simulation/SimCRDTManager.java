@@ -195,7 +195,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 		operations.add(mgr.copy(StatusType.REJECTED));
 
 		if (Support.getRandom().nextDouble() > pReject && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+			operations.add(mgr.mimic(this.getIdGenerator(), StatusType.APPROVED));
 		}
 		
 		return operations;
@@ -218,7 +218,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 		operations.add(mgr.copy(StatusType.REJECTED));
 
 		if (Support.getRandom().nextDouble() > pReject && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+			operations.add(mgr.mimic(this.getIdGenerator(), StatusType.APPROVED));
 		}
 
 		return operations;
@@ -249,7 +249,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 			JsonNode diff = JsonDiff.asJson(source, target);
 
 			if (0 == this.getInvalidOperationCount() && 0 < diff.size()) {
-				Operation update = new Operation(diff, Executive.getExecutive().getTimestamp());
+				Operation update = new Operation(this.getIdGenerator().get(), OperationType.UPDATE, diff, Executive.getExecutive().getTimestamp());
 				SimOperationManager<T> updateMgr = new SimOperationManager<>(StatusType.APPROVED, update, this.getObjectId(), mgr.getOperationId(), this.getObjectClass());
 				operations.add(updateMgr);
 			}
@@ -276,7 +276,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 		operations.add(mgr.copy(StatusType.REJECTED));
 
 		if (Support.getRandom().nextDouble() > pReject || !this.isCreated() && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+			operations.add(mgr.mimic(this.getIdGenerator(), StatusType.APPROVED));
 		}
 
 		return operations;
@@ -406,7 +406,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 			return new ArrayList<>();
 		}
 		
-		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, super.generateCreate(timestamp)));
+		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, generateCreate(this.getIdGenerator(), timestamp)));
 		this.getSent().addAll(rv);
 		return rv;
 	}
@@ -426,7 +426,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 			return new ArrayList<>();
 		}
 		
-		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, super.generateRead(timestamp)));
+		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, generateRead(this.getIdGenerator(), timestamp)));
 		this.getSent().addAll(rv);
 
 		return rv;
@@ -503,7 +503,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 			return  new ArrayList<>();
 		}
 
-		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, generateDelete(timestamp)));
+		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(this.getManager(status, generateDelete(this.getIdGenerator(), timestamp)));
 		this.getSent().addAll(rv);
 		
 		return rv;
@@ -728,7 +728,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of CREATE operations added to the CRDT add set
 	 */
 	public long getCreateCountAdded() {
-		return filterOperationsByType(this.getCrdt().copyAddSet(), OperationType.CREATE, true).size();
+		return this.getCrdt().getAddCount(OperationType.CREATE);
 	}
 	
 	/**
@@ -737,7 +737,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of READ operations added to the CRDT add set
 	 */
 	public long getReadCountAdded() {
-		return filterOperationsByType(this.getCrdt().copyAddSet(), OperationType.READ, true).size();
+		return this.getCrdt().getAddCount(OperationType.READ);
 	}
 	
 	/**
@@ -746,7 +746,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of UPDATE operations added to the CRDT add set
 	 */
 	public long getUpdateCountAdded() {
-		return filterOperationsByType(this.getCrdt().copyAddSet(), OperationType.UPDATE, true).size();
+		return this.getCrdt().getAddCount(OperationType.UPDATE);
 	}
 	
 	/**
@@ -755,7 +755,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of DELETE operations added to the CRDT add set
 	 */
 	public long getDeleteCountAdded() {
-		return filterOperationsByType(this.getCrdt().copyAddSet(), OperationType.DELETE, true).size();
+		return this.getCrdt().getAddCount(OperationType.DELETE);
 	}
 	
 	/**
@@ -764,7 +764,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of CREATE operations added to the CRDT remove set
 	 */
 	public long getCreateCountRemoved() {
-		return filterOperationsByType(this.getCrdt().copyRemSet(), OperationType.CREATE, true).size();
+		return this.getCrdt().getRemCount(OperationType.CREATE);
 	}
 	
 	/**
@@ -773,7 +773,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of READ operations added to the CRDT remove set
 	 */
 	public long getReadCountRemoved() {
-		return filterOperationsByType(this.getCrdt().copyRemSet(), OperationType.READ, true).size();
+		return this.getCrdt().getRemCount(OperationType.READ);
 	}
 	
 	/**
@@ -782,7 +782,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of UPDATE operations added to the CRDT remove set
 	 */
 	public long getUpdateCountRemoved() {
-		return filterOperationsByType(this.getCrdt().copyRemSet(), OperationType.UPDATE, true).size();
+		return this.getCrdt().getRemCount(OperationType.UPDATE);
 	}
 	
 	/**
@@ -791,7 +791,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * @return the number of DELETE operations added to the CRDT remove set
 	 */
 	public long getDeleteCountRemoved() {
-		return filterOperationsByType(this.getCrdt().copyRemSet(), OperationType.DELETE, true).size();
+		return this.getCrdt().getRemCount(OperationType.DELETE);
 	}
 
 	/**
@@ -824,8 +824,8 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 */
 	private void validateOperationCount(OperationType type) {
 		long messageCount = Message.filterMessages(this.getReceived(), type, true).size();
-		long addCount = filterOperationsByType(this.getCrdt().copyAddSet(), type, true).size();
-		long remCount = filterOperationsByType(this.getCrdt().copyRemSet(), type, true).size();
+		long addCount = this.getCrdt().getAddCount(type);
+		long remCount = this.getCrdt().getRemCount(type);
 		long opCount = addCount + remCount;
 
 		StringBuilder sb = new StringBuilder();
@@ -23,6 +23,7 @@
 package com.cyberfront.crdt.sample.simulation;
 
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -66,7 +67,7 @@ public class SimOperationManager<T extends AbstractDataType> extends GenericOper
 	public SimOperationManager(StatusType status, Operation operation, UUID objectId, Class<T> objectClass) {
 		super(status, operation, objectClass);
 		this.objectId = objectId;
-		this.operationId = UUID.randomUUID();
+		this.operationId = Operation.generateId();
 		this.referenceId = NIL_UUID;
 	}
 	
@@ -82,7 +83,7 @@ public class SimOperationManager<T extends AbstractDataType> extends GenericOper
 	public SimOperationManager(StatusType status, Operation operation, UUID objectId, UUID referenceId, Class<T> objectClass) {
 		super(status, operation, objectClass);
 		this.objectId = objectId;
-		this.operationId = UUID.randomUUID();
+		this.operationId = Operation.generateId();
 		this.referenceId = referenceId;
 	}
 	
@@ -139,10 +140,11 @@ public class SimOperationManager<T extends AbstractDataType> extends GenericOper
 	 * Generate and return a near copy of this class instance including the operation identifier,  In this case a new
 	 * operation identifier is set
 	 *
+	 * @param ids Supplier of the identifier of the new operation, that of the CRDT manager generating it
 	 * @return a reference to the new operations based on this one
 	 */
-	public SimOperationManager<T> mimic() {
-		Operation op = new Operation(UUID.randomUUID(), this.getOperation().getType(), this.getOperation().getOp(), Executive.getExecutive().getTimestamp());
+	public SimOperationManager<T> mimic(Supplier<UUID> ids) {
+		Operation op = new Operation(ids.get(), this.getOperation().getType(), this.getOperation().getOp(), Executive.getExecutive().getTimestamp());
 		return new SimOperationManager<>(this.getStatus(), op, this.getObjectId(), this.getOperationId(), this.getObjectClass());
 	}
 
@@ -150,11 +152,12 @@ public class SimOperationManager<T extends AbstractDataType> extends GenericOper
 	 * Generate and return a near copy of this class instance including the operation identifier,  In this case a new
 	 * operation identifier is set, and a new status is given through the argument list
 	 *
+	 * @param ids Supplier of the identifier of the new operation, that of the CRDT manager generating it
 	 * @param status Status value for the new copy which should be used in lieu of that in this instance
 	 * @return a reference to the new operations based on this one
 	 */
-	public SimOperationManager<T> mimic(StatusType status) {
-		Operation op = new Operation(UUID.randomUUID(), this.getOperation().getType(), this.getOperation().getOp(), Executive.getExecutive().getTimestamp());
+	public SimOperationManager<T> mimic(Supplier<UUID> ids, StatusType status) {
+		Operation op = new Operation(ids.get(), this.getOperation().getType(), this.getOperation().getOp(), Executive.getExecutive().getTimestamp());
 		return new SimOperationManager<>(status, op, this.getObjectId(), this.getOperationId(), this.getObjectClass());
 	}
 
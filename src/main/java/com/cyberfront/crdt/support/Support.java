@@ -333,4 +333,16 @@ public class Support {
 	public static boolean isBoolean(String str) {
 		return null != str && ("true".equals(str) || "false".equals(str));
 	}
+
+	/**
+	 * Scramble the bits of a value so that nearby values have unrelated results, as the finalizer of the SplitMix64 generator does.
+	 * Digests and hashes which must agree between replicas are built from this mixer.
+	 * @param value The value to scramble
+	 * @return The scrambled value
+	 */
+	public static long mix(long value) {
+		long rv = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		rv = (rv ^ (rv >>> 27)) * 0x94d049bb133111ebL;
+		return rv ^ (rv >>> 31);
+	}
 }
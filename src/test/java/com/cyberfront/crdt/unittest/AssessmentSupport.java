@@ -15,12 +15,20 @@ import java.util.UUID;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
 import com.cyberfront.crdt.sample.data.Factory;
 import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestClock.Clocking;
+import com.cyberfront.crdt.unittest.TestConcurrentLastWriteWins.Concurrency;
 import com.cyberfront.crdt.unittest.TestCrdt.Generic;
 import com.cyberfront.crdt.unittest.TestCrdt.Json;
 import com.cyberfront.crdt.unittest.TestData.Create;
 import com.cyberfront.crdt.unittest.TestData.Update;
 import com.cyberfront.crdt.unittest.TestData.Clone;
 import com.cyberfront.crdt.unittest.TestData.Encoding;
+import com.cyberfront.crdt.unittest.TestLastWriteWins.Materialization;
+import com.cyberfront.crdt.unittest.TestMerkleTree.Digesting;
+import com.cyberfront.crdt.unittest.TestMutablePatch.Patching;
+import com.cyberfront.crdt.unittest.TestOperationLog.Logging;
+import com.cyberfront.crdt.unittest.TestOperationSketch.Reconciling;
+import com.cyberfront.crdt.unittest.TestSegmentedLog.Persisting;
 import com.cyberfront.crdt.unittest.TestOperator.Operator;
 import com.cyberfront.crdt.unittest.TestSimulation.Simulation;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -44,13 +52,21 @@ import com.thedeanda.lorem.LoremIpsum;
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY)
 @JsonSubTypes({
+    @Type(value = Clocking.class, name = "Clocking"),
+    @Type(value = Concurrency.class, name = "Concurrency"),
     @Type(value = Create.class, name = "Create"),
+    @Type(value = Digesting.class, name = "Digesting"),
     @Type(value = Generic.class, name = "Generic"),
     @Type(value = Json.class, name = "Json"),
     @Type(value = Update.class, name = "Update"),
     @Type(value = Clone.class, name = "Clone"),
     @Type(value = Encoding.class, name = "Encoding"),
+    @Type(value = Logging.class, name = "Logging"),
+    @Type(value = Materialization.class, name = "Materialization"),
     @Type(value = Operator.class, name = "Operator"),
+    @Type(value = Patching.class, name = "Patching"),
+    @Type(value = Persisting.class, name = "Persisting"),
+    @Type(value = Reconciling.class, name = "Reconciling"),
     @Type(value = Simulation.class, name = "Simulation")
     })
 public class AssessmentSupport {
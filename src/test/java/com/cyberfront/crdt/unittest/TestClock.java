@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.clock.HybridLogicalClock;
+import com.cyberfront.crdt.clock.TimestampSource;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestLastWriteWins.Replica;
+
+/**
+ * This contains a class used for performing unit tests designed to verify the HybridLogicalClock timestamp source.  Timestamps are
+ * issued from several threads while the physical clock stalls and runs backwards, and timestamps are observed from other nodes.
+ */
+public class TestClock {
+	public static class Clocking extends AssessmentSupport {
+		/** Constant defining the number of timestamps each thread issues */
+		private static final long TIMESTAMP_COUNT = 4096L;
+
+		/** Number of threads issuing timestamps concurrently */
+		private static final int THREAD_COUNT = 4;
+
+		/** Maximum drift, in milliseconds, allowed the clocks under test */
+		private static final long MAX_DRIFT = 1000L;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestClock.Clocking.class);
+
+		/** Number of timestamps each thread issues */
+		private final long timestampCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Clocking() {
+			super();
+			this.timestampCount = TIMESTAMP_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param timestampCount The number of timestamps each thread issues
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Clocking(long timestampCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.timestampCount = timestampCount;
+		}
+
+		/**
+		 * Get the number of timestamps each thread issues
+		 * @return The number of timestamps each thread issues
+		 */
+		public long getTimestampCount() {
+			return this.timestampCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Issue timestamps from several threads sharing a clock whose physical time wanders forward and back, and ensure each
+		 * thread receives increasing timestamps, no timestamp is issued twice, and timestamps never fall behind physical time
+		 */
+		public void testMonotonic() {
+			logger.info("\n** TestClock.Clocking.testMonotonic: {\"count\":" + this.getTrialCount() + ", \"timestampCount\":" + this.getTimestampCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				AtomicLong physical = new AtomicLong(System.currentTimeMillis());
+				HybridLogicalClock clock = new HybridLogicalClock(() -> physical.addAndGet(Support.getRandom().nextInt(5) - 2), MAX_DRIFT);
+				Set<Long> issued = ConcurrentHashMap.newKeySet();
+				Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+				List<Thread> threads = new ArrayList<>();
+
+				for (int t = 0; t < THREAD_COUNT; ++t) {
+					threads.add(new Thread(() -> {
+						long previous = 0;
+
+						for (long n = 0; n < this.getTimestampCount(); ++n) {
+							long timestamp = clock.next();
+
+							assertTrue(previous < timestamp, "Timestamps out of order: " + previous + ", " + timestamp);
+							assertTrue(issued.add(timestamp), "Timestamp issued twice: " + timestamp);
+							previous = timestamp;
+						}
+					}));
+				}
+
+				for (Thread thread : threads) {
+					thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+					thread.start();
+				}
+
+				for (Thread thread : threads) {
+					try {
+						thread.join();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted waiting for " + thread.getName(), e);
+					}
+				}
+
+				assertTrue(failures.isEmpty(), "Timestamp generation failed: " + failures);
+				assertEquals(THREAD_COUNT * this.getTimestampCount(), issued.size(), "Timestamp count mismatch");
+				assertTrue(HybridLogicalClock.getPhysical(clock.next()) >= physical.get(), "Clock behind physical time: " + clock);
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Observe timestamps from other nodes, both through the clock directly and by pushing operations to a manager, and ensure
+		 * operations generated afterward follow them unless they lead the physical clock by more than the maximum drift
+		 */
+		public void testObserve() {
+			logger.info("\n** TestClock.Clocking.testObserve: {\"count\":" + this.getTrialCount() + "}");
+
+			TimestampSource original = CRDTManager.getClock();
+
+			try {
+				for (int trial=0; trial<this.getTrialCount(); ++trial) {
+					long now = System.currentTimeMillis();
+					HybridLogicalClock clock = new HybridLogicalClock(() -> now, MAX_DRIFT);
+					long lead = 1 + Support.getRandom().nextInt((int) MAX_DRIFT);
+					long remote = HybridLogicalClock.encode(now + lead, Support.getRandom().nextInt(1 << HybridLogicalClock.LOGICAL_BITS));
+					long distant = HybridLogicalClock.encode(now + MAX_DRIFT + lead, 0);
+
+					assertEquals(HybridLogicalClock.encode(now, 0), clock.next(), "Clock does not follow physical time: " + clock);
+					assertEquals(HybridLogicalClock.encode(now, 1), clock.next(), "Clock does not count within a millisecond: " + clock);
+
+					assertTrue(clock.observe(remote), "Timestamp within drift ignored: " + remote);
+					assertEquals(remote + 1, clock.next(), "Clock does not follow observed timestamp: " + clock);
+
+					assertFalse(clock.observe(distant), "Timestamp beyond drift accepted: " + distant);
+					assertTrue(clock.next() < distant, "Clock follows timestamp beyond drift: " + clock);
+
+					CRDTManager.setClock(clock);
+					Replica replica = new Replica();
+					Operation received = new Operation(OperationType.CREATE, clock.getLatest() + 1 + Support.getRandom().nextInt(1 << HybridLogicalClock.LOGICAL_BITS));
+
+					replica.deliver(new OperationManager(StatusType.APPROVED, received));
+					assertTrue(received.getTimestamp() < CRDTManager.generateDelete().getTimestamp(), "Generated operation precedes received operation: " + clock);
+				}
+			} finally {
+				CRDTManager.setClock(original);
+			}
+
+			logger.info("   SUCCESS");
+		}
+	}
+
+	/**
+	 * Test issuing timestamps concurrently while the physical clock wanders
+	 */
+	@Test
+	public void testMonotonic() {
+		Clocking test = new Clocking();
+		test.testMonotonic();
+	}
+
+	/**
+	 * Test following timestamps observed from other nodes
+	 */
+	@Test
+	public void testObserve() {
+		Clocking test = new Clocking();
+		test.testObserve();
+	}
+}
@@ -0,0 +1,717 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.AbstractCRDT;
+import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.ConcurrentLastWriteWins;
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LastWriteWins.TrialResult;
+import com.cyberfront.crdt.LockFreeLastWriteWins;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * This contains a class used for performing unit tests designed to verify the LastWriteWins variants shared among threads.
+ * Several writers deliver operations to the same CRDT while several readers materialize it, and the final document is compared
+ * with the one produced by a full replay of the same operations.
+ */
+public class TestConcurrentLastWriteWins {
+	/**
+	 * The Replica class manages a CRDT shared among threads and exposes the delivery of operations to it
+	 */
+	public static class Replica extends CRDTManager {
+		/** Supplier of the CRDT to manage */
+		private final Supplier<LastWriteWins> factory;
+
+		/**
+		 * Constructor for a replica managing the CRDT given by the supplier
+		 *
+		 * @param factory Supplier of the CRDT to manage
+		 */
+		public Replica(Supplier<LastWriteWins> factory) {
+			this.factory = factory;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.CRDTManager#createCrdt()
+		 */
+		@Override
+		protected LastWriteWins createCrdt() {
+			return this.factory.get();
+		}
+
+		/**
+		 * Deliver an operation manager to the CRDT this replica manages
+		 *
+		 * @param mgr Operation manager to deliver
+		 */
+		public void deliver(OperationManager mgr) {
+			this.push(mgr);
+		}
+	}
+
+	/**
+	 * The PausedReplay class is a ConcurrentLastWriteWins whose replay of its operations pauses, once they have been copied, until
+	 * it is released
+	 */
+	private static class PausedReplay extends ConcurrentLastWriteWins {
+		/** Flag indicating whether a replay pauses, so that replays may be allowed to proceed until one is to be paused */
+		private volatile boolean armed = true;
+
+		/** Latch counted down once a replay has copied the operations */
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		/** Latch on which a replay waits before replaying the operations it copied */
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.ConcurrentLastWriteWins#createReplica(java.util.Collection, java.util.Collection, com.cyberfront.crdt.LastWriteWins.Base)
+		 */
+		@Override
+		protected LastWriteWins createReplica(Collection<Operation> addset, Collection<Operation> remset, Base base) {
+			if (!this.armed) {
+				return super.createReplica(addset, remset, base);
+			}
+
+			this.started.countDown();
+
+			try {
+				this.released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted waiting for release", e);
+			}
+
+			return super.createReplica(addset, remset, base);
+		}
+	}
+
+	public static class Concurrency extends AssessmentSupport {
+		/** Constant defining the number of states to use in the testing */
+		private static final long STATE_COUNT = 256L;
+
+		/** Number of threads delivering operations */
+		private static final int WRITER_COUNT = 4;
+
+		/** Number of threads reading the document while operations are delivered */
+		private static final int READER_COUNT = 4;
+
+		/** Probability an operation is subsequently rejected */
+		private static final double P_REJECT = 0.05;
+
+		/** Seconds to wait for a reader or writer before failing */
+		private static final long TIMEOUT = 10;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestConcurrentLastWriteWins.Concurrency.class);
+
+		/** Number of states to prepare for the testing suite */
+		private final long stateCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Concurrency() {
+			super();
+			this.stateCount = STATE_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param stateCount The number of state transitions for the test
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Concurrency(long stateCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.stateCount = stateCount;
+		}
+
+		/**
+		 * Get the number of state transitions for this test suite
+		 * @return The number of state transition for this test suite
+		 */
+		public long getStateCount() {
+			return this.stateCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate the operations which produce a sequence of document states, beginning with a CREATE operation, followed by
+		 * an UPDATE for each state along with interspersed READ operations, and concluding with a DELETE operation.
+		 *
+		 * @return The list of operations in timestamp order
+		 */
+		private List<Operation> generateOperations() {
+			List<Operation> rv = new ArrayList<>();
+			Collection<AbstractDataType> objects = generateObjectSequence(this.getStateCount(), 0.1);
+			Collection<JsonNode> documents = generateJsonSequence(objects);
+			JsonNode previous = getMapper().createObjectNode();
+			long timestamp = 0;
+
+			rv.add(CRDTManager.generateCreate(timestamp));
+
+			for (JsonNode document : documents) {
+				timestamp += 1 + Support.getRandom().nextInt(16);
+				rv.add(CRDTManager.generateUpdate(previous, document, timestamp));
+
+				if (Support.getRandom().nextBoolean()) {
+					rv.add(CRDTManager.generateRead(timestamp));
+				}
+
+				previous = document;
+			}
+
+			rv.add(CRDTManager.generateDelete(timestamp + 1));
+
+			return rv;
+		}
+
+		/**
+		 * Compare the materialized state of a CRDT with that resulting from a full replay of its operations
+		 *
+		 * @param crdt The CRDT to assess
+		 */
+		private static void assessMaterialization(LastWriteWins crdt) {
+			TrialResult expected = new TrialResult(new LastWriteWins(crdt));
+
+			assertEquals(expected.getDocument(), crdt.getDocument(), "Document mismatch: " + crdt.toString());
+			assertEquals(new ArrayList<>(expected.getInvalidOperations()), new ArrayList<>(crdt.getInvalidOperations()), "Invalid operation mismatch: " + crdt.toString());
+
+			for (OperationType type : OperationType.values()) {
+				long active = crdt.getOpsSet().stream().filter(op -> type == op.getType()).count();
+				boolean effective = expected.getEffectiveOperations().stream().anyMatch(op -> type == op.getType());
+
+				assertEquals(active, crdt.getOperationCount(type), "Operation count mismatch for " + type + ": " + crdt.toString());
+				assertEquals(effective, OperationType.CREATE == type ? crdt.isCreated()
+						: OperationType.READ == type ? crdt.isRead()
+						: OperationType.UPDATE == type ? crdt.isUpdated()
+						: crdt.isDeleted(), "Flag mismatch for " + type + ": " + crdt.toString());
+			}
+		}
+
+		/**
+		 * Deliver the operations assigned to one writer, occasionally rejecting a randomly selected operation
+		 *
+		 * @param replica The replica to deliver the operations to
+		 * @param operations All of the operations, from which rejected operations are selected
+		 * @param assigned The operations assigned to the writer
+		 */
+		private static void write(Replica replica, List<Operation> operations, List<Operation> assigned) {
+			for (Operation op : assigned) {
+				replica.deliver(new OperationManager(StatusType.APPROVED, op));
+
+				if (Support.getRandom().nextDouble() < P_REJECT) {
+					Operation rejected = operations.get(Support.getRandom().nextInt(operations.size()));
+					replica.deliver(new OperationManager(StatusType.REJECTED, rejected));
+				}
+			}
+		}
+
+		/**
+		 * Read the document and the state of the CRDT repeatedly until signaled to stop, ensuring each read is consistent
+		 *
+		 * @param crdt The CRDT to read
+		 * @param done Flag signaling the writers have finished
+		 */
+		private static void read(LastWriteWins crdt, AtomicBoolean done) {
+			while (!done.get()) {
+				JsonNode document = crdt.getDocument();
+
+				assertTrue(null == document || document.isObject(), "Document is not an object: " + document);
+				crdt.isCreated();
+				assertTrue(crdt.getOperationCount() <= crdt.getAddCount(), "Active operations exceed those added");
+
+				long active = crdt.getOpsSet().size();
+				assertTrue(active <= crdt.getAddCount(), "Active operations exceed those added");
+			}
+		}
+
+		/**
+		 * Deliver operations from several writer threads to a shared CRDT while reader threads materialize it, and ensure the
+		 * document finally read matches the document resulting from a full replay.
+		 *
+		 * @param factory Supplier of the CRDT to share
+		 */
+		public void testConcurrent(Supplier<LastWriteWins> factory) {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testConcurrent: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ ", \"type\":\"" + factory.get().getClass().getSimpleName() + "\"}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = this.generateOperations();
+				List<List<Operation>> assignments = new ArrayList<>();
+				Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+				AtomicBoolean done = new AtomicBoolean(false);
+				List<Thread> writers = new ArrayList<>();
+				List<Thread> readers = new ArrayList<>();
+				Replica replica = new Replica(factory);
+				LastWriteWins crdt = replica.getCrdt();
+
+				for (int i = 0; i < WRITER_COUNT; ++i) {
+					assignments.add(new ArrayList<>());
+				}
+
+				for (int i = 0; i < operations.size(); ++i) {
+					assignments.get(i % WRITER_COUNT).add(operations.get(i));
+				}
+
+				for (List<Operation> assigned : assignments) {
+					writers.add(new Thread(() -> write(replica, operations, assigned)));
+				}
+
+				for (int i = 0; i < READER_COUNT; ++i) {
+					readers.add(new Thread(() -> read(crdt, done)));
+				}
+
+				for (Thread thread : readers) {
+					thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+					thread.start();
+				}
+
+				for (Thread thread : writers) {
+					thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+					thread.start();
+				}
+
+				join(writers);
+				done.set(true);
+				join(readers);
+
+				assertTrue(failures.isEmpty(), "Concurrent access failed: " + failures);
+				assertEquals(operations.size(), crdt.getAddCount(), "Operation count mismatch: " + replica.toString());
+				assessMaterialization(crdt);
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Serialize and deserialize a CRDT and ensure the result is of the same class with the same operations and document
+		 *
+		 * @param factory Supplier of the CRDT to encode
+		 * @throws IOException when the CRDT can not be serialized or deserialized
+		 */
+		public void testEncoding(Supplier<LastWriteWins> factory) throws IOException {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testEncoding: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ ", \"type\":\"" + factory.get().getClass().getSimpleName() + "\"}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				List<Operation> operations = this.generateOperations();
+				Replica replica = new Replica(factory);
+
+				Collections.shuffle(operations, Support.getRandom());
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+				}
+
+				String json = getMapper().writeValueAsString(replica.getCrdt());
+				AbstractCRDT decoded = getMapper().readValue(json, AbstractCRDT.class);
+
+				assertEquals(replica.getCrdt().getClass(), decoded.getClass(), "Decoded type mismatch: " + json);
+				assertEquals(replica.getCrdt().getDocument(), decoded.getDocument(), "Document mismatch: " + json);
+				assertEquals(replica.getCrdt().getOpsSet().toString(), ((LastWriteWins) decoded).getOpsSet().toString(), "Operation mismatch: " + json);
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Read the document of a ConcurrentLastWriteWins which must replay its operations, pause the replay once the operations are
+		 * copied, and ensure an operation delivered meanwhile is not held up by the replay.  Once released, the replay yields the
+		 * document as of the operations it copied, and the document read afterward reflects the operation delivered.
+		 *
+		 * @throws Exception when a reader or writer fails or is interrupted
+		 */
+		public void testReplay() throws Exception {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testReplay: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+
+			try {
+				for (int trial=0; trial<this.getTrialCount(); ++trial) {
+					logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+					List<Operation> operations = this.generateOperations();
+					Operation last = operations.remove(operations.size() - 1);
+					PausedReplay crdt = new PausedReplay();
+					Replica replica = new Replica(() -> crdt);
+
+					for (Operation op : operations) {
+						replica.deliver(new OperationManager(StatusType.APPROVED, op));
+					}
+
+					JsonNode expected = new LastWriteWins(crdt).getDocument();
+					Future<JsonNode> read = executor.submit(() -> crdt.getDocument());
+
+					assertTrue(crdt.started.await(TIMEOUT, TimeUnit.SECONDS), "Replay did not start");
+
+					executor.submit(() -> replica.deliver(new OperationManager(StatusType.APPROVED, last))).get(TIMEOUT, TimeUnit.SECONDS);
+
+					assertFalse(read.isDone(), "Replay finished before it was released");
+
+					crdt.released.countDown();
+
+					assertEquals(expected, read.get(TIMEOUT, TimeUnit.SECONDS), "Replayed document mismatch: " + crdt.toString());
+					assessMaterialization(crdt);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Deliver an operation to a ConcurrentLastWriteWins while another reader is replaying its operations, and ensure the
+		 * document then read by the thread delivering the operation reflects it, rather than being the snapshot published before
+		 * the replay.
+		 *
+		 * @throws Exception when a reader or writer fails or is interrupted
+		 */
+		public void testReadYourWrites() throws Exception {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testReadYourWrites: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+
+			try {
+				for (int trial=0; trial<this.getTrialCount(); ++trial) {
+					logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+					List<Operation> operations = this.generateOperations();
+					Operation last = operations.remove(operations.size() - 1);
+					Operation late = operations.stream().skip(operations.size() / 2).filter(op -> OperationType.UPDATE == op.getType()).findFirst().get();
+					PausedReplay crdt = new PausedReplay();
+					Replica replica = new Replica(() -> crdt);
+
+					operations.remove(late);
+					crdt.armed = false;
+					crdt.setUndoDepth(0);
+
+					for (Operation op : operations) {
+						replica.deliver(new OperationManager(StatusType.APPROVED, op));
+					}
+
+					JsonNode previous = crdt.getDocument();
+
+					replica.deliver(new OperationManager(StatusType.APPROVED, late));
+					crdt.armed = true;
+
+					Future<JsonNode> replayed = executor.submit(() -> crdt.getDocument());
+
+					assertTrue(crdt.started.await(TIMEOUT, TimeUnit.SECONDS), "Replay did not start");
+
+					Future<JsonNode> written = executor.submit(() -> {
+						replica.deliver(new OperationManager(StatusType.APPROVED, last));
+						return crdt.getDocument();
+					});
+
+					crdt.released.countDown();
+
+					operations.add(late);
+					operations.add(last);
+
+					JsonNode expected = new LastWriteWins(operations, Collections.emptyList()).getDocument();
+
+					replayed.get(TIMEOUT, TimeUnit.SECONDS);
+					assertEquals(expected, written.get(TIMEOUT, TimeUnit.SECONDS), "Own write missed, previous document " + previous + ": " + crdt.toString());
+					assessMaterialization(crdt);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Query a ConcurrentLastWriteWins which must replay its operations to answer, pause the replay once the operations are
+		 * copied, and ensure an operation delivered meanwhile is not held up by the replay.  Once released, the query yields the
+		 * answer as of the operations it copied.  The historical document and the invalid and effective operations are queried.
+		 *
+		 * @throws Exception when a reader or writer fails or is interrupted
+		 */
+		public void testReplayedQueries() throws Exception {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testReplayedQueries: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+
+			try {
+				for (int trial=0; trial<this.getTrialCount(); ++trial) {
+					logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+					List<Operation> operations = this.generateOperations();
+					Operation last = operations.remove(operations.size() - 1);
+					long timestamp = operations.get(operations.size() / 2).getTimestamp();
+					List<Function<LastWriteWins, Object>> queries = new ArrayList<>();
+
+					queries.add(crdt -> crdt.getDocument(timestamp));
+					queries.add(crdt -> new ArrayList<>(crdt.getInvalidOperations()));
+					queries.add(crdt -> new ArrayList<>(crdt.getEffectiveOperations()));
+
+					for (Function<LastWriteWins, Object> query : queries) {
+						PausedReplay crdt = new PausedReplay();
+						Replica replica = new Replica(() -> crdt);
+
+						for (Operation op : operations) {
+							replica.deliver(new OperationManager(StatusType.APPROVED, op));
+						}
+
+						Object expected = query.apply(new LastWriteWins(crdt));
+						Future<Object> read = executor.submit(() -> query.apply(crdt));
+
+						assertTrue(crdt.started.await(TIMEOUT, TimeUnit.SECONDS), "Replay did not start");
+
+						executor.submit(() -> replica.deliver(new OperationManager(StatusType.APPROVED, last))).get(TIMEOUT, TimeUnit.SECONDS);
+
+						assertFalse(read.isDone(), "Replay finished before it was released");
+
+						crdt.released.countDown();
+
+						assertEquals(expected, read.get(TIMEOUT, TimeUnit.SECONDS), "Replayed query mismatch: " + crdt.toString());
+						assessMaterialization(crdt);
+					}
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Fold a CRDT through successive horizons while writer threads deliver its operations again and reader threads read it, and
+		 * ensure no repeat of an operation folded is applied again, by comparing the document and the Merkle tree with those of a
+		 * CRDT which holds each operation once and was never folded.
+		 *
+		 * @param factory Supplier of the CRDT to share
+		 */
+		public void testFold(Supplier<LastWriteWins> factory) {
+			logger.info("\n** TestConcurrentLastWriteWins.Concurrency.testFold: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ ", \"type\":\"" + factory.get().getClass().getSimpleName() + "\"}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = this.generateOperations();
+				Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+				AtomicBoolean done = new AtomicBoolean(false);
+				List<Thread> writers = new ArrayList<>();
+				List<Thread> readers = new ArrayList<>();
+				Replica replica = new Replica(factory);
+				LastWriteWins crdt = replica.getCrdt();
+				LastWriteWins expected = new LastWriteWins(operations, Collections.emptyList());
+				long latest = operations.get(operations.size() - 1).getTimestamp();
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+				}
+
+				for (int i = 0; i < WRITER_COUNT; ++i) {
+					writers.add(new Thread(() -> {
+						while (!done.get()) {
+							for (Operation op : operations) {
+								replica.deliver(new OperationManager(StatusType.APPROVED, op));
+							}
+						}
+					}));
+				}
+
+				for (int i = 0; i < READER_COUNT; ++i) {
+					readers.add(new Thread(() -> {
+						while (!done.get()) {
+							crdt.getMerkleTree();
+							crdt.getInvalidOperations();
+							crdt.getDocument(latest);
+						}
+					}));
+				}
+
+				for (Thread thread : readers) {
+					thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+					thread.start();
+				}
+
+				for (Thread thread : writers) {
+					thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+					thread.start();
+				}
+
+				for (Operation op : operations.subList(0, operations.size() - 1)) {
+					crdt.fold(op.getTimestamp());
+				}
+
+				done.set(true);
+				join(writers);
+				join(readers);
+
+				long horizon = crdt.getBase().getHorizon();
+
+				assertTrue(failures.isEmpty(), "Concurrent access failed: " + failures);
+				assertTrue(crdt.getAddView().stream().allMatch(op -> op.getTimestamp() > horizon), "Folded operation delivered again: " + crdt.toString());
+				assertEquals(expected.getDocument(), crdt.getDocument(), "Document mismatch: " + crdt.toString());
+				assertEquals(expected.getMerkleTree().getRoot(), crdt.getMerkleTree().getRoot(), "Merkle tree mismatch: " + crdt.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Wait for each of the given threads to finish
+		 *
+		 * @param threads The threads to wait for
+		 */
+		private static void join(List<Thread> threads) {
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted waiting for " + thread.getName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test delivering operations to a ConcurrentLastWriteWins from several threads while others read it
+	 */
+	@Test
+	public void testConcurrent() {
+		Concurrency test = new Concurrency();
+		test.testConcurrent(ConcurrentLastWriteWins::new);
+	}
+
+	/**
+	 * Test that delivering an operation to a ConcurrentLastWriteWins does not wait for a reader replaying its operations
+	 *
+	 * @throws Exception when a reader or writer fails or is interrupted
+	 */
+	@Test
+	public void testReplay() throws Exception {
+		Concurrency test = new Concurrency();
+		test.testReplay();
+	}
+
+	/**
+	 * Test that a thread delivering an operation to a ConcurrentLastWriteWins reads its own write while another reader replays
+	 *
+	 * @throws Exception when a reader or writer fails or is interrupted
+	 */
+	@Test
+	public void testReadYourWrites() throws Exception {
+		Concurrency test = new Concurrency();
+		test.testReadYourWrites();
+	}
+
+	/**
+	 * Test that delivering an operation to a ConcurrentLastWriteWins does not wait for a query replaying its operations
+	 *
+	 * @throws Exception when a reader or writer fails or is interrupted
+	 */
+	@Test
+	public void testReplayedQueries() throws Exception {
+		Concurrency test = new Concurrency();
+		test.testReplayedQueries();
+	}
+
+	/**
+	 * Test serializing and deserializing a ConcurrentLastWriteWins
+	 *
+	 * @throws IOException when the CRDT can not be serialized or deserialized
+	 */
+	@Test
+	public void testEncoding() throws IOException {
+		Concurrency test = new Concurrency();
+		test.testEncoding(ConcurrentLastWriteWins::new);
+	}
+
+	/**
+	 * Test delivering operations to a LockFreeLastWriteWins from several threads while others read it
+	 */
+	@Test
+	public void testLockFree() {
+		Concurrency test = new Concurrency();
+		test.testConcurrent(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test folding a ConcurrentLastWriteWins while its operations are delivered again from several threads
+	 */
+	@Test
+	public void testFold() {
+		Concurrency test = new Concurrency();
+		test.testFold(ConcurrentLastWriteWins::new);
+	}
+
+	/**
+	 * Test folding a LockFreeLastWriteWins while its operations are delivered again from several threads
+	 */
+	@Test
+	public void testLockFreeFold() {
+		Concurrency test = new Concurrency();
+		test.testFold(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test serializing and deserializing a LockFreeLastWriteWins
+	 *
+	 * @throws IOException when the CRDT can not be serialized or deserialized
+	 */
+	@Test
+	public void testLockFreeEncoding() throws IOException {
+		Concurrency test = new Concurrency();
+		test.testEncoding(LockFreeLastWriteWins::new);
+	}
+}
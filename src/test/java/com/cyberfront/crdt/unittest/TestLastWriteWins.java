@@ -0,0 +1,1083 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.ConcurrentLastWriteWins;
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LastWriteWins.TrialResult;
+import com.cyberfront.crdt.LockFreeLastWriteWins;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationCodec;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.operation.SequentialIdGenerator;
+import com.cyberfront.crdt.operation.StabilityTracker;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.fge.jackson.JacksonUtils;
+
+/**
+ * This contains a class used for performing unit tests designed to verify the materialization of LastWriteWins CRDT instances.
+ * Operations are delivered to a CRDT in a perturbed order and the resulting document is compared with the one produced by a
+ * full replay of the same operations.
+ */
+public class TestLastWriteWins {
+	/**
+	 * The Replica class exposes the delivery of operations to a CRDT so that the tests can control the order of arrival
+	 */
+	public static class Replica extends CRDTManager {
+		/**
+		 * Deliver an operation manager to the CRDT this replica manages
+		 *
+		 * @param mgr Operation manager to deliver
+		 */
+		public void deliver(OperationManager mgr) {
+			this.push(mgr);
+		}
+	}
+
+	public static class Materialization extends AssessmentSupport {
+		/** Constant defining the number of states to use in the testing */
+		private static final long STATE_COUNT = 256L;
+
+		/** Probability an operation is delivered out of order */
+		private static final double P_DISORDER = 0.2;
+
+		/** Probability an operation is subsequently rejected */
+		private static final double P_REJECT = 0.05;
+
+		/** Number of origins to which operations are assigned in testing deltas */
+		private static final int ORIGIN_COUNT = 3;
+
+		/** Probability a replica acknowledges the operations it has received after each delivery */
+		private static final double P_ACKNOWLEDGE = 0.25;
+
+		/** Probability the stable operations are folded after each delivery */
+		private static final double P_FOLD = 0.1;
+
+		/** Probability an operation already delivered is delivered again */
+		private static final double P_REPEAT = 0.1;
+
+		/** Probability an operation is delivered PENDING, to be approved or rejected later */
+		private static final double P_PENDING = 0.2;
+
+		/** Probability one of the PENDING operations is approved or rejected after each delivery */
+		private static final double P_SETTLE = 0.2;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestLastWriteWins.Materialization.class);
+
+		/** Number of states to prepare for the testing suite */
+		private final long stateCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Materialization() {
+			super();
+			this.stateCount = STATE_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param stateCount The number of state transitions for the test
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Materialization(long stateCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.stateCount = stateCount;
+		}
+
+		/**
+		 * Get the number of state transitions for this test suite
+		 * @return The number of state transition for this test suite
+		 */
+		public long getStateCount() {
+			return this.stateCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate the operations which produce a sequence of document states, beginning with a CREATE operation, followed by
+		 * an UPDATE for each state along with interspersed READ operations, and concluding with a DELETE operation.
+		 *
+		 * @return The list of operations in timestamp order
+		 */
+		private List<Operation> generateOperations() {
+			List<Operation> rv = new ArrayList<>();
+			Collection<AbstractDataType> objects = generateObjectSequence(this.getStateCount(), 0.1);
+			Collection<JsonNode> documents = generateJsonSequence(objects);
+			JsonNode previous = getMapper().createObjectNode();
+			long timestamp = 0;
+
+			rv.add(CRDTManager.generateCreate(timestamp));
+
+			for (JsonNode document : documents) {
+				timestamp += 1 + Support.getRandom().nextInt(16);
+				rv.add(CRDTManager.generateUpdate(previous, document, timestamp));
+
+				if (Support.getRandom().nextBoolean()) {
+					rv.add(CRDTManager.generateRead(timestamp));
+				}
+
+				previous = document;
+			}
+
+			rv.add(CRDTManager.generateDelete(timestamp + 1));
+
+			return rv;
+		}
+
+		/**
+		 * Perturb the order of the operations given by swapping randomly selected operations with a nearby successor
+		 *
+		 * @param operations The operations to reorder
+		 * @return The operations in their perturbed order
+		 */
+		private static List<Operation> perturb(List<Operation> operations) {
+			List<Operation> rv = new ArrayList<>(operations);
+
+			for (int i = 0; i < rv.size() - 1; ++i) {
+				if (Support.getRandom().nextDouble() < P_DISORDER) {
+					int j = Math.min(rv.size() - 1, i + 1 + Support.getRandom().nextInt(8));
+					Collections.swap(rv, i, j);
+				}
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Compare the materialized state of a CRDT with that resulting from a full replay of its operations
+		 *
+		 * @param crdt The CRDT to assess
+		 */
+		private static void assessMaterialization(LastWriteWins crdt) {
+			TrialResult expected = new TrialResult(new LastWriteWins(crdt));
+
+			assertEquals(expected.getDocument(), crdt.getDocument(), "Document mismatch: " + crdt.toString());
+			assertEquals(new ArrayList<>(expected.getInvalidOperations()), new ArrayList<>(crdt.getInvalidOperations()), "Invalid operation mismatch: " + crdt.toString());
+
+			for (OperationType type : OperationType.values()) {
+				long active = crdt.getOpsSet().stream().filter(op -> type == op.getType()).count();
+				boolean effective = expected.getEffectiveOperations().stream().anyMatch(op -> type == op.getType());
+
+				assertEquals(active, crdt.getOperationCount(type), "Operation count mismatch for " + type + ": " + crdt.toString());
+				assertEquals(effective, OperationType.CREATE == type ? crdt.isCreated()
+						: OperationType.READ == type ? crdt.isRead()
+						: OperationType.UPDATE == type ? crdt.isUpdated()
+						: crdt.isDeleted(), "Flag mismatch for " + type + ": " + crdt.toString());
+			}
+		}
+
+		/**
+		 * Deliver operations in a perturbed order, reading the document after each delivery, and ensure the document read matches
+		 * the document resulting from a full replay.  The undo depth is chosen at random so that some late operations are rolled
+		 * into place while others force a full replay.
+		 */
+		public void testIncremental() {
+			logger.info("\n** TestLastWriteWins.Materialization.testIncremental: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = perturb(this.generateOperations());
+				Replica replica = new Replica();
+
+				replica.getCrdt().setUndoDepth(Support.getRandom().nextInt(16));
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						Operation rejected = operations.get(Support.getRandom().nextInt(operations.size()));
+						replica.deliver(new OperationManager(StatusType.REJECTED, rejected));
+					}
+
+					assessMaterialization(replica.getCrdt());
+				}
+
+				assertTrue(replica.getCrdt().getAddCount() == operations.size(), "Operation count mismatch: " + replica.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Read the document as of randomly selected timestamps and ensure the document read matches the document resulting from a
+		 * full replay of the operations up to that timestamp.
+		 */
+		public void testHistorical() {
+			logger.info("\n** TestLastWriteWins.Materialization.testHistorical: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = perturb(this.generateOperations());
+				long latest = operations.stream().mapToLong(Operation::getTimestamp).max().getAsLong();
+				Replica replica = new Replica();
+
+				replica.getCrdt().setCheckpointSpacing(1 + Support.getRandom().nextInt(8), 1 + Support.getRandom().nextInt(64));
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+				}
+
+				for (int i = 0; i < operations.size(); ++i) {
+					long timestamp = Support.getRandom().nextInt((int) latest + 2) - 1;
+					JsonNode expected = new TrialResult(new LastWriteWins(replica.getCrdt()), timestamp).getDocument();
+
+					assertEquals(expected, replica.getCrdt().getDocument(timestamp), "Document mismatch at " + timestamp + ": " + replica.toString());
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Deliver operations in a perturbed order, reading the document as of a few recurring timestamps after each delivery, and
+		 * ensure the documents read, some of which are retained between deliveries, match those resulting from a full replay.
+		 */
+		public void testHistory() {
+			logger.info("\n** TestLastWriteWins.Materialization.testHistory: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = perturb(this.generateOperations());
+				long latest = operations.stream().mapToLong(Operation::getTimestamp).max().getAsLong();
+				long[] timestamps = new long[4];
+				Replica replica = new Replica();
+
+				for (int i = 0; i < timestamps.length; ++i) {
+					timestamps[i] = Support.getRandom().nextInt((int) latest + 1);
+				}
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						Operation rejected = operations.get(Support.getRandom().nextInt(operations.size()));
+						replica.deliver(new OperationManager(StatusType.REJECTED, rejected));
+					}
+
+					for (long timestamp : timestamps) {
+						JsonNode expected = new TrialResult(new LastWriteWins(replica.getCrdt()), timestamp).getDocument();
+						assertEquals(expected, replica.getCrdt().getDocument(timestamp), "Document mismatch at " + timestamp + ": " + replica.toString());
+					}
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Deliver operations in a perturbed order to two replicas, each receiving some of them, merge one replica into the other,
+		 * and ensure the result matches a replica which received every operation.
+		 *
+		 * @param factory Supplier of the CRDT the merged replicas manage
+		 */
+		public void testMerge(Supplier<LastWriteWins> factory) {
+			logger.info("\n** TestLastWriteWins.Materialization.testMerge: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = perturb(this.generateOperations());
+				Replica reference = new Replica();
+				TestConcurrentLastWriteWins.Replica left = new TestConcurrentLastWriteWins.Replica(factory);
+				TestConcurrentLastWriteWins.Replica right = new TestConcurrentLastWriteWins.Replica(factory);
+
+				for (Operation op : operations) {
+					OperationManager mgr = new OperationManager(StatusType.APPROVED, op);
+					int target = Support.getRandom().nextInt(3);
+
+					reference.deliver(mgr);
+					if (0 != target) {
+						left.deliver(mgr);
+					}
+					if (1 != target) {
+						right.deliver(mgr);
+					}
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						OperationManager rejected = new OperationManager(StatusType.REJECTED, operations.get(Support.getRandom().nextInt(operations.size())));
+						reference.deliver(rejected);
+						(Support.getRandom().nextBoolean() ? left : right).deliver(rejected);
+					}
+				}
+
+				left.getCrdt().getDocument();
+				long expected = reference.getCrdt().getAddCount() + reference.getCrdt().getRemCount() - left.getCrdt().getAddCount() - left.getCrdt().getRemCount();
+
+				assertEquals(expected, left.merge(right), "Merge count mismatch: " + left.toString());
+				assertEquals(0, left.merge(right), "Repeated merge count mismatch: " + left.toString());
+				assertEquals(new ArrayList<>(reference.getCrdt().getAddView()), new ArrayList<>(left.getCrdt().getAddView()), "ADD set mismatch: " + left.toString());
+				assertEquals(new ArrayList<>(reference.getCrdt().getRemView()), new ArrayList<>(left.getCrdt().getRemView()), "REMOVE set mismatch: " + left.toString());
+				assertEquals(reference.getCrdt().getDocument(), left.getCrdt().getDocument(), "Document mismatch: " + left.toString());
+				assessMaterialization(left.getCrdt());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Assign the operations generated to several origins, deliver every operation to one replica and those of each origin up to a
+		 * random point to another, and ensure the delta retrieved for the second replica from its version vector is exactly the
+		 * operations it lacks, and that merging the delta, after encoding it as JSON, brings it up to date.
+		 *
+		 * @throws IOException when the delta can not be serialized or deserialized
+		 */
+		public void testDelta() throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testDelta: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				SequentialIdGenerator[] origins = new SequentialIdGenerator[ORIGIN_COUNT];
+				long[] cutoffs = new long[ORIGIN_COUNT];
+				Replica current = new Replica();
+				Replica stale = new Replica();
+				long missing = 0;
+
+				for (int i = 0; i < ORIGIN_COUNT; ++i) {
+					origins[i] = new SequentialIdGenerator();
+					cutoffs[i] = Support.getRandom().nextInt((int) this.getStateCount() * 8);
+				}
+
+				for (Operation generated : this.generateOperations()) {
+					int origin = Support.getRandom().nextInt(ORIGIN_COUNT);
+					Operation op = new Operation(origins[origin].get(), generated.getType(), generated.getOp(), generated.getTimestamp());
+
+					current.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (op.getTimestamp() <= cutoffs[origin]) {
+						stale.deliver(new OperationManager(StatusType.APPROVED, op));
+					} else {
+						++missing;
+					}
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						current.deliver(new OperationManager(StatusType.REJECTED, op));
+						++missing;
+					}
+				}
+
+				LastWriteWins delta = current.getDelta(stale.getVersionVector());
+				String encoded = getMapper().writeValueAsString(delta);
+				LastWriteWins decoded = getMapper().readValue(encoded, LastWriteWins.class);
+
+				assertEquals(missing, delta.getAddCount() + delta.getRemCount(), "Delta size mismatch: " + delta.toString());
+				assertEquals(missing, stale.merge(decoded), "Merge count mismatch: " + stale.toString());
+				assertEquals(current.getVersionVector(), stale.getVersionVector(), "Version vector mismatch: " + stale.toString());
+				assertEquals(current.getCrdt().getDocument(), stale.getCrdt().getDocument(), "Document mismatch: " + stale.toString());
+				assertTrue(current.getDelta(stale.getVersionVector()).isEmpty(), "Delta after merge not empty: " + stale.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Assign the operations generated to several origins, deliver every operation to one replica and a random subset of them in
+		 * shuffled order to another, reject a random subset of the operations in shuffled order at the first and part of those at
+		 * the second, and ensure the delta retrieved for the second replica from its version vector is exactly the operations it
+		 * lacks, even where later operations of an origin arrived or were removed before earlier ones
+		 */
+		public void testReorderedDelta() {
+			logger.info("\n** TestLastWriteWins.Materialization.testReorderedDelta: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				SequentialIdGenerator[] origins = new SequentialIdGenerator[ORIGIN_COUNT];
+				List<Operation> operations = new ArrayList<>();
+				List<Operation> rejections = new ArrayList<>();
+				Replica current = new Replica();
+				Replica stale = new Replica();
+				long missing = 0;
+
+				for (int i = 0; i < ORIGIN_COUNT; ++i) {
+					origins[i] = new SequentialIdGenerator();
+				}
+
+				for (Operation generated : this.generateOperations()) {
+					int origin = Support.getRandom().nextInt(ORIGIN_COUNT);
+					Operation op = new Operation(origins[origin].get(), generated.getType(), generated.getOp(), generated.getTimestamp());
+
+					operations.add(op);
+
+					if (Support.getRandom().nextDouble() < 4 * P_REJECT) {
+						rejections.add(op);
+					}
+				}
+
+				Collections.shuffle(operations, Support.getRandom());
+				Collections.shuffle(rejections, Support.getRandom());
+
+				for (Operation op : operations) {
+					current.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextBoolean()) {
+						stale.deliver(new OperationManager(StatusType.APPROVED, op));
+					} else {
+						++missing;
+					}
+				}
+
+				for (Operation op : rejections) {
+					current.deliver(new OperationManager(StatusType.REJECTED, op));
+
+					if (Support.getRandom().nextBoolean()) {
+						stale.deliver(new OperationManager(StatusType.REJECTED, op));
+					} else {
+						++missing;
+					}
+				}
+
+				LastWriteWins delta = current.getDelta(stale.getVersionVector());
+
+				assertEquals(missing, delta.getAddCount() + delta.getRemCount(), "Delta size mismatch: " + delta.toString());
+				assertEquals(missing, stale.merge(delta), "Merge count mismatch: " + stale.toString());
+				assertEquals(current.getVersionVector(), stale.getVersionVector(), "Version vector mismatch: " + stale.toString());
+				assertEquals(current.getCrdt().getDocument(), stale.getCrdt().getDocument(), "Document mismatch: " + stale.toString());
+				assertTrue(current.getDelta(stale.getVersionVector()).isEmpty(), "Delta after merge not empty: " + stale.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Encode CRDTs and each of their operations in the binary form, and ensure decoding them yields the same result as the
+		 * round trip through their JSON form, in fewer bytes
+		 *
+		 * @throws IOException when a CRDT or operation can not be encoded or decoded
+		 */
+		public void testEncoding() throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testEncoding: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Replica replica = new Replica();
+
+				for (Operation op : perturb(this.generateOperations())) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						OperationManager rejected = new OperationManager(StatusType.REJECTED, op);
+						String json = getMapper().writeValueAsString(rejected);
+						OperationManager fromJson = getMapper().readValue(json, OperationManager.class);
+						OperationManager fromBinary = OperationCodec.decodeOperationManager(OperationCodec.encode(rejected));
+
+						assertEquals(fromJson.getStatus(), fromBinary.getStatus(), "Operation manager status mismatch: " + json);
+						assertEquals(fromJson.getOperation(), fromBinary.getOperation(), "Operation manager operation mismatch: " + json);
+						replica.deliver(rejected);
+					}
+				}
+
+				for (Operation op : replica.getCrdt().getAddView()) {
+					String json = getMapper().writeValueAsString(op);
+					assertEquals(getMapper().readValue(json, Operation.class), OperationCodec.decodeOperation(OperationCodec.encode(op)), "Operation mismatch: " + json);
+				}
+
+				String json = getMapper().writeValueAsString(replica.getCrdt());
+				byte[] binary = replica.getCrdt().encode();
+				LastWriteWins fromJson = getMapper().readValue(json, LastWriteWins.class);
+				LastWriteWins fromBinary = LastWriteWins.decode(binary);
+
+				logger.info("   {\"json\":" + json.length() + ",\"binary\":" + binary.length + "}");
+
+				assertEquals(new ArrayList<>(fromJson.getAddView()), new ArrayList<>(fromBinary.getAddView()), "ADD set mismatch");
+				assertEquals(new ArrayList<>(fromJson.getRemView()), new ArrayList<>(fromBinary.getRemView()), "REMOVE set mismatch");
+				assertEquals(replica.getCrdt().getDocument(), fromBinary.getDocument(), "Document mismatch");
+				assertTrue(binary.length < json.length(), "Binary form not smaller than JSON form");
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Build UPDATE operations whose patches hold the same numbers as exact decimals and as the integers and doubles of a plain
+		 * ObjectMapper, and ensure they are equal with equal hashes, while an operation holding a decimal no double represents keeps
+		 * its exact value, including through its binary form and into the document materialized from it
+		 *
+		 * @throws IOException when a patch can not be parsed or an operation encoded or decoded
+		 */
+		public void testExactNumbers() throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testExactNumbers");
+
+			String text = "[{\"op\":\"add\",\"path\":\"/a\",\"value\":[2,2.0,0.5,4294967296]}]";
+			UUID id = Operation.generateId();
+			Operation exact = new Operation(id, OperationType.UPDATE, JacksonUtils.getReader().forType(JsonNode.class).readValue(text), 1L);
+			Operation plain = new Operation(id, OperationType.UPDATE, getMapper().readTree(text), 1L);
+
+			assertEquals(exact, plain, "Operation mismatch: " + exact.toString());
+			assertEquals(exact.hashCode(), plain.hashCode(), "Operation hash mismatch: " + exact.toString());
+			assertEquals(0, exact.compareTo(plain), "Operation order mismatch: " + exact.toString());
+
+			BigDecimal precise = new BigDecimal("0.12345678901234567890123456789");
+			Operation create = new Operation(OperationType.CREATE, 1L);
+			JsonNode patch = JacksonUtils.getReader().forType(JsonNode.class).readValue("[{\"op\":\"add\",\"path\":\"/a\",\"value\":" + precise + "}]");
+			Operation update = new Operation(patch, 2L);
+			Operation decoded = OperationCodec.decodeOperation(OperationCodec.encode(update));
+			Replica replica = new Replica();
+
+			assertEquals(update, decoded, "Decoded operation mismatch: " + update.toString());
+			assertEquals(precise, update.getOp().get(0).get("value").decimalValue(), "Patch value changed: " + update.toString());
+			assertEquals(precise, decoded.getOp().get(0).get("value").decimalValue(), "Decoded patch value changed: " + decoded.toString());
+
+			replica.deliver(new OperationManager(StatusType.APPROVED, create));
+			replica.deliver(new OperationManager(StatusType.APPROVED, decoded));
+
+			assertEquals(precise, replica.getCrdt().getDocument().get("a").decimalValue(), "Document value changed: " + replica.toString());
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Serialize each of the given operations individually, collecting their JSON forms in an array
+		 *
+		 * @param operations The operations to serialize
+		 * @return An array of the JSON forms of the operations, in the order given
+		 * @throws IOException when an operation can not be serialized
+		 */
+		private static JsonNode serialize(Collection<Operation> operations) throws IOException {
+			ArrayNode rv = getMapper().createArrayNode();
+
+			for (Operation op : operations) {
+				rv.add(getMapper().readTree(getMapper().writeValueAsString(op)));
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Serialize CRDTs holding operations delivered in a perturbed order, and ensure each set is written exactly as the default
+		 * serialization of its operations, and that the CRDT read back holds the same sets and serializes identically
+		 *
+		 * @param factory Supplier of the CRDT to serialize
+		 * @throws IOException when the CRDT can not be serialized or deserialized
+		 */
+		public void testSerialization(Supplier<LastWriteWins> factory) throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testSerialization: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				TestConcurrentLastWriteWins.Replica replica = new TestConcurrentLastWriteWins.Replica(factory);
+
+				for (Operation op : perturb(this.generateOperations())) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						replica.deliver(new OperationManager(StatusType.REJECTED, op));
+					}
+				}
+
+				LastWriteWins crdt = replica.getCrdt();
+				String json = getMapper().writeValueAsString(crdt);
+				JsonNode tree = getMapper().readTree(json);
+				LastWriteWins decoded = getMapper().readValue(json, LastWriteWins.class);
+
+				assertEquals(crdt.getClass(), decoded.getClass(), "CRDT type mismatch");
+				assertEquals(serialize(crdt.getAddView()), tree.get("addset"), "ADD set form mismatch");
+				assertEquals(serialize(crdt.getRemView()), tree.get("remset"), "REMOVE set form mismatch");
+				assertEquals(new ArrayList<>(crdt.getAddView()), new ArrayList<>(decoded.getAddView()), "ADD set mismatch");
+				assertEquals(new ArrayList<>(crdt.getRemView()), new ArrayList<>(decoded.getRemView()), "REMOVE set mismatch");
+				assertEquals(json, getMapper().writeValueAsString(decoded), "Serialized form mismatch");
+				assertEquals(crdt.getDocument(), decoded.getDocument(), "Document mismatch");
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Deliver operations in a perturbed order to two replicas, one of which folds its causally stable operations from time to
+		 * time as several nodes acknowledge them, and ensure the folding replica always presents the same document and flags as the
+		 * other, ignores stable operations delivered again, and discards every operation once all are acknowledged.  Some operations
+		 * are delivered PENDING and approved or rejected later, so rejections arrive after folds which they must not precede.
+		 *
+		 * @param factory Supplier of the CRDT the folding replica manages
+		 */
+		public void testFold(Supplier<LastWriteWins> factory) {
+			logger.info("\n** TestLastWriteWins.Materialization.testFold: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = perturb(this.generateOperations());
+				long[] pending = new long[operations.size() + 1];
+				StabilityTracker tracker = new StabilityTracker(LongStream.range(0, ORIGIN_COUNT).boxed().collect(Collectors.toList()));
+				Replica reference = new Replica();
+				TestConcurrentLastWriteWins.Replica folding = new TestConcurrentLastWriteWins.Replica(factory);
+				List<Operation> unsettled = new ArrayList<>();
+				long discarded = 0;
+
+				// The earliest timestamp among the operations not yet delivered, once the first i have been
+				pending[operations.size()] = Long.MAX_VALUE;
+				for (int i = operations.size() - 1; i >= 0; --i) {
+					pending[i] = Math.min(pending[i + 1], operations.get(i).getTimestamp());
+				}
+
+				for (int i = 0; i < operations.size(); ++i) {
+					boolean held = Support.getRandom().nextDouble() < P_PENDING;
+					OperationManager mgr = new OperationManager(held ? StatusType.PENDING : StatusType.APPROVED, operations.get(i));
+
+					reference.deliver(mgr);
+					folding.deliver(mgr);
+
+					if (held) {
+						unsettled.add(operations.get(i));
+					}
+
+					if (!unsettled.isEmpty() && Support.getRandom().nextDouble() < P_SETTLE) {
+						settle(unsettled.remove(Support.getRandom().nextInt(unsettled.size())), reference, folding);
+					}
+
+					if (Support.getRandom().nextDouble() < P_REPEAT) {
+						Operation again = operations.get(Support.getRandom().nextInt(i + 1));
+						OperationManager repeat = new OperationManager(unsettled.contains(again) ? StatusType.PENDING : StatusType.APPROVED, again);
+						reference.deliver(repeat);
+						folding.deliver(repeat);
+					}
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						long horizon = tracker.getHorizon();
+						List<Operation> unstable = operations.stream().filter(op -> op.getTimestamp() > horizon).collect(Collectors.toList());
+
+						if (!unstable.isEmpty()) {
+							OperationManager rejected = new OperationManager(StatusType.REJECTED, unstable.get(Support.getRandom().nextInt(unstable.size())));
+							reference.deliver(rejected);
+							folding.deliver(rejected);
+						}
+					}
+
+					for (long node : tracker.getNodes()) {
+						if (Support.getRandom().nextDouble() < P_ACKNOWLEDGE) {
+							folding.acknowledge(tracker, node, pending[i + 1] - 1);
+						}
+					}
+
+					if (Support.getRandom().nextDouble() < P_FOLD) {
+						discarded += folding.fold(tracker);
+					}
+
+					LastWriteWins expected = reference.getCrdt();
+					LastWriteWins actual = folding.getCrdt();
+
+					assertEquals(expected.getDocument(), actual.getDocument(), "Document mismatch: " + actual.toString());
+					assertEquals(expected.isCreated(), actual.isCreated(), "CREATE flag mismatch: " + actual.toString());
+					assertEquals(expected.isUpdated(), actual.isUpdated(), "UPDATE flag mismatch: " + actual.toString());
+					assertEquals(expected.isDeleted(), actual.isDeleted(), "DELETE flag mismatch: " + actual.toString());
+					assertCounts(expected, actual);
+
+					long horizon = actual.getBase().getHorizon();
+					long timestamp = Math.max(0, horizon) + Support.getRandom().nextInt(32);
+
+					assertEquals(expected.getDocument(timestamp), actual.getDocument(timestamp), "Document mismatch at " + timestamp + ": " + actual.toString());
+					if (0 < horizon) {
+						assertThrows(IllegalArgumentException.class, () -> actual.getDocument(horizon - 1), "Document read before the horizon");
+					}
+				}
+
+				for (Operation op : unsettled) {
+					settle(op, reference, folding);
+				}
+
+				long latest = operations.stream().mapToLong(Operation::getTimestamp).max().getAsLong();
+				Set<Operation> held = new TreeSet<>(reference.getCrdt().getAddView());
+
+				held.addAll(reference.getCrdt().getRemView());
+
+				for (long node : tracker.getNodes()) {
+					folding.acknowledge(tracker, node, latest);
+				}
+
+				discarded += folding.fold(tracker);
+
+				assertEquals(held.size(), discarded, "Discarded operation count mismatch: " + folding.toString());
+				assertTrue(folding.getCrdt().getAddView().isEmpty() && folding.getCrdt().getRemView().isEmpty(), "Operations remain after folding: " + folding.toString());
+				assertEquals(reference.getCrdt().getDocument(), folding.getCrdt().getDocument(), "Document mismatch: " + folding.toString());
+				assertEquals(reference.getCrdt().isCreated(), folding.getCrdt().isCreated(), "CREATE flag mismatch: " + folding.toString());
+				assertEquals(reference.getCrdt().isDeleted(), folding.getCrdt().isDeleted(), "DELETE flag mismatch: " + folding.toString());
+				assertCounts(reference.getCrdt(), folding.getCrdt());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Assert a CRDT which has folded operations into its base reports the same counts of operations as one which has not
+		 *
+		 * @param expected CRDT holding every operation delivered to it
+		 * @param actual CRDT which has folded some of the operations delivered to it
+		 */
+		private static void assertCounts(LastWriteWins expected, LastWriteWins actual) {
+			assertEquals(expected.getAddCount(), actual.getAddCount(), "ADD count mismatch: " + actual.toString());
+			assertEquals(expected.getRemCount(), actual.getRemCount(), "REMOVE count mismatch: " + actual.toString());
+			assertEquals(expected.getOperationCount(), actual.getOperationCount(), "Operation count mismatch: " + actual.toString());
+			assertEquals(expected.countCreated(), actual.countCreated(), "CREATE count mismatch: " + actual.toString());
+			assertEquals(expected.countRead(), actual.countRead(), "READ count mismatch: " + actual.toString());
+			assertEquals(expected.countUpdate(), actual.countUpdate(), "UPDATE count mismatch: " + actual.toString());
+			assertEquals(expected.countDelete(), actual.countDelete(), "DELETE count mismatch: " + actual.toString());
+			assertEquals(expected.isEmpty(), actual.isEmpty(), "Empty flag mismatch: " + actual.toString());
+		}
+
+		/**
+		 * Deliver the latest UPDATE operation PENDING and every other operation approved to two replicas, have every node acknowledge
+		 * all of them and the second replica fold what is stable, and then reject the PENDING operation.  Ensure the fold stopped
+		 * short of the PENDING operation, so that its rejection, arriving after the fold, leaves both replicas with the same document.
+		 *
+		 * @param factory Supplier of the CRDT the folding replica manages
+		 */
+		public void testLateRejection(Supplier<LastWriteWins> factory) {
+			logger.info("\n** TestLastWriteWins.Materialization.testLateRejection: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = this.generateOperations();
+				Operation held = operations.stream().filter(op -> OperationType.UPDATE == op.getType()).reduce((first, second) -> second).get();
+				long latest = operations.stream().mapToLong(Operation::getTimestamp).max().getAsLong();
+				StabilityTracker tracker = new StabilityTracker(LongStream.range(0, ORIGIN_COUNT).boxed().collect(Collectors.toList()));
+				Replica reference = new Replica();
+				TestConcurrentLastWriteWins.Replica folding = new TestConcurrentLastWriteWins.Replica(factory);
+
+				for (Operation op : operations) {
+					OperationManager mgr = new OperationManager(op == held ? StatusType.PENDING : StatusType.APPROVED, op);
+
+					reference.deliver(mgr);
+					folding.deliver(mgr);
+				}
+
+				for (long node : tracker.getNodes()) {
+					folding.acknowledge(tracker, node, latest);
+				}
+
+				assertEquals(held.getTimestamp() - 1, tracker.getHorizon(), "Horizon passes a PENDING operation: " + tracker.toString());
+
+				folding.fold(tracker);
+
+				assertTrue(folding.getCrdt().getBase().getHorizon() < held.getTimestamp(), "PENDING operation folded: " + folding.toString());
+
+				OperationManager rejected = new OperationManager(StatusType.REJECTED, held);
+
+				reference.deliver(rejected);
+				folding.deliver(rejected);
+
+				assertEquals(reference.getCrdt().getDocument(), folding.getCrdt().getDocument(), "Document mismatch: " + folding.toString());
+				assertEquals(reference.getCrdt().isUpdated(), folding.getCrdt().isUpdated(), "UPDATE flag mismatch: " + folding.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Fold the earlier half of the operations of a CRDT into its base, and ensure its version vector still agrees with that of a
+		 * replica which has not folded them, so that replica finds no delta to send it.  Ensure the CRDT read back from its JSON form
+		 * and from its binary form each hold the base, so that they report the same document, counts and version vector as the
+		 * original and serialize identically
+		 *
+		 * @param factory Supplier of the CRDT to fold and serialize
+		 * @throws IOException when the CRDT can not be serialized or deserialized
+		 */
+		public void testFoldedSerialization(Supplier<LastWriteWins> factory) throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testFoldedSerialization: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				TestConcurrentLastWriteWins.Replica replica = new TestConcurrentLastWriteWins.Replica(factory);
+				Replica reference = new Replica();
+				List<Operation> operations = perturb(this.generateOperations());
+
+				for (Operation op : operations) {
+					replica.deliver(new OperationManager(StatusType.APPROVED, op));
+					reference.deliver(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						replica.deliver(new OperationManager(StatusType.REJECTED, op));
+						reference.deliver(new OperationManager(StatusType.REJECTED, op));
+					}
+				}
+
+				LastWriteWins crdt = replica.getCrdt();
+				long horizon = operations.stream().mapToLong(Operation::getTimestamp).sorted().skip(operations.size() / 2).findFirst().getAsLong();
+
+				crdt.fold(horizon);
+
+				assertEquals(reference.getVersionVector(), crdt.getVersionVector(), "Folded version vector mismatch: " + replica.toString());
+				LastWriteWins delta = reference.getDelta(crdt.getVersionVector());
+				assertEquals(0, delta.getAddCount() + delta.getRemCount(), "Delta to folded replica not empty: " + delta.toString());
+
+				String json = getMapper().writeValueAsString(crdt);
+				LastWriteWins fromJson = getMapper().readValue(json, LastWriteWins.class);
+				LastWriteWins fromBinary = LastWriteWins.decode(crdt.encode());
+
+				assertTrue(getMapper().readTree(json).has("base"), "Base missing from JSON form: " + json);
+				assertEquals(crdt.getClass(), fromJson.getClass(), "CRDT type mismatch");
+				assertEquals(json, getMapper().writeValueAsString(fromJson), "Serialized form mismatch");
+
+				for (LastWriteWins decoded : Arrays.asList(fromJson, fromBinary)) {
+					assertEquals(horizon, decoded.getBase().getHorizon(), "Horizon mismatch: " + decoded.toString());
+					assertEquals(crdt.getDocument(), decoded.getDocument(), "Document mismatch: " + decoded.toString());
+					assertEquals(crdt.getDocument(horizon), decoded.getDocument(horizon), "Document mismatch at the horizon: " + decoded.toString());
+					assertEquals(crdt.isCreated(), decoded.isCreated(), "CREATE flag mismatch: " + decoded.toString());
+					assertEquals(crdt.isDeleted(), decoded.isDeleted(), "DELETE flag mismatch: " + decoded.toString());
+					assertEquals(crdt.getVersionVector(), decoded.getVersionVector(), "Version vector mismatch: " + decoded.toString());
+					assertCounts(crdt, decoded);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Move a subtree of a document, read the document, and then deliver a late operation which rolls back the move, followed by
+		 * an UPDATE of the moved subtree.  Ensure the document read earlier is left unchanged.
+		 *
+		 * @param factory Supplier of the CRDT to assess
+		 * @throws IOException when a patch can not be parsed
+		 */
+		public void testMovedSubtree(Supplier<LastWriteWins> factory) throws IOException {
+			logger.info("\n** TestLastWriteWins.Materialization.testMovedSubtree");
+
+			TestConcurrentLastWriteWins.Replica replica = new TestConcurrentLastWriteWins.Replica(factory);
+
+			replica.deliver(new OperationManager(StatusType.APPROVED, new Operation(OperationType.CREATE, 1L)));
+			replica.deliver(new OperationManager(StatusType.APPROVED, new Operation(getMapper().readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":{\"x\":{\"y\":1}}}]"), 2L)));
+			replica.deliver(new OperationManager(StatusType.APPROVED, new Operation(getMapper().readTree("[{\"op\":\"move\",\"from\":\"/a/x\",\"path\":\"/b\"}]"), 4L)));
+
+			JsonNode earlier = replica.getCrdt().getDocument();
+			String expected = earlier.toString();
+
+			replica.deliver(new OperationManager(StatusType.APPROVED, new Operation(getMapper().readTree("[{\"op\":\"add\",\"path\":\"/c\",\"value\":1}]"), 3L)));
+			replica.deliver(new OperationManager(StatusType.APPROVED, new Operation(getMapper().readTree("[{\"op\":\"replace\",\"path\":\"/b/y\",\"value\":2}]"), 5L)));
+
+			assertEquals(expected, earlier.toString(), "Document read earlier was modified: " + replica.toString());
+			assertEquals(2, replica.getCrdt().getDocument().path("b").path("y").asInt(), "Moved subtree not updated: " + replica.toString());
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Deliver a PENDING operation again to both replicas as either approved or rejected, at random
+		 *
+		 * @param op The PENDING operation to settle
+		 * @param reference The replica which does not fold its operations
+		 * @param folding The replica which folds its operations
+		 */
+		private static void settle(Operation op, Replica reference, TestConcurrentLastWriteWins.Replica folding) {
+			OperationManager mgr = new OperationManager(Support.getRandom().nextBoolean() ? StatusType.APPROVED : StatusType.REJECTED, op);
+
+			reference.deliver(mgr);
+			folding.deliver(mgr);
+		}
+	}
+
+	/**
+	 * Test that rolling back a move leaves documents read earlier from a CRDT of each type unchanged
+	 *
+	 * @throws IOException when a patch can not be parsed
+	 */
+	@Test
+	public void testMovedSubtree() throws IOException {
+		Materialization test = new Materialization();
+		test.testMovedSubtree(LastWriteWins::new);
+		test.testMovedSubtree(ConcurrentLastWriteWins::new);
+		test.testMovedSubtree(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test that operations compare their numbers by value and keep them exact
+	 *
+	 * @throws IOException when a patch can not be parsed or an operation encoded or decoded
+	 */
+	@Test
+	public void testExactNumbers() throws IOException {
+		Materialization test = new Materialization();
+		test.testExactNumbers();
+	}
+
+	/**
+	 * Test folding causally stable operations into the base document of a CRDT of each type
+	 */
+	@Test
+	public void testFold() {
+		Materialization test = new Materialization();
+		test.testFold(LastWriteWins::new);
+		test.testFold(ConcurrentLastWriteWins::new);
+		test.testFold(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test that a CRDT of each type does not fold an operation still PENDING, so that its rejection arriving later takes effect
+	 */
+	@Test
+	public void testLateRejection() {
+		Materialization test = new Materialization();
+		test.testLateRejection(LastWriteWins::new);
+		test.testLateRejection(ConcurrentLastWriteWins::new);
+		test.testLateRejection(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test that the JSON and binary forms of a folded CRDT of each type hold its base
+	 *
+	 * @throws IOException when a CRDT can not be serialized or deserialized
+	 */
+	@Test
+	public void testFoldedSerialization() throws IOException {
+		Materialization test = new Materialization();
+		test.testFoldedSerialization(LastWriteWins::new);
+		test.testFoldedSerialization(ConcurrentLastWriteWins::new);
+		test.testFoldedSerialization(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test the materialization of a CRDT whose operations are delivered mostly, but not entirely, in timestamp order
+	 */
+	@Test
+	public void testIncremental() {
+		Materialization test = new Materialization();
+		test.testIncremental();
+	}
+
+	/**
+	 * Test reading the document of a CRDT as of earlier timestamps
+	 */
+	@Test
+	public void testHistorical() {
+		Materialization test = new Materialization();
+		test.testHistorical();
+	}
+
+	/**
+	 * Test reading the document of a CRDT as of recurring earlier timestamps while its operations are delivered
+	 */
+	@Test
+	public void testHistory() {
+		Materialization test = new Materialization();
+		test.testHistory();
+	}
+
+	/**
+	 * Test bringing a replica up to date with the delta of operations it lacks
+	 *
+	 * @throws IOException when the delta can not be serialized or deserialized
+	 */
+	@Test
+	public void testDelta() throws IOException {
+		Materialization test = new Materialization();
+		test.testDelta();
+	}
+
+	/**
+	 * Test retrieving the delta between two replicas which received operations and removals out of order
+	 */
+	@Test
+	public void testReorderedDelta() {
+		Materialization test = new Materialization();
+		test.testReorderedDelta();
+	}
+
+	/**
+	 * Test encoding a CRDT and its operations in the binary form
+	 *
+	 * @throws IOException when a CRDT or operation can not be encoded or decoded
+	 */
+	@Test
+	public void testEncoding() throws IOException {
+		Materialization test = new Materialization();
+		test.testEncoding();
+	}
+
+	/**
+	 * Test serializing and deserializing LastWriteWins, ConcurrentLastWriteWins and LockFreeLastWriteWins CRDTs
+	 *
+	 * @throws IOException when a CRDT can not be serialized or deserialized
+	 */
+	@Test
+	public void testSerialization() throws IOException {
+		Materialization test = new Materialization();
+		test.testSerialization(LastWriteWins::new);
+		test.testSerialization(ConcurrentLastWriteWins::new);
+		test.testSerialization(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test merging the operations of one LastWriteWins replica into another
+	 */
+	@Test
+	public void testMerge() {
+		Materialization test = new Materialization();
+		test.testMerge(LastWriteWins::new);
+	}
+
+	/**
+	 * Test merging the operations of one ConcurrentLastWriteWins replica into another
+	 */
+	@Test
+	public void testConcurrentMerge() {
+		Materialization test = new Materialization();
+		test.testMerge(ConcurrentLastWriteWins::new);
+	}
+
+	/**
+	 * Test merging the operations of one LockFreeLastWriteWins replica into another
+	 */
+	@Test
+	public void testLockFreeMerge() {
+		Materialization test = new Materialization();
+		test.testMerge(LockFreeLastWriteWins::new);
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.ConcurrentLastWriteWins;
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LockFreeLastWriteWins;
+import com.cyberfront.crdt.operation.MerkleTree;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestConcurrentLastWriteWins.Replica;
+
+/**
+ * This contains a class used for performing unit tests designed to verify the Merkle trees summarizing the operations of a CRDT.
+ * Trees maintained as operations arrive are compared with trees built afresh, and the buckets in which two trees differ are compared
+ * with those of the operations known to differ.
+ */
+public class TestMerkleTree {
+	public static class Digesting extends AssessmentSupport {
+		/** Constant defining the number of operations to use in the testing */
+		private static final long OPERATION_COUNT = 1024L;
+
+		/** Maximum number of operations by which the trees compared differ */
+		private static final int DIFFERENCE_COUNT = 8;
+
+		/** Probability an operation is subsequently rejected */
+		private static final double P_REJECT = 0.05;
+
+		/** Operation types generated, those which carry no JSON Patch */
+		private static final OperationType[] TYPES = { OperationType.CREATE, OperationType.READ, OperationType.DELETE };
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestMerkleTree.Digesting.class);
+
+		/** Number of operations to use in each trial */
+		private final long operationCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Digesting() {
+			super();
+			this.operationCount = OPERATION_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param operationCount The number of operations to use in each trial
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Digesting(long operationCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.operationCount = operationCount;
+		}
+
+		/**
+		 * Get the number of operations to use in each trial
+		 * @return The number of operations to use in each trial
+		 */
+		public long getOperationCount() {
+			return this.operationCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate operations of random types with timestamps spread over a range several times their number
+		 *
+		 * @return The operations generated
+		 */
+		private List<Operation> generateOperations() {
+			List<Operation> rv = new ArrayList<>();
+
+			for (long i = 0; i < this.getOperationCount(); ++i) {
+				OperationType type = TYPES[Support.getRandom().nextInt(TYPES.length)];
+				rv.add(new Operation(type, (long) Support.getRandom().nextInt((int) this.getOperationCount() * 4)));
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Build a Merkle tree afresh from the ADD and REMOVE sets of a CRDT
+		 *
+		 * @param crdt The CRDT whose operations to summarize
+		 * @return The Merkle tree summarizing the operations of the CRDT
+		 */
+		private static MerkleTree build(LastWriteWins crdt) {
+			MerkleTree rv = new MerkleTree();
+
+			for (Operation op : crdt.getAddView()) {
+				rv.recordAdded(op);
+			}
+
+			for (Operation op : crdt.getRemView()) {
+				rv.recordRemoved(op);
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Deliver operations to two replicas in different orders, requesting the Merkle tree of one part way through and merging part
+		 * of its operations from a third, and ensure the trees maintained agree with each other and with trees built afresh.  Once the
+		 * earlier half of the operations of one replica is folded, its tree, and that of the CRDT decoded from its binary form, must
+		 * still agree with the tree of the replica which has not folded them.
+		 *
+		 * @param factory Supplier of the CRDT the replicas manage
+		 * @throws IOException when the folded CRDT can not be decoded
+		 */
+		public void testIncremental(Supplier<LastWriteWins> factory) throws IOException {
+			logger.info("\n** TestMerkleTree.Digesting.testIncremental: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<OperationManager> deliveries = new ArrayList<>();
+				Replica incremental = new Replica(factory);
+				Replica shuffled = new Replica(factory);
+				Replica partial = new Replica(factory);
+
+				for (Operation op : this.generateOperations()) {
+					deliveries.add(new OperationManager(StatusType.APPROVED, op));
+
+					if (Support.getRandom().nextDouble() < P_REJECT) {
+						deliveries.add(new OperationManager(StatusType.REJECTED, op));
+					}
+				}
+
+				for (OperationManager mgr : deliveries) {
+					if (Support.getRandom().nextBoolean()) {
+						partial.deliver(mgr);
+					} else {
+						incremental.deliver(mgr);
+					}
+
+					if (0 == Support.getRandom().nextInt(deliveries.size())) {
+						incremental.getCrdt().getMerkleTree();
+					}
+				}
+
+				incremental.getCrdt().getMerkleTree();
+				incremental.merge(partial);
+				Collections.shuffle(deliveries, Support.getRandom());
+
+				for (OperationManager mgr : deliveries) {
+					shuffled.deliver(mgr);
+				}
+
+				long expected = build(incremental.getCrdt()).getRoot();
+
+				assertEquals(expected, incremental.getCrdt().getMerkleTree().getRoot(), "Maintained root mismatch: " + incremental.toString());
+				assertEquals(expected, shuffled.getCrdt().getMerkleTree().getRoot(), "Shuffled root mismatch: " + shuffled.toString());
+				assertTrue(incremental.getCrdt().getMerkleTree().diff(shuffled.getCrdt().getMerkleTree()).isEmpty(), "Divergence found: " + shuffled.toString());
+
+				incremental.getCrdt().fold(this.getOperationCount() * 2);
+
+				assertEquals(expected, incremental.getCrdt().getMerkleTree().getRoot(), "Folded root mismatch: " + incremental.toString());
+				assertEquals(expected, LastWriteWins.decode(incremental.getCrdt().encode()).getMerkleTree().getRoot(), "Decoded root mismatch: " + incremental.toString());
+				assertTrue(incremental.getCrdt().getMerkleTree().diff(shuffled.getCrdt().getMerkleTree()).isEmpty(), "Divergence found after folding: " + incremental.toString());
+
+				incremental.clear();
+				assertEquals(0L, incremental.getCrdt().getMerkleTree().getRoot(), "Cleared root mismatch: " + incremental.toString());
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Summarize a set of operations in one tree and the same set, less a few operations and with a few others removed, in another,
+		 * and ensure comparing the trees locates exactly the buckets of the operations which differ
+		 */
+		public void testDiff() {
+			logger.info("\n** TestMerkleTree.Digesting.testDiff: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				int bucketBits = Support.getRandom().nextInt(6);
+				List<Operation> operations = this.generateOperations();
+				MerkleTree complete = new MerkleTree(bucketBits);
+				MerkleTree divergent = new MerkleTree(bucketBits);
+				NavigableSet<Long> expected = new TreeSet<>();
+				Set<Operation> removed = new HashSet<>();
+
+				for (Operation op : operations) {
+					complete.recordAdded(op);
+
+					if (Support.getRandom().nextInt(operations.size()) < DIFFERENCE_COUNT) {
+						expected.add(op.getTimestamp() >>> bucketBits);
+					} else {
+						divergent.recordAdded(op);
+					}
+				}
+
+				for (int i = Support.getRandom().nextInt(DIFFERENCE_COUNT); i > 0; --i) {
+					Operation op = operations.get(Support.getRandom().nextInt(operations.size()));
+
+					if (removed.add(op)) {
+						divergent.recordRemoved(op);
+						expected.add(op.getTimestamp() >>> bucketBits);
+					}
+				}
+
+				NavigableSet<Long> actual = complete.diff(divergent);
+
+				assertEquals(expected, actual, "Divergent bucket mismatch");
+				assertEquals(expected, divergent.diff(complete), "Reversed divergent bucket mismatch");
+				assertTrue(complete.getDepth() * MerkleTree.FANOUT_BITS - MerkleTree.FANOUT_BITS < Long.SIZE - bucketBits
+						&& Long.SIZE - bucketBits <= complete.getDepth() * MerkleTree.FANOUT_BITS, "Depth does not match the significant bucket bits");
+
+				for (long bucket : actual) {
+					assertTrue(operations.stream().anyMatch(op -> complete.getFirstTimestamp(bucket) <= op.getTimestamp() && op.getTimestamp() <= complete.getLastTimestamp(bucket)),
+							"Bucket holds no operations: " + bucket);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+	}
+
+	/**
+	 * Test maintaining the Merkle tree of a LastWriteWins as operations arrive
+	 *
+	 * @throws IOException when a folded CRDT can not be decoded
+	 */
+	@Test
+	public void testIncremental() throws IOException {
+		Digesting test = new Digesting();
+		test.testIncremental(LastWriteWins::new);
+	}
+
+	/**
+	 * Test maintaining the Merkle tree of a ConcurrentLastWriteWins as operations arrive
+	 *
+	 * @throws IOException when a folded CRDT can not be decoded
+	 */
+	@Test
+	public void testConcurrentIncremental() throws IOException {
+		Digesting test = new Digesting();
+		test.testIncremental(ConcurrentLastWriteWins::new);
+	}
+
+	/**
+	 * Test maintaining the Merkle tree of a LockFreeLastWriteWins as operations arrive
+	 *
+	 * @throws IOException when a folded CRDT can not be decoded
+	 */
+	@Test
+	public void testLockFreeIncremental() throws IOException {
+		Digesting test = new Digesting();
+		test.testIncremental(LockFreeLastWriteWins::new);
+	}
+
+	/**
+	 * Test locating the buckets in which two Merkle trees differ
+	 */
+	@Test
+	public void testDiff() {
+		Digesting test = new Digesting();
+		test.testDiff();
+	}
+}
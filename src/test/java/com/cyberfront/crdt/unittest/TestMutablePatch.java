@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.operation.MutablePatch;
+import com.cyberfront.crdt.operation.UndoRecord;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+
+/**
+ * This contains a class used for performing unit tests designed to verify that patches applied in place by MutablePatch produce
+ * the same documents as JsonPatch, and that the undo records they produce restore the original documents exactly.
+ */
+public class TestMutablePatch {
+	public static class Patching extends AssessmentSupport {
+		/** Constant defining the number of states to use in the testing */
+		private static final long STATE_COUNT = 64L;
+
+		/** Probability a patch is extended with a randomly generated operation which is likely to fail */
+		private static final double P_CORRUPT = 0.3;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestMutablePatch.Patching.class);
+
+		/** Number of states to prepare for the testing suite */
+		private final long stateCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Patching() {
+			super();
+			this.stateCount = STATE_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param stateCount The number of state transitions for the test
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Patching(long stateCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.stateCount = stateCount;
+		}
+
+		/**
+		 * Get the number of state transitions for this test suite
+		 * @return The number of state transition for this test suite
+		 */
+		public long getStateCount() {
+			return this.stateCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Build a patch between two documents, occasionally extended with a randomly generated operation
+		 *
+		 * @param source The document to patch
+		 * @param target The document the patch is to produce
+		 * @return The patch
+		 */
+		private static JsonNode generatePatch(JsonNode source, JsonNode target) {
+			ArrayNode rv = (ArrayNode) JsonDiff.asJson(source, target);
+
+			if (Support.getRandom().nextDouble() < P_CORRUPT) {
+				int index = Support.getRandom().nextInt(rv.size() + 1);
+				rv.insert(index, generateOperations(1, 0.25, 0.25, 0.25, 0.25).get(0));
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Apply a patch to a document with both JsonPatch and MutablePatch, and ensure they agree on the outcome.  When the patch
+		 * fails, the document must be left untouched; when it succeeds, reverting the undo record must restore the document with
+		 * its properties in their original order.
+		 *
+		 * @param document The document to patch
+		 * @param patch The patch to apply
+		 * @throws IOException The patch is not a well formed JSON Patch
+		 */
+		private static void assessPatch(JsonNode document, JsonNode patch) throws IOException {
+			JsonNode expected;
+			try {
+				expected = JsonPatch.fromJson(patch).apply(document);
+			} catch (JsonPatchException e) {
+				expected = null;
+			}
+
+			JsonNode actual = document.deepCopy();
+			UndoRecord undo = new UndoRecord();
+
+			try {
+				actual = MutablePatch.fromJson(patch).apply(actual, undo);
+				assertTrue(null != expected, "MutablePatch succeeded where JsonPatch failed: " + patch);
+				assertEquals(expected, actual, "Document mismatch: " + patch);
+				actual = undo.revert(actual);
+			} catch (JsonPatchException e) {
+				assertTrue(null == expected, "MutablePatch failed where JsonPatch succeeded: " + patch);
+				assertTrue(undo.isEmpty(), "Undo record retained after failure: " + patch);
+			}
+
+			assertEquals(document.toString(), actual.toString(), "Document not restored: " + patch);
+		}
+
+		/**
+		 * Apply patches between randomly selected pairs of documents and ensure MutablePatch agrees with JsonPatch
+		 *
+		 * @throws IOException A generated patch is not a well formed JSON Patch
+		 */
+		public void test() throws IOException {
+			logger.info("\n** TestMutablePatch.Patching.test: {\"count\":" + this.getTrialCount() + ", \"stateCount\":" + this.getStateCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<JsonNode> documents = new ArrayList<>(generateJsonSequence(generateObjectSequence(this.getStateCount(), 0.3)));
+
+				for (int i = 0; i < documents.size(); ++i) {
+					JsonNode source = documents.get(Support.getRandom().nextInt(documents.size()));
+					JsonNode target = documents.get(Support.getRandom().nextInt(documents.size()));
+
+					assessPatch(source, generatePatch(source, target));
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+	}
+
+	/**
+	 * Test applying patches in place
+	 *
+	 * @throws IOException A generated patch is not a well formed JSON Patch
+	 */
+	@Test
+	public void testPatching() throws IOException {
+		Patching test = new Patching();
+		test.test();
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.OperationTwoSet;
+import com.cyberfront.crdt.operation.ArrayOperationLog;
+import com.cyberfront.crdt.operation.ConcurrentOperationLog;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationLog;
+import com.cyberfront.crdt.operation.SortedOperationLog;
+import com.cyberfront.crdt.operation.TreeOperationLog;
+import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestLastWriteWins.Materialization;
+
+/**
+ * This contains a class used for performing unit tests designed to verify that the operation log implementations agree with one
+ * another, and that CRDTs materialize the same documents regardless of the operation log backing them.
+ */
+public class TestOperationLog {
+	public static class Logging extends AssessmentSupport {
+		/** Constant defining the number of operations to use in the testing */
+		private static final long OPERATION_COUNT = 1024L;
+
+		/** Probability an operation is assigned a timestamp earlier than those preceding it */
+		private static final double P_LATE = 0.1;
+
+		/** Probability an operation is removed after it is added */
+		private static final double P_REMOVE = 0.1;
+
+		/** Number of passes over the active operations made by the benchmark, emulating repeated materialization */
+		private static final int BENCHMARK_PASSES = 16;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestOperationLog.Logging.class);
+
+		/** Number of operations to prepare for the testing suite */
+		private final long operationCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Logging() {
+			super();
+			this.operationCount = OPERATION_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param operationCount The number of operations for the test
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Logging(long operationCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.operationCount = operationCount;
+		}
+
+		/**
+		 * Get the number of operations for this test suite
+		 * @return The number of operations for this test suite
+		 */
+		public long getOperationCount() {
+			return this.operationCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate a sequence of operations of random types, mostly in timestamp order but with some arriving late
+		 *
+		 * @return The sequence of operations
+		 */
+		protected List<Operation> generateOperations() {
+			List<Operation> rv = new ArrayList<>();
+			OperationType[] types = OperationType.values();
+			long timestamp = 0;
+
+			for (long i = 0; i < this.getOperationCount(); ++i) {
+				timestamp += Support.getRandom().nextInt(4);
+				long effective = Support.getRandom().nextDouble() < P_LATE ? Support.getRandom().nextInt((int) timestamp + 1) : timestamp;
+				OperationType type = types[Support.getRandom().nextInt(types.length)];
+
+				rv.add(OperationType.UPDATE == type
+						? new Operation(generateOperations(1 + Support.getRandom().nextInt(3), 0.25, 0.25, 0.25, 0.25), effective)
+						: new Operation(type, effective));
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Ensure the given operation log agrees with the reference log on the content and order of every set and on every count
+		 *
+		 * @param expected The reference operation log
+		 * @param actual The operation log to assess
+		 */
+		private static void assessLog(OperationLog expected, OperationLog actual) {
+			assertEquals(new ArrayList<>(expected.getAddSet()), new ArrayList<>(actual.getAddSet()), "ADD set mismatch");
+			assertEquals(new ArrayList<>(expected.getRemSet()), new ArrayList<>(actual.getRemSet()), "REMOVE set mismatch");
+			assertEquals(new ArrayList<>(expected.getOpsSet()), new ArrayList<>(actual.getOpsSet()), "Active set mismatch");
+
+			for (OperationType type : OperationType.values()) {
+				assertEquals(expected.getAddCount(type), actual.getAddCount(type), "ADD count mismatch for " + type);
+				assertEquals(expected.getRemCount(type), actual.getRemCount(type), "REMOVE count mismatch for " + type);
+				assertEquals(expected.getOpsCount(type), actual.getOpsCount(type), "Active count mismatch for " + type);
+			}
+
+			for (int i = 0; i < 16; ++i) {
+				long timestamp = Support.getRandom().nextInt(4 * (expected.getAddSet().size() + 1)) - 1;
+				assertEquals(new ArrayList<>(expected.getOpsAfter(timestamp)), new ArrayList<>(actual.getOpsAfter(timestamp)), "Range mismatch after " + timestamp);
+			}
+		}
+
+		/**
+		 * Add and remove operations arriving in a perturbed order, some of them more than once, to the given operation log and
+		 * ensure it agrees with a TreeOperationLog given the same operations, including once the earlier of them are discarded.
+		 *
+		 * @param factory Supplier of the operation log to assess
+		 */
+		public void testEquivalence(Supplier<OperationLog> factory) {
+			logger.info("\n** TestOperationLog.Logging.testEquivalence: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				List<Operation> operations = this.generateOperations();
+				OperationLog expected = new TreeOperationLog();
+				OperationLog actual = factory.get();
+
+				for (Operation op : operations) {
+					Operation target = Support.getRandom().nextDouble() < P_REMOVE ? operations.get(Support.getRandom().nextInt(operations.size())) : op;
+
+					assertEquals(expected.add(op), actual.add(op), "ADD result mismatch: " + op);
+					assertEquals(expected.remove(target), actual.remove(target), "REMOVE result mismatch: " + target);
+					assertEquals(expected.isAdded(target), actual.isAdded(target), "ADD membership mismatch: " + target);
+					assertEquals(expected.isRemoved(op), actual.isRemoved(op), "REMOVE membership mismatch: " + op);
+				}
+
+				assessLog(expected, actual);
+
+				OperationLog reference = new TreeOperationLog();
+				OperationLog merged = factory.get();
+
+				for (Operation op : operations) {
+					if (Support.getRandom().nextBoolean()) {
+						reference.add(op);
+						merged.add(op);
+					}
+				}
+
+				assertEquals(reference.merge(expected.getAddSet(), expected.getRemSet()), merged.merge(actual.getAddSet(), actual.getRemSet()), "MERGE result mismatch");
+				assessLog(expected, merged);
+
+				long horizon = Support.getRandom().nextInt(2 * (operations.size() + 1)) - 1;
+
+				assertEquals(expected.discard(horizon), actual.discard(horizon), "DISCARD result mismatch through " + horizon);
+				assessLog(expected, actual);
+
+				expected.clear();
+				actual.clear();
+				assessLog(expected, actual);
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Time adding a sequence of operations, mostly in order, to the given operation log and then scanning its active operations
+		 * repeatedly, as materialization does
+		 *
+		 * @param log The empty operation log to time
+		 * @param operations The operations to add
+		 * @return Elapsed time in nanoseconds
+		 */
+		private static long time(OperationLog log, List<Operation> operations) {
+			long start = System.nanoTime();
+			long count = 0;
+
+			for (Operation op : operations) {
+				log.add(op);
+			}
+
+			for (int pass = 0; pass < BENCHMARK_PASSES; ++pass) {
+				for (Operation op : log.getOpsSet()) {
+					count += null == op ? 0 : 1;
+				}
+			}
+
+			assertEquals(log.getOpsSet().size() * (long) BENCHMARK_PASSES, count, "Scan count mismatch");
+
+			return System.nanoTime() - start;
+		}
+
+		/**
+		 * Compare the time taken by each operation log implementation to absorb a sequence of operations and scan it repeatedly, and
+		 * ensure each ends up with the same content as the TreeOperationLog.  The times are logged rather than asserted, since timing
+		 * varies with the environment.
+		 */
+		public void testBenchmark() {
+			logger.info("\n** TestOperationLog.Logging.testBenchmark: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			long tree = 0;
+			long sorted = 0;
+			long array = 0;
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				List<Operation> operations = this.generateOperations();
+				OperationLog treeLog = new TreeOperationLog();
+				OperationLog sortedLog = new SortedOperationLog();
+				OperationLog arrayLog = new ArrayOperationLog();
+
+				tree += time(treeLog, operations);
+				sorted += time(sortedLog, operations);
+				array += time(arrayLog, operations);
+
+				assessLog(treeLog, sortedLog);
+				assessLog(treeLog, arrayLog);
+			}
+
+			logger.info("   {\"tree\":" + tree / 1000000 + ", \"sorted\":" + sorted / 1000000 + ", \"array\":" + array / 1000000 + "} ms");
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Run the incremental materialization test with CRDTs backed by the given operation log
+		 *
+		 * @param factory Supplier of the operation log to back each CRDT
+		 */
+		public void testMaterialization(Supplier<OperationLog> factory) {
+			Supplier<OperationLog> original = OperationTwoSet.getLogFactory();
+
+			try {
+				OperationTwoSet.setLogFactory(factory);
+				new Materialization().testIncremental();
+			} finally {
+				OperationTwoSet.setLogFactory(original);
+			}
+		}
+	}
+
+	/**
+	 * Test the agreement of the SortedOperationLog with the TreeOperationLog
+	 */
+	@Test
+	public void testSortedEquivalence() {
+		Logging test = new Logging();
+		test.testEquivalence(SortedOperationLog::new);
+	}
+
+	/**
+	 * Test the agreement of the ConcurrentOperationLog with the TreeOperationLog
+	 */
+	@Test
+	public void testConcurrentEquivalence() {
+		Logging test = new Logging();
+		test.testEquivalence(ConcurrentOperationLog::new);
+	}
+
+	/**
+	 * Test the agreement of the ArrayOperationLog with the TreeOperationLog
+	 */
+	@Test
+	public void testArrayEquivalence() {
+		Logging test = new Logging();
+		test.testEquivalence(ArrayOperationLog::new);
+	}
+
+	/**
+	 * Compare the performance of the operation log implementations
+	 */
+	@Test
+	public void testBenchmark() {
+		Logging test = new Logging();
+		test.testBenchmark();
+	}
+
+	/**
+	 * Test materializing CRDTs backed by an ArrayOperationLog
+	 */
+	@Test
+	public void testArrayMaterialization() {
+		Logging test = new Logging();
+		test.testMaterialization(ArrayOperationLog::new);
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.operation.OperationSketch;
+import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestLastWriteWins.Replica;
+
+/**
+ * This contains a class used for performing unit tests designed to verify reconciling the operations of two replicas by exchanging
+ * sketches of them.  Replicas sharing most of their operations exchange sketches, recover the operations by which they differ, and
+ * deliver those operations to each other.
+ */
+public class TestOperationSketch {
+	public static class Reconciling extends AssessmentSupport {
+		/** Constant defining the number of operations the replicas share */
+		private static final long OPERATION_COUNT = 1024L;
+
+		/** Maximum number of operations held by only one replica, which the default sketch size recovers */
+		private static final int DIFFERENCE_COUNT = 12;
+
+		/** Number of operations held by only one replica in testing a difference too large to recover */
+		private static final int OVERFLOW_COUNT = 512;
+
+		/** Probability a shared operation is rejected by one of the replicas */
+		private static final double P_REJECT = 0.01;
+
+		/** Operation types generated, those which carry no JSON Patch */
+		private static final OperationType[] TYPES = { OperationType.CREATE, OperationType.READ, OperationType.DELETE };
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestOperationSketch.Reconciling.class);
+
+		/** Number of operations the replicas share in each trial */
+		private final long operationCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Reconciling() {
+			super();
+			this.operationCount = OPERATION_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param operationCount The number of operations the replicas share in each trial
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Reconciling(long operationCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.operationCount = operationCount;
+		}
+
+		/**
+		 * Get the number of operations the replicas share in each trial
+		 * @return The number of operations the replicas share in each trial
+		 */
+		public long getOperationCount() {
+			return this.operationCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate an operation of a random type with a random timestamp
+		 *
+		 * @return The operation generated
+		 */
+		private Operation generateOperation() {
+			OperationType type = TYPES[Support.getRandom().nextInt(TYPES.length)];
+			return new Operation(type, (long) Support.getRandom().nextInt((int) this.getOperationCount() * 4));
+		}
+
+		/**
+		 * Deliver a shared set of operations to two replicas along with a few held by only one of them, exchange a sketch and the
+		 * operations it identifies, and ensure the replicas recover exactly the operations they lacked and end with the same sets
+		 *
+		 * @throws IOException when the sketch can not be serialized or deserialized
+		 */
+		public void testReconcile() throws IOException {
+			logger.info("\n** TestOperationSketch.Reconciling.testReconcile: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Replica local = new Replica();
+				Replica remote = new Replica();
+				long localOnly = 0;
+				long remoteOnly = 0;
+
+				for (long i = 0; i < this.getOperationCount(); ++i) {
+					OperationManager mgr = new OperationManager(StatusType.APPROVED, this.generateOperation());
+
+					local.deliver(mgr);
+					remote.deliver(mgr);
+
+					if (Support.getRandom().nextDouble() < P_REJECT && localOnly + remoteOnly < DIFFERENCE_COUNT) {
+						OperationManager rejected = new OperationManager(StatusType.REJECTED, mgr.getOperation());
+
+						if (Support.getRandom().nextBoolean()) {
+							local.deliver(rejected);
+							++localOnly;
+						} else {
+							remote.deliver(rejected);
+							++remoteOnly;
+						}
+					}
+				}
+
+				for (int i = Support.getRandom().nextInt(DIFFERENCE_COUNT / 2); i > 0; --i) {
+					local.deliver(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+					++localOnly;
+				}
+
+				for (int i = Support.getRandom().nextInt(DIFFERENCE_COUNT / 2); i > 0; --i) {
+					remote.deliver(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+					++remoteOnly;
+				}
+
+				String encoded = getMapper().writeValueAsString(remote.getSketch(OperationSketch.CELL_COUNT));
+				OperationSketch.Difference difference = local.reconcile(getMapper().readValue(encoded, OperationSketch.class));
+
+				assertNotNull(difference, "Difference not recovered: {\"localOnly\":" + localOnly + ",\"remoteOnly\":" + remoteOnly + "}");
+				assertEquals(localOnly, difference.getLocal().size(), "Local difference size mismatch");
+				assertEquals(remoteOnly, difference.getRemote().size(), "Remote difference size mismatch");
+
+				List<OperationManager> toRemote = local.getOperations(difference.getLocal());
+				List<OperationManager> toLocal = remote.getOperations(difference.getRemote());
+
+				assertEquals(localOnly, toRemote.size(), "Local operation count mismatch");
+				assertEquals(remoteOnly, toLocal.size(), "Remote operation count mismatch");
+
+				remote.apply(toRemote);
+				local.apply(toLocal);
+
+				assertEquals(new ArrayList<>(local.getCrdt().getAddView()), new ArrayList<>(remote.getCrdt().getAddView()), "ADD set mismatch");
+				assertEquals(new ArrayList<>(local.getCrdt().getRemView()), new ArrayList<>(remote.getCrdt().getRemView()), "REMOVE set mismatch");
+				assertEquals(0, local.reconcile(remote.getSketch(OperationSketch.CELL_COUNT)).getLocal().size(), "Difference remains after reconciling");
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Reconcile replicas which differ by far more operations than a sketch recovers, and ensure the failure is reported rather
+		 * than a partial difference returned
+		 */
+		public void testOverflow() {
+			logger.info("\n** TestOperationSketch.Reconciling.testOverflow: {\"count\":" + this.getTrialCount() + ", \"overflowCount\":" + OVERFLOW_COUNT + "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Replica local = new Replica();
+				Replica remote = new Replica();
+
+				for (int i = 0; i < OVERFLOW_COUNT; ++i) {
+					(Support.getRandom().nextBoolean() ? local : remote).deliver(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+				}
+
+				assertNull(local.reconcile(remote.getSketch(OperationSketch.CELL_COUNT)), "Overflowing difference recovered");
+			}
+
+			logger.info("   SUCCESS");
+		}
+	}
+
+	/**
+	 * Test reconciling two replicas differing by a few operations
+	 *
+	 * @throws IOException when the sketch can not be serialized or deserialized
+	 */
+	@Test
+	public void testReconcile() throws IOException {
+		Reconciling test = new Reconciling();
+		test.testReconcile();
+	}
+
+	/**
+	 * Test reconciling two replicas differing by too many operations to recover
+	 */
+	@Test
+	public void testOverflow() {
+		Reconciling test = new Reconciling();
+		test.testOverflow();
+	}
+}
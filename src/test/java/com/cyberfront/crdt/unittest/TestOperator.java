@@ -22,21 +22,30 @@
  */
 package com.cyberfront.crdt.unittest;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Test;
 
+import com.cyberfront.crdt.CRDTManager;
 import com.cyberfront.crdt.operation.Operation.OperationType;
 import com.cyberfront.crdt.unittest.AssessmentSupport;
 import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.SequentialIdGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -55,6 +64,12 @@ public class TestOperator {
 //		@SuppressWarnings("unused")
 		private static final ObjectMapper mapper = new ObjectMapper(); 
 		
+		/** Number of threads generating identifiers concurrently */
+		private static final int ID_THREADS = 4;
+
+		/** Number of identifiers each thread generates */
+		private static final int ID_COUNT = 4096;
+
 		private static final OperationType[] TYPE_VALUES = {
 				OperationType.CREATE,
 				OperationType.UPDATE,
@@ -192,6 +207,11 @@ public class TestOperator {
 					assertNotNull(doc, op.toString());
 					restored = mapper.treeToValue(doc, Operation.class);
 					assertNotNull(restored, doc.toString());
+
+					Operation copy = new Operation(op);
+					assertEquals(op, copy, "Copy not equal to original");
+					assertEquals(op.hashCode(), copy.hashCode(), "Copy hash differs from original");
+					assertEquals(0, op.compareTo(copy), "Copy not ordered with original");
 				} catch (JsonProcessingException e) {
 					logger.error(e);
 					logger.info("\n   original - " + (null == op ? "null" :op.toString()));
@@ -227,6 +247,76 @@ public class TestOperator {
 				}
 			}
 		}
+
+		/**
+		 * Generate operation identifiers from several threads sharing a SequentialIdGenerator and ensure they are unique, that each
+		 * thread receives them in increasing order, that operations sharing a timestamp and type are ordered by creation, and that
+		 * each CRDTManager generates operations from an origin of its own unless given a generator
+		 */
+		public void testIdentifiers() {
+			logger.info("\n** TestOperator.Operator.testIdentifiers: {\"count\":" + this.getTrialCount() + "}");
+
+			for (long i = 0; i<getTrialCount(); ++i) {
+				logger.info("   trial " + (i+1) + " of " + this.getTrialCount());
+				SequentialIdGenerator generator = new SequentialIdGenerator();
+				Set<UUID> issued = ConcurrentHashMap.newKeySet();
+				List<Thread> threads = new ArrayList<>();
+				Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+				for (int t = 0; t < ID_THREADS; ++t) {
+					threads.add(new Thread(() -> {
+						UUID previous = null;
+
+						for (int n = 0; n < ID_COUNT; ++n) {
+							UUID id = generator.get();
+							assertTrue(null == previous || 0 > previous.compareTo(id), "Identifiers out of order: " + previous + ", " + id);
+							assertTrue(issued.add(id), "Identifier issued twice: " + id);
+							previous = id;
+						}
+					}));
+				}
+
+				for (Thread thread : threads) {
+					thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+					thread.start();
+				}
+
+				for (Thread thread : threads) {
+					try {
+						thread.join();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted waiting for " + thread.getName(), e);
+					}
+				}
+
+				assertTrue(failures.isEmpty(), "Identifier generation failed: " + failures);
+				assertEquals(ID_THREADS * ID_COUNT, issued.size(), "Identifier count mismatch");
+
+				Supplier<UUID> original = Operation.getIdGenerator();
+				try {
+					Operation.setIdGenerator(generator);
+					Operation first = new Operation(OperationType.CREATE, 1L);
+					Operation second = new Operation(OperationType.CREATE, 1L);
+					assertTrue(0 > first.compareTo(second), "Operations not ordered by creation: " + first + ", " + second);
+				} finally {
+					Operation.setIdGenerator(original);
+				}
+
+				CRDTManager left = new CRDTManager();
+				CRDTManager right = new CRDTManager();
+				Operation leftOp = CRDTManager.generateCreate(left.getIdGenerator(), 1L);
+				Operation rightOp = CRDTManager.generateUpdate(right.getIdGenerator(), getMapper().createObjectNode(), getMapper().createObjectNode().put("a", 1), 1L);
+
+				assertTrue(leftOp.getId().getMostSignificantBits() != rightOp.getId().getMostSignificantBits(), "Managers share an origin: " + leftOp + ", " + rightOp);
+				assertTrue(leftOp.getId().getMostSignificantBits() != Operation.generateId().getMostSignificantBits(), "Manager uses the shared generator: " + leftOp);
+
+				right.setIdGenerator(generator);
+				assertEquals(generator.getNodeId(), CRDTManager.generateDelete(right.getIdGenerator(), 2L).getId().getMostSignificantBits(), "Installed generator not used");
+			}
+
+			logger.info("   SUCCESS");
+		}
 	}
 	
 	
@@ -238,4 +328,13 @@ public class TestOperator {
 		Operator test = new Operator();
 		test.test();
 	}
+
+	/**
+	 * Test generating operation identifiers concurrently
+	 */
+	@Test
+	public void testIdentifiers() {
+		Operator test = new Operator();
+		test.testIdentifiers();
+	}
 }
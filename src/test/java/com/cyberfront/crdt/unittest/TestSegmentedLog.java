@@ -0,0 +1,662 @@
+/*
+ * Copyright (c) 2018 Cybernetic Frontiers LLC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ */
+package com.cyberfront.crdt.unittest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.OperationJournal;
+import com.cyberfront.crdt.operation.Operation;
+import com.cyberfront.crdt.operation.Operation.OperationType;
+import com.cyberfront.crdt.operation.OperationManager;
+import com.cyberfront.crdt.operation.OperationManager.StatusType;
+import com.cyberfront.crdt.operation.VersionVector;
+import com.cyberfront.crdt.persistence.SegmentedLog;
+import com.cyberfront.crdt.persistence.Snapshot;
+import com.cyberfront.crdt.persistence.WriteAheadLog;
+import com.cyberfront.crdt.persistence.WriteAheadLog.Durability;
+import com.cyberfront.crdt.support.Support;
+import com.cyberfront.crdt.unittest.TestLastWriteWins.Replica;
+
+/**
+ * This contains a class used for performing unit tests designed to verify persisting the operations pushed into CRDTManager instances
+ * in a segmented log, and rebuilding their CRDTs from it.
+ */
+public class TestSegmentedLog {
+	public static class Persisting extends AssessmentSupport {
+		/** Constant defining the number of operations to push in each trial */
+		private static final long OPERATION_COUNT = 2048L;
+
+		/** Number of CRDTs whose operations are recorded in the log */
+		private static final int KEY_COUNT = 8;
+
+		/** Size of each segment, small enough that the operations of each trial span several segments */
+		private static final int SEGMENT_SIZE = 16 << 10;
+
+		/** Probability an operation is an UPDATE */
+		private static final double P_UPDATE = 0.5;
+
+		/** Probability an operation is rejected after being approved */
+		private static final double P_REJECT = 0.05;
+
+		/** Probability an operation is delivered a second time */
+		private static final double P_REPEAT = 0.2;
+
+		/** Logger to use when displaying state information */
+		private static final Logger logger = LogManager.getLogger(TestSegmentedLog.Persisting.class);
+
+		/** Number of operations to push in each trial */
+		private final long operationCount;
+
+		/**
+		 * Default constructor which initialized fields to their default values
+		 */
+		public Persisting() {
+			super();
+			this.operationCount = OPERATION_COUNT;
+		}
+
+		/**
+		 * Constructor to deliberately initialize each field to the associated values provided
+		 * @param operationCount The number of operations to push in each trial
+		 * @param trialCount Trial count to use for the test activity
+		 * @param abbreviatedFactor Abbreviation factor to use the basis of this CreateTest instance when the abbreviated flag is set
+		 * @param stressedFactor Stressed factor to use when the the stressed flag is set
+		 * @param abbreviated Abbreviated flag which indicates when to divide different test parameters by the abbreviatedFactor
+		 * @param stressed Stressed flag which indicates when to multiply different test parameters by the stressedFactor
+		 */
+		public Persisting(long operationCount, long trialCount, long abbreviatedFactor, long stressedFactor, boolean abbreviated, boolean stressed) {
+			super(trialCount, abbreviatedFactor, stressedFactor, abbreviated, stressed);
+			this.operationCount = operationCount;
+		}
+
+		/**
+		 * Get the number of operations to push in each trial
+		 * @return The number of operations to push in each trial
+		 */
+		public long getOperationCount() {
+			return this.operationCount * this.getStressedFactor() / this.getAbbreviatedFactor();
+		}
+
+		/**
+		 * Generate an operation with a random timestamp, either an UPDATE with a random JSON Patch or one of the other types
+		 *
+		 * @return The operation generated
+		 */
+		private Operation generateOperation() {
+			long timestamp = Support.getRandom().nextInt((int) this.getOperationCount() * 4);
+
+			if (Support.getRandom().nextDouble() < P_UPDATE) {
+				return new Operation(generateOperations(1 + Support.getRandom().nextInt(4), 0.25, 0.25, 0.25, 0.25), timestamp);
+			}
+
+			OperationType[] types = { OperationType.CREATE, OperationType.READ, OperationType.DELETE };
+			return new Operation(types[Support.getRandom().nextInt(types.length)], timestamp);
+		}
+
+		/**
+		 * Create replicas each journaling its operations in the given log, and push operations into them, some rejected and some
+		 * delivered more than once
+		 *
+		 * @param log The log in which to record the operations
+		 * @return The replicas by the key under which their operations are recorded
+		 */
+		private Map<UUID, Replica> populate(SegmentedLog log) {
+			Map<UUID, Replica> rv = new LinkedHashMap<>();
+			List<UUID> keys = new ArrayList<>();
+
+			for (int i = 0; i < KEY_COUNT; ++i) {
+				Replica replica = new Replica();
+				UUID key = UUID.randomUUID();
+
+				replica.setJournal(log.journal(key));
+				rv.put(key, replica);
+				keys.add(key);
+			}
+
+			for (long i = 0; i < this.getOperationCount(); ++i) {
+				this.push(rv.get(keys.get(Support.getRandom().nextInt(KEY_COUNT))));
+			}
+
+			return rv;
+		}
+
+		/**
+		 * Push a generated operation into the given replica, delivering it a second time or rejecting it afterward at random
+		 *
+		 * @param replica The replica into which to push the operation
+		 */
+		private void push(Replica replica) {
+			OperationManager mgr = new OperationManager(StatusType.APPROVED, this.generateOperation());
+
+			replica.deliver(mgr);
+
+			if (Support.getRandom().nextDouble() < P_REPEAT) {
+				replica.deliver(mgr);
+			}
+
+			if (Support.getRandom().nextDouble() < P_REJECT) {
+				replica.deliver(new OperationManager(StatusType.REJECTED, mgr.getOperation()));
+			}
+		}
+
+		/**
+		 * Ensure the CRDTs rebuilt from a log match those of the replicas whose operations were recorded in it
+		 *
+		 * @param replicas The replicas by the key under which their operations were recorded
+		 * @param rebuilt The CRDTs rebuilt by key
+		 */
+		private static void assessRebuild(Map<UUID, Replica> replicas, Map<UUID, LastWriteWins> rebuilt) {
+			assertEquals(replicas.keySet(), rebuilt.keySet(), "Rebuilt key mismatch");
+
+			for (Map.Entry<UUID, Replica> entry : replicas.entrySet()) {
+				LastWriteWins expected = entry.getValue().getCrdt();
+				LastWriteWins actual = rebuilt.get(entry.getKey());
+
+				assertEquals(new ArrayList<>(expected.getAddView()), new ArrayList<>(actual.getAddView()), "ADD set mismatch");
+				assertEquals(new ArrayList<>(expected.getRemView()), new ArrayList<>(actual.getRemView()), "REMOVE set mismatch");
+				assertEquals(expected.getDocument(), actual.getDocument(), "Document mismatch");
+			}
+		}
+
+		/**
+		 * Count the records replayed from the given log
+		 *
+		 * @param log The log whose records to count
+		 * @return The number of records replayed
+		 * @throws IOException when the log can not be read
+		 */
+		private static long count(SegmentedLog log) throws IOException {
+			long[] rv = { 0 };
+			log.replay((key, mgr) -> ++rv[0]);
+			return rv[0];
+		}
+
+		/**
+		 * Delete the given directory and everything in it
+		 *
+		 * @param directory The directory to delete
+		 * @throws IOException when the directory can not be deleted
+		 */
+		private static void delete(Path directory) throws IOException {
+			try (Stream<Path> paths = Files.walk(directory)) {
+				for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(path);
+				}
+			}
+		}
+
+		/**
+		 * Record the operations pushed into several replicas in a log spanning several segments, reopen the log, and ensure the
+		 * CRDTs rebuilt from it match the replicas
+		 *
+		 * @throws IOException when the log can not be written or read
+		 */
+		public void testRebuild() throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testRebuild: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					Map<UUID, Replica> replicas;
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						replicas = this.populate(log);
+						assertTrue(log.getSegments().size() > 2, "Operations did not span several segments");
+						assessRebuild(replicas, log.rebuild());
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						assessRebuild(replicas, log.rebuild());
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Record the operations pushed into several replicas in a log, then merge into each the operations of a peer whose operations
+		 * are not recorded, either in full or as the delta the replica lacks, reopen the log, and ensure the CRDTs rebuilt from it match
+		 * the replicas including the merged operations.  Merging the same peer again must record nothing further.
+		 *
+		 * @throws IOException when the log can not be written or read
+		 */
+		public void testMerge() throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testMerge: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					Map<UUID, Replica> replicas;
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						replicas = this.populate(log);
+
+						for (Replica replica : replicas.values()) {
+							Replica peer = new Replica();
+
+							for (long i = this.getOperationCount() / KEY_COUNT; i > 0; --i) {
+								this.push(peer);
+							}
+
+							if (Support.getRandom().nextBoolean()) {
+								replica.merge(peer);
+							} else {
+								replica.merge(peer.getDelta(replica.getVersionVector()));
+							}
+
+							OperationJournal journal = replica.getJournal();
+							List<OperationManager> repeated = new ArrayList<>();
+
+							replica.setJournal(repeated::add);
+							replica.merge(peer);
+							replica.setJournal(journal);
+
+							assertTrue(repeated.isEmpty(), "Repeated merge journaled: " + repeated.toString());
+						}
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						assessRebuild(replicas, log.rebuild());
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Record operations in a log, some more than once, compact it, and ensure the sealed segments are reclaimed, the repeated
+		 * records are discarded, and the CRDTs rebuilt from it still match the replicas, including after further operations are
+		 * recorded and it is reopened
+		 *
+		 * @throws IOException when the log can not be written, read or compacted
+		 */
+		public void testCompaction() throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testCompaction: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					Map<UUID, Replica> replicas;
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						replicas = this.populate(log);
+
+						List<Path> before = log.getSegments();
+						long recorded = count(log);
+						int reclaimed = log.compact();
+
+						assertEquals(before.size(), reclaimed, "Reclaimed segment count mismatch");
+						assertTrue(log.getSegments().size() <= before.size(), "Compaction increased the segment count");
+						assertTrue(count(log) < recorded, "Compaction did not discard repeated records");
+
+						for (Path path : before) {
+							assertFalse(Files.exists(path), "Compacted segment not deleted: " + path);
+						}
+
+						assessRebuild(replicas, log.rebuild());
+
+						for (Replica replica : replicas.values()) {
+							replica.deliver(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+						}
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						assessRebuild(replicas, log.rebuild());
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Record operations in a log, take a snapshot, and ensure the sealed segments are folded into it and deleted, the snapshot
+		 * holds the version vector and invalid operations of each replica, and the CRDTs rebuilt from the snapshot and the records
+		 * following it match the replicas, including after further operations are recorded, a second snapshot taken, and the log
+		 * reopened
+		 *
+		 * @throws IOException when the log can not be written or read, or the snapshot taken
+		 */
+		public void testSnapshot() throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testSnapshot: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					Map<UUID, Replica> replicas;
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						replicas = this.populate(log);
+
+						List<Path> before = log.getSegments();
+						int folded = log.snapshot();
+
+						assertEquals(before.size(), folded, "Folded segment count mismatch");
+						assertEquals(0, count(log), "Folded records replayed");
+
+						for (Path path : before) {
+							assertFalse(Files.exists(path), "Folded segment not deleted: " + path);
+						}
+
+						Snapshot snapshot = Snapshot.read(log.getSnapshot());
+
+						for (Map.Entry<UUID, Replica> entry : replicas.entrySet()) {
+							LastWriteWins expected = entry.getValue().getCrdt();
+							VersionVector summary = snapshot.getSummaries().get(entry.getKey());
+
+							assertEquals(expected.getVersionVector(), summary, "Version vector mismatch");
+							assertEquals(new ArrayList<>(expected.getInvalidOperations()), new ArrayList<>(snapshot.getCrdts().get(entry.getKey()).getInvalidOperations()), "Invalid operations mismatch");
+						}
+
+						assessRebuild(replicas, log.rebuild());
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						List<Replica> targets = new ArrayList<>(replicas.values());
+						Path first = log.getSnapshot();
+
+						assessRebuild(replicas, log.rebuild());
+
+						for (Map.Entry<UUID, Replica> entry : replicas.entrySet()) {
+							entry.getValue().setJournal(log.journal(entry.getKey()));
+						}
+
+						for (long i = this.getOperationCount() / 4; i > 0; --i) {
+							this.push(targets.get(Support.getRandom().nextInt(KEY_COUNT)));
+						}
+
+						assessRebuild(replicas, log.rebuild());
+						log.snapshot();
+						assertFalse(Files.exists(first), "Superseded snapshot not deleted: " + first);
+
+						for (Replica replica : replicas.values()) {
+							replica.deliver(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+						}
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						assertEquals(KEY_COUNT, count(log), "Record count mismatch after reopening");
+						assessRebuild(replicas, log.rebuild());
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Push operations into several replicas concurrently, each on its own thread and journaling its operations through a write
+		 * ahead log with the given durability, and ensure every record is counted, the number of flushes is consistent with the
+		 * durability, and the CRDTs rebuilt from the log match the replicas
+		 *
+		 * @param durability The durability of the write ahead log
+		 * @throws IOException when the log can not be written or read
+		 */
+		public void testDurability(Durability durability) throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testDurability: {\"count\":" + this.getTrialCount() + ", \"operationCount\":" + this.getOperationCount()+ ", \"durability\":\"" + durability + "\"}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					Map<UUID, Replica> replicas = new LinkedHashMap<>();
+					Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+					List<Thread> writers = new ArrayList<>();
+					long recorded;
+
+					try (WriteAheadLog wal = new WriteAheadLog(new SegmentedLog(directory, SEGMENT_SIZE), durability)) {
+						for (int i = 0; i < KEY_COUNT; ++i) {
+							Replica replica = new Replica();
+							UUID key = UUID.randomUUID();
+
+							replica.setJournal(wal.journal(key));
+							replicas.put(key, replica);
+							writers.add(new Thread(() -> {
+								try {
+									for (long j = this.getOperationCount() / KEY_COUNT; j > 0; --j) {
+										this.push(replica);
+									}
+								} catch (Throwable t) {
+									failures.add(t);
+								}
+							}));
+						}
+
+						for (Thread writer : writers) {
+							writer.start();
+						}
+
+						for (Thread writer : writers) {
+							try {
+								writer.join();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+
+						logger.info("   " + wal.toString());
+
+						assertTrue(failures.isEmpty(), "Writer failed: " + failures);
+						recorded = count(wal.getLog());
+						assertEquals(recorded, wal.getAppendCount(), "Append count mismatch");
+						assertTrue(wal.getMeanLatency() <= wal.getMaxLatency(), "Mean latency exceeds maximum latency");
+
+						switch (durability) {
+						case NONE:
+							assertEquals(0, wal.getFlushCount(), "Flushes performed without durability");
+							break;
+						case PER_OP:
+							assertEquals(wal.getAppendCount(), wal.getFlushCount(), "Flush count mismatch");
+							break;
+						default:
+							assertTrue(0 < wal.getFlushCount() && wal.getFlushCount() <= wal.getAppendCount(), "Flush count out of range");
+							break;
+						}
+					}
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						assertEquals(recorded, count(log), "Record count mismatch after reopening");
+						assessRebuild(replicas, log.rebuild());
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+
+		/**
+		 * Corrupt the last record of a segment, as a crash while writing it would, and ensure the records preceding it are replayed
+		 * and the corrupt record is not
+		 *
+		 * @throws IOException when the log can not be written or read
+		 */
+		public void testTornRecord() throws IOException {
+			logger.info("\n** TestSegmentedLog.Persisting.testTornRecord: {\"count\":" + this.getTrialCount() + "}");
+
+			for (int trial=0; trial<this.getTrialCount(); ++trial) {
+				logger.info("   trial " + (trial+1) + " of " + this.getTrialCount() + ".");
+
+				Path directory = Files.createTempDirectory("segmented");
+
+				try {
+					UUID key = UUID.randomUUID();
+					List<OperationManager> recorded = new ArrayList<>();
+					Path segment;
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						for (int i = 1 + Support.getRandom().nextInt(32); i > 0; --i) {
+							recorded.add(new OperationManager(StatusType.APPROVED, this.generateOperation()));
+							log.append(key, recorded.get(recorded.size() - 1));
+						}
+
+						segment = log.getSegments().get(0);
+					}
+
+					ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+					int last = Integer.BYTES;
+
+					for (int position = last; 0 != buffer.getInt(position); position += 2 * Integer.BYTES + buffer.getInt(position)) {
+						last = position;
+					}
+
+					int corrupt = last + 2 * Integer.BYTES + Support.getRandom().nextInt(buffer.getInt(last));
+					buffer.put(corrupt, (byte) (buffer.get(corrupt) ^ 0x5A));
+					Files.write(segment, buffer.array());
+
+					List<OperationManager> replayed = new ArrayList<>();
+
+					try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+						log.replay((k, mgr) -> replayed.add(mgr));
+					}
+
+					assertEquals(recorded.size() - 1, replayed.size(), "Replayed record count mismatch");
+
+					for (int i = 0; i < replayed.size(); ++i) {
+						assertEquals(recorded.get(i).getStatus(), replayed.get(i).getStatus(), "Replayed status mismatch");
+						assertEquals(recorded.get(i).getOperation(), replayed.get(i).getOperation(), "Replayed operation mismatch");
+					}
+				} finally {
+					delete(directory);
+				}
+			}
+
+			logger.info("   SUCCESS");
+		}
+	}
+
+	/**
+	 * Test rebuilding CRDTs from the operations recorded in a segmented log
+	 *
+	 * @throws IOException when the log can not be written or read
+	 */
+	@Test
+	public void testRebuild() throws IOException {
+		Persisting test = new Persisting();
+		test.testRebuild();
+	}
+
+	/**
+	 * Test rebuilding CRDTs whose replicas merged operations from peers
+	 *
+	 * @throws IOException when the log can not be written or read
+	 */
+	@Test
+	public void testMerge() throws IOException {
+		Persisting test = new Persisting();
+		test.testMerge();
+	}
+
+	/**
+	 * Test compacting a segmented log
+	 *
+	 * @throws IOException when the log can not be written, read or compacted
+	 */
+	@Test
+	public void testCompaction() throws IOException {
+		Persisting test = new Persisting();
+		test.testCompaction();
+	}
+
+	/**
+	 * Test taking snapshots of a segmented log and rebuilding from them
+	 *
+	 * @throws IOException when the log can not be written or read, or the snapshot taken
+	 */
+	@Test
+	public void testSnapshot() throws IOException {
+		Persisting test = new Persisting();
+		test.testSnapshot();
+	}
+
+	/**
+	 * Test journaling operations pushed concurrently through a write ahead log with each durability
+	 *
+	 * @throws IOException when the log can not be written or read
+	 */
+	@Test
+	public void testDurability() throws IOException {
+		Persisting test = new Persisting();
+
+		for (Durability durability : Durability.values()) {
+			test.testDurability(durability);
+		}
+	}
+
+	/**
+	 * Test replaying a segmented log whose last record is corrupt
+	 *
+	 * @throws IOException when the log can not be written or read
+	 */
+	@Test
+	public void testTornRecord() throws IOException {
+		Persisting test = new Persisting();
+		test.testTornRecord();
+	}
+}
@@ -413,6 +413,7 @@ public class TestSimulation {
 			for (Map.Entry<UUID, Node> entry : Executive.getExecutive().getNodes().entrySet()) {
 				Node baseNode = entry.getValue();
 				assertNotNull(baseNode, "baseNode found to be null");
+				assertTrue(baseNode.getDivergent(Executive.getExecutive().pickNode()).isEmpty(), "Merkle tree roots diverge between nodes: " + baseNode.getId());
 
 				for (Entry<UUID, SimCRDTManager<? extends AbstractDataType>> baseEntry : entry.getValue().getDatastore().entrySet()) {
 					SimCRDTManager<? extends AbstractDataType> crdt = baseEntry.getValue();
@@ -460,6 +461,8 @@ public class TestSimulation {
 				assertNotNull(compCRDT, "compCRDT found to be null");
 
 				AbstractDataType compValue = compCRDT.getObject();
+				assertEquals(crdt.getCrdt().getMerkleTree().getRoot(), compCRDT.getCrdt().getMerkleTree().getRoot(),
+						"Merkle tree root mismatch between synchronized objects: " + crdt.getObjectId());
 				assertTrue(compCRDT.isDeleted() == crdt.isDeleted(),
 						"compCRDT.isDeleted (" + compCRDT.isDeleted() + ") / baseCRDT.isDeleted (" + crdt.isDeleted() + ") deleted flag mismatch: ");
 